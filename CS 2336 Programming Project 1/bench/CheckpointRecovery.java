@@ -0,0 +1,108 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * This program checks that CheckpointedIngest recovers from a crash. It starts a second JVM that
+ * reads a synthetic flight log with checkpoints, kills it (without any chance to clean up) a moment
+ * after its first checkpoint has been written, and then reads the log again in this JVM. The second read
+ * must continue from the last checkpoint, end with exactly the counts of reading the whole log
+ * at once, and delete the checkpoint. A checkpoint that does not match the log must be refused.
+ * It prints how far the first read got, how long reading from the start and recovering took, and
+ * how long the reading thread of the recovery spent starting checkpoints.
+ *
+ * Usage: java CheckpointRecovery [records] [passengers] [skew] [interval in MB]
+ * The program exits with status 1 if any check fails.
+ */
+public class CheckpointRecovery {
+    private static final long KILL_AFTER_MILLIS = 2000; // How long the first read runs after its first checkpoint.
+
+    /**
+     * The main() method runs the crash and the recovery, or (when started with "--ingest" by
+     * the crash test) only reads the log with checkpoints.
+     * @param args command-line arguments: the shape of the log and the checkpoint interval,
+     *             or "--ingest", the log, the checkpoint, and the interval.
+     * @throws Exception If a file can not be read or written, or the first JVM can not be started.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length == 4 && args[0].equals("--ingest"))
+            new CheckpointedIngest(args[1], args[2], Long.parseLong(args[3])).read();
+        else
+            crashAndRecover(args);
+    }
+
+    /**
+     * This method reads the log in a second JVM, kills it, recovers in this JVM, and checks the result.
+     * @param args command-line arguments: the number of records, passengers, the skew, and the interval in MB.
+     * @throws Exception If a file can not be read or written, or the first JVM can not be started.
+     */
+    private static void crashAndRecover(String[] args) throws Exception {
+        long numRecords = args.length > 0 ? Long.parseLong(args[0]) : 40_000_000; // The records in the log.
+        int numPassengers = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000; // The passengers in the log.
+        double skew = args.length > 2 ? Double.parseDouble(args[2]) : 1.0; // The skew of the passenger IDs.
+        long interval = (args.length > 3 ? Long.parseLong(args[3]) : 16) << 20; // The bytes between checkpoints.
+        File logFile = SyntheticLog.getFile(numRecords, numPassengers, skew); // The log.
+        File checkpointFile = new File(logFile.getPath() + ".checkpoint"); // The checkpoint of the log.
+        PackedPassengerStore expected = new PackedPassengerStore(); // The log read at once.
+        CheckpointedIngest ingest = new CheckpointedIngest(logFile.getPath(), checkpointFile.getPath(),
+                interval); // The read after the crash.
+        PackedPassengerStore recovered; // The Passengers after the crash and recovery.
+        Process firstRead; // The JVM that is killed.
+        long startTime; // The time the current step started.
+        double fullSeconds; // The time reading the whole log took.
+        int numMismatches = 0; // The number of Passengers that differ.
+
+        startTime = System.nanoTime();
+        MappedFlightReader.read(logFile.getPath(), expected);
+        fullSeconds = (System.nanoTime() - startTime) / 1e9;
+        System.out.printf("%,d byte log read from the start in %.2f s%n", logFile.length(), fullSeconds);
+
+        checkpointFile.delete();
+        firstRead = new ProcessBuilder("java", "-cp", System.getProperty("java.class.path"), "CheckpointRecovery",
+                "--ingest", logFile.getPath(), checkpointFile.getPath(), Long.toString(interval)).inheritIO().start();
+        while (!checkpointFile.exists() && firstRead.isAlive())
+            Thread.sleep(10);
+        Thread.sleep(KILL_AFTER_MILLIS);
+        firstRead.destroyForcibly().waitFor();
+
+        startTime = System.nanoTime();
+        recovered = ingest.read();
+        System.out.printf("killed %d ms after the first checkpoint; resumed from offset %,d (%.0f%% of the log) in %.2f s, %d checkpoints "
+                + "(%.1f ms of the reading thread)%n", KILL_AFTER_MILLIS, ingest.getResumedFrom(),
+                100.0 * ingest.getResumedFrom() / logFile.length(), (System.nanoTime() - startTime) / 1e9,
+                ingest.getNumCheckpoints(), ingest.getPauseNanos() / 1e6);
+
+        if (recovered.size() != expected.size())
+            numMismatches++;
+        for (long passengerID : expected.getIDs()) {
+            if (!recovered.contains(passengerID)
+                    || recovered.getFlights(passengerID) != expected.getFlights(passengerID)
+                    || recovered.getCancelledFlights(passengerID) != expected.getCancelledFlights(passengerID)
+                    || recovered.getComplaints(passengerID) != expected.getComplaints(passengerID)
+                    || recovered.getTierOrdinal(passengerID) != expected.getTierOrdinal(passengerID))
+                numMismatches++;
+        }
+        System.out.println(numMismatches + " wrong passengers");
+
+        // A finished read leaves no checkpoint behind.
+        if (checkpointFile.exists()) {
+            System.out.println("the checkpoint was not deleted");
+            numMismatches++;
+        }
+        // A checkpoint of another log (here, one whose sampled bytes differ) must not be resumed.
+        PassengerSnapshot.write(expected, checkpointFile.getPath(), new LogFingerprint(ingest.getResumedFrom(),
+                logFile.length(), logFile.lastModified(), 0));
+        try {
+            ingest.read();
+            System.out.println("a checkpoint of another log was resumed");
+            numMismatches++;
+        }
+        catch (IOException e) {
+            System.out.println("refused: " + e.getMessage());
+        }
+
+        checkpointFile.delete();
+        System.out.println(numMismatches == 0 ? "PASSED" : "FAILED");
+        if (numMismatches > 0)
+            System.exit(1);
+    }
+}
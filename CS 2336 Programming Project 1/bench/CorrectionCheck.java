@@ -0,0 +1,117 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * This program checks that applying corrections (see FlightCorrections) to a finished year gives
+ * each corrected Passenger the totals, Tier and Sub-Tier they would have had if their records
+ * had been right to begin with, and prints how long reading and applying the corrections took.
+ * The members are made up directly (like the report benchmarks), so a ledger of tens of millions
+ * of members does not need billions of records first. The corrections reverse cancellations,
+ * withdraw complaints, and take back whole records of random members.
+ *
+ * Usage: java -Xmx4g CorrectionCheck [members corrections]
+ * The program exits with status 1 if any check fails.
+ */
+public class CorrectionCheck {
+    private static final long SEED = 2336; // The seed of the random members and corrections.
+
+    /**
+     * The main() method runs the check.
+     * @param args command-line arguments: the number of members and of corrections.
+     * @throws IOException If the correction file can not be written or read.
+     */
+    public static void main(String[] args) throws IOException {
+        int numMembers = args.length == 2 ? Integer.parseInt(args[0]) : 1_000_000; // The number of members.
+        int numCorrections = args.length == 2 ? Integer.parseInt(args[1]) : 100_000; // The number of corrections.
+        PassengerStore ledger = new PackedPassengerStore(); // The finished year to correct.
+        PassengerStore expected = new PackedPassengerStore(); // The corrected members, counted from scratch.
+        File correctionFile = File.createTempFile("corrections", ".txt"); // The corrections.
+        Random random = new Random(SEED); // Makes up the members and the corrections.
+        FlightCorrections corrections; // The corrections read back.
+        long startTime; // The time the current step started.
+        int numMismatches = 0; // The number of corrected members that differ.
+
+        startTime = System.nanoTime();
+        for (int i = 0; i < numMembers; i++) {
+            int numFlights = random.nextInt(200); // The member's flights.
+            int numCancFlights = random.nextInt(numFlights + 1); // The member's cancelled flights.
+
+            ledger.setTotals(100 + i, numFlights, numCancFlights, random.nextInt(numCancFlights / 8 + 1));
+        }
+        ledger.finishYear();
+        System.out.printf("made %,d members in %.1f s%n", numMembers, (System.nanoTime() - startTime) / 1e9);
+
+        // Write the corrections, and count the corrected members again as they should have been.
+        try (BufferedWriter outStream = new BufferedWriter(new FileWriter(correctionFile))) {
+            for (int i = 0; i < numCorrections; i++) {
+                long passengerID = 100 + random.nextInt(numMembers); // The member corrected.
+                int numFlights = expectedOrLedger(expected, ledger, passengerID, 0); // The member's flights.
+                int numCancFlights = expectedOrLedger(expected, ledger, passengerID, 1); // The cancelled flights.
+                int numComplaints = expectedOrLedger(expected, ledger, passengerID, 2); // The complaints.
+
+                if (numComplaints > 0) {
+                    outStream.write("-" + passengerID + " Y Y\n" + passengerID + " Y N\n");
+                    numComplaints--;
+                }
+                else if (numCancFlights > 0 && random.nextBoolean()) {
+                    outStream.write("-" + passengerID + " Y N\n" + passengerID + " N\n");
+                    numCancFlights--;
+                }
+                else if (numFlights > numCancFlights) {
+                    outStream.write("-" + passengerID + " N\n");
+                    numFlights--;
+                }
+                else
+                    continue;
+                expected.setTotals(passengerID, numFlights, numCancFlights, numComplaints);
+            }
+        }
+        expected.finishYear();
+
+        startTime = System.nanoTime();
+        corrections = FlightCorrections.read(correctionFile.getPath());
+        System.out.printf("read %,d corrections of %,d members in %.1f ms%n", corrections.getNumCorrections(),
+                corrections.size(), (System.nanoTime() - startTime) / 1e6);
+        startTime = System.nanoTime();
+        corrections.apply(ledger);
+        System.out.printf("applied them to %,d members in %.1f ms (%,d tier changes, %,d downgrades)%n",
+                ledger.size(), (System.nanoTime() - startTime) / 1e6, corrections.getNumTierChanges(),
+                corrections.getNumDowngrades());
+
+        if (ledger.size() != numMembers || corrections.getNumRejected() != 0)
+            numMismatches++;
+        for (long passengerID : expected.getIDs()) {
+            if (ledger.getFlights(passengerID) != expected.getFlights(passengerID)
+                    || ledger.getCancelledFlights(passengerID) != expected.getCancelledFlights(passengerID)
+                    || ledger.getComplaints(passengerID) != expected.getComplaints(passengerID)
+                    || ledger.getMiles(passengerID) != expected.getMiles(passengerID)
+                    || ledger.getTierOrdinal(passengerID) != expected.getTierOrdinal(passengerID)
+                    || ledger.hasMultiplier(passengerID) != expected.hasMultiplier(passengerID))
+                numMismatches++;
+        }
+        correctionFile.delete();
+        System.out.println(numMismatches == 0 ? "PASSED" : "FAILED: " + numMismatches + " members differ");
+        if (numMismatches != 0)
+            System.exit(1);
+    }
+
+    /**
+     * This method returns a count of a member as already corrected, or as in the ledger if they
+     * have not been corrected yet.
+     * @param expected The corrected members.
+     * @param ledger The finished year.
+     * @param passengerID The look-up ID of the member.
+     * @param count Which count: 0 for flights, 1 for cancelled flights, 2 for complaints.
+     * @return The count.
+     */
+    private static int expectedOrLedger(PassengerStore expected, PassengerStore ledger, long passengerID, int count) {
+        PassengerStore passengerInfo = expected.contains(passengerID) ? expected : ledger; // The member's latest counts.
+
+        if (count == 0)
+            return passengerInfo.getFlights(passengerID);
+        return count == 1 ? passengerInfo.getCancelledFlights(passengerID) : passengerInfo.getComplaints(passengerID);
+    }
+}
@@ -0,0 +1,175 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * This program checks that a LedgerExport is the same, byte for byte, whatever the number of
+ * threads writing it, and that its lines are in order of ID with one line per member, and prints
+ * how long each export took. The members are made up directly (like the report benchmarks), in a
+ * store made big enough for them up front, with IDs spread out so they are not already in order.
+ * A second, small store holds members with 18-digit IDs in the Tier with the longest name, whose
+ * lines are the longest an export can have.
+ *
+ * Usage: java -Xmx4500m ExportCheck [members threads]
+ * The program exits with status 1 if any check fails.
+ */
+public class ExportCheck {
+    private static final long SEED = 2336; // The seed of the random members.
+
+    /**
+     * The main() method runs the check.
+     * @param args command-line arguments: the number of members and of threads.
+     * @throws IOException If an export can not be written or read.
+     */
+    public static void main(String[] args) throws IOException {
+        int numMembers = args.length == 2 ? Integer.parseInt(args[0]) : 1_000_000; // The number of members.
+        int numThreads = args.length == 2 ? Integer.parseInt(args[1]) : 4; // The threads of the second export.
+        PassengerStore ledger = new PackedPassengerStore(numMembers); // The finished year to export.
+        Random random = new Random(SEED); // Makes up the members.
+        long startTime; // The time the current step started.
+        int numFailures = 0; // The number of checks that failed.
+
+        startTime = System.nanoTime();
+        for (int i = 0; i < numMembers; i++) {
+            int numFlights = random.nextInt(200); // The member's flights.
+            int numCancFlights = random.nextInt(numFlights + 1); // The member's cancelled flights.
+
+            // Multiplying by an odd number modulo 2^40 keeps the IDs unique but out of order.
+            ledger.setTotals((i * 0x5DEECE66DL & 0xFF_FFFF_FFFFL) + 100, numFlights, numCancFlights,
+                    random.nextInt(numCancFlights / 8 + 1));
+        }
+        ledger.finishYear();
+        System.out.printf("made %,d members in %.1f s%n", numMembers, (System.nanoTime() - startTime) / 1e9);
+
+        for (String suffix : new String[] {".txt", ".csv"}) {
+            File single = File.createTempFile("export-1-", suffix); // The export written on one thread.
+            File parallel = File.createTempFile("export-" + numThreads + "-", suffix); // The export written on many.
+            LedgerExport export = new LedgerExport(ledger, single.getPath(), 1); // The export on one thread.
+
+            numFailures += check(export, single, 1) == numMembers ? 0 : 1;
+            numFailures += check(new LedgerExport(ledger, parallel.getPath(), numThreads), parallel, numThreads)
+                    == numMembers ? 0 : 1;
+            if (Files.mismatch(single.toPath(), parallel.toPath()) != -1) {
+                System.out.println(suffix + " exports differ");
+                numFailures++;
+            }
+            if (suffix.equals(".txt") && single.length() != (long) numMembers * export.getLineWidth()) {
+                System.out.println(suffix + " export has " + single.length() + " bytes");
+                numFailures++;
+            }
+            numFailures += checkOrder(single.getPath(), suffix.equals(".csv"));
+            single.delete();
+            parallel.delete();
+        }
+        numFailures += checkLongLines(numThreads);
+        System.out.println(numFailures == 0 ? "PASSED" : "FAILED: " + numFailures + " checks");
+        if (numFailures != 0)
+            System.exit(1);
+    }
+
+    /**
+     * This method exports members whose lines are as long as lines get: 18-digit IDs, the Tier
+     * with the longest name, and thousands of flights, cancelled flights and miles. Both formats
+     * must be written in full, on one thread and on many.
+     * @param numThreads The number of threads of the second export.
+     * @return The number of checks that failed.
+     * @throws IOException If an export can not be written.
+     */
+    private static int checkLongLines(int numThreads) throws IOException {
+        PassengerStore ledger = new PackedPassengerStore(); // The members with the longest lines.
+        int longestTier = 0; // The Tier with the longest name.
+        int numFailures = 0; // The number of checks that failed.
+
+        for (int tier = 0; tier < TierTable.NUM_TIERS; tier++) {
+            if (TierTable.getDisplayName(tier).length() > TierTable.getDisplayName(longestTier).length())
+                longestTier = tier;
+        }
+        for (int i = 0; i < 50; i++)
+            ledger.setTotals(999_999_999_999_999_000L + i, 1000, 1000, 0);
+        ledger.finishYear();
+        if (ledger.getTierOrdinal(999_999_999_999_999_000L) != longestTier) {
+            System.out.println("long lines: the members are in " + ledger.getTier(999_999_999_999_999_000L)
+                    + ", not in " + TierTable.getName(longestTier));
+            numFailures++;
+        }
+        for (String suffix : new String[] {".txt", ".csv"}) {
+            for (int threads : new int[] {1, numThreads}) {
+                File file = File.createTempFile("export-long-" + threads + "-", suffix); // The export.
+
+                try {
+                    if (new LedgerExport(ledger, file.getPath(), threads).write() != ledger.size()
+                            || Files.readAllLines(file.toPath()).size() != ledger.size() + (suffix.equals(".csv") ? 1 : 0)) {
+                        System.out.println("long lines: " + file.getName() + " does not have every member");
+                        numFailures++;
+                    }
+                }
+                catch (RuntimeException e) {
+                    System.out.println("long lines: " + file.getName() + " could not be written: " + e);
+                    numFailures++;
+                }
+                file.delete();
+            }
+        }
+        return numFailures;
+    }
+
+    /**
+     * This method writes an export and prints how long it took.
+     * @param export The export.
+     * @param file The file the export is written to.
+     * @param numThreads The number of threads writing it.
+     * @return The number of members written.
+     * @throws IOException If the export can not be written.
+     */
+    private static long check(LedgerExport export, File file, int numThreads) throws IOException {
+        long startTime = System.nanoTime(); // The time the export started.
+        long numWritten = export.write(); // The number of members written.
+
+        System.out.printf("exported %,d members to %s (%,d MB) on %d threads in %.1f s%n", numWritten,
+                file.getName(), file.length() >> 20, numThreads, (System.nanoTime() - startTime) / 1e9);
+        return numWritten;
+    }
+
+    /**
+     * This method checks that the IDs of an export are in increasing order, reading the file a
+     * block at a time so that no more than one block is held at once.
+     * @param fileName The name of the export.
+     * @param isCSV Flag indicating whether the export has a header line and IDs without spaces before them.
+     * @return 1 if the IDs are out of order, or 0 if they are in order.
+     * @throws IOException If the export can not be read.
+     */
+    private static int checkOrder(String fileName, boolean isCSV) throws IOException {
+        byte[] block = new byte[1 << 20]; // A block of the file.
+        long lastID = -1; // The ID of the previous line.
+        long passengerID = 0; // The ID of the current line, so far.
+        boolean isInID = !isCSV; // Flag indicating whether the current line's ID is still being read.
+        int numRead; // The number of bytes in the block.
+
+        try (InputStream inStream = new FileInputStream(fileName)) {
+            while ((numRead = inStream.read(block)) > 0) {
+                for (int i = 0; i < numRead; i++) {
+                    byte b = block[i]; // A byte of the file.
+
+                    if (b == '\n') {
+                        isInID = true;
+                        passengerID = 0;
+                    }
+                    else if (isInID && b >= '0' && b <= '9')
+                        passengerID = passengerID * 10 + (b - '0');
+                    else if (isInID && (b == ',' || (b == ' ' && passengerID > 0))) {
+                        if (passengerID <= lastID) {
+                            System.out.println(fileName + " is out of order at " + passengerID);
+                            return 1;
+                        }
+                        lastID = passengerID;
+                        isInID = false;
+                    }
+                }
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,138 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This program checks that FlightLineParser reads every shape of line the same way with and
+ * without a date column, and with and without looking for malformed lines: short and full
+ * lines, cancelled or not, with one flag or two, and each with a date after its last flag. It
+ * also reads short logs into a RollingWindowStore and checks the tiers they end with, since a
+ * date read from the wrong place sends a record into the wrong month without any error. Records
+ * without a date before the first dated one must count in its month, and leave the window with it.
+ *
+ * Usage: java LineShapeCheck
+ * The program exits with status 1 if any check fails.
+ */
+public class LineShapeCheck {
+    // Each line, and what it should be read as: cancelled, complaint, month ("" for none), malformed.
+    private static final Object[][] SHAPES = {
+        {"101 Y", true, false, "", false},
+        {"101 Y Y", true, true, "", false},
+        {"101 Y N", true, false, "", false},
+        {"101 N", false, false, "", false},
+        {"101 N N", false, false, "", false},
+        {"101 Y 2024-01", true, false, "2024-01", false},
+        {"101 Y Y 2024-02", true, true, "2024-02", false},
+        {"101 Y N 2024-03-17", true, false, "2024-03", false},
+        {"101 N 2024-04", false, false, "2024-04", false},
+        {"101 N N 2024-05", false, false, "2024-05", false},
+        {"101\tY\t\t2024-06\r", true, false, "2024-06", false},
+        {"101 Y N extra", true, false, "", false},
+        {"101 Y X", true, false, "", true},
+        {"101 X", false, false, "", true},
+    };
+
+    /**
+     * This class keeps the last record it was given, with its month.
+     */
+    private static class LastRecord implements DatedFlightRecordHandler {
+        private int numRecords = 0; // The number of records given.
+        private boolean isCancelled; // Whether the flight of the last record was cancelled.
+        private boolean hasComplain; // Whether the last record has a complaint.
+        private int month; // The month of the last record, or -1.
+
+        @Override
+        public void addRecord(long passengerID, int month, boolean isCancelled, boolean hasComplain) {
+            this.numRecords++;
+            this.month = month;
+            this.isCancelled = isCancelled;
+            this.hasComplain = hasComplain;
+        }
+
+        @Override
+        public void addRecord(long passengerID, boolean isCancelled, boolean hasComplain) {
+            addRecord(passengerID, -1, isCancelled, hasComplain);
+        }
+    }
+
+    /**
+     * The main() method runs the check.
+     * @param args command-line arguments (not used).
+     * @throws IOException If the reject file can not be written.
+     */
+    public static void main(String[] args) throws IOException {
+        File rejectFile = File.createTempFile("rejects", ".txt"); // Where malformed lines are quarantined.
+        int numFailures = 0; // The number of checks that failed.
+
+        for (Object[] shape : SHAPES) {
+            String line = (String) shape[0]; // The line to parse.
+            ByteBuffer bytes = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.US_ASCII)); // The line as bytes.
+            LastRecord record = new LastRecord(); // The record read without checking.
+            FlightLineParser checked = new FlightLineParser(); // The parser that quarantines malformed lines.
+            boolean isMalformed; // Whether the checking parser found the line malformed.
+            String month; // The month read, as text.
+
+            new FlightLineParser().parse(bytes, 0, bytes.limit(), true, record);
+            try (RejectFile rejects = new RejectFile(rejectFile.getPath())) {
+                checked.setRejects(rejects);
+                checked.parse(bytes, 0, bytes.limit(), true, new LastRecord());
+            }
+            isMalformed = checked.getNumMalformed() == 1;
+            month = record.month < 0 ? "" : DatedFlightRecordHandler.formatMonth(record.month);
+            if (record.numRecords != 1 || record.isCancelled != (Boolean) shape[1]
+                    || record.hasComplain != (Boolean) shape[2] || !month.equals(shape[3])
+                    || isMalformed != (Boolean) shape[4]) {
+                System.out.printf("\"%s\" read as cancelled %b, complaint %b, month \"%s\", malformed %b%n",
+                        line.replace("\t", "\\t").replace("\r", "\\r"), record.isCancelled, record.hasComplain,
+                        month, isMalformed);
+                numFailures++;
+            }
+        }
+        rejectFile.delete();
+
+        numFailures += checkWindow("101 Y 2024-01\n", "102 N 2024-02\n", TierTable.GOLD, 30, 0,
+                DatedFlightRecordHandler.toMonth(2024, 2));
+        numFailures += checkWindow("101 Y\n", "102 N 2024-02\n", TierTable.GOLD, 30, 0,
+                DatedFlightRecordHandler.toMonth(2024, 2));
+        numFailures += checkWindow("101 Y\n", "", TierTable.GOLD, 30, 0, -1);
+        numFailures += checkWindow("101 Y\n", "102 N 2024-02\n103 N 2025-02\n", TierTable.NO_TIER, 0, 1,
+                DatedFlightRecordHandler.toMonth(2025, 2));
+        System.out.println(numFailures == 0 ? "PASSED" : "FAILED: " + numFailures + " checks");
+        if (numFailures != 0)
+            System.exit(1);
+    }
+
+    /**
+     * This method reads 30 cancelled flights of passenger 101 and then other lines into a rolling
+     * window, and checks where passenger 101 and the window end up.
+     * @param line The line of passenger 101, read 30 times.
+     * @param rest The lines read after them.
+     * @param tier The Tier passenger 101 must end in.
+     * @param numFlights The flights of passenger 101 that must be left in the window.
+     * @param numDowngrades The number of downgrades the window must count.
+     * @param latestMonth The month the window must end with, or -1 for none.
+     * @return 1 if the window ends up otherwise, or 0.
+     */
+    private static int checkWindow(String line, String rest, int tier, int numFlights, int numDowngrades,
+            int latestMonth) {
+        StringBuilder log = new StringBuilder(); // The log.
+        RollingWindowStore window = new RollingWindowStore(); // The window the log is read into.
+        ByteBuffer bytes; // The log as bytes.
+
+        for (int i = 0; i < 30; i++)
+            log.append(line);
+        log.append(rest);
+        bytes = ByteBuffer.wrap(log.toString().getBytes(StandardCharsets.US_ASCII));
+        new FlightLineParser().parse(bytes, 0, bytes.limit(), true, window);
+        if (window.getTierOrdinal(101) != tier || window.getFlights(101) != numFlights
+                || window.getNumDowngrades() != numDowngrades || window.getLatestMonth() != latestMonth) {
+            System.out.printf("window of 30 \"%s\" then \"%s\": 101 is %s with %d flights, %d downgrades, "
+                    + "window ends %s%n", line.trim(), rest.trim().replace("\n", " "), window.getTier(101),
+                    window.getFlights(101), window.getNumDowngrades(), window.getLatestMonth() < 0 ? "nowhere"
+                            : DatedFlightRecordHandler.formatMonth(window.getLatestMonth()));
+            return 1;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,87 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * This program checks that reading a flight log in shards (see ShardedLedger) ends with exactly
+ * the Passengers of reading it in one store. It reads a synthetic log once in one process, then
+ * partitions it into shards and finishes them in separate processes and on threads, and compares
+ * every field of every Passenger through the sharded store and through the merged snapshot.
+ * It prints how long each step took.
+ *
+ * Usage: java ShardedCheck [records] [passengers] [skew] [shards]
+ * The program exits with status 1 if any check fails.
+ */
+public class ShardedCheck {
+    /**
+     * The main() method runs the checks.
+     * @param args command-line arguments: the shape of the synthetic log and the number of shards.
+     * @throws IOException If a file can not be read or written, or a shard fails.
+     */
+    public static void main(String[] args) throws IOException {
+        long numRecords = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000; // The records in the log.
+        int numPassengers = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000; // The passengers in the log.
+        double skew = args.length > 2 ? Double.parseDouble(args[2]) : 1.0; // The skew of the passenger IDs.
+        int numShards = args.length > 3 ? Integer.parseInt(args[3]) : 8; // The number of shards.
+        File logFile = SyntheticLog.getFile(numRecords, numPassengers, skew); // The log.
+        File directory = Files.createTempDirectory("shards").toFile(); // The files of the shards.
+        File mergedFile = new File(directory, "merged.snapshot"); // The merged snapshot.
+        PackedPassengerStore expected = new PackedPassengerStore(); // The log read in one store.
+        ShardedLedger shards = new ShardedLedger(directory.getPath(), numShards); // The shards of the log.
+        long startTime; // The time the current step started.
+        int numMismatches = 0; // The number of Passengers that differ.
+
+        startTime = System.nanoTime();
+        MappedFlightReader.read(logFile.getPath(), expected);
+        new Ledger(logFile.getName(), expected).finishYear();
+        System.out.printf("one store: %,d passengers in %.2f s%n", expected.size(), (System.nanoTime() - startTime) / 1e9);
+
+        for (boolean isSeparateProcesses : new boolean[] {true, false}) {
+            startTime = System.nanoTime();
+            shards.partition(logFile.getPath());
+            System.out.printf("partitioned into %d shards in %.2f s%n", numShards, (System.nanoTime() - startTime) / 1e9);
+            startTime = System.nanoTime();
+            shards.finishShards(isSeparateProcesses);
+            System.out.printf("finished the shards in %s in %.2f s%n", isSeparateProcesses ? "processes" : "threads",
+                    (System.nanoTime() - startTime) / 1e9);
+            numMismatches += compare(expected, shards.open());
+        }
+
+        startTime = System.nanoTime();
+        shards.merge(mergedFile.getPath());
+        System.out.printf("merged the shards in %.2f s%n", (System.nanoTime() - startTime) / 1e9);
+        numMismatches += compare(expected, PassengerSnapshot.load(mergedFile.getPath()));
+
+        for (File file : directory.listFiles())
+            file.delete();
+        directory.delete();
+        System.out.println(numMismatches == 0 ? "PASSED" : "FAILED");
+        if (numMismatches > 0)
+            System.exit(1);
+    }
+
+    /**
+     * This method compares every field of every Passenger of two stores, and prints the number that differ.
+     * @param expected The Passengers read in one store.
+     * @param actual The Passengers read in shards.
+     * @return The number of Passengers that differ (plus one if the sizes differ).
+     */
+    private static int compare(PassengerStore expected, PassengerStore actual) {
+        int numMismatches = 0; // The number of Passengers that differ.
+
+        if (actual.size() != expected.size())
+            numMismatches++;
+        for (long passengerID : expected.getIDs()) {
+            if (!actual.contains(passengerID)
+                    || actual.getFlights(passengerID) != expected.getFlights(passengerID)
+                    || actual.getCancelledFlights(passengerID) != expected.getCancelledFlights(passengerID)
+                    || actual.getComplaints(passengerID) != expected.getComplaints(passengerID)
+                    || actual.getMiles(passengerID) != expected.getMiles(passengerID)
+                    || actual.getTierOrdinal(passengerID) != expected.getTierOrdinal(passengerID)
+                    || actual.hasMultiplier(passengerID) != expected.hasMultiplier(passengerID))
+                numMismatches++;
+        }
+        System.out.println(numMismatches + " wrong passengers");
+        return numMismatches;
+    }
+}
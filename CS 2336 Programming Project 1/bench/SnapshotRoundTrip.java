@@ -0,0 +1,93 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * This program checks that a passenger snapshot holds exactly what reading the text log gives.
+ * It reads a flight log (a given file, or a synthetic one), finishes the year, writes the
+ * snapshot, loads it back, and compares every field of every Passenger. It also checks that a
+ * snapshot with a changed byte is refused, and prints how long writing and loading took.
+ *
+ * Usage: java SnapshotRoundTrip [flight data file | records passengers skew]
+ * The program exits with status 1 if any check fails.
+ */
+public class SnapshotRoundTrip {
+    /**
+     * The main() method runs the round trip.
+     * @param args command-line arguments: the flight data file, or the shape of a synthetic log.
+     * @throws IOException If a file can not be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        File logFile; // The text log.
+        PassengerStore expected = new PackedPassengerStore(); // The Passengers read from the text log.
+        File snapshotFile = File.createTempFile("passengers", ".snapshot"); // The snapshot written.
+        File corruptFile = new File(snapshotFile.getPath() + ".corrupt"); // A copy with a changed byte.
+        PassengerSnapshot snapshot; // The snapshot loaded back.
+        long startTime; // The time the current step started.
+        int numMismatches = 0; // The number of Passengers that differ.
+        boolean isCorruptRefused; // Flag indicating whether the changed copy was refused.
+
+        if (args.length == 1)
+            logFile = new File(args[0]);
+        else if (args.length == 3)
+            logFile = SyntheticLog.getFile(Long.parseLong(args[0]), Integer.parseInt(args[1]),
+                    Double.parseDouble(args[2]));
+        else
+            logFile = SyntheticLog.getFile(1_000_000, 100_000, 1.0);
+
+        MappedFlightReader.read(logFile.getPath(), expected);
+        new Ledger(logFile.getName(), expected).finishYear();
+
+        startTime = System.nanoTime();
+        PassengerSnapshot.write(expected, snapshotFile.getPath());
+        System.out.printf("wrote %,d passengers (%,d bytes) in %.1f ms%n", expected.size(),
+                snapshotFile.length(), (System.nanoTime() - startTime) / 1e6);
+        startTime = System.nanoTime();
+        snapshot = PassengerSnapshot.load(snapshotFile.getPath());
+        System.out.printf("loaded and verified in %.1f ms%n", (System.nanoTime() - startTime) / 1e6);
+
+        if (snapshot.size() != expected.size())
+            numMismatches++;
+        for (long passengerID : expected.getIDs()) {
+            if (!snapshot.contains(passengerID)
+                    || snapshot.getFlights(passengerID) != expected.getFlights(passengerID)
+                    || snapshot.getCancelledFlights(passengerID) != expected.getCancelledFlights(passengerID)
+                    || snapshot.getComplaints(passengerID) != expected.getComplaints(passengerID)
+                    || snapshot.getMiles(passengerID) != expected.getMiles(passengerID)
+                    || !snapshot.getTier(passengerID).equals(expected.getTier(passengerID))
+                    || snapshot.hasMultiplier(passengerID) != expected.hasMultiplier(passengerID))
+                numMismatches++;
+        }
+        if (snapshot.contains(-2) || snapshot.contains(Long.MAX_VALUE))
+            numMismatches++;
+        System.out.println(numMismatches + " wrong passengers");
+
+        // Change one byte in the middle of the columns, and expect the checksum to catch it.
+        Files.copy(snapshotFile.toPath(), corruptFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        try (RandomAccessFile corrupt = new RandomAccessFile(corruptFile, "rw")) {
+            long position = PassengerSnapshot.HEADER_SIZE + (corrupt.length() - PassengerSnapshot.HEADER_SIZE) / 2; // Where to change.
+            int value; // The byte before it was changed.
+
+            corrupt.seek(position);
+            value = corrupt.read();
+            corrupt.seek(position);
+            corrupt.write(value ^ 1);
+        }
+        try {
+            PassengerSnapshot.load(corruptFile.getPath());
+            isCorruptRefused = false;
+        }
+        catch (IOException e) {
+            isCorruptRefused = true;
+        }
+        System.out.println(isCorruptRefused ? "corrupt snapshot refused" : "corrupt snapshot was loaded");
+
+        snapshotFile.delete();
+        corruptFile.delete();
+        System.out.println(numMismatches == 0 && isCorruptRefused ? "PASSED" : "FAILED");
+        if (numMismatches > 0 || !isCorruptRefused)
+            System.exit(1);
+    }
+}
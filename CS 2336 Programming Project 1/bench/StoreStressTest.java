@@ -0,0 +1,217 @@
+/**
+ * This program checks that a store stays correct while many threads add records to it at once,
+ * and compares how fast StripedPassengerStore and a store behind a single lock take the records.
+ * The writer threads split a synthetic log between them, and the result must match adding the
+ * same log on one thread, for every passenger. While they run, reader threads keep looking up
+ * the busiest passengers and check that what they see could have happened in some order of the
+ * records: counts and Tiers never go down, and a Tier is never behind (or ahead of) the number of
+ * cancelled flights seen just before (or after) it, so an upgrade is never skipped or applied twice.
+ *
+ * Usage: java StoreStressTest [writer threads] [records] [passengers] [skew]
+ * The program exits with status 1 if any check fails.
+ */
+public class StoreStressTest {
+    private static final int NUM_READERS = 2; // The number of threads looking up passengers during the test.
+    private static final int NUM_WATCHED = 64; // The number of busiest passengers the readers look up.
+
+    /**
+     * This interface creates an empty, thread-safe store.
+     */
+    private interface StoreFactory {
+        /**
+         * This method creates the store.
+         * @return The store.
+         */
+        PassengerStore create();
+    }
+
+    /**
+     * The main() method runs the test on each thread-safe store and prints the throughput of each.
+     * @param args command-line arguments: the number of writer threads, records, passengers, and the skew.
+     * @throws InterruptedException If the program is interrupted while waiting for the threads.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int numWriters = args.length > 0 ? Integer.parseInt(args[0]) : 8; // The number of writer threads.
+        int numRecords = args.length > 1 ? Integer.parseInt(args[1]) : 4_000_000; // The records in the log.
+        int numPassengers = args.length > 2 ? Integer.parseInt(args[2]) : 1000; // The passengers in the log.
+        double skew = args.length > 3 ? Double.parseDouble(args[3]) : 1.0; // The skew of the passenger IDs.
+        SyntheticLog.Records records = SyntheticLog.newRecords(numRecords, numPassengers, skew); // The log.
+        PackedPassengerStore expected = new PackedPassengerStore(); // The log added on one thread.
+        boolean isCorrect; // Flag indicating whether every store passed.
+        double stripedRate; // The records per second of StripedPassengerStore.
+        double synchronizedRate; // The records per second of the single-lock store.
+
+        for (int i = 0; i < records.ids.length; i++)
+            expected.addRecord(records.ids[i], records.isCancelled[i], records.hasComplain[i]);
+        expected.finishYear();
+
+        System.out.println(numWriters + " writers, " + records.ids.length + " records, "
+                + numPassengers + " passengers, skew " + skew);
+        stripedRate = run("striped", StripedPassengerStore::new, records, numWriters, numPassengers, expected);
+        synchronizedRate = run("synchronized", () -> new SynchronizedPassengerStore(new PackedPassengerStore()),
+                records, numWriters, numPassengers, expected);
+        isCorrect = stripedRate > 0 && synchronizedRate > 0;
+        if (isCorrect)
+            System.out.printf("striped / synchronized: %.2fx%n", stripedRate / synchronizedRate);
+        System.out.println(isCorrect ? "PASSED" : "FAILED");
+        if (!isCorrect)
+            System.exit(1);
+    }
+
+    /**
+     * This method adds the log to a new store on several threads while other threads look
+     * passengers up, then compares the store with the expected result.
+     * @param name The name of the store, for the output.
+     * @param factory Creates the empty store.
+     * @param records The log.
+     * @param numWriters The number of writer threads.
+     * @param numPassengers The number of passengers in the log.
+     * @param expected The log added on one thread, with the year finished.
+     * @return The records per second added, or -1 if a check failed.
+     * @throws InterruptedException If the program is interrupted while waiting for the threads.
+     */
+    private static double run(String name, StoreFactory factory, SyntheticLog.Records records,
+            int numWriters, int numPassengers, PackedPassengerStore expected) throws InterruptedException {
+        PassengerStore passengerInfo = factory.create(); // The store under test.
+        Thread[] writers = new Thread[numWriters]; // The threads adding records.
+        Reader[] readers = new Reader[NUM_READERS]; // The threads looking passengers up.
+        Thread[] readerThreads = new Thread[NUM_READERS]; // The threads running the readers.
+        long startTime; // The time the writers were started.
+        double seconds; // The time the writers took.
+        int numMismatches; // The number of passengers that differ from the expected result.
+
+        for (int r = 0; r < NUM_READERS; r++) {
+            readers[r] = new Reader(passengerInfo);
+            readerThreads[r] = new Thread(readers[r], name + "-reader-" + r);
+            readerThreads[r].start();
+        }
+        for (int w = 0; w < numWriters; w++) {
+            int first = w; // The first record of the writer.
+
+            // Each writer takes every numWriters-th record, so all writers hit the busiest passengers.
+            writers[w] = new Thread(() -> {
+                for (int i = first; i < records.ids.length; i += numWriters)
+                    passengerInfo.addRecord(records.ids[i], records.isCancelled[i], records.hasComplain[i]);
+            }, name + "-writer-" + w);
+        }
+        startTime = System.nanoTime();
+        for (Thread writer : writers)
+            writer.start();
+        for (Thread writer : writers)
+            writer.join();
+        seconds = (System.nanoTime() - startTime) / 1e9;
+        for (int r = 0; r < NUM_READERS; r++) {
+            readers[r].stop();
+            readerThreads[r].join();
+        }
+
+        passengerInfo.finishYear();
+        numMismatches = compare(passengerInfo, expected, numPassengers);
+        System.out.printf("%-12s %,14.0f records/s   %,d lookups checked   %d bad lookups   %d wrong passengers%n",
+                name, records.ids.length / seconds, Reader.total(readers, true), Reader.total(readers, false),
+                numMismatches);
+        if (numMismatches > 0 || Reader.total(readers, false) > 0)
+            return -1;
+        return records.ids.length / seconds;
+    }
+
+    /**
+     * This method compares every passenger in the log between a store and the expected result.
+     * @param passengerInfo The store under test.
+     * @param expected The expected result.
+     * @param numPassengers The number of passengers in the log.
+     * @return The number of passengers that differ.
+     */
+    private static int compare(PassengerStore passengerInfo, PackedPassengerStore expected, int numPassengers) {
+        int numMismatches = 0; // The number of passengers that differ.
+
+        if (passengerInfo.size() != expected.size())
+            numMismatches++;
+        for (int rank = 0; rank < numPassengers; rank++) {
+            long passengerID = SyntheticLog.idOf(rank); // The passenger to compare.
+
+            if (!expected.contains(passengerID))
+                continue;
+            if (!passengerInfo.contains(passengerID)
+                    || passengerInfo.getFlights(passengerID) != expected.getFlights(passengerID)
+                    || passengerInfo.getCancelledFlights(passengerID) != expected.getCancelledFlights(passengerID)
+                    || passengerInfo.getMiles(passengerID) != expected.getMiles(passengerID)
+                    || !passengerInfo.getTier(passengerID).equals(expected.getTier(passengerID))
+                    || passengerInfo.hasMultiplier(passengerID) != expected.hasMultiplier(passengerID))
+                numMismatches++;
+        }
+        return numMismatches;
+    }
+
+    /**
+     * This class looks up the busiest passengers over and over while the writers run, and
+     * checks that every lookup is consistent with the lookups before it.
+     */
+    private static class Reader implements Runnable {
+        private final PassengerStore passengerInfo; // The store under test.
+        private final int[] lastFlights = new int[NUM_WATCHED]; // The last flight count seen per passenger.
+        private final int[] lastCancelled = new int[NUM_WATCHED]; // The last cancelled count seen per passenger.
+        private final int[] lastTier = new int[NUM_WATCHED]; // The last Tier ordinal seen per passenger.
+        private volatile boolean isStopped = false; // Flag indicating whether the writers are done.
+        private long numChecked = 0; // The number of lookups checked.
+        private long numBad = 0; // The number of lookups that could not have happened.
+
+        Reader(PassengerStore passengerInfo) {
+            this.passengerInfo = passengerInfo;
+        }
+
+        /**
+         * This method asks the reader to stop after its current lookup.
+         */
+        void stop() {
+            isStopped = true;
+        }
+
+        @Override
+        public void run() {
+            while (!isStopped) {
+                for (int rank = 0; rank < NUM_WATCHED; rank++) {
+                    long passengerID = SyntheticLog.idOf(rank); // The passenger to look up.
+
+                    if (passengerInfo.contains(passengerID))
+                        check(rank, passengerID);
+                }
+            }
+        }
+
+        /**
+         * This method looks a passenger up and checks the result.
+         * @param rank The rank of the passenger.
+         * @param passengerID The ID of the passenger.
+         */
+        private void check(int rank, long passengerID) {
+            int cancelledBefore = passengerInfo.getCancelledFlights(passengerID); // Cancelled, before the Tier.
+            int tier = TierTable.ordinalOf(passengerInfo.getTier(passengerID)); // The Tier ordinal.
+            int cancelledAfter = passengerInfo.getCancelledFlights(passengerID); // Cancelled, after the Tier.
+            int flights = passengerInfo.getFlights(passengerID); // The flight count.
+
+            numChecked++;
+            if (cancelledBefore < lastCancelled[rank] || cancelledAfter < cancelledBefore
+                    || flights < lastFlights[rank] || flights < cancelledAfter || tier < lastTier[rank]
+                    || tier < TierTable.tierFor(cancelledBefore) || tier > TierTable.tierFor(cancelledAfter))
+                numBad++;
+            lastCancelled[rank] = cancelledAfter;
+            lastFlights[rank] = flights;
+            lastTier[rank] = tier;
+        }
+
+        /**
+         * This method adds up the lookups of all readers.
+         * @param readers The readers, after they have stopped.
+         * @param isChecked Flag indicating whether to count all lookups, or only the bad ones.
+         * @return The number of lookups.
+         */
+        static long total(Reader[] readers, boolean isChecked) {
+            long total = 0; // The number of lookups.
+
+            for (Reader reader : readers)
+                total += isChecked ? reader.numChecked : reader.numBad;
+            return total;
+        }
+    }
+}
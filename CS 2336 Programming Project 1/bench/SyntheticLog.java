@@ -0,0 +1,183 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This class creates synthetic flight logs for the benchmarks, in the same "ID Y/N Y/N" format
+ * as flight-data.txt. The passengers are ranked by how often they fly: with a skew of 0 every
+ * passenger is equally likely, and with a larger skew the IDs follow a Zipf distribution.
+ * The logs are always created from the same seed, so every run measures the same input: the log
+ * files are written by FlightLogGenerator, and the records kept in memory come from their own
+ * sequence of random numbers.
+ */
+public class SyntheticLog {
+    public static final int MAX_RECORDS_IN_MEMORY = 1 << 22; // The most records kept in memory at once.
+    private static final long SEED = 2336; // The seed of the random numbers.
+    private static final double CANCEL_RATE = 0.6; // The chance of a flight being cancelled.
+    private static final double COMPLAIN_RATE = 0.3; // The chance of a complaint about a cancelled flight.
+    private static final long FIRST_ID = 100; // The ID of the most frequent passenger.
+
+    /**
+     * This class holds flight records in memory as primitive arrays. When a log has more records
+     * than MAX_RECORDS_IN_MEMORY, only the first part is kept and the benchmarks cycle through it.
+     */
+    public static class Records {
+        public final long[] ids; // The passenger ID of each record.
+        public final int[] ranks; // The rank (0 is the most frequent) of the passenger of each record.
+        public final boolean[] isCancelled; // Whether the flight of each record was cancelled.
+        public final boolean[] hasComplain; // Whether the passenger complained about each cancelled flight.
+
+        /**
+         * This constructor creates empty arrays for the records.
+         * @param size The number of records.
+         */
+        Records(int size) {
+            ids = new long[size];
+            ranks = new int[size];
+            isCancelled = new boolean[size];
+            hasComplain = new boolean[size];
+        }
+    }
+
+    /**
+     * This method returns the passenger ID of a rank.
+     * @param rank The rank of the passenger (0 is the most frequent).
+     * @return The passenger ID.
+     */
+    public static long idOf(int rank) {
+        return FIRST_ID + rank;
+    }
+
+    /**
+     * This method creates the records of a log in memory.
+     * @param numRecords The number of records in the log.
+     * @param numPassengers The number of passengers in the log.
+     * @param skew The Zipf exponent of the passenger IDs (0 for uniform).
+     * @return The first (up to MAX_RECORDS_IN_MEMORY) records of the log.
+     */
+    public static Records newRecords(long numRecords, int numPassengers, double skew) {
+        Records records = new Records((int) Math.min(numRecords, MAX_RECORDS_IN_MEMORY)); // The records.
+        Random random = new Random(SEED); // Random numbers, always the same between runs.
+        ZipfSampler sampler = new ZipfSampler(numPassengers, skew); // Picks the passenger of each record.
+
+        for (int i = 0; i < records.ids.length; i++) {
+            records.ranks[i] = sampler.sample(random);
+            records.ids[i] = idOf(records.ranks[i]);
+            records.isCancelled[i] = random.nextDouble() < CANCEL_RATE;
+            records.hasComplain[i] = records.isCancelled[i] && random.nextDouble() < COMPLAIN_RATE;
+        }
+        return records;
+    }
+
+    /**
+     * This method returns a log file with the given shape, writing it to the temporary directory
+     * the first time. Later runs (and other benchmark forks) reuse the same file. The name of the
+     * file holds the version of FlightLogGenerator and the seed as well as the shape, so a file
+     * written by another version of the generator, or from another seed, is never reused.
+     * @param numRecords The number of records in the log.
+     * @param numPassengers The number of passengers in the log.
+     * @param skew The Zipf exponent of the passenger IDs (0 for uniform).
+     * @return The log file.
+     * @throws IOException If the file can not be written.
+     */
+    public static synchronized File getFile(long numRecords, int numPassengers, double skew) throws IOException {
+        File logFile = new File(System.getProperty("java.io.tmpdir"),
+                "flight-log-v" + FlightLogGenerator.VERSION + "-" + SEED + "-" + numRecords + "-" + numPassengers
+                        + "-" + skew + ".txt"); // The log file.
+        File partFile = new File(logFile.getPath() + ".part"); // The file while it is being written.
+        FlightLogGenerator generator = new FlightLogGenerator(numPassengers, CANCEL_RATE, COMPLAIN_RATE, skew,
+                SEED, FIRST_ID); // Writes the log.
+
+        if (logFile.length() > 0)
+            return logFile;
+        try (OutputStream outStream = new FileOutputStream(partFile)) {
+            generator.write(outStream, numRecords, Long.MAX_VALUE, Runtime.getRuntime().availableProcessors(), null);
+        }
+        if (!partFile.renameTo(logFile))
+            throw new IOException("Could not rename " + partFile + " to " + logFile);
+        return logFile;
+    }
+
+    /**
+     * This method returns a gzip-compressed copy of the log with the given shape, compressing it
+     * to the temporary directory the first time.
+     * @param numRecords The number of records in the log.
+     * @param numPassengers The number of passengers in the log.
+     * @param skew The Zipf exponent of the passenger IDs (0 for uniform).
+     * @return The compressed log file.
+     * @throws IOException If the file can not be written.
+     */
+    public static synchronized File getCompressedFile(long numRecords, int numPassengers, double skew)
+            throws IOException {
+        File logFile = getFile(numRecords, numPassengers, skew); // The log.
+        File gzipFile = new File(logFile.getPath() + ".gz"); // The compressed log.
+        File partFile = new File(gzipFile.getPath() + ".part"); // The file while it is being written.
+
+        if (gzipFile.length() > 0)
+            return gzipFile;
+        try (OutputStream outStream = new GZIPOutputStream(new FileOutputStream(partFile), 1 << 16)) {
+            Files.copy(logFile.toPath(), outStream);
+        }
+        if (!partFile.renameTo(gzipFile))
+            throw new IOException("Could not rename " + partFile + " to " + gzipFile);
+        return gzipFile;
+    }
+
+    /**
+     * This method returns a directory holding the log with the given shape split into several
+     * files of about the same size (like one file per airport per day), splitting it to the
+     * temporary directory the first time.
+     * @param numRecords The number of records in the log.
+     * @param numPassengers The number of passengers in the log.
+     * @param skew The Zipf exponent of the passenger IDs (0 for uniform).
+     * @param numFiles The number of files to split the log into.
+     * @return The directory of the files.
+     * @throws IOException If the files can not be written.
+     */
+    public static synchronized File getFileSet(long numRecords, int numPassengers, double skew, int numFiles)
+            throws IOException {
+        File logFile = getFile(numRecords, numPassengers, skew); // The log.
+        File setDirectory = new File(logFile.getPath() + "-" + numFiles + "-files"); // The directory of the files.
+        File partDirectory = new File(setDirectory.getPath() + ".part"); // The directory while it is being written.
+        long fileSize = logFile.length() / numFiles + 1; // The size each file is started a new one after.
+
+        if (setDirectory.isDirectory())
+            return setDirectory;
+        if (!partDirectory.isDirectory() && !partDirectory.mkdir())
+            throw new IOException("Could not create " + partDirectory);
+        try (InputStream inStream = new BufferedInputStream(new FileInputStream(logFile), 1 << 16)) {
+            int b = inStream.read(); // The byte being copied.
+
+            for (int file = 0; file < numFiles && b >= 0; file++) {
+                String fileName = String.format("flight-data-%04d.txt", file); // The name of the file.
+
+                try (OutputStream outStream = new BufferedOutputStream(
+                        new FileOutputStream(new File(partDirectory, fileName)), 1 << 16)) {
+                    long size = 0; // The number of bytes copied to the file.
+
+                    // Copy whole lines until the file is big enough (the last file takes the rest).
+                    while (b >= 0) {
+                        outStream.write(b);
+                        size++;
+                        if (b == '\n' && size >= fileSize && file < numFiles - 1) {
+                            b = inStream.read();
+                            break;
+                        }
+                        b = inStream.read();
+                    }
+                }
+            }
+        }
+        if (!partDirectory.renameTo(setDirectory))
+            throw new IOException("Could not rename " + partDirectory + " to " + setDirectory);
+        return setDirectory;
+    }
+}
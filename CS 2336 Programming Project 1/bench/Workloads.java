@@ -0,0 +1,773 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongSupplier;
+
+/**
+ * This class creates the work measured by the JMH benchmarks in bench/benchmarks. JMH does not allow
+ * benchmark classes in the default package, and classes in a named package can not use the
+ * program's classes (which are in the default package), so each benchmark asks create() for its
+ * workload by name and runs it through LongSupplier. Every workload returns the number of
+ * records (or lookups) it processed, which the benchmarks report as records per second.
+ */
+public class Workloads {
+    private static final int LOOKUP_BATCH = 1 << 20; // The number of lookups per operation.
+    private static final int QUERY_BATCH = 1000; // The number of IDs per request in the batched latency workload.
+    private static final long COLUMNS_SEED = 2336; // The seed of the random columns of the report workloads.
+    private static final long SUMMARY_CACHE_BYTES = 1L << 20; // The size of the summary cache in the cached look-up workload.
+    private static final int NEAR_COUNT = 10; // The number of passengers asked for in the near-threshold workloads.
+    private static final int NUM_FILES = 200; // The number of files the log is split into for the multi-file workloads.
+
+    /**
+     * This method creates a workload. Workloads that change their input (like the year-end pass)
+     * also implement Runnable, which puts the input back before each operation.
+     * @param name The name of the workload.
+     * @param numRecords The number of records in the synthetic log.
+     * @param numPassengers The number of passengers in the synthetic log.
+     * @param skew The Zipf exponent of the passenger IDs (0 for uniform).
+     * @return The workload.
+     * @throws IOException If the synthetic log can not be written.
+     */
+    public static LongSupplier create(String name, long numRecords, int numPassengers, double skew)
+            throws IOException {
+        switch (name) {
+            case "scanner-tokenize":
+                return new ScannerTokenize(SyntheticLog.getFile(numRecords, numPassengers, skew));
+            case "split-tokenize":
+                return new SplitTokenize(SyntheticLog.getFile(numRecords, numPassengers, skew));
+            case "mapped-parse":
+            case "mapped-parse-checked":
+                return new MappedParse(SyntheticLog.getFile(numRecords, numPassengers, skew),
+                        name.endsWith("checked"));
+            case "gzip-parse":
+                return new GzipParse(SyntheticLog.getCompressedFile(numRecords, numPassengers, skew));
+            case "files-sequential":
+            case "files-concurrent":
+                return new MultiFileRead(SyntheticLog.getFileSet(numRecords, numPassengers, skew, NUM_FILES),
+                        name.equals("files-sequential") ? 1 : Runtime.getRuntime().availableProcessors());
+            case "tier-table-rules":
+                installCustomRules();
+                return new TierUpdate(false, SyntheticLog.newRecords(numRecords, numPassengers, skew),
+                        numRecords, numPassengers);
+            case "packed-store-rules":
+                installCustomRules();
+                return new Aggregate(PackedPassengerStore::new,
+                        SyntheticLog.newRecords(numRecords, numPassengers, skew), numRecords);
+            case "tier-objects":
+            case "tier-table":
+                return new TierUpdate(name.equals("tier-objects"),
+                        SyntheticLog.newRecords(numRecords, numPassengers, skew), numRecords, numPassengers);
+            case "passenger-table":
+                return new Aggregate(PassengerTable::new, SyntheticLog.newRecords(numRecords, numPassengers, skew),
+                        numRecords);
+            case "packed-store":
+                return new Aggregate(PackedPassengerStore::new,
+                        SyntheticLog.newRecords(numRecords, numPassengers, skew), numRecords);
+            case "packed-store-feed":
+                return new Aggregate(() -> new TierChangeFeed(new PackedPassengerStore(), new CountingListener(),
+                        TierChangeFeed.DEFAULT_FLUSH_MILLIS), SyntheticLog.newRecords(numRecords, numPassengers, skew),
+                        numRecords);
+            case "flight-counts":
+                return new Aggregate(FlightCounts::new, SyntheticLog.newRecords(numRecords, numPassengers, skew),
+                        numRecords);
+            case "year-end-table":
+            case "year-end-parallel-table":
+                return new YearEnd(PassengerTable::new, name.contains("parallel"),
+                        SyntheticLog.newRecords(numRecords, numPassengers, skew), numRecords);
+            case "year-end-packed":
+            case "year-end-parallel-packed":
+                return new YearEnd(PackedPassengerStore::new, name.contains("parallel"),
+                        SyntheticLog.newRecords(numRecords, numPassengers, skew), numRecords);
+            case "shared-striped":
+                return new SharedIngest(StripedPassengerStore::new,
+                        SyntheticLog.newRecords(numRecords, numPassengers, skew), numRecords);
+            case "shared-synchronized":
+                return new SharedIngest(() -> new SynchronizedPassengerStore(new PackedPassengerStore()),
+                        SyntheticLog.newRecords(numRecords, numPassengers, skew), numRecords);
+            case "lookup-hashmap":
+                return new HashMapLookup(SyntheticLog.newRecords(numRecords, numPassengers, skew), numRecords);
+            case "lookup-table":
+                return new StoreLookup(new PassengerTable(), SyntheticLog.newRecords(numRecords, numPassengers, skew),
+                        numRecords);
+            case "lookup-packed":
+                return new StoreLookup(new PackedPassengerStore(),
+                        SyntheticLog.newRecords(numRecords, numPassengers, skew), numRecords);
+            case "summary-uncached":
+            case "summary-cached":
+                return new SummaryLookup(name.equals("summary-cached") ? SUMMARY_CACHE_BYTES : 0,
+                        SyntheticLog.newRecords(numRecords, numPassengers, skew), numRecords);
+            case "near-index":
+            case "near-scan":
+                return new NearQuery(name.equals("near-index"),
+                        SyntheticLog.newRecords(numRecords, numPassengers, skew), numRecords);
+            case "latency-single":
+            case "latency-batch":
+                return new RequestLookup(name.equals("latency-batch") ? QUERY_BATCH : 1,
+                        SyntheticLog.newRecords(numRecords, numPassengers, skew), numRecords);
+            case "columns-count":
+            case "columns-tiers":
+            case "columns-miles":
+                return new ColumnReport(name.substring("columns-".length()), numPassengers);
+            default:
+                throw new IllegalArgumentException("Unknown workload: " + name);
+        }
+    }
+
+    /**
+     * This interface creates an empty handler (or store) for the flight records.
+     */
+    private interface HandlerFactory {
+        /**
+         * This method creates an empty handler.
+         * @return The handler.
+         */
+        FlightRecordHandler create();
+    }
+
+    /**
+     * This method passes records to a handler, cycling through the records kept
+     * in memory until the whole log has been processed.
+     * @param records The records kept in memory.
+     * @param numRecords The number of records in the log.
+     * @param handler The object that processes each flight record.
+     */
+    private static void replay(SyntheticLog.Records records, long numRecords, FlightRecordHandler handler) {
+        long numDone = 0; // The number of records processed so far.
+
+        while (numDone < numRecords) {
+            int count = (int) Math.min(records.ids.length, numRecords - numDone); // Records in this cycle.
+
+            for (int i = 0; i < count; i++)
+                handler.addRecord(records.ids[i], records.isCancelled[i], records.hasComplain[i]);
+            numDone += count;
+        }
+    }
+
+    /**
+     * This method picks the record whose ID is used for a lookup. The records are picked in a
+     * scattered order, and the IDs follow the same skew as the log.
+     * @param i The number of the lookup.
+     * @param records The records kept in memory.
+     * @return The index of the record.
+     */
+    private static int lookupIndex(int i, SyntheticLog.Records records) {
+        return (int) ((i * 2654435761L) % records.ids.length);
+    }
+
+    /**
+     * This class reads the log line by line with a Scanner and Main.tokenize(), without keeping the records.
+     */
+    private static class ScannerTokenize implements LongSupplier {
+        private final File logFile; // The synthetic log.
+        private long checksum = 0; // The total length of the IDs, so the work can not be skipped.
+
+        ScannerTokenize(File logFile) {
+            this.logFile = logFile;
+        }
+
+        @Override
+        public long getAsLong() {
+            Main mainObj = new Main(); // An instance of Main for tokenize().
+            long numRecords = 0; // The number of lines read.
+
+            try (Scanner scan = new Scanner(new FileInputStream(logFile))) {
+                while (scan.hasNextLine()) {
+                    checksum += mainObj.tokenize(scan.nextLine()).length();
+                    numRecords++;
+                }
+            }
+            catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return numRecords;
+        }
+    }
+
+    /**
+     * This class reads the log line by line with a BufferedReader and String.split(), the naive
+     * way of tokenizing it, without keeping the records.
+     */
+    private static class SplitTokenize implements LongSupplier {
+        private final File logFile; // The synthetic log.
+        private long checksum = 0; // The total of the IDs and flags, so the work can not be skipped.
+
+        SplitTokenize(File logFile) {
+            this.logFile = logFile;
+        }
+
+        @Override
+        public long getAsLong() {
+            long numRecords = 0; // The number of lines read.
+            String fileLine; // A line of the log.
+
+            try (BufferedReader reader = new BufferedReader(new FileReader(logFile), 1 << 16)) {
+                while ((fileLine = reader.readLine()) != null) {
+                    String[] fields = fileLine.split(" "); // The ID and flags of the line.
+
+                    checksum += Long.parseLong(fields[0]) + (fields[1].equals("Y") ? 1 : 0)
+                            + (fields.length > 2 && fields[2].equals("Y") ? 1 : 0);
+                    numRecords++;
+                }
+            }
+            catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return numRecords;
+        }
+    }
+
+    /**
+     * This class reads the log with MappedFlightReader, without keeping the records. The checked
+     * variant also looks for malformed lines to quarantine (none of the synthetic lines are).
+     */
+    private static class MappedParse implements LongSupplier, FlightRecordHandler {
+        private final File logFile; // The synthetic log.
+        private final boolean isChecked; // Flag indicating whether malformed lines are quarantined.
+        private long checksum = 0; // The total of the IDs, so the work can not be skipped.
+
+        MappedParse(File logFile, boolean isChecked) {
+            this.logFile = logFile;
+            this.isChecked = isChecked;
+        }
+
+        @Override
+        public void addRecord(long passengerID, boolean isCancelled, boolean hasComplain) {
+            checksum += passengerID;
+        }
+
+        @Override
+        public long getAsLong() {
+            if (!isChecked) {
+                try {
+                    return MappedFlightReader.read(logFile.getPath(), this);
+                }
+                catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            try (RejectFile rejects = new RejectFile(logFile.getPath() + ".rejects")) {
+                return MappedFlightReader.read(logFile.getPath(), this, rejects);
+            }
+            catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * This class reads the compressed log with GzipFlightReader, without keeping the records.
+     */
+    private static class GzipParse implements LongSupplier, FlightRecordHandler {
+        private final File gzipFile; // The compressed synthetic log.
+        private long checksum = 0; // The total of the IDs, so the work can not be skipped.
+
+        GzipParse(File gzipFile) {
+            this.gzipFile = gzipFile;
+        }
+
+        @Override
+        public void addRecord(long passengerID, boolean isCancelled, boolean hasComplain) {
+            checksum += passengerID;
+        }
+
+        @Override
+        public long getAsLong() {
+            try {
+                return GzipFlightReader.read(gzipFile.getPath(), this, null);
+            }
+            catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * This method writes rules that differ from the defaults in every number to a rules file, and
+     * installs them the way "--rules" does, so the "-rules" workloads count records with rules read
+     * at run time instead of the defaults.
+     * @throws IOException If the rules file can not be written or read.
+     */
+    private static void installCustomRules() throws IOException {
+        File rulesFile = File.createTempFile("tier-rules", ".properties"); // The rules file.
+        Properties properties = new Properties(); // The rules.
+
+        rulesFile.deleteOnExit();
+        properties.setProperty("NoTier.upgradeAt", "20");
+        properties.setProperty("Gold.upgradeAt", "40");
+        properties.setProperty("Platinum.upgradeAt", "80");
+        properties.setProperty("Gold.milesPerFlight", "1500");
+        properties.setProperty("Platinum.milesPerFlight", "1500");
+        properties.setProperty("ExecutivePlatinum.milesPerFlight", "1500");
+        properties.setProperty("PlatinumPro.milesPerFlight", "3000");
+        properties.setProperty("SExecutivePlatinum.milesPerFlight", "3000");
+        properties.setProperty("Gold.multiplierMaxComplaints", "1");
+        try (FileOutputStream outStream = new FileOutputStream(rulesFile)) {
+            properties.store(outStream, "Custom rules for the benchmarks");
+        }
+        TierTable.install(TierRules.load(rulesFile.getPath()));
+    }
+
+    /**
+     * This class reads a log split into many files with MultiFileIngest into a new PackedPassengerStore,
+     * either one file at a time or with one worker per processor.
+     */
+    private static class MultiFileRead implements LongSupplier {
+        private final List<String> fileNames; // The names of the files.
+        private final int numThreads; // The number of files read at once.
+
+        MultiFileRead(File setDirectory, int numThreads) throws IOException {
+            this.fileNames = MultiFileIngest.listFiles(setDirectory.getPath());
+            this.numThreads = numThreads;
+        }
+
+        @Override
+        public long getAsLong() {
+            MultiFileIngest files = new MultiFileIngest(fileNames, numThreads, null); // Reads the files.
+
+            try {
+                files.read(new PackedPassengerStore());
+            }
+            catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return files.getNumRecords();
+        }
+    }
+
+    /**
+     * This class updates the Tier of each record's passenger, either the original way (replacing
+     * Tier objects, found by class name) or through Passenger and TierTable. The passengers are
+     * found by rank, so that only the cost of the Tier update is measured.
+     */
+    private static class TierUpdate implements LongSupplier {
+        private final boolean isLegacy; // Flag indicating whether to use the original Tier objects.
+        private final SyntheticLog.Records records; // The records kept in memory.
+        private final long numRecords; // The number of records in the log.
+        private final int numPassengers; // The number of passengers in the log.
+
+        TierUpdate(boolean isLegacy, SyntheticLog.Records records, long numRecords, int numPassengers) {
+            this.isLegacy = isLegacy;
+            this.records = records;
+            this.numRecords = numRecords;
+            this.numPassengers = numPassengers;
+        }
+
+        @Override
+        public long getAsLong() {
+            Tier[] tierObjs = new Tier[isLegacy ? numPassengers : 0]; // The Tier objects, the original way.
+            Passenger[] passengers = new Passenger[isLegacy ? 0 : numPassengers]; // The Passengers.
+            long numDone = 0; // The number of records processed so far.
+
+            for (int p = 0; p < tierObjs.length; p++)
+                tierObjs[p] = new NoTier();
+            for (int p = 0; p < passengers.length; p++)
+                passengers[p] = new Passenger();
+            while (numDone < numRecords) {
+                int count = (int) Math.min(records.ranks.length, numRecords - numDone); // Records in this cycle.
+
+                for (int i = 0; i < count; i++) {
+                    int rank = records.ranks[i]; // The passenger of the record.
+
+                    if (isLegacy)
+                        tierObjs[rank] = legacyAddFlight(tierObjs[rank], records.isCancelled[i]);
+                    else
+                        passengers[rank].addFlight(records.isCancelled[i]);
+                }
+                numDone += count;
+            }
+            return numRecords;
+        }
+    }
+
+    /**
+     * This method adds a flight the way Passenger.addFlight() originally did: by asking the Tier
+     * object for its class name and replacing it with a new Tier object on every upgrade.
+     * @param tierObj An object representing the Passenger's current Tier.
+     * @param isCancelled Flag for indicating whether the current Passenger's flight was cancelled.
+     * @return An object representing the Passenger's Tier after the flight.
+     */
+    private static Tier legacyAddFlight(Tier tierObj, boolean isCancelled) {
+        String tierName; // The name of the tier of the Passenger.
+        int numFlights; // The total number of flights Passenger has taken, or was supposed to take.
+
+        tierObj.addFlight(isCancelled);
+        numFlights = tierObj.getFlights();
+        tierName = tierObj.getClass().getName();
+
+        if (tierName.equals("NoTier")) {
+            if (tierObj.getCancelledFlights() >= 25)
+                tierObj = new Gold();
+        }
+        else if (tierName.equals("Gold")) {
+            if (tierObj.getCancelledFlights() >= 50)
+                tierObj = new Platinum();
+        }
+        else if (tierName.equals("Platinum")) {
+            if (tierObj.getCancelledFlights() >= 100)
+                tierObj = new ExecutivePlatinum();
+        }
+        tierObj.setNumFlights(numFlights);
+        return tierObj;
+    }
+
+    /**
+     * This class adds every record of the log to a new, empty handler (a store or per-chunk counts).
+     */
+    private static class Aggregate implements LongSupplier {
+        private final HandlerFactory factory; // Creates the empty handler for each operation.
+        private final SyntheticLog.Records records; // The records kept in memory.
+        private final long numRecords; // The number of records in the log.
+
+        Aggregate(HandlerFactory factory, SyntheticLog.Records records, long numRecords) {
+            this.factory = factory;
+            this.records = records;
+            this.numRecords = numRecords;
+        }
+
+        @Override
+        public long getAsLong() {
+            FlightRecordHandler handler = factory.create(); // The handler of this operation.
+
+            replay(records, numRecords, handler);
+            // A handler with a thread of its own (like TierChangeFeed) is stopped after each operation.
+            if (handler instanceof Closeable) {
+                try {
+                    ((Closeable) handler).close();
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return numRecords;
+        }
+    }
+
+    /**
+     * This class counts the Tier changes of a TierChangeFeed, instead of writing them anywhere.
+     */
+    private static class CountingListener implements TierChangeListener {
+        private long numChanges = 0; // The number of changes received.
+
+        @Override
+        public void tierChanged(long sequence, long passengerID, int oldTier, int newTier, long recordOffset) {
+            numChanges++;
+        }
+
+        @Override
+        public void endBatch() {
+        }
+    }
+
+    /**
+     * This class runs the end-of-year pass (multiplier and Sub-Tier upgrades) over a store, either
+     * on one thread or split across the common pool by YearEndFinalizer. The store is rebuilt from
+     * the counted totals before every operation.
+     */
+    private static class YearEnd implements LongSupplier, Runnable {
+        private final HandlerFactory factory; // Creates the empty store before each operation.
+        private final boolean isParallel; // Flag indicating whether to run the pass on all processors.
+        private final FlightCounts counts; // The totals of every passenger in the log.
+        private PassengerStore passengerInfo; // The store the pass runs over.
+
+        YearEnd(HandlerFactory factory, boolean isParallel, SyntheticLog.Records records, long numRecords) {
+            this.factory = factory;
+            this.isParallel = isParallel;
+            this.counts = new FlightCounts();
+            replay(records, numRecords, counts);
+        }
+
+        @Override
+        public void run() {
+            passengerInfo = (PassengerStore) factory.create();
+            counts.addTo(passengerInfo);
+        }
+
+        @Override
+        public long getAsLong() {
+            if (isParallel)
+                YearEndFinalizer.finish((SlottedStore) passengerInfo, ForkJoinPool.commonPool());
+            else
+                passengerInfo.finishYear();
+            return passengerInfo.size();
+        }
+    }
+
+    /**
+     * This class adds every record of the log to a store that is shared by all the benchmark's
+     * threads, so the threads update the same passengers at the same time. The store is replaced
+     * with an empty one before every iteration.
+     */
+    private static class SharedIngest implements LongSupplier, Runnable {
+        private final HandlerFactory factory; // Creates the empty, thread-safe store.
+        private final SyntheticLog.Records records; // The records kept in memory.
+        private final long numRecords; // The number of records in the log.
+        private volatile PassengerStore passengerInfo; // The store shared by all the threads.
+
+        SharedIngest(HandlerFactory factory, SyntheticLog.Records records, long numRecords) {
+            this.factory = factory;
+            this.records = records;
+            this.numRecords = numRecords;
+            run();
+        }
+
+        @Override
+        public void run() {
+            passengerInfo = (PassengerStore) factory.create();
+        }
+
+        @Override
+        public long getAsLong() {
+            replay(records, numRecords, passengerInfo);
+            return numRecords;
+        }
+    }
+
+    /**
+     * This class looks up passengers by random IDs (following the log's skew) in a finished store.
+     */
+    private static class StoreLookup implements LongSupplier {
+        private final PassengerStore passengerInfo; // The store to look passengers up in.
+        private final long[] lookupIDs; // The IDs to look up, in order.
+        private long checksum = 0; // The total of the results, so the work can not be skipped.
+
+        StoreLookup(PassengerStore passengerInfo, SyntheticLog.Records records, long numRecords) {
+            this.passengerInfo = passengerInfo;
+            replay(records, numRecords, passengerInfo);
+            passengerInfo.finishYear();
+            this.lookupIDs = new long[LOOKUP_BATCH];
+            for (int i = 0; i < LOOKUP_BATCH; i++)
+                lookupIDs[i] = records.ids[lookupIndex(i, records)];
+        }
+
+        @Override
+        public long getAsLong() {
+            for (long passengerID : lookupIDs) {
+                if (passengerInfo.contains(passengerID)) {
+                    checksum += passengerInfo.getTier(passengerID).length() + passengerInfo.getFlights(passengerID)
+                            + passengerInfo.getCancelledFlights(passengerID) + passengerInfo.getMiles(passengerID)
+                            + (passengerInfo.hasMultiplier(passengerID) ? 1 : 0);
+                }
+            }
+            return lookupIDs.length;
+        }
+    }
+
+    /**
+     * This class answers one look-up request per operation, the way QueryServer does: the IDs of
+     * the request are resolved together with a LookupBatch and written out as reply lines. A request
+     * holds either a single ID or a batch of IDs.
+     */
+    private static class RequestLookup implements LongSupplier {
+        private final PassengerStore passengerInfo = new PackedPassengerStore(); // The finished store.
+        private final long[] lookupIDs; // The IDs to look up, in order.
+        private final int batchSize; // The number of IDs per request.
+        private final LookupBatch batch; // The IDs of the current request.
+        private final StringBuilder reply = new StringBuilder(); // The reply to the current request.
+        private int next = 0; // The index of the next ID to look up.
+        private long checksum = 0; // The total length of the replies, so the work can not be skipped.
+
+        RequestLookup(int batchSize, SyntheticLog.Records records, long numRecords) {
+            this.batchSize = batchSize;
+            this.batch = new LookupBatch(batchSize);
+            replay(records, numRecords, passengerInfo);
+            passengerInfo.finishYear();
+            this.lookupIDs = new long[LOOKUP_BATCH];
+            for (int i = 0; i < LOOKUP_BATCH; i++)
+                lookupIDs[i] = records.ids[lookupIndex(i, records)];
+        }
+
+        @Override
+        public long getAsLong() {
+            batch.clear();
+            reply.setLength(0);
+            for (int i = 0; i < batchSize; i++) {
+                batch.add(lookupIDs[next]);
+                next = (next + 1) & (LOOKUP_BATCH - 1);
+            }
+            batch.resolve(passengerInfo);
+            for (int i = 0; i < batchSize; i++) {
+                reply.append(batch.getID(i));
+                batch.appendRow(reply, i);
+            }
+            checksum += reply.length();
+            return batchSize;
+        }
+    }
+
+    /**
+     * This class writes the summary of one passenger per operation, the way the interactive look-up
+     * shows it, through a CachedPassengerStore. The IDs are drawn from the records, so they are as
+     * skewed as the log. With no room in the cache, every summary is written again.
+     */
+    private static class SummaryLookup implements LongSupplier {
+        private final CachedPassengerStore passengerInfo; // The finished store, with its summary cache.
+        private final long[] lookupIDs; // The IDs to look up, in order.
+        private int next = 0; // The index of the next ID to look up.
+        private long checksum = 0; // The total length of the summaries, so the work can not be skipped.
+
+        SummaryLookup(long cacheBytes, SyntheticLog.Records records, long numRecords) {
+            PassengerStore store = new PackedPassengerStore(); // The passengers of the log.
+
+            replay(records, numRecords, store);
+            store.finishYear();
+            this.passengerInfo = new CachedPassengerStore(store, cacheBytes);
+            this.lookupIDs = new long[LOOKUP_BATCH];
+            for (int i = 0; i < LOOKUP_BATCH; i++)
+                lookupIDs[i] = records.ids[lookupIndex(i, records)];
+        }
+
+        @Override
+        public long getAsLong() {
+            checksum += passengerInfo.getSummary(lookupIDs[next]).length;
+            next = (next + 1) & (LOOKUP_BATCH - 1);
+            return 1;
+        }
+    }
+
+    /**
+     * This class answers "the 10 passengers closest to Platinum" once per operation, either from a
+     * NearThresholdIndex or by going through every passenger of the store and keeping the closest.
+     */
+    private static class NearQuery implements LongSupplier {
+        private final PassengerStore passengerInfo; // The finished store.
+        private final NearThresholdIndex index; // The passengers close to a tier, or null to go through every passenger.
+        private final long[] ids; // The IDs of every passenger, for going through them.
+        private long checksum = 0; // The total of the IDs found, so the work can not be skipped.
+
+        NearQuery(boolean isIndexed, SyntheticLog.Records records, long numRecords) {
+            passengerInfo = new PackedPassengerStore();
+            replay(records, numRecords, passengerInfo);
+            passengerInfo.finishYear();
+            index = isIndexed ? new NearThresholdIndex(passengerInfo, NearThresholdIndex.DEFAULT_MAX_DISTANCE) : null;
+            ids = passengerInfo.getIDs();
+        }
+
+        @Override
+        public long getAsLong() {
+            long[] closest; // The passengers closest to Platinum.
+            int[] distances; // The distance of each of them.
+            int numClosest = 0; // The number of passengers kept so far.
+            int upgradeAt = TierTable.getUpgradeAt(TierTable.GOLD); // The cancelled flights needed for Platinum.
+
+            if (index != null)
+                closest = index.getClosest(TierTable.PLATINUM, NEAR_COUNT);
+            else {
+                closest = new long[NEAR_COUNT];
+                distances = new int[NEAR_COUNT];
+                for (long passengerID : ids) {
+                    int numCancFlights = passengerInfo.getCancelledFlights(passengerID); // The passenger's cancelled flights.
+                    int distance = upgradeAt - numCancFlights; // The cancelled flights still needed.
+                    int i; // The position the passenger is kept at.
+
+                    if (TierTable.tierFor(numCancFlights) != TierTable.GOLD
+                            || (numClosest == NEAR_COUNT && distance >= distances[NEAR_COUNT - 1]))
+                        continue;
+                    // Keep the closest passengers in order of their distance.
+                    i = Math.min(numClosest, NEAR_COUNT - 1);
+                    while (i > 0 && distances[i - 1] > distance) {
+                        closest[i] = closest[i - 1];
+                        distances[i] = distances[i - 1];
+                        i--;
+                    }
+                    closest[i] = passengerID;
+                    distances[i] = distance;
+                    numClosest = Math.min(numClosest + 1, NEAR_COUNT);
+                }
+            }
+            for (long passengerID : closest)
+                checksum += passengerID;
+            return 1;
+        }
+    }
+
+    /**
+     * This class looks up passengers by random IDs in a HashMap with String keys, as Main originally did.
+     */
+    private static class HashMapLookup implements LongSupplier {
+        private final HashMap<String, Passenger> passengerInfo = new HashMap<>(); // The passengers by ID.
+        private final String[] lookupIDs; // The IDs to look up, in order.
+        private long checksum = 0; // The total of the results, so the work can not be skipped.
+
+        HashMapLookup(SyntheticLog.Records records, long numRecords) {
+            PassengerTable table = new PassengerTable(); // The passengers, counted by numeric ID.
+
+            replay(records, numRecords, table);
+            table.finishYear();
+            for (int i = 0; i < records.ids.length; i++)
+                passengerInfo.put(Long.toString(records.ids[i]), table.get(records.ids[i]));
+            lookupIDs = new String[LOOKUP_BATCH];
+            for (int i = 0; i < LOOKUP_BATCH; i++)
+                lookupIDs[i] = Long.toString(records.ids[lookupIndex(i, records)]);
+        }
+
+        @Override
+        public long getAsLong() {
+            for (String passengerID : lookupIDs) {
+                Passenger passObj = passengerInfo.get(passengerID); // The Passenger with the ID.
+
+                if (passObj != null) {
+                    checksum += passObj.getTier().length() + passObj.getFlights() + passObj.getCancelledFlights()
+                            + passObj.getMiles() + (passObj.hasMultiplier() ? 1 : 0);
+                }
+            }
+            return lookupIDs.length;
+        }
+    }
+
+    /**
+     * This class writes one report (see PassengerReport) per operation over random columns of
+     * members. The columns are made up directly instead of from a log, so tens of millions of members
+     * can be reported on without reading billions of records first; the number of records is ignored.
+     * The count and tiers reports select Executive Platinum and Super Executive Platinum members
+     * without complaints, and the miles report selects every member.
+     */
+    private static class ColumnReport implements LongSupplier {
+        private final String report; // The name of the report.
+        private final PassengerColumns columns; // The columns of the members.
+        private final ColumnFilter filter; // The filter selecting the members.
+        private long checksum = 0; // The total length of the reports, so the work can not be skipped.
+
+        ColumnReport(String report, int numPassengers) {
+            Random random = new Random(COLUMNS_SEED); // Random numbers, always the same between runs.
+            long[] ids = new long[numPassengers]; // The look-up ID of each member.
+            int[] flights = new int[numPassengers]; // The total number of flights of each member.
+            int[] cancelled = new int[numPassengers]; // The number of cancelled flights of each member.
+            int[] complaints = new int[numPassengers]; // The number of complaints of each member.
+            byte[] tiers = new byte[numPassengers]; // The Tier ordinal of each member.
+
+            for (int row = 0; row < numPassengers; row++) {
+                int tier; // The Tier of the member.
+
+                ids[row] = row + 1;
+                flights[row] = random.nextInt(200);
+                cancelled[row] = random.nextInt(flights[row] + 1);
+                complaints[row] = random.nextInt(4) == 0 ? 1 + random.nextInt(3) : 0;
+                tier = TierTable.tierFor(cancelled[row]);
+                if (complaints[row] == 0 && TierTable.canHaveMultiplier(tier))
+                    tier = TierTable.getSpecialTier(tier);
+                tiers[row] = (byte) tier;
+            }
+            this.report = report;
+            this.columns = new PassengerColumns(ids, flights, cancelled, complaints, tiers);
+            this.filter = report.equals("miles") ? new ColumnFilter()
+                    : ColumnFilter.parse("tier=ExecutivePlatinum|SExecutivePlatinum,complaints=0");
+        }
+
+        @Override
+        public long getAsLong() {
+            checksum += PassengerReport.write(report, columns, filter).length();
+            return columns.size();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * This class measures per-record aggregation. "tier-objects" and "tier-table" only update the
+ * Tier of each record's passenger (the original Tier objects against TierTable), while the
+ * others also find the passenger by ID in PassengerTable, PackedPassengerStore, or FlightCounts.
+ * The "-rules" variants run "tier-table" and "packed-store" with rules read from a rules file
+ * (see TierRules), which should cost the same as the default rules. "packed-store-feed" also
+ * publishes every Tier change through a TierChangeFeed.
+ */
+public class AggregateBenchmark extends PhaseBenchmark {
+    @Param({"tier-objects", "tier-table", "passenger-table", "packed-store", "packed-store-feed", "flight-counts",
+            "tier-table-rules", "packed-store-rules"})
+    public String variant; // The name of the workload.
+
+    /**
+     * This method returns the name of the workload to run.
+     * @return The name of the workload.
+     */
+    @Override
+    protected String getWorkloadName() {
+        return variant;
+    }
+}
@@ -0,0 +1,57 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class measures how long the reports of the "--report" option take over the columns of
+ * 1 million and 50 million members: a filtered count ("columns-count"), the members and averages
+ * per Tier ("columns-tiers"), and the distribution of miles per Tier ("columns-miles").
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class ColumnScanBenchmark {
+    @Param({"1000000", "50000000"})
+    public int passengers; // The number of members in the columns.
+
+    @Param({"columns-count", "columns-tiers", "columns-miles"})
+    public String variant; // The name of the workload.
+
+    private LongSupplier workload; // The work measured by the benchmark.
+
+    /**
+     * This method creates the workload (and its columns) once per trial.
+     * @throws Exception If the workload can not be created.
+     */
+    @Setup(Level.Trial)
+    public void createWorkload() throws Exception {
+        workload = (LongSupplier) Class.forName("Workloads")
+                .getMethod("create", String.class, long.class, int.class, double.class)
+                .invoke(null, variant, 0L, passengers, 0.0);
+    }
+
+    /**
+     * This method writes one report.
+     * @return The number of members scanned.
+     */
+    @Benchmark
+    public long report() {
+        return workload.getAsLong();
+    }
+}
@@ -0,0 +1,35 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * This class measures several threads adding records to one shared store at the same time:
+ * StripedPassengerStore (a lock per stripe of passengers) against a PackedPassengerStore behind
+ * a single lock. Every thread replays the whole log, and the store is emptied before every
+ * iteration. The number of threads can be changed with "-t".
+ */
+@Threads(4)
+public class ConcurrentIngestBenchmark extends PhaseBenchmark {
+    @Param({"shared-striped", "shared-synchronized"})
+    public String variant; // The name of the workload.
+
+    /**
+     * This method returns the name of the workload to run.
+     * @return The name of the workload.
+     */
+    @Override
+    protected String getWorkloadName() {
+        return variant;
+    }
+
+    /**
+     * This method empties the store before every iteration.
+     */
+    @Setup(Level.Iteration)
+    public void resetWorkload() {
+        ((Runnable) workload).run();
+    }
+}
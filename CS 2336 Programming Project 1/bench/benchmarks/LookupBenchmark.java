@@ -0,0 +1,22 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * This class measures random ID lookups (with the same skew as the log) after the end of the year,
+ * against the original HashMap with String keys, PassengerTable, and PackedPassengerStore.
+ * The "records" counter counts lookups here.
+ */
+public class LookupBenchmark extends PhaseBenchmark {
+    @Param({"lookup-hashmap", "lookup-table", "lookup-packed"})
+    public String variant; // The name of the workload.
+
+    /**
+     * This method returns the name of the workload to run.
+     * @return The name of the workload.
+     */
+    @Override
+    protected String getWorkloadName() {
+        return variant;
+    }
+}
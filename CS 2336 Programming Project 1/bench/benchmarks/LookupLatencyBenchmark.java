@@ -0,0 +1,68 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class measures the latency of look-up requests as QueryServer answers them: a request
+ * for a single ID ("latency-single") against a request for 1000 IDs ("latency-batch"). JMH samples
+ * the time of every request and reports the percentiles (p0.50, p0.99, ...) of each variant.
+ * "summary-cached" and "summary-uncached" time the summary of one interactive look-up with a 1 MB
+ * CachedPassengerStore and with no cache; with a skew of 1.0 most look-ups are of a few frequent flyers.
+ * "near-index" and "near-scan" time finding the 10 passengers closest to Platinum, from a
+ * NearThresholdIndex and by going through every passenger.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class LookupLatencyBenchmark {
+    @Param({"1000000"})
+    public long records; // The number of records in the synthetic log.
+
+    @Param({"100000"})
+    public int passengers; // The number of passengers in the synthetic log.
+
+    @Param({"0", "1.0"})
+    public double skew; // The Zipf exponent of the passenger IDs (0 for uniform).
+
+    @Param({"latency-single", "latency-batch", "summary-uncached", "summary-cached",
+            "near-index", "near-scan"})
+    public String variant; // The name of the workload.
+
+    private LongSupplier workload; // The work measured by the benchmark.
+
+    /**
+     * This method creates the workload (and its synthetic log) once per trial.
+     * @throws Exception If the workload can not be created.
+     */
+    @Setup(Level.Trial)
+    public void createWorkload() throws Exception {
+        workload = (LongSupplier) Class.forName("Workloads")
+                .getMethod("create", String.class, long.class, int.class, double.class)
+                .invoke(null, variant, records, passengers, skew);
+    }
+
+    /**
+     * This method answers one request.
+     * @return The number of IDs looked up.
+     */
+    @Benchmark
+    public long request() {
+        return workload.getAsLong();
+    }
+}
@@ -0,0 +1,22 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * This class measures reading a log split into 200 files (like one file per airport per day) with
+ * MultiFileIngest into one store: one file at a time ("files-sequential") against one worker per
+ * processor ("files-concurrent").
+ */
+public class MultiFileBenchmark extends PhaseBenchmark {
+    @Param({"files-sequential", "files-concurrent"})
+    public String variant; // The name of the workload.
+
+    /**
+     * This method returns the name of the workload to run.
+     * @return The name of the workload.
+     */
+    @Override
+    protected String getWorkloadName() {
+        return variant;
+    }
+}
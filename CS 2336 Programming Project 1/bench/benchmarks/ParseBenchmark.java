@@ -0,0 +1,22 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * This class measures line tokenization: a Scanner with Main.tokenize() and a BufferedReader with
+ * String.split() against MappedFlightReader, with and without looking for malformed lines to
+ * quarantine, and GzipFlightReader on a compressed copy of the log.
+ */
+public class ParseBenchmark extends PhaseBenchmark {
+    @Param({"scanner-tokenize", "split-tokenize", "mapped-parse", "mapped-parse-checked", "gzip-parse"})
+    public String variant; // The name of the workload.
+
+    /**
+     * This method returns the name of the workload to run.
+     * @return The name of the workload.
+     */
+    @Override
+    protected String getWorkloadName() {
+        return variant;
+    }
+}
@@ -0,0 +1,89 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class is the base of the benchmarks for each phase of the program. It runs one workload
+ * (created by Workloads in the default package) on a synthetic log with the given number of
+ * records and passengers, and skew of the passenger IDs. Besides operations per second, it
+ * reports records per second through the "records" counter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public abstract class PhaseBenchmark {
+    @Param({"1000000", "10000000", "100000000"})
+    public long records; // The number of records in the synthetic log.
+
+    @Param({"100000"})
+    public int passengers; // The number of passengers in the synthetic log.
+
+    @Param({"0", "1.0"})
+    public double skew; // The Zipf exponent of the passenger IDs (0 for uniform).
+
+    protected LongSupplier workload; // The work measured by the benchmark.
+
+    /**
+     * This class counts the records processed, so that JMH reports them per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class RecordCounter {
+        public long records; // The number of records processed in the current iteration.
+
+        /**
+         * This method resets the count at the start of every iteration.
+         */
+        @Setup(Level.Iteration)
+        public void clear() {
+            records = 0;
+        }
+    }
+
+    /**
+     * This method returns the name of the workload to run.
+     * @return The name of the workload.
+     */
+    protected abstract String getWorkloadName();
+
+    /**
+     * This method creates the workload (and its synthetic log) once per trial.
+     * @throws Exception If the workload can not be created.
+     */
+    @Setup(Level.Trial)
+    public void createWorkload() throws Exception {
+        workload = (LongSupplier) Class.forName("Workloads")
+                .getMethod("create", String.class, long.class, int.class, double.class)
+                .invoke(null, getWorkloadName(), records, passengers, skew);
+    }
+
+    /**
+     * This method runs one operation of the workload.
+     * @param counter The count of records processed.
+     * @return The number of records processed.
+     */
+    @Benchmark
+    public long run(RecordCounter counter) {
+        long numRecords = workload.getAsLong(); // The number of records processed.
+
+        counter.records += numRecords;
+        return numRecords;
+    }
+}
@@ -0,0 +1,33 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * This class measures the end-of-year pass (mileage multiplier and Sub-Tier upgrades), on one
+ * thread and split across all processors by YearEndFinalizer. The store is rebuilt before every
+ * operation, so each operation is measured on a store that is not finished.
+ * The "records" counter counts passengers here.
+ */
+public class YearEndBenchmark extends PhaseBenchmark {
+    @Param({"year-end-table", "year-end-packed", "year-end-parallel-table", "year-end-parallel-packed"})
+    public String variant; // The name of the workload.
+
+    /**
+     * This method returns the name of the workload to run.
+     * @return The name of the workload.
+     */
+    @Override
+    protected String getWorkloadName() {
+        return variant;
+    }
+
+    /**
+     * This method rebuilds the store before every operation.
+     */
+    @Setup(Level.Invocation)
+    public void resetWorkload() {
+        ((Runnable) workload).run();
+    }
+}
@@ -0,0 +1,355 @@
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class keeps the summaries shown for looked-up Passengers (see LookupBatch.appendSummary())
+ * already written out as bytes, so a Passenger who is looked up again is answered without reading
+ * and formatting their records. Look-ups are usually of a few frequent flyers, so a small cache
+ * answers most of them. Every call is passed on to another store, and a record added to a
+ * Passenger (or the end of the year) drops the summaries that have changed.
+ *
+ * The cache is split by ID into segments, each with its own lock, holding at most its share of
+ * the cache's bytes and dropping the least recently used summary of the segment when it is full.
+ * A summary written while its Passenger was changed is not kept, since it may already be out of date.
+ */
+public class CachedPassengerStore implements PassengerStore {
+    private static final int NUM_SEGMENTS = 64; // The number of segments (always a power of two).
+    private static final int ENTRY_OVERHEAD = 96; // The bytes a summary takes in the cache besides its text.
+    private static final byte[] NOT_FOUND = summaryOf(-1, null); // The summary of a Passenger that does not exist.
+    private final PassengerStore passengerInfo; // The store every call is passed on to.
+    private final Segment[] segments; // The summaries of each segment.
+    private final LongAdder hits = new LongAdder(); // The number of summaries found in the cache.
+    private final LongAdder misses = new LongAdder(); // The number of summaries that had to be written.
+
+    /**
+     * This class holds the summaries of one segment, in order of their last use.
+     */
+    private static class Segment {
+        private final LinkedHashMap<Long, byte[]> summaries = new LinkedHashMap<>(16, 0.75f, true); // The summaries by ID.
+        private final long maxBytes; // The most bytes the summaries of the segment may take.
+        private long numBytes = 0; // The bytes the summaries of the segment take.
+        private long version = 0; // The number of times a Passenger of the segment changed.
+        private long numEvicted = 0; // The number of summaries dropped to make room.
+
+        /**
+         * This constructor creates an empty segment.
+         * @param maxBytes The most bytes the summaries of the segment may take.
+         */
+        Segment(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+    }
+
+    /**
+     * This constructor wraps a store.
+     * @param passengerInfo The store every call is passed on to, which must not be changed directly afterwards.
+     * @param maxBytes The most bytes the cached summaries may take.
+     */
+    public CachedPassengerStore(PassengerStore passengerInfo, long maxBytes) {
+        this.passengerInfo = passengerInfo;
+        this.segments = new Segment[NUM_SEGMENTS];
+        for (int i = 0; i < NUM_SEGMENTS; i++)
+            segments[i] = new Segment(maxBytes / NUM_SEGMENTS);
+    }
+
+    /**
+     * This method returns the summary of a Passenger, as the interactive look-up shows it.
+     * @param passengerID The look-up ID of the Passenger (-1 for an ID that is not valid).
+     * @return The bytes of the summary (in the default character set), which must not be changed.
+     */
+    public byte[] getSummary(long passengerID) {
+        Segment segment; // The segment of the Passenger.
+        byte[] summary; // The summary of the Passenger.
+        long version; // The version of the segment before the summary was written.
+
+        if (passengerID < 0)
+            return NOT_FOUND;
+        segment = segments[segmentOf(passengerID)];
+        synchronized (segment) {
+            summary = segment.summaries.get(passengerID);
+            version = segment.version;
+        }
+        if (summary != null) {
+            hits.increment();
+            return summary;
+        }
+        misses.increment();
+        summary = summaryOf(passengerID, passengerInfo);
+        synchronized (segment) {
+            // Only keep the summary if the Passenger was not changed while it was written.
+            if (segment.version == version && segment.maxBytes > 0) {
+                put(segment, passengerID, summary);
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * This method returns the number of summaries found in the cache.
+     * @return The number of cache hits.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * This method returns the number of summaries that were not in the cache, and had to be written.
+     * @return The number of cache misses.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * This method returns the number of summaries dropped to make room for others.
+     * @return The number of evictions.
+     */
+    public long getEvictions() {
+        long numEvicted = 0; // The evictions of all segments.
+
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                numEvicted += segment.numEvicted;
+            }
+        }
+        return numEvicted;
+    }
+
+    /**
+     * This method returns the bytes the cached summaries take.
+     * @return The number of bytes.
+     */
+    public long getCachedBytes() {
+        long numBytes = 0; // The bytes of all segments.
+
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                numBytes += segment.numBytes;
+            }
+        }
+        return numBytes;
+    }
+
+    /**
+     * This method drops the summary of a Passenger, since it has changed.
+     * @param passengerID The look-up ID of the Passenger.
+     */
+    public void invalidate(long passengerID) {
+        Segment segment = segments[segmentOf(passengerID)]; // The segment of the Passenger.
+
+        synchronized (segment) {
+            byte[] summary = segment.summaries.remove(passengerID); // The dropped summary, if there was one.
+
+            segment.version++;
+            if (summary != null)
+                segment.numBytes -= summary.length + ENTRY_OVERHEAD;
+        }
+    }
+
+    /**
+     * This method drops every summary, since (potentially) every Passenger has changed.
+     */
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.summaries.clear();
+                segment.numBytes = 0;
+                segment.version++;
+            }
+        }
+    }
+
+    /**
+     * This method updates the counts of a Passenger with a single flight record, and drops their summary.
+     * @param passengerID The look-up ID of the Passenger the flight belongs to.
+     * @param isCancelled Flag indicating whether the flight was cancelled.
+     * @param hasComplain Flag indicating whether the Passenger complained about the cancelled flight.
+     */
+    @Override
+    public void addRecord(long passengerID, boolean isCancelled, boolean hasComplain) {
+        passengerInfo.addRecord(passengerID, isCancelled, hasComplain);
+        invalidate(passengerID);
+    }
+
+    /**
+     * This method sets the totals of a Passenger that were counted elsewhere, and drops their summary.
+     * @param passengerID The look-up ID of the Passenger.
+     * @param numFlights The total number of flights a Passenger has taken, or was supposed to take.
+     * @param numCancFlights Number of flights the passenger was supposed to take but were cancelled.
+     * @param numComplaints The number of times a Passenger has complained.
+     */
+    @Override
+    public void setTotals(long passengerID, int numFlights, int numCancFlights, int numComplaints) {
+        passengerInfo.setTotals(passengerID, numFlights, numCancFlights, numComplaints);
+        invalidate(passengerID);
+    }
+
+    /**
+     * This method checks whether there is a Passenger with the given ID.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Flag indicating whether the Passenger exists.
+     */
+    @Override
+    public boolean contains(long passengerID) {
+        return passengerInfo.contains(passengerID);
+    }
+
+    /**
+     * Returns (as a String) the name of the tier the passenger belongs to.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The name of the tier the passenger belongs to.
+     */
+    @Override
+    public String getTier(long passengerID) {
+        return passengerInfo.getTier(passengerID);
+    }
+
+    /**
+     * Returns the TierTable ordinal of the tier the passenger belongs to.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The ordinal of the tier the passenger belongs to.
+     */
+    @Override
+    public int getTierOrdinal(long passengerID) {
+        return passengerInfo.getTierOrdinal(passengerID);
+    }
+
+    /**
+     * Returns the miles earned over the year.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The total number of miles the Passenger earned based on the cancelled flights.
+     */
+    @Override
+    public int getMiles(long passengerID) {
+        return passengerInfo.getMiles(passengerID);
+    }
+
+    /**
+     * Returns the number of flights the passenger was supposed to take but were cancelled.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Number of flights the passenger was supposed to take but were cancelled.
+     */
+    @Override
+    public int getCancelledFlights(long passengerID) {
+        return passengerInfo.getCancelledFlights(passengerID);
+    }
+
+    /**
+     * This method returns the current total number of flights the passenger took, including cancelled flights.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The total number of flights a Passenger has taken, or was supposed to take.
+     */
+    @Override
+    public int getFlights(long passengerID) {
+        return passengerInfo.getFlights(passengerID);
+    }
+
+    /**
+     * Returns the number of times the passenger complained about a cancelled flight.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The number of times a Passenger has complained.
+     */
+    @Override
+    public int getComplaints(long passengerID) {
+        return passengerInfo.getComplaints(passengerID);
+    }
+
+    /**
+     * Returns true if the passenger has the mileage multiplier.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Flag for indicating whether a passenger has the mileage multiplier.
+     */
+    @Override
+    public boolean hasMultiplier(long passengerID) {
+        return passengerInfo.hasMultiplier(passengerID);
+    }
+
+    /**
+     * This method ends the year in the wrapped store, and drops every summary, since the
+     * multipliers and Sub-Tier upgrades change them.
+     */
+    @Override
+    public void finishYear() {
+        passengerInfo.finishYear();
+        invalidateAll();
+    }
+
+    /**
+     * This method returns the number of Passengers stored.
+     * @return The number of Passengers stored.
+     */
+    @Override
+    public int size() {
+        return passengerInfo.size();
+    }
+
+    /**
+     * This method returns the IDs of all Passengers.
+     * @return The look-up IDs of the Passengers.
+     */
+    @Override
+    public long[] getIDs() {
+        return passengerInfo.getIDs();
+    }
+
+    /**
+     * This method returns the memory used for each Passenger by the wrapped store (the cache is
+     * bounded separately).
+     * @return The number of bytes used per Passenger.
+     */
+    @Override
+    public long getBytesPerPassenger() {
+        return passengerInfo.getBytesPerPassenger();
+    }
+
+    /**
+     * This method adds a summary to a segment, dropping the least recently used summaries of the
+     * segment until it fits. The caller must hold the lock of the segment.
+     * @param segment The segment of the Passenger.
+     * @param passengerID The look-up ID of the Passenger.
+     * @param summary The summary of the Passenger.
+     */
+    private static void put(Segment segment, long passengerID, byte[] summary) {
+        Iterator<Map.Entry<Long, byte[]>> eldest; // The summaries, least recently used first.
+        byte[] replaced = segment.summaries.put(passengerID, summary); // The summary it replaces, if any.
+
+        segment.numBytes += summary.length + ENTRY_OVERHEAD;
+        if (replaced != null)
+            segment.numBytes -= replaced.length + ENTRY_OVERHEAD;
+        eldest = segment.summaries.entrySet().iterator();
+        while (segment.numBytes > segment.maxBytes && eldest.hasNext()) {
+            segment.numBytes -= eldest.next().getValue().length + ENTRY_OVERHEAD;
+            eldest.remove();
+            segment.numEvicted++;
+        }
+    }
+
+    /**
+     * This method writes the summary of a Passenger.
+     * @param passengerID The look-up ID of the Passenger (-1 for an ID that is not valid).
+     * @param passengerInfo The store to read the Passenger from (null when the ID is not valid).
+     * @return The bytes of the summary.
+     */
+    private static byte[] summaryOf(long passengerID, PassengerStore passengerInfo) {
+        LookupBatch lookup = new LookupBatch(1); // The look-up of the Passenger.
+        StringBuilder summary = new StringBuilder(); // The text of the summary.
+
+        lookup.add(passengerID);
+        if (passengerInfo != null)
+            lookup.resolve(passengerInfo);
+        lookup.appendSummary(summary, 0);
+        return summary.toString().getBytes(Charset.defaultCharset());
+    }
+
+    /**
+     * This method finds the segment of a Passenger.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The index of the segment.
+     */
+    private static int segmentOf(long passengerID) {
+        return (PassengerIDs.hash(passengerID) >>> 16) & (NUM_SEGMENTS - 1);
+    }
+}
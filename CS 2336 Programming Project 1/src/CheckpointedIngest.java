@@ -0,0 +1,275 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class reads a flight log so that a crash does not mean reading it again from the first
+ * line. Every interval of the log, the counts of all Passengers are saved to a checkpoint (a
+ * PassengerSnapshot that also records the LogFingerprint of the log at the offset reached). When
+ * the log is read again, the Passengers are rebuilt from the checkpoint and only the lines after
+ * its offset are parsed, so no more than about one interval is ever parsed twice. A checkpoint
+ * whose fingerprint does not match the log (another log, or the same log after it was changed)
+ * is refused instead of being added to the wrong counts.
+ *
+ * The checkpoints are written by a background thread that keeps a store of its own: for each
+ * checkpoint, it reads the lines of the log since its last checkpoint into that store, and then
+ * writes the store out. So the reading thread never copies the counts or waits for them, and
+ * starting a checkpoint only hands the offset reached to the writer. Copying the store instead
+ * would stop the reading thread for as long as the copy takes, at every checkpoint, and that time
+ * grows with the number of Passengers rather than with the interval. The price is paid elsewhere:
+ * the lines are parsed twice (the second time on the writer's thread), and the writer's store
+ * takes as much memory as the reading thread's store for the whole read. If the previous
+ * checkpoint is still being written when the next one is due, the next one is skipped instead of
+ * waiting for it, and the writer reads both intervals for the one after. Once the whole log has
+ * been read, read() waits for the checkpoint being written and deletes the checkpoint, since
+ * there is nothing left to resume.
+ */
+public class CheckpointedIngest {
+    public static final long DEFAULT_INTERVAL = 64L << 20; // The default number of bytes between checkpoints.
+    private static final long MAX_INTERVAL = 1L << 30; // The largest interval (the most bytes mapped at a time).
+    private final String fileName; // The name of the flight log.
+    private final String checkpointName; // The name of the checkpoint file.
+    private final long interval; // The number of bytes of the log between two checkpoints.
+    private long resumedFrom = 0; // The offset in the log the last read() started from.
+    private int numCheckpoints = 0; // The number of checkpoints written by the last read().
+    private long pauseNanos = 0; // The time the reading thread spent starting checkpoints in the last read().
+    private Future<?> pending = null; // The checkpoint being written, if any.
+    private PassengerSnapshot resumed = null; // The checkpoint the last read() resumed, until the writer rebuilds it.
+    private PackedPassengerStore written = null; // The writer's own store, counted up to writtenPosition.
+    private long writtenPosition = 0; // The offset in the log the writer's store has been read up to.
+
+    /**
+     * This constructor prepares to read a log with checkpoints.
+     * @param fileName The name of the flight log.
+     * @param checkpointName The name of the checkpoint file (it is created if it does not exist).
+     * @param interval The number of bytes of the log between two checkpoints.
+     */
+    public CheckpointedIngest(String fileName, String checkpointName, long interval) {
+        this.fileName = fileName;
+        this.checkpointName = checkpointName;
+        this.interval = Math.max(1, Math.min(interval, MAX_INTERVAL));
+    }
+
+    /**
+     * This method reads the log, starting from the checkpoint if there is one, saves a checkpoint
+     * every interval, and deletes the checkpoint once the end of the log is reached.
+     * @return The store holding every Passenger in the log (the year is not finished).
+     * @throws IOException If the log or the checkpoint can not be read, the checkpoint does not
+     *                     belong to the log, or a checkpoint can not be written.
+     */
+    public PackedPassengerStore read() throws IOException {
+        ExecutorService writer = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "checkpoint-writer"); // The thread writing the checkpoints.
+
+            thread.setDaemon(true);
+            return thread;
+        }); // Writes the checkpoints in the background.
+        FlightLineParser parser = new FlightLineParser(); // Parses the lines of each interval.
+        PackedPassengerStore passengerInfo; // The Passengers counted so far.
+        Path path = Paths.get(fileName); // The path of the flight log.
+
+        numCheckpoints = 0;
+        pauseNanos = 0;
+        written = null;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long end = channel.size(); // The offset of the end of the log.
+            long position; // The offset in the log where the current interval starts.
+
+            passengerInfo = resume(channel, path);
+            position = resumedFrom;
+            writtenPosition = resumedFrom;
+            while (position < end) {
+                int limit = (int) Math.min(end - position, interval); // The number of bytes in the interval.
+                boolean isLast = position + limit == end; // Flag indicating whether the interval reaches the end.
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, limit);
+                // A line cut off by the end of the interval is read again with the next interval.
+                int numParsed = parser.parse(buffer, 0, limit, isLast, passengerInfo); // The bytes parsed.
+
+                if (numParsed == 0)
+                    throw new IOException("Line at offset " + position + " is longer than the checkpoint interval.");
+                position += numParsed;
+                if (!isLast) {
+                    long startTime = System.nanoTime(); // The time the checkpoint was started.
+
+                    checkpoint(writer, channel, path, position);
+                    pauseNanos += System.nanoTime() - startTime;
+                }
+            }
+            await();
+            Files.deleteIfExists(Paths.get(checkpointName));
+        }
+        finally {
+            writer.shutdown();
+            resumed = null;
+            written = null;
+        }
+        return passengerInfo;
+    }
+
+    /**
+     * This method returns the offset in the log the last read() started from.
+     * @return The offset of the checkpoint that was resumed, or 0 if the log was read from the start.
+     */
+    public long getResumedFrom() {
+        return this.resumedFrom;
+    }
+
+    /**
+     * This method returns the number of checkpoints written by the last read().
+     * @return The number of checkpoints written.
+     */
+    public int getNumCheckpoints() {
+        return this.numCheckpoints;
+    }
+
+    /**
+     * This method returns how long the reading thread spent starting checkpoints in the last read(),
+     * which is all the checkpoints cost the reading thread.
+     * @return The time in nanoseconds.
+     */
+    public long getPauseNanos() {
+        return this.pauseNanos;
+    }
+
+    /**
+     * This method rebuilds the Passengers from the checkpoint, after checking that the checkpoint
+     * was taken from this log as it is now. Without a checkpoint, the log is read from the start.
+     * @param channel The opened flight log.
+     * @param path The path of the flight log.
+     * @return The Passengers counted up to the checkpoint.
+     * @throws IOException If the checkpoint can not be read or does not belong to the log.
+     */
+    private PackedPassengerStore resume(FileChannel channel, Path path) throws IOException {
+        PassengerSnapshot checkpoint; // The checkpoint.
+        PackedPassengerStore passengerInfo; // The Passengers in the checkpoint.
+        long position; // The offset in the log the checkpoint was taken at.
+        long startTime = System.nanoTime(); // The time the recovery started.
+
+        resumedFrom = 0;
+        resumed = null;
+        if (!Files.exists(Paths.get(checkpointName)))
+            return new PackedPassengerStore();
+        checkpoint = PassengerSnapshot.load(checkpointName);
+        position = checkpoint.getLogPosition();
+        if (position > channel.size())
+            throw new IOException(checkpointName + " is past the end of " + fileName
+                    + "; delete it to read the log from the start.");
+        if (!checkpoint.getLogFingerprint().equals(LogFingerprint.of(channel, path, position)))
+            throw new IOException(checkpointName + " was not taken from " + fileName + " as it is now (it is "
+                    + "another log, or it was changed); delete it to read the log from the start.");
+
+        passengerInfo = rebuild(checkpoint);
+        resumed = checkpoint;
+        resumedFrom = position;
+        Metrics.recordTime("checkpoint.recover", startTime);
+        return passengerInfo;
+    }
+
+    /**
+     * This method fills a new store with the Passengers of a checkpoint.
+     * @param checkpoint The checkpoint.
+     * @return The store holding the Passengers of the checkpoint.
+     */
+    private static PackedPassengerStore rebuild(PassengerSnapshot checkpoint) {
+        PackedPassengerStore passengerInfo = new PackedPassengerStore(); // The Passengers in the checkpoint.
+
+        for (long passengerID : checkpoint.getIDs()) {
+            passengerInfo.setTotals(passengerID, checkpoint.getFlights(passengerID),
+                    checkpoint.getCancelledFlights(passengerID), checkpoint.getComplaints(passengerID));
+        }
+        return passengerInfo;
+    }
+
+    /**
+     * This method starts writing a checkpoint in the background, unless the previous one is
+     * still being written. Only the offset is handed to the writer, which counts the lines up
+     * to it in its own store.
+     * @param writer The thread that writes the checkpoints.
+     * @param channel The opened flight log.
+     * @param path The path of the flight log.
+     * @param position The offset in the log just after the last record counted.
+     * @throws IOException If the previous checkpoint could not be written.
+     */
+    private void checkpoint(ExecutorService writer, FileChannel channel, Path path, long position)
+            throws IOException {
+        if (pending != null && !pending.isDone()) {
+            Metrics.add("checkpoint.skipped", 1);
+            return;
+        }
+        await();
+        pending = writer.submit(() -> {
+            long startTime = System.nanoTime(); // The time the checkpoint was started.
+
+            try {
+                catchUp(channel, position);
+                PassengerSnapshot.write(written, checkpointName, LogFingerprint.of(channel, path, position));
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            Metrics.recordTime("checkpoint.write", startTime);
+        });
+        numCheckpoints++;
+    }
+
+    /**
+     * This method brings the writer's store up to an offset, by reading the lines of the log that
+     * the reading thread has counted since the last checkpoint. The first time, the store starts
+     * from the checkpoint that was resumed, if any. It is only called on the writer's thread.
+     * @param channel The opened flight log.
+     * @param position The offset in the log just after the last record counted.
+     * @throws IOException If the log can not be read.
+     */
+    private void catchUp(FileChannel channel, long position) throws IOException {
+        FlightLineParser parser = new FlightLineParser(); // Parses the lines again, without counting them.
+
+        parser.setCounted(false);
+        if (written == null) {
+            written = resumed != null ? rebuild(resumed) : new PackedPassengerStore();
+            resumed = null;
+        }
+        while (writtenPosition < position) {
+            int limit = (int) Math.min(position - writtenPosition, interval); // The number of bytes to read.
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, writtenPosition, limit);
+            // A line cut off by the end of the bytes mapped is read again with the next ones.
+            int numParsed = parser.parse(buffer, 0, limit, writtenPosition + limit == position, written); // The bytes parsed.
+
+            if (numParsed == 0)
+                throw new IOException("Line at offset " + writtenPosition + " is longer than the checkpoint interval.");
+            writtenPosition += numParsed;
+        }
+    }
+
+    /**
+     * This method waits for the checkpoint being written, if any.
+     * @throws IOException If the checkpoint could not be written.
+     */
+    private void await() throws IOException {
+        if (pending == null)
+            return;
+        try {
+            pending.get();
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException)
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            throw new IOException("A checkpoint could not be written.", e.getCause());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing a checkpoint.", e);
+        }
+        finally {
+            pending = null;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+import java.util.Arrays;
+
+/**
+ * This class selects the rows of a PassengerColumns view for a report: a set of Tiers, and a
+ * range of values for each int column. A filter can be built with whereTiers() and whereBetween(),
+ * or parsed from text like "tier=ExecutivePlatinum,complaints=0,miles>=50000".
+ *
+ * Rows are selected a block at a time into a mask of 0s and 1s. Every condition is one pass
+ * over a column with plain arithmetic and no branches, which the JIT compiler can turn into
+ * vector instructions, and a column without a condition is not read at all.
+ */
+public class ColumnFilter {
+    private int tierMask = (1 << TierTable.NUM_TIERS) - 1; // Bit t is set if Tier ordinal t is selected.
+    private final int[] low = new int[PassengerColumns.NUM_COLUMNS]; // The smallest value selected per column.
+    private final int[] high = new int[PassengerColumns.NUM_COLUMNS]; // The largest value selected per column.
+
+    /**
+     * This constructor creates a filter that selects every row.
+     */
+    public ColumnFilter() {
+        Arrays.fill(high, Integer.MAX_VALUE);
+    }
+
+    /**
+     * This method keeps only the rows in one of the given Tiers (and in the Tiers kept before).
+     * @param tiers The ordinals of the Tiers to keep.
+     * @return This filter.
+     */
+    public ColumnFilter whereTiers(int... tiers) {
+        int mask = 0; // The bits of the given Tiers.
+
+        for (int tier : tiers)
+            mask |= 1 << tier;
+        tierMask &= mask;
+        return this;
+    }
+
+    /**
+     * This method keeps only the rows whose value in a column is within a range (and within
+     * the ranges kept before). Every column only holds values of at least 0.
+     * @param column The index of the column.
+     * @param min The smallest value to keep.
+     * @param max The largest value to keep.
+     * @return This filter.
+     */
+    public ColumnFilter whereBetween(int column, int min, int max) {
+        low[column] = Math.max(low[column], Math.max(min, 0));
+        high[column] = Math.min(high[column], max);
+        return this;
+    }
+
+    /**
+     * This method copies the filter, so conditions can be added to the copy only.
+     * @return A new filter selecting the same rows.
+     */
+    public ColumnFilter copy() {
+        ColumnFilter copy = new ColumnFilter(); // The copy of the filter.
+
+        copy.tierMask = tierMask;
+        System.arraycopy(low, 0, copy.low, 0, low.length);
+        System.arraycopy(high, 0, copy.high, 0, high.length);
+        return copy;
+    }
+
+    /**
+     * This method creates a filter from text: conditions separated by commas, each a column name
+     * ("tier", "flights", "cancelled", "complaints", or "miles"), an operator (=, <, <=, >, or >=)
+     * and a number. A Tier is given by its class name, and "tier=" can list several, separated by |.
+     * @param where The conditions, or an empty text for no conditions.
+     * @return The filter.
+     * @throws IllegalArgumentException If a condition can not be understood.
+     */
+    public static ColumnFilter parse(String where) {
+        ColumnFilter filter = new ColumnFilter(); // The filter.
+
+        for (String condition : where.split(",")) {
+            int opStart; // The index where the operator starts.
+            int opEnd; // The index just after the operator.
+            String name; // The name of the column.
+            String op; // The operator.
+            String value; // The value compared with.
+            int column; // The index of the column.
+            long number; // The value as a number.
+
+            condition = condition.trim();
+            if (condition.isEmpty())
+                continue;
+            opStart = 0;
+            while (opStart < condition.length() && "<>=".indexOf(condition.charAt(opStart)) < 0)
+                opStart++;
+            opEnd = opStart;
+            while (opEnd < condition.length() && "<>=".indexOf(condition.charAt(opEnd)) >= 0)
+                opEnd++;
+            name = condition.substring(0, opStart).trim();
+            op = condition.substring(opStart, opEnd);
+            value = condition.substring(opEnd).trim();
+
+            if (name.equals("tier")) {
+                if (!op.equals("="))
+                    throw new IllegalArgumentException("A tier can only be compared with =: " + condition);
+                filter.whereTiers(parseTiers(value));
+                continue;
+            }
+            column = PassengerColumns.columnOf(name);
+            if (column < 0)
+                throw new IllegalArgumentException("Unknown column \"" + name + "\" in: " + condition);
+            try {
+                number = Long.parseLong(value);
+            }
+            catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number \"" + value + "\" in: " + condition);
+            }
+            number = Math.max(Math.min(number, Integer.MAX_VALUE), -1);
+            switch (op) {
+                case "=":
+                    filter.whereBetween(column, (int) number, (int) number);
+                    break;
+                case "<":
+                    filter.whereBetween(column, 0, (int) number - 1);
+                    break;
+                case "<=":
+                    filter.whereBetween(column, 0, (int) number);
+                    break;
+                case ">":
+                    filter.whereBetween(column, (int) Math.min(number + 1, Integer.MAX_VALUE), Integer.MAX_VALUE);
+                    break;
+                case ">=":
+                    filter.whereBetween(column, (int) number, Integer.MAX_VALUE);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown operator \"" + op + "\" in: " + condition);
+            }
+        }
+        return filter;
+    }
+
+    /**
+     * This method checks whether the filter keeps rows of a Tier.
+     * @param tier The ordinal of the Tier.
+     * @return Flag indicating whether rows of the Tier can be selected.
+     */
+    public boolean isTierSelected(int tier) {
+        return ((tierMask >>> tier) & 1) != 0;
+    }
+
+    /**
+     * This method selects the rows in a block of the columns.
+     * @param columns The columns.
+     * @param from The first row of the block.
+     * @param to The row just after the last row of the block.
+     * @param mask Set to 1 for every selected row and 0 for the others, at the index row - from.
+     */
+    public void select(PassengerColumns columns, int from, int to, int[] mask) {
+        byte[] tiers = columns.getTiers(); // The Tier column.
+        int numRows = to - from; // The number of rows in the block.
+
+        for (int i = 0; i < numRows; i++)
+            mask[i] = (tierMask >>> tiers[from + i]) & 1;
+        for (int column = 0; column < PassengerColumns.NUM_COLUMNS; column++) {
+            int[] values = columns.getColumn(column); // The values of the column.
+            int min = low[column]; // The smallest value selected.
+            int max = high[column]; // The largest value selected.
+
+            if (min == 0 && max == Integer.MAX_VALUE)
+                continue;
+            // Both differences are at least 0 for a value in the range, since no value is below 0,
+            // so the sign bit of their OR is 1 exactly when the value is out of the range.
+            for (int i = 0; i < numRows; i++) {
+                int value = values[from + i]; // The value of the row.
+
+                mask[i] &= 1 ^ (((value - min) | (max - value)) >>> 31);
+            }
+        }
+    }
+
+    /**
+     * This method converts a list of Tier names separated by | to their ordinals.
+     * @param names The names of the Tiers' classes (like "Platinum|PlatinumPro").
+     * @return The ordinals of the Tiers.
+     * @throws IllegalArgumentException If a name is not a Tier.
+     */
+    private static int[] parseTiers(String names) {
+        String[] parts = names.split("\\|"); // The names of the Tiers.
+        int[] tiers = new int[parts.length]; // The ordinals of the Tiers.
+
+        for (int i = 0; i < parts.length; i++) {
+            tiers[i] = TierTable.ordinalOf(parts[i].trim());
+            if (tiers[i] < 0)
+                throw new IllegalArgumentException("Unknown tier \"" + parts[i].trim() + "\"");
+        }
+        return tiers;
+    }
+}
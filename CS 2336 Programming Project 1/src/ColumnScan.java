@@ -0,0 +1,199 @@
+/**
+ * This class runs the aggregations of the reports over a PassengerColumns view. Every scan goes
+ * through the rows a block at a time: the filter selects the rows of the block into a mask, and
+ * the selected rows are added up with the mask as a factor instead of a branch, so a scan costs
+ * the same whichever rows are selected. The sums are grouped by Tier, since every report
+ * breaks its numbers down by Tier.
+ */
+public class ColumnScan {
+    private static final int BLOCK_SIZE = 4096; // The number of rows selected at a time.
+
+    /**
+     * This class holds the result of a scan grouped by Tier: the number of selected rows
+     * in each Tier, and the sum of every int column over them.
+     */
+    public static class TierTotals {
+        private final long[] counts = new long[TierTable.NUM_TIERS]; // The number of rows per Tier.
+        // The sum of each column per Tier, at index tier * NUM_COLUMNS + column.
+        private final long[] sums = new long[TierTable.NUM_TIERS * PassengerColumns.NUM_COLUMNS];
+
+        /**
+         * This method returns the number of selected rows in a Tier.
+         * @param tier The ordinal of the Tier.
+         * @return The number of rows.
+         */
+        public long getCount(int tier) {
+            return counts[tier];
+        }
+
+        /**
+         * This method returns the sum of a column over the selected rows in a Tier.
+         * @param tier The ordinal of the Tier.
+         * @param column The index of the column.
+         * @return The sum of the column.
+         */
+        public long getSum(int tier, int column) {
+            return sums[tier * PassengerColumns.NUM_COLUMNS + column];
+        }
+
+        /**
+         * This method returns the number of selected rows in all Tiers.
+         * @return The number of rows.
+         */
+        public long getTotalCount() {
+            long total = 0; // The number of rows.
+
+            for (long count : counts)
+                total += count;
+            return total;
+        }
+    }
+
+    /**
+     * This method counts the rows selected by a filter.
+     * @param columns The columns.
+     * @param filter The filter selecting the rows.
+     * @return The number of selected rows.
+     */
+    public static long count(PassengerColumns columns, ColumnFilter filter) {
+        int[] mask = new int[BLOCK_SIZE]; // The selected rows of the current block.
+        long count = 0; // The number of selected rows.
+
+        for (int from = 0; from < columns.size(); from += BLOCK_SIZE) {
+            int to = Math.min(from + BLOCK_SIZE, columns.size()); // The row just after the block.
+            int blockCount = 0; // The number of selected rows in the block.
+
+            filter.select(columns, from, to, mask);
+            for (int i = 0; i < to - from; i++)
+                blockCount += mask[i];
+            count += blockCount;
+        }
+        return count;
+    }
+
+    /**
+     * This method counts the rows selected by a filter in each Tier, and adds up every column over them.
+     * @param columns The columns.
+     * @param filter The filter selecting the rows.
+     * @return The counts and sums per Tier.
+     */
+    public static TierTotals totalsByTier(PassengerColumns columns, ColumnFilter filter) {
+        return totalsByTier(columns, filter, true);
+    }
+
+    /**
+     * This method counts the rows selected by a filter in each Tier, without adding up the columns.
+     * @param columns The columns.
+     * @param filter The filter selecting the rows.
+     * @return The counts per Tier (and sums of 0).
+     */
+    public static TierTotals countByTier(PassengerColumns columns, ColumnFilter filter) {
+        return totalsByTier(columns, filter, false);
+    }
+
+    /**
+     * This method counts the rows selected by a filter in each Tier, and adds up every column over
+     * them if asked to. Adding into the count of each row's Tier would make every row wait for the
+     * row before it whenever both are in the same Tier, so each block is instead gone through once per
+     * selected Tier, with the rows of other Tiers masked out: every pass is then a plain sum.
+     * @param columns The columns.
+     * @param filter The filter selecting the rows.
+     * @param hasSums Flag indicating whether to add up the columns as well.
+     * @return The counts and sums per Tier.
+     */
+    private static TierTotals totalsByTier(PassengerColumns columns, ColumnFilter filter, boolean hasSums) {
+        TierTotals totals = new TierTotals(); // The counts and sums per Tier.
+        int[] mask = new int[BLOCK_SIZE]; // The selected rows of the current block.
+        int[] tierMask = new int[BLOCK_SIZE]; // The selected rows of the current block in the current Tier.
+        byte[] tiers = columns.getTiers(); // The Tier column.
+
+        for (int from = 0; from < columns.size(); from += BLOCK_SIZE) {
+            int to = Math.min(from + BLOCK_SIZE, columns.size()); // The row just after the block.
+
+            filter.select(columns, from, to, mask);
+            for (int tier = 0; tier < TierTable.NUM_TIERS; tier++) {
+                int blockCount = 0; // The number of selected rows of the Tier in the block.
+
+                if (!filter.isTierSelected(tier))
+                    continue;
+                // The XOR is 0 only in the Tier, and 0 is the only value whose sign bit flips when 1 is taken away.
+                for (int i = 0; i < to - from; i++) {
+                    tierMask[i] = mask[i] & (((tiers[from + i] ^ tier) - 1) >>> 31);
+                    blockCount += tierMask[i];
+                }
+                totals.counts[tier] += blockCount;
+                if (!hasSums || blockCount == 0)
+                    continue;
+                for (int column = 0; column < PassengerColumns.NUM_COLUMNS; column++) {
+                    int[] values = columns.getColumn(column); // The values of the column.
+                    int lowSum = 0; // The sum of the low 16 bits of the selected values in the block.
+                    int highSum = 0; // The sum of the high 15 bits of the selected values in the block.
+
+                    // The sum of a block may not fit in an int, but the sums of the halves do (a block
+                    // has less than 2^15 rows), and int sums are twice as wide in a vector as longs.
+                    for (int i = 0; i < to - from; i++) {
+                        int value = values[from + i] & -tierMask[i]; // The value, or 0 if not selected.
+
+                        lowSum += value & 0xFFFF;
+                        highSum += value >>> 16;
+                    }
+                    totals.sums[tier * PassengerColumns.NUM_COLUMNS + column] += lowSum + ((long) highSum << 16);
+                }
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * This method returns the largest value of a column over the rows selected by a filter.
+     * @param columns The columns.
+     * @param filter The filter selecting the rows.
+     * @param column The index of the column.
+     * @return The largest value, or 0 if no row is selected.
+     */
+    public static int max(PassengerColumns columns, ColumnFilter filter, int column) {
+        int[] mask = new int[BLOCK_SIZE]; // The selected rows of the current block.
+        int[] values = columns.getColumn(column); // The values of the column.
+        int max = 0; // The largest value.
+
+        for (int from = 0; from < columns.size(); from += BLOCK_SIZE) {
+            int to = Math.min(from + BLOCK_SIZE, columns.size()); // The row just after the block.
+
+            filter.select(columns, from, to, mask);
+            // A row that is not selected counts as 0, which is never above the largest value.
+            for (int i = 0; i < to - from; i++)
+                max = Math.max(max, mask[i] * values[from + i]);
+        }
+        return max;
+    }
+
+    /**
+     * This method counts the rows selected by a filter in each Tier, in buckets of equal width
+     * of a column's value. The last bucket also holds every larger value.
+     * @param columns The columns.
+     * @param filter The filter selecting the rows.
+     * @param column The index of the column.
+     * @param bucketWidth The width of each bucket (bucket b holds values from b * bucketWidth).
+     * @param numBuckets The number of buckets.
+     * @return The number of rows, indexed by Tier and then by bucket.
+     */
+    public static long[][] histogramByTier(PassengerColumns columns, ColumnFilter filter, int column,
+            int bucketWidth, int numBuckets) {
+        long[][] counts = new long[TierTable.NUM_TIERS][numBuckets]; // The rows per Tier and bucket.
+        int[] mask = new int[BLOCK_SIZE]; // The selected rows of the current block.
+        int[] values = columns.getColumn(column); // The values of the column.
+        byte[] tiers = columns.getTiers(); // The Tier column.
+
+        for (int from = 0; from < columns.size(); from += BLOCK_SIZE) {
+            int to = Math.min(from + BLOCK_SIZE, columns.size()); // The row just after the block.
+
+            filter.select(columns, from, to, mask);
+            for (int i = 0; i < to - from; i++) {
+                int bucket = Math.min(values[from + i] / bucketWidth, numBuckets - 1); // The bucket of the row.
+
+                counts[tiers[from + i]][bucket] += mask[i];
+            }
+        }
+        return counts;
+    }
+}
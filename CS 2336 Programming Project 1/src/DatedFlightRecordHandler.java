@@ -0,0 +1,36 @@
+/**
+ * This interface represents anything that consumes flight records together with the month they
+ * were flown in, from input files with a date column ("ID Y N 2024-03-17" or "ID N 2024-03").
+ * FlightLineParser only reads the date column for handlers of this kind, so other handlers
+ * pay nothing for it.
+ */
+public interface DatedFlightRecordHandler extends FlightRecordHandler {
+    /**
+     * This method processes a single flight record with its month.
+     * @param passengerID The look-up ID of the Passenger the flight belongs to.
+     * @param month The month of the flight, as year * 12 + month - 1 (see toMonth()), or -1 if
+     *              the line has no date.
+     * @param isCancelled Flag indicating whether the flight was cancelled.
+     * @param hasComplain Flag indicating whether the Passenger complained about the cancelled flight.
+     */
+    public void addRecord(long passengerID, int month, boolean isCancelled, boolean hasComplain);
+
+    /**
+     * This method converts a month to the form used for dated records.
+     * @param year The year (from 0 to 9999).
+     * @param month The month of the year (from 1 to 12).
+     * @return The month as year * 12 + month - 1.
+     */
+    public static int toMonth(int year, int month) {
+        return year * 12 + month - 1;
+    }
+
+    /**
+     * This method writes a month in the form "YYYY-MM".
+     * @param month The month as year * 12 + month - 1.
+     * @return The month as text.
+     */
+    public static String formatMonth(int month) {
+        return String.format("%04d-%02d", month / 12, month % 12 + 1);
+    }
+}
@@ -1,13 +1,31 @@
 /**
- * This class represents a Tier for every Passenger that has had at least 100 of their flights cancelled.
+ * This class represents a Tier for every Passenger that has had at least 100 (by default) of their flights cancelled.
  */
 public class ExecutivePlatinum implements Tier {
-    private final int MILES_PER_FLIGHT = 1000; // Number of miles per cancelled flight.
-    private int numCancFlights = 100; // Number of flights the passenger was supposed to take but were cancelled.
+    private final int MILES_PER_FLIGHT = TierTable.getMilesPerFlight(TierTable.EXECUTIVE_PLATINUM); // Number of miles per cancelled flight.
+    private int numCancFlights = TierTable.getUpgradeAt(TierTable.PLATINUM); // Number of flights the passenger was supposed to take but were cancelled.
     private int miles = numCancFlights * MILES_PER_FLIGHT; // The total number of miles the Passenger
                                                             // earned based on the cancelled flights.
     private int numFlights; // The total number of flights a Passenger has taken, or was supposed to take.
 
+    /**
+     * This constructor creates the Tier a Passenger starts with (or is upgraded to).
+     */
+    public ExecutivePlatinum() {
+    }
+
+    /**
+     * This constructor sets the number of flights, cancelled flights, and miles that a
+     * Passenger accumulated, when the Tier is rebuilt from totals counted elsewhere.
+     * @param numCancFlights Number of flights the passenger was supposed to take but were cancelled.
+     * @param numFlights The total number of flights a Passenger has taken.
+     */
+    public ExecutivePlatinum(int numCancFlights, int numFlights) {
+        this.numCancFlights = numCancFlights;
+        this.numFlights = numFlights;
+        this.miles = numCancFlights * MILES_PER_FLIGHT;
+    }
+
     /**
      * This method returns the miles earned so far.
      * @return The total number of miles the Passenger earned based on the cancelled flights.
@@ -0,0 +1,242 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+
+/**
+ * This class applies corrections to flight records that were already counted, like a
+ * cancellation that is reversed or a complaint that is withdrawn, without reading the year again.
+ * A correction file looks like a flight data file, except that a line starting with "-" takes
+ * back a record counted before ("-103 Y Y" takes back a cancelled flight with a complaint) and
+ * any other line adds a record. A changed record is taken back and added again as it should have
+ * been, so a reversed cancellation is "-103 Y N" followed by "103 N", and a withdrawn complaint
+ * is "-103 Y Y" followed by "103 Y N".
+ *
+ * The corrections are added up per Passenger first, so each Passenger changed is only visited
+ * once, whatever the number of their corrections. Their new totals are then set in the store,
+ * which gives them the Tier the totals reach (so they can also be downgraded), and, if the year
+ * is over, the Sub-Tier decision of the end of the year again. No other Passenger is visited.
+ */
+public class FlightCorrections {
+    private static final int INITIAL_CAPACITY = 1024; // The starting number of slots (always a power of two).
+    private static final int FLIGHTS = 0; // The offset of the change in flights within a slot's changes.
+    private static final int CANCELLED = 1; // The offset of the change in cancelled flights within a slot's changes.
+    private static final int COMPLAINTS = 2; // The offset of the change in complaints within a slot's changes.
+    private static final int STRIDE = 3; // The number of changes per slot.
+    private long[] keys = PassengerIDs.newKeys(INITIAL_CAPACITY); // The Passenger IDs, one per slot.
+    private int[] changes = new int[INITIAL_CAPACITY * STRIDE]; // The change in each count of each Passenger.
+    private int size = 0; // The number of Passengers with corrections.
+    private long numCorrections = 0; // The number of records added or taken back.
+    private long numMalformed = 0; // The number of lines of the file that are not corrections.
+    private long numDowngrades = 0; // The number of Passengers who fell to a lower Tier when the corrections were applied.
+    private long numTierChanges = 0; // The number of Passengers whose Tier (or Sub-Tier) changed.
+    private long numRejected = 0; // The number of Passengers whose corrections take back more than was counted.
+
+    /**
+     * This method reads a correction file.
+     * @param fileName The name of the correction file.
+     * @return The corrections in the file.
+     * @throws IOException If the file can not be read.
+     */
+    public static FlightCorrections read(String fileName) throws IOException {
+        FlightCorrections corrections = new FlightCorrections(); // The corrections in the file.
+        String fileLine; // A line in the correction file.
+
+        try (BufferedReader inStream = new BufferedReader(new FileReader(fileName), 1 << 16)) {
+            while ((fileLine = inStream.readLine()) != null)
+                corrections.addLine(fileLine);
+        }
+        return corrections;
+    }
+
+    /**
+     * This method adds one correction.
+     * @param passengerID The look-up ID of the Passenger the record belongs to.
+     * @param isRetraction Flag indicating whether the record is taken back, rather than added.
+     * @param isCancelled Flag indicating whether the flight of the record was cancelled.
+     * @param hasComplain Flag indicating whether the Passenger complained about the cancelled flight.
+     */
+    public void add(long passengerID, boolean isRetraction, boolean isCancelled, boolean hasComplain) {
+        int sign = isRetraction ? -1 : 1; // The direction of the change.
+        int slot = PassengerIDs.findSlot(keys, passengerID); // The slot of the Passenger.
+
+        if (keys[slot] == PassengerIDs.EMPTY) {
+            if (PassengerIDs.isFull(keys, size)) {
+                grow();
+                slot = PassengerIDs.findSlot(keys, passengerID);
+            }
+            keys[slot] = passengerID;
+            size++;
+        }
+        changes[slot * STRIDE + FLIGHTS] += sign;
+        if (isCancelled) {
+            changes[slot * STRIDE + CANCELLED] += sign;
+            if (hasComplain)
+                changes[slot * STRIDE + COMPLAINTS] += sign;
+        }
+        numCorrections++;
+    }
+
+    /**
+     * This method applies the corrections to the Passengers of a store. A Passenger whose
+     * corrections would leave fewer flights than cancelled flights, or fewer cancelled flights than
+     * complaints (or less than none), is left as they are, and counted as rejected.
+     * @param passengerInfo The store to correct (which can not be a snapshot).
+     * @return The number of Passengers changed.
+     */
+    public int apply(PassengerStore passengerInfo) {
+        int numChanged = 0; // The number of Passengers changed.
+        long downgrades = 0; // The number of Passengers downgraded by these corrections.
+
+        for (int slot = 0; slot < keys.length; slot++) {
+            long passengerID = keys[slot]; // The Passenger in the slot.
+            int numFlights; // The Passenger's flights after the corrections.
+            int numCancFlights; // The Passenger's cancelled flights after the corrections.
+            int numComplaints; // The Passenger's complaints after the corrections.
+            int oldTier = TierTable.NO_TIER; // The Passenger's Tier before the corrections.
+            int oldCancFlights = 0; // The Passenger's cancelled flights before the corrections.
+
+            if (passengerID == PassengerIDs.EMPTY)
+                continue;
+            numFlights = changes[slot * STRIDE + FLIGHTS];
+            numCancFlights = changes[slot * STRIDE + CANCELLED];
+            numComplaints = changes[slot * STRIDE + COMPLAINTS];
+            if (passengerInfo.contains(passengerID)) {
+                oldTier = passengerInfo.getTierOrdinal(passengerID);
+                oldCancFlights = passengerInfo.getCancelledFlights(passengerID);
+                numFlights += passengerInfo.getFlights(passengerID);
+                numCancFlights += oldCancFlights;
+                numComplaints += passengerInfo.getComplaints(passengerID);
+            }
+            if (numComplaints < 0 || numCancFlights < numComplaints || numFlights < numCancFlights) {
+                numRejected++;
+                continue;
+            }
+            passengerInfo.setTotals(passengerID, numFlights, numCancFlights, numComplaints);
+            Metrics.countUpgrades(TierTable.tierFor(oldCancFlights), TierTable.tierFor(numCancFlights));
+            if (TierTable.tierFor(numCancFlights) < TierTable.tierFor(oldCancFlights))
+                downgrades++;
+            if (passengerInfo.getTierOrdinal(passengerID) != oldTier)
+                numTierChanges++;
+            numChanged++;
+        }
+        numDowngrades += downgrades;
+        Metrics.add("corrections.downgrades", downgrades);
+        return numChanged;
+    }
+
+    /**
+     * This method returns the number of records added or taken back.
+     * @return The number of corrections.
+     */
+    public long getNumCorrections() {
+        return this.numCorrections;
+    }
+
+    /**
+     * This method returns the number of Passengers with corrections.
+     * @return The number of Passengers.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * This method returns the number of lines of the file that were not corrections.
+     * @return The number of malformed lines.
+     */
+    public long getNumMalformed() {
+        return this.numMalformed;
+    }
+
+    /**
+     * This method returns the number of Passengers who fell to a lower Tier when the corrections were applied.
+     * @return The number of downgrades.
+     */
+    public long getNumDowngrades() {
+        return this.numDowngrades;
+    }
+
+    /**
+     * This method returns the number of Passengers whose Tier or Sub-Tier changed when the corrections were applied.
+     * @return The number of Tier changes.
+     */
+    public long getNumTierChanges() {
+        return this.numTierChanges;
+    }
+
+    /**
+     * This method returns the number of Passengers left as they were, because their corrections
+     * take back more than was counted.
+     * @return The number of rejected Passengers.
+     */
+    public long getNumRejected() {
+        return this.numRejected;
+    }
+
+    /**
+     * This method reads one line of a correction file: an optional "-", the passenger ID, and the
+     * flags of the record, separated by spaces or tabs. A line without an ID is counted as
+     * malformed, except for an empty line.
+     * @param fileLine A line in the correction file.
+     */
+    private void addLine(String fileLine) {
+        int i = skipBlanks(fileLine, 0); // An index in the line.
+        int idStart; // The index where the passenger ID starts.
+        long passengerID; // The look-up ID of the Passenger.
+        boolean isRetraction; // Flag indicating whether the record is taken back.
+        boolean isCancelled; // Flag indicating whether the flight was cancelled.
+        boolean hasComplain = false; // Flag indicating whether the Passenger complained.
+
+        if (i == fileLine.length())
+            return;
+        isRetraction = fileLine.charAt(i) == '-';
+        if (isRetraction)
+            i = skipBlanks(fileLine, i + 1);
+        idStart = i;
+        while (i < fileLine.length() && Character.isDigit(fileLine.charAt(i)))
+            i++;
+        passengerID = MappedFlightReader.parseID(fileLine, idStart, i);
+        if (passengerID < 0) {
+            numMalformed++;
+            return;
+        }
+        i = skipBlanks(fileLine, i);
+        isCancelled = i < fileLine.length() && fileLine.charAt(i) == 'Y';
+        if (isCancelled) {
+            i = skipBlanks(fileLine, i + 1);
+            hasComplain = i < fileLine.length() && fileLine.charAt(i) == 'Y';
+        }
+        add(passengerID, isRetraction, isCancelled, hasComplain);
+    }
+
+    /**
+     * This method skips spaces and tabs between the fields of a line.
+     * @param fileLine A line in the correction file.
+     * @param i The index to start skipping from.
+     * @return The index of the first character that is not a space or tab.
+     */
+    private static int skipBlanks(String fileLine, int i) {
+        while (i < fileLine.length() && (fileLine.charAt(i) == ' ' || fileLine.charAt(i) == '\t'))
+            i++;
+        return i;
+    }
+
+    /**
+     * This method doubles the number of slots, and moves every Passenger to their new slot.
+     */
+    private void grow() {
+        long[] oldKeys = keys; // The IDs before growing.
+        int[] oldChanges = changes; // The changes before growing.
+
+        keys = PassengerIDs.newKeys(oldKeys.length * 2);
+        changes = new int[keys.length * STRIDE];
+        for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+            if (oldKeys[oldSlot] != PassengerIDs.EMPTY) {
+                int slot = PassengerIDs.findSlot(keys, oldKeys[oldSlot]); // The new slot of the Passenger.
+
+                keys[slot] = oldKeys[oldSlot];
+                System.arraycopy(oldChanges, oldSlot * STRIDE, changes, slot * STRIDE, STRIDE);
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * This class counts the flights, cancelled flights, and complaints of every Passenger
+ * in part of the input file. The counts of several parts can be merged, and then turned
+ * into Passengers once the whole file has been read. The counts are kept in primitive
+ * arrays with open addressing, using the numeric passenger ID as the look-up key.
+ */
+public class FlightCounts implements FlightRecordHandler {
+    private static final int INITIAL_CAPACITY = 256; // The starting number of slots (always a power of two).
+    private long[] keys; // The Passenger IDs, one per slot.
+    private int[] numFlights; // The total number of flights of each Passenger.
+    private int[] numCancFlights; // The number of cancelled flights of each Passenger.
+    private int[] numComplaints; // The number of complaints of each Passenger.
+    private int size = 0; // The number of Passengers counted.
+
+    /**
+     * This constructor creates empty counts.
+     */
+    public FlightCounts() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * This method counts a single flight record.
+     * @param passengerID The look-up ID of the Passenger the flight belongs to.
+     * @param isCancelled Flag indicating whether the flight was cancelled.
+     * @param hasComplain Flag indicating whether the Passenger complained about the cancelled flight.
+     */
+    @Override
+    public void addRecord(long passengerID, boolean isCancelled, boolean hasComplain) {
+        int slot = slotOf(passengerID); // The slot of the Passenger.
+
+        numFlights[slot]++;
+        if (isCancelled) {
+            numCancFlights[slot]++;
+            if (hasComplain)
+                numComplaints[slot]++;
+        }
+    }
+
+    /**
+     * This method adds the counts of another part of the input file to these counts.
+     * @param other The counts to add.
+     */
+    public void merge(FlightCounts other) {
+        int slot; // The slot of a Passenger in these counts.
+
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.keys[i] == PassengerIDs.EMPTY)
+                continue;
+            slot = slotOf(other.keys[i]);
+            numFlights[slot] += other.numFlights[i];
+            numCancFlights[slot] += other.numCancFlights[i];
+            numComplaints[slot] += other.numComplaints[i];
+        }
+    }
+
+    /**
+     * This method rebuilds every Passenger counted, and keeps their records in a store. The
+     * upgrades the counted records earned are added to the Metrics here, since setting totals
+     * does not count any.
+     * @param passengerInfo The store for keeping records of all Passengers.
+     */
+    public void addTo(PassengerStore passengerInfo) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != PassengerIDs.EMPTY) {
+                passengerInfo.setTotals(keys[i], numFlights[i], numCancFlights[i], numComplaints[i]);
+                Metrics.countUpgrades(TierTable.NO_TIER, TierTable.tierFor(numCancFlights[i]));
+            }
+        }
+    }
+
+    /**
+     * This method returns the number of Passengers counted.
+     * @return The number of Passengers counted.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * This method finds the slot of a Passenger, adding the Passenger if the ID is new.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The index of the slot.
+     */
+    private int slotOf(long passengerID) {
+        int slot = PassengerIDs.findSlot(keys, passengerID); // The slot of the Passenger.
+
+        if (keys[slot] == PassengerIDs.EMPTY) {
+            if (PassengerIDs.isFull(keys, size)) {
+                grow();
+                slot = PassengerIDs.findSlot(keys, passengerID);
+            }
+            keys[slot] = passengerID;
+            size++;
+        }
+        return slot;
+    }
+
+    /**
+     * This method creates empty arrays with the given number of slots.
+     * @param capacity The number of slots.
+     */
+    private void allocate(int capacity) {
+        keys = PassengerIDs.newKeys(capacity);
+        numFlights = new int[capacity];
+        numCancFlights = new int[capacity];
+        numComplaints = new int[capacity];
+    }
+
+    /**
+     * This method doubles the number of slots and moves every count into the new slots.
+     */
+    private void grow() {
+        long[] oldKeys = keys; // The Passenger IDs before growing.
+        int[] oldFlights = numFlights; // The flight counts before growing.
+        int[] oldCancFlights = numCancFlights; // The cancelled flight counts before growing.
+        int[] oldComplaints = numComplaints; // The complaint counts before growing.
+        int slot; // The new slot of a Passenger.
+
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == PassengerIDs.EMPTY)
+                continue;
+            slot = PassengerIDs.findSlot(keys, oldKeys[i]);
+            keys[slot] = oldKeys[i];
+            numFlights[slot] = oldFlights[i];
+            numCancFlights[slot] = oldCancFlights[i];
+            numComplaints[slot] = oldComplaints[i];
+        }
+    }
+}
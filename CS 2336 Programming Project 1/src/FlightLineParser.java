@@ -0,0 +1,262 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * This class parses lines of flight data ("ID Y N", "ID Y Y" or "ID N") directly from bytes.
+ * The passenger ID is parsed into a number and the Y/N flags into booleans, so no String (or
+ * any other object) is created for a line. It is used both for mapped files and for data that
+ * arrives in pieces (like a log that is still being written), where a line may be cut off.
+ * The fields may be separated by any number of spaces or tabs, a line may end with a carriage
+ * return, and anything after the flags (like extra columns) is ignored. A flight that was not
+ * cancelled may have a second flag ("ID N N"), which means nothing. For a DatedFlightRecordHandler,
+ * a date ("YYYY-MM" or "YYYY-MM-DD") after the last flag of the line is read as the month of the
+ * flight, and a line without one is passed on with no month.
+ *
+ * A short line ("ID Y", or "ID Y 2024-03" with a date) is a cancelled flight without a complaint,
+ * whatever the mode. A line whose ID has more than 18 digits (which may not fit in a long) is
+ * never passed on.
+ *
+ * While the Metrics are on, or while bad lines are quarantined to a RejectFile, lines that are
+ * not a flight record (no ID, an ID of more than 18 digits, or a flag other than Y or N) are
+ * found as malformed. A malformed line with an ID that fits is still passed on as a flight record,
+ * unless it is quarantined. The counts are added to the Metrics once per call to parse(), and the
+ * lines are only checked when asked to, so the check costs nothing otherwise.
+ */
+public class FlightLineParser {
+    private static final int MAX_ID_DIGITS = 18; // The most digits of an ID that always fits in a long.
+    private long numRecords = 0; // The number of flight records parsed so far.
+    private long numMalformed = 0; // The number of malformed lines parsed so far.
+    private long numLines = 0; // The number of lines parsed so far (including blank ones).
+    private RejectFile rejects = null; // The file malformed lines are quarantined to, if any.
+    private boolean isCounted = true; // Flag indicating whether the lines parsed are added to the Metrics.
+
+    /**
+     * This method quarantines malformed lines to a reject file from now on, instead of passing
+     * them on. The line numbers in the reject file count the lines this parser has parsed.
+     * @param rejects The reject file, or null to pass malformed lines on again.
+     */
+    public void setRejects(RejectFile rejects) {
+        this.rejects = rejects;
+    }
+
+    /**
+     * This method stops (or starts again) adding the lines parsed to the Metrics, for a parser
+     * that reads lines another parser has already counted (see CheckpointedIngest). Such a parser
+     * also does not look for malformed lines for the Metrics, since they were found the first time.
+     * @param isCounted Flag indicating whether the lines parsed are added to the Metrics.
+     */
+    public void setCounted(boolean isCounted) {
+        this.isCounted = isCounted;
+    }
+
+    /**
+     * This method parses every complete line between two indexes of a buffer. A line cut off
+     * by the limit is left to be parsed again with more data, unless the limit is the end of the input.
+     * @param buffer The bytes to parse.
+     * @param start The index where the first line starts.
+     * @param limit The index just after the last byte to parse.
+     * @param isEnd Flag indicating whether the limit is the end of the input.
+     * @param handler The object that processes each flight record.
+     * @return The index just after the last line parsed.
+     * @throws UncheckedIOException If a malformed line can not be written to the reject file.
+     */
+    public int parse(ByteBuffer buffer, int start, int limit, boolean isEnd, FlightRecordHandler handler) {
+        int lineStart = start; // The index where the current line starts.
+        long startRecords = numRecords; // The number of flight records parsed before this call.
+        long startMalformed = numMalformed; // The number of malformed lines parsed before this call.
+        // Flag indicating whether to look for malformed lines.
+        boolean isChecking = (isCounted && Metrics.isEnabled()) || rejects != null;
+        // The handler that also takes the month of each record, if it does.
+        DatedFlightRecordHandler dated = handler instanceof DatedFlightRecordHandler
+                ? (DatedFlightRecordHandler) handler : null;
+
+        while (lineStart < limit) {
+            int i = lineStart; // An index in the current line.
+            long passengerID = 0; // The look-up ID for the Passenger.
+            boolean hasID = false; // Flag indicating whether the line starts with an ID.
+            boolean isCancelled; // Flag indicating whether the flight was cancelled.
+            boolean hasComplain = false; // Flag indicating whether the passenger complained.
+            byte b; // The byte at the current index.
+            int idStart; // The index of the first digit of the ID.
+            int idEnd; // The index just after the ID.
+            int flagsEnd; // The index just after the last Y/N flag of the line, where a date may follow.
+            boolean hasFlag; // Flag indicating whether the line has a Y/N flag after the ID.
+            boolean hasSecondFlag = false; // Flag indicating whether the line has a second Y/N flag.
+            boolean isMalformed; // Flag indicating whether the line is not a flight record.
+
+            // Get the passenger ID first.
+            i = skipBlanks(buffer, i, limit);
+            idStart = i;
+            while (i < limit && (b = buffer.get(i)) >= '0' && b <= '9') {
+                passengerID = passengerID * 10 + (b - '0');
+                hasID = true;
+                i++;
+            }
+            idEnd = i;
+            // Check whether a flight was cancelled and/or the passenger complained.
+            i = skipBlanks(buffer, i, limit);
+            isCancelled = i < limit && buffer.get(i) == 'Y';
+            hasFlag = isCancelled || isFlagN(buffer, i, limit);
+            flagsEnd = i;
+            // The second flag of a flight that was not cancelled means nothing, but a date comes after it.
+            if (isCancelled || (hasFlag && dated != null)) {
+                i = skipBlanks(buffer, i + 1, limit);
+                flagsEnd = i;
+                hasSecondFlag = isFlagN(buffer, i, limit) || (i < limit && buffer.get(i) == 'Y');
+                if (hasSecondFlag) {
+                    hasComplain = isCancelled && buffer.get(i) == 'Y';
+                    flagsEnd = i + 1;
+                }
+            }
+
+            // Skip the rest of the line (including a carriage return).
+            while (i < limit && buffer.get(i) != '\n')
+                i++;
+
+            // A line cut off by the limit is parsed again once more data is available.
+            if (i == limit && !isEnd)
+                break;
+            numLines++;
+            // A well-formed line has a Y or an N for its first flag. The Y of a cancelled flight is followed
+            // by a second flag, by the end of the line (a short line, with no complaint), or by a date.
+            isMalformed = isChecking && (!hasID || idEnd - idStart > MAX_ID_DIGITS || !hasFlag
+                    || (isCancelled && !hasSecondFlag && !isLineEnd(buffer, flagsEnd, limit)
+                            && parseMonth(buffer, flagsEnd, i) < 0))
+                    && checkMalformed(buffer, lineStart, i);
+            if (hasID && idEnd - idStart <= MAX_ID_DIGITS && !(isMalformed && rejects != null)) {
+                if (dated != null)
+                    dated.addRecord(passengerID, parseMonth(buffer, flagsEnd, i), isCancelled, hasComplain);
+                else
+                    handler.addRecord(passengerID, isCancelled, hasComplain);
+                numRecords++;
+            }
+            lineStart = Math.min(i + 1, limit);
+        }
+        if (isCounted) {
+            Metrics.add(Metrics.RECORDS, numRecords - startRecords);
+            Metrics.add(Metrics.MALFORMED_LINES, numMalformed - startMalformed);
+        }
+        return lineStart;
+    }
+
+    /**
+     * This method returns the number of flight records parsed so far.
+     * @return The number of flight records parsed.
+     */
+    public long getNumRecords() {
+        return this.numRecords;
+    }
+
+    /**
+     * This method returns the number of malformed lines parsed so far, while the Metrics were on
+     * or lines were quarantined. A malformed line with an ID that fits is still passed on as a
+     * flight record unless it is quarantined, so that no flight is lost.
+     * @return The number of lines that have no ID, an ID that is too long, or a flag other than Y or N.
+     */
+    public long getNumMalformed() {
+        return this.numMalformed;
+    }
+
+    /**
+     * This method returns the number of lines parsed so far, including blank and malformed lines.
+     * @return The number of lines parsed.
+     */
+    public long getNumLines() {
+        return this.numLines;
+    }
+
+    /**
+     * This method counts a line that is not a flight record as malformed (and quarantines it,
+     * if asked to), unless it holds nothing but blanks (and a carriage return). It is kept out
+     * of parse(), since it is only called for lines that are not well-formed.
+     * @param buffer The bytes to parse.
+     * @param from The index where the line starts.
+     * @param to The index of the line's new line, or of the limit.
+     * @return Flag indicating whether the line is malformed (and not blank).
+     * @throws UncheckedIOException If the line can not be written to the reject file.
+     */
+    private boolean checkMalformed(ByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(i); // The byte at the current index.
+
+            if (b != ' ' && b != '\t' && b != '\r') {
+                numMalformed++;
+                try {
+                    if (rejects != null)
+                        rejects.reject(numLines, buffer, from, to);
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * This method checks whether the flag at an index is an N.
+     * @param buffer The bytes to parse.
+     * @param i The index of the flag.
+     * @param limit The index just after the last byte to parse.
+     * @return Flag indicating whether there is an N at the index.
+     */
+    private static boolean isFlagN(ByteBuffer buffer, int i, int limit) {
+        return i < limit && buffer.get(i) == 'N';
+    }
+
+    /**
+     * This method checks whether nothing but the end of the line (a carriage return, a new line,
+     * or the end of the input) is left at an index, after the blanks were skipped.
+     * @param buffer The bytes to parse.
+     * @param i The index after the last flag and its blanks.
+     * @param limit The index just after the last byte to parse.
+     * @return Flag indicating whether the line ends at the index.
+     */
+    private static boolean isLineEnd(ByteBuffer buffer, int i, int limit) {
+        return i >= limit || buffer.get(i) == '\r' || buffer.get(i) == '\n';
+    }
+
+    /**
+     * This method reads the date column of a line, after the flags.
+     * @param buffer The bytes to parse.
+     * @param i The index just after the last flag.
+     * @param end The index of the line's new line, or of the limit.
+     * @return The month of the date (see DatedFlightRecordHandler.toMonth()), or -1 if there is no valid date.
+     */
+    private static int parseMonth(ByteBuffer buffer, int i, int end) {
+        int year = 0; // The year of the date.
+        int month; // The month of the year.
+
+        i = skipBlanks(buffer, i, end);
+        if (end - i < 7 || buffer.get(i + 4) != '-')
+            return -1;
+        for (int j = i; j < i + 4; j++) {
+            byte b = buffer.get(j); // A digit of the year.
+
+            if (b < '0' || b > '9')
+                return -1;
+            year = year * 10 + (b - '0');
+        }
+        if (buffer.get(i + 5) < '0' || buffer.get(i + 5) > '1' || buffer.get(i + 6) < '0' || buffer.get(i + 6) > '9')
+            return -1;
+        month = (buffer.get(i + 5) - '0') * 10 + (buffer.get(i + 6) - '0');
+        if (month < 1 || month > 12)
+            return -1;
+        return DatedFlightRecordHandler.toMonth(year, month);
+    }
+
+    /**
+     * This method skips spaces and tabs between the fields of a line.
+     * @param buffer The bytes to parse.
+     * @param i The index to start skipping from.
+     * @param limit The index just after the last byte to parse.
+     * @return The index of the first byte that is not a space or tab.
+     */
+    private static int skipBlanks(ByteBuffer buffer, int i, int limit) {
+        while (i < limit && (buffer.get(i) == ' ' || buffer.get(i) == '\t'))
+            i++;
+        return i;
+    }
+}
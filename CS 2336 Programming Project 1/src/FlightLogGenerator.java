@@ -0,0 +1,294 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class writes synthetic flight logs in the same "ID Y/N Y/N" format as flight-data.txt,
+ * for finding the limits of the program on inputs much larger than the sample files. The
+ * passengers are ranked by how often they fly: with a skew of 0 every passenger is equally
+ * likely, and with a larger skew the IDs follow a Zipf distribution (see ZipfSampler).
+ *
+ * The log is made of blocks of records, and every block has its own random numbers, made from the
+ * seed and the number of the block. The blocks are written on several threads and put together in
+ * order, so the same settings always give the same log, byte for byte, on any number of threads.
+ * VERSION is raised whenever a change to this class makes the same settings give another log, so
+ * that logs kept from an earlier version are not taken for the new ones.
+ */
+public class FlightLogGenerator {
+    public static final int VERSION = 1; // The version of the logs written, for telling apart logs kept on disk.
+    public static final long DEFAULT_SEED = 2336; // The seed of the random numbers, unless another is given.
+    public static final double DEFAULT_CANCEL_RATE = 0.6; // The chance of a flight being cancelled, by default.
+    public static final double DEFAULT_COMPLAIN_RATE = 0.3; // The chance of a complaint about a cancelled flight, by default.
+    public static final long DEFAULT_FIRST_ID = 100; // The ID of the most frequent passenger, by default.
+    private static final int BLOCK_RECORDS = 1 << 18; // The number of records in a block.
+    private static final int MAX_LINE_LENGTH = 24; // The most bytes in a line: 19 digits, " Y Y" and a new line.
+    private static final long PROGRESS_BYTES = 1L << 30; // The number of bytes between two lines of progress.
+    private final double cancelRate; // The chance of a flight being cancelled.
+    private final double complainRate; // The chance of a complaint about a cancelled flight.
+    private final long seed; // The seed of the random numbers.
+    private final long firstID; // The ID of the most frequent passenger.
+    private final ZipfSampler sampler; // Picks the passenger of each record.
+
+    /**
+     * This constructor prepares a generator.
+     * @param numPassengers The number of passengers in the log.
+     * @param cancelRate The chance of a flight being cancelled (from 0 to 1).
+     * @param complainRate The chance of a complaint about a cancelled flight (from 0 to 1).
+     * @param skew The Zipf exponent of the passenger IDs (0 for uniform).
+     * @param seed The seed of the random numbers.
+     * @param firstID The ID of the most frequent passenger (the others follow it in order of rank).
+     * @throws IllegalArgumentException If a setting is out of range.
+     */
+    public FlightLogGenerator(int numPassengers, double cancelRate, double complainRate, double skew,
+                              long seed, long firstID) {
+        if (numPassengers < 1)
+            throw new IllegalArgumentException("There must be at least one passenger");
+        if (!(cancelRate >= 0 && cancelRate <= 1) || !(complainRate >= 0 && complainRate <= 1))
+            throw new IllegalArgumentException("The cancellation and complaint rates must be from 0 to 1");
+        if (!(skew >= 0))
+            throw new IllegalArgumentException("The skew must be at least 0");
+        if (firstID < 0 || firstID > Long.MAX_VALUE - numPassengers)
+            throw new IllegalArgumentException("The passenger IDs must be from 0 to " + Long.MAX_VALUE);
+        this.cancelRate = cancelRate;
+        this.complainRate = complainRate;
+        this.seed = seed;
+        this.firstID = firstID;
+        this.sampler = new ZipfSampler(numPassengers, skew);
+    }
+
+    /**
+     * This method writes a log, stopping after a number of records or a number of bytes,
+     * whichever comes first. The log always ends with a whole line.
+     * @param outStream Where the log is written (it is not closed).
+     * @param numRecords The most records to write.
+     * @param maxBytes The most bytes to write.
+     * @param numThreads The number of threads that make the blocks.
+     * @param progress Where a line of progress is written after every gigabyte, or null for nowhere.
+     * @return The number of records written.
+     * @throws IOException If the log can not be written.
+     */
+    public long write(OutputStream outStream, long numRecords, long maxBytes, int numThreads, PrintStream progress)
+            throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(numThreads, 1)); // Makes the blocks.
+        ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>(); // The blocks being made, in order.
+        long numBlocks = numRecords / BLOCK_RECORDS + (numRecords % BLOCK_RECORDS != 0 ? 1 : 0); // The most blocks.
+        long nextBlock = 0; // The number of the next block to start.
+        long numWritten = 0; // The number of records written so far.
+        long numBytes = 0; // The number of bytes written so far.
+        long nextProgress = PROGRESS_BYTES; // The number of bytes after which progress is shown next.
+
+        try {
+            while (numWritten < numRecords && numBytes < maxBytes) {
+                byte[] block; // The next block of the log.
+                int length; // The number of bytes of the block to write.
+                long numLines; // The number of lines written of the block.
+
+                // Keep two blocks per thread on the way, so the threads never wait for the writer.
+                while (nextBlock < numBlocks && pending.size() < 2 * Math.max(numThreads, 1)) {
+                    long blockNumber = nextBlock++; // The number of the block.
+                    int count = (int) Math.min(BLOCK_RECORDS, numRecords - blockNumber * BLOCK_RECORDS); // Its records.
+
+                    pending.addLast(pool.submit(() -> makeBlock(blockNumber, count)));
+                }
+                if (pending.isEmpty())
+                    break;
+
+                block = pending.removeFirst().get();
+                length = block.length;
+                numLines = Math.min(BLOCK_RECORDS, numRecords - numWritten);
+
+                if (numBytes + length > maxBytes) {
+                    // Only write the whole lines that fit.
+                    length = (int) (maxBytes - numBytes);
+                    while (length > 0 && block[length - 1] != '\n')
+                        length--;
+                    numLines = 0;
+                    for (int i = 0; i < length; i++) {
+                        if (block[i] == '\n')
+                            numLines++;
+                    }
+                }
+                outStream.write(block, 0, length);
+                numWritten += numLines;
+                numBytes += length;
+                if (length < block.length)
+                    break;
+                if (progress != null && numBytes >= nextProgress) {
+                    progress.printf("%,d records (%,d MB) written%n", numWritten, numBytes >> 20);
+                    nextProgress += PROGRESS_BYTES;
+                }
+            }
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing the log", e);
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        return numWritten;
+    }
+
+    /**
+     * This method makes the lines of one block of the log.
+     * @param block The number of the block.
+     * @param count The number of records in the block.
+     * @return The bytes of the block, ending with a new line.
+     */
+    private byte[] makeBlock(long block, int count) {
+        SplittableRandom random = new SplittableRandom(mix(seed ^ mix(block + 1))); // The block's random numbers.
+        byte[] lines = new byte[count * MAX_LINE_LENGTH]; // The lines of the block.
+        int length = 0; // The number of bytes in the block so far.
+
+        for (int i = 0; i < count; i++) {
+            boolean isCancelled; // Whether the flight was cancelled.
+
+            length = formatID(lines, length, firstID + sampler.sample(random));
+            isCancelled = random.nextDouble() < cancelRate;
+            lines[length++] = ' ';
+            lines[length++] = (byte) (isCancelled ? 'Y' : 'N');
+            if (isCancelled) {
+                lines[length++] = ' ';
+                lines[length++] = (byte) (random.nextDouble() < complainRate ? 'Y' : 'N');
+            }
+            lines[length++] = '\n';
+        }
+        return Arrays.copyOf(lines, length);
+    }
+
+    /**
+     * This method writes the digits of an ID into a block.
+     * @param lines The bytes of the block.
+     * @param start The index to write the first digit at.
+     * @param passengerID The ID.
+     * @return The index just after the last digit.
+     */
+    private static int formatID(byte[] lines, int start, long passengerID) {
+        int end = start; // The index just after the last digit.
+
+        for (long rest = passengerID; rest >= 10; rest /= 10)
+            end++;
+        end++;
+        for (int i = end - 1; i >= start; i--) {
+            lines[i] = (byte) ('0' + passengerID % 10);
+            passengerID /= 10;
+        }
+        return end;
+    }
+
+    /**
+     * This method scrambles the bits of a number (the finalizer of MurmurHash3), so that the
+     * random numbers of neighbouring blocks have nothing in common.
+     * @param z The number.
+     * @return The scrambled number.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    /**
+     * This method converts a size like "512M" or "100G" to a number of bytes.
+     * @param size The size, with an optional K, M, G or T suffix (powers of 1024).
+     * @return The number of bytes.
+     * @throws NumberFormatException If the size is not a number.
+     */
+    static long parseSize(String size) {
+        String digits = size.toUpperCase(); // The size without its suffix.
+        int shift = 0; // The power of two of the suffix.
+
+        switch (digits.isEmpty() ? ' ' : digits.charAt(digits.length() - 1)) {
+            case 'K': shift = 10; break;
+            case 'M': shift = 20; break;
+            case 'G': shift = 30; break;
+            case 'T': shift = 40; break;
+            default: break;
+        }
+        if (shift > 0)
+            digits = digits.substring(0, digits.length() - 1);
+        return Long.parseLong(digits) << shift;
+    }
+
+    /**
+     * The main() method writes a log from the command line.
+     * @param args command-line arguments: "--output=FILE" (standard output if left out), "--records=N"
+     *             and/or "--size=BYTES" (like "100G"; at least one must be given), "--passengers=N"
+     *             (100000 by default), "--cancel-rate=R" (0.6), "--complain-rate=R" (0.3), "--skew=S"
+     *             (0 for uniform), "--seed=N" (2336), "--first-id=N" (100), and "--threads=N" (one per processor).
+     * @throws IOException If the log can not be written.
+     */
+    public static void main(String[] args) throws IOException {
+        String outputName = null; // The name of the log, or null for standard output.
+        long numRecords = Long.MAX_VALUE; // The most records to write.
+        long maxBytes = Long.MAX_VALUE; // The most bytes to write.
+        int numPassengers = 100_000; // The number of passengers in the log.
+        double cancelRate = DEFAULT_CANCEL_RATE; // The chance of a flight being cancelled.
+        double complainRate = DEFAULT_COMPLAIN_RATE; // The chance of a complaint about a cancelled flight.
+        double skew = 0; // The Zipf exponent of the passenger IDs.
+        long seed = DEFAULT_SEED; // The seed of the random numbers.
+        long firstID = DEFAULT_FIRST_ID; // The ID of the most frequent passenger.
+        int numThreads = Runtime.getRuntime().availableProcessors(); // The number of threads that make the blocks.
+        FlightLogGenerator generator; // Writes the log.
+        long startTime = System.nanoTime(); // The time the log was started.
+        long numWritten; // The number of records written.
+
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1); // The value of the option.
+
+            if (arg.startsWith("--output="))
+                outputName = value;
+            else if (arg.startsWith("--records="))
+                numRecords = Long.parseLong(value);
+            else if (arg.startsWith("--size="))
+                maxBytes = parseSize(value);
+            else if (arg.startsWith("--passengers="))
+                numPassengers = Integer.parseInt(value);
+            else if (arg.startsWith("--cancel-rate="))
+                cancelRate = Double.parseDouble(value);
+            else if (arg.startsWith("--complain-rate="))
+                complainRate = Double.parseDouble(value);
+            else if (arg.startsWith("--skew="))
+                skew = Double.parseDouble(value);
+            else if (arg.startsWith("--seed="))
+                seed = Long.parseLong(value);
+            else if (arg.startsWith("--first-id="))
+                firstID = Long.parseLong(value);
+            else if (arg.startsWith("--threads="))
+                numThreads = Integer.parseInt(value);
+            else {
+                System.err.println("Unknown option " + arg);
+                System.exit(2);
+            }
+        }
+        if (numRecords == Long.MAX_VALUE && maxBytes == Long.MAX_VALUE) {
+            System.err.println("Usage: java FlightLogGenerator --records=N | --size=BYTES [--output=FILE]"
+                    + " [--passengers=N] [--cancel-rate=R] [--complain-rate=R] [--skew=S] [--seed=N]"
+                    + " [--first-id=N] [--threads=N]");
+            System.exit(2);
+        }
+
+        generator = new FlightLogGenerator(numPassengers, cancelRate, complainRate, skew, seed, firstID);
+        if (outputName == null) {
+            numWritten = generator.write(System.out, numRecords, maxBytes, numThreads, null);
+            System.out.flush();
+        }
+        else {
+            try (OutputStream outStream = new FileOutputStream(outputName)) {
+                numWritten = generator.write(outStream, numRecords, maxBytes, numThreads, System.err);
+            }
+        }
+        System.err.printf("Wrote %,d records in %.1f s.%n", numWritten, (System.nanoTime() - startTime) / 1e9);
+    }
+}
@@ -0,0 +1,14 @@
+/**
+ * This interface represents anything that consumes the flight records read from an input
+ * file. Every record is passed in as primitive values, so that readers do not have to
+ * create any objects for a line in the file.
+ */
+public interface FlightRecordHandler {
+    /**
+     * This method processes a single flight record (one line in the input file).
+     * @param passengerID The look-up ID of the Passenger the flight belongs to.
+     * @param isCancelled Flag indicating whether the flight was cancelled.
+     * @param hasComplain Flag indicating whether the Passenger complained about the cancelled flight.
+     */
+    public void addRecord(long passengerID, boolean isCancelled, boolean hasComplain);
+}
@@ -1,14 +1,32 @@
 /**
  * This class represents a Tier for every Passenger that
- * has had between 25 and 49 of their flights cancelled (inclusive).
+ * has had between 25 and 49 of their flights cancelled (inclusive, under the default TierRules).
  */
 public class Gold implements Tier {
-    private final int MILES_PER_FLIGHT = 1000; // Number of miles per cancelled flight.
-    private int numCancFlights = 25; // Number of flights the passenger was supposed to take but were cancelled.
+    private final int MILES_PER_FLIGHT = TierTable.getMilesPerFlight(TierTable.GOLD); // Number of miles per cancelled flight.
+    private int numCancFlights = TierTable.getUpgradeAt(TierTable.NO_TIER); // Number of flights the passenger was supposed to take but were cancelled.
     private int miles = numCancFlights * MILES_PER_FLIGHT; // The total number of miles the Passenger
                                                             // earned based on the cancelled flights.
     private int numFlights; // The total number of flights a Passenger has taken, or was supposed to take.
 
+    /**
+     * This constructor creates the Tier a Passenger starts with (or is upgraded to).
+     */
+    public Gold() {
+    }
+
+    /**
+     * This constructor sets the number of flights, cancelled flights, and miles that a
+     * Passenger accumulated, when the Tier is rebuilt from totals counted elsewhere.
+     * @param numCancFlights Number of flights the passenger was supposed to take but were cancelled.
+     * @param numFlights The total number of flights a Passenger has taken.
+     */
+    public Gold(int numCancFlights, int numFlights) {
+        this.numCancFlights = numCancFlights;
+        this.numFlights = numFlights;
+        this.miles = numCancFlights * MILES_PER_FLIGHT;
+    }
+
     /**
      * This method returns the miles earned so far.
      * @return The total number of miles the Passenger earned based on the cancelled flights.
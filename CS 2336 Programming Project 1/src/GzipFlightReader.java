@@ -0,0 +1,82 @@
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * This class reads a gzip-compressed flight data file (like "flight-data.txt.gz"). A compressed
+ * file can not be mapped, so it is decompressed as a stream into a buffer, and the complete
+ * lines in the buffer are parsed with FlightLineParser while a line cut off at the end of the
+ * buffer is moved to its start. The file is never decompressed to disk or held in memory whole.
+ */
+public class GzipFlightReader {
+    private static final int BUFFER_SIZE = 1 << 20; // The number of decompressed bytes parsed at a time.
+
+    /**
+     * This method checks whether a file is gzip-compressed, from its name.
+     * @param fileName The name of the input file.
+     * @return Flag indicating whether the file name ends with ".gz".
+     */
+    public static boolean isCompressed(String fileName) {
+        return fileName.endsWith(".gz");
+    }
+
+    /**
+     * This method reads every flight record in a compressed file and passes it on to the handler.
+     * @param fileName The name of the compressed input file.
+     * @param handler The object that processes each flight record.
+     * @param rejects The file malformed lines are quarantined to, or null to pass them on.
+     * @return The number of flight records read.
+     * @throws IOException If the file can not be read or decompressed, or a line can not be rejected.
+     */
+    public static long read(String fileName, FlightRecordHandler handler, RejectFile rejects) throws IOException {
+        try (InputStream inStream = new GZIPInputStream(new FileInputStream(fileName), 1 << 16)) {
+            return read(inStream, handler, rejects);
+        }
+    }
+
+    /**
+     * This method reads every flight record from a stream of decompressed flight data.
+     * @param inStream The decompressed flight data.
+     * @param handler The object that processes each flight record.
+     * @param rejects The file malformed lines are quarantined to, or null to pass them on.
+     * @return The number of flight records read.
+     * @throws IOException If the stream can not be read, or a line can not be rejected.
+     */
+    public static long read(InputStream inStream, FlightRecordHandler handler, RejectFile rejects)
+            throws IOException {
+        FlightLineParser parser = new FlightLineParser(); // Parses the lines read.
+        byte[] bytes = new byte[BUFFER_SIZE]; // The bytes read but not yet parsed.
+        ByteBuffer buffer = ByteBuffer.wrap(bytes); // The same bytes, for the parser.
+        int length = 0; // The number of bytes in the buffer.
+        long offset = 0; // The offset in the decompressed data of the start of the buffer.
+
+        parser.setRejects(rejects);
+        try {
+            while (true) {
+                int numRead = inStream.read(bytes, length, bytes.length - length); // The bytes read, or -1.
+                int numParsed; // The number of bytes parsed.
+
+                if (numRead < 0) {
+                    // The last line does not need a new line once the input is over.
+                    parser.parse(buffer, 0, length, true, handler);
+                    return parser.getNumRecords();
+                }
+                length += numRead;
+                if (length < bytes.length)
+                    continue;
+                numParsed = parser.parse(buffer, 0, length, false, handler);
+                if (numParsed == 0)
+                    throw new IOException("Line at offset " + offset + " is longer than " + BUFFER_SIZE + " bytes.");
+                System.arraycopy(bytes, numParsed, bytes, 0, length - numParsed);
+                length -= numParsed;
+                offset += numParsed;
+            }
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
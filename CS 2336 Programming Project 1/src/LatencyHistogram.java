@@ -0,0 +1,113 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class counts how long something took, in nanoseconds, in buckets whose width grows
+ * with the value (like an HDR histogram): every power of two is split into 32 buckets, so a
+ * percentile is off by at most about 3% while a time from 1 ns up to centuries fits in a
+ * fixed array. Many threads can record into the same histogram without locking.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 5; // The number of bits of a value kept within a power of two.
+    private static final int SUB_COUNT = 1 << SUB_BITS; // The number of buckets per power of two.
+    private static final int NUM_BUCKETS = (64 - SUB_BITS) * SUB_COUNT; // The number of buckets.
+    private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS); // The count of each bucket.
+    private final AtomicLong count = new AtomicLong(); // The number of values recorded.
+    private final AtomicLong total = new AtomicLong(); // The sum of the values recorded.
+    private final AtomicLong max = new AtomicLong(); // The largest value recorded.
+
+    /**
+     * This method records one value.
+     * @param nanos The time taken, in nanoseconds (a negative time is recorded as 0).
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0); // The value to record.
+
+        buckets.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        total.addAndGet(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * This method returns the number of values recorded.
+     * @return The number of values.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * This method returns the sum of the values recorded.
+     * @return The total time, in nanoseconds.
+     */
+    public long getTotal() {
+        return total.get();
+    }
+
+    /**
+     * This method returns the largest value recorded.
+     * @return The longest time, in nanoseconds.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * This method returns a percentile of the values recorded, as the largest value that
+     * falls into the same bucket as the percentile.
+     * @param percentile The percentile, from 0 to 100.
+     * @return The time at the percentile, in nanoseconds, or 0 if nothing was recorded.
+     */
+    public long getPercentile(double percentile) {
+        long numValues = count.get(); // The number of values, read once since it may change.
+        long rank = (long) Math.ceil(numValues * percentile / 100); // The number of values at or below the percentile.
+        long seen = 0; // The number of values in the buckets walked so far.
+
+        if (numValues == 0)
+            return 0;
+        for (int bucket = 0; bucket < NUM_BUCKETS; bucket++) {
+            seen += buckets.get(bucket);
+            if (seen >= Math.max(rank, 1))
+                return Math.min(highestValueOf(bucket), max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * This method returns a one-line summary of the histogram, with the times in microseconds.
+     * @return The count, mean, median, 99th percentile, and largest value.
+     */
+    @Override
+    public String toString() {
+        long numValues = count.get(); // The number of values, read once since it may change.
+
+        return String.format("count=%d mean=%.1fus p50=%.1fus p99=%.1fus max=%.1fus", numValues,
+                numValues == 0 ? 0.0 : total.get() / 1e3 / numValues, getPercentile(50) / 1e3,
+                getPercentile(99) / 1e3, max.get() / 1e3);
+    }
+
+    /**
+     * This method returns the bucket a value is counted in.
+     * @param value The value, at least 0.
+     * @return The index of the bucket.
+     */
+    private static int bucketOf(long value) {
+        // Values below 2 * SUB_COUNT get a bucket each, and larger values drop their lowest bits.
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BITS); // The bits dropped.
+
+        return shift * SUB_COUNT + (int) (value >>> shift);
+    }
+
+    /**
+     * This method returns the largest value counted in a bucket.
+     * @param bucket The index of the bucket.
+     * @return The largest value of the bucket.
+     */
+    private static long highestValueOf(int bucket) {
+        int shift = Math.max(0, bucket / SUB_COUNT - 1); // The bits dropped from the bucket's values.
+        long lowest = (long) (bucket - shift * SUB_COUNT) << shift; // The smallest value of the bucket.
+
+        return lowest + (1L << shift) - 1;
+    }
+}
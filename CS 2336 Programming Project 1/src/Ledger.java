@@ -0,0 +1,94 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This class represents the records of one program year (for example, one airline's year of
+ * flight data). It owns the store of its Passengers and knows whether its year is over, so
+ * that several years can be kept in one program without sharing any state: the next year can
+ * be read while the year before it is still being finished, and each one answers look-ups on
+ * its own.
+ */
+public class Ledger {
+    private final String name; // The name of the year, like the name of its input file.
+    private final PassengerStore passengerInfo; // The records of all Passengers in the year.
+    private volatile boolean isEndOfYear = false; // Flag for indicating whether the year is over.
+    private volatile YearEndReport yearEndReport = null; // The upgrades made at the end of the year.
+
+    /**
+     * This constructor creates the ledger of a year that has not ended yet.
+     * @param name The name of the year, like the name of its input file.
+     * @param passengerInfo The store for the records of all Passengers in the year.
+     */
+    public Ledger(String name, PassengerStore passengerInfo) {
+        this.name = name;
+        this.passengerInfo = passengerInfo;
+    }
+
+    /**
+     * This method returns the name of the year.
+     * @return The name of the year.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * This method returns the records of all Passengers in the year.
+     * @return The store of the year's Passengers.
+     */
+    public PassengerStore getPassengers() {
+        return this.passengerInfo;
+    }
+
+    /**
+     * This method returns whether the year is over, and the mileage multipliers have been decided.
+     * @return Flag for indicating whether the year is over.
+     */
+    public boolean isEndOfYear() {
+        return this.isEndOfYear;
+    }
+
+    /**
+     * This method returns the upgrades made at the end of the year.
+     * @return The number of Passengers upgraded out of each Tier, or null if the year is not over,
+     *         or the store could not count them.
+     */
+    public YearEndReport getYearEndReport() {
+        return this.yearEndReport;
+    }
+
+    /**
+     * This method ends the year: it determines which Passengers have the mileage multiplier
+     * and upgrades them to the special sub-tiers. A store kept in slots is finished on all
+     * processors. Ending a year more than once has no effect. The time taken, and the number
+     * of Passengers upgraded out of each Tier, are added to the Metrics.
+     */
+    public synchronized void finishYear() {
+        long startTime = System.nanoTime(); // The time the year-end pass started.
+
+        if (isEndOfYear)
+            return;
+        if (passengerInfo instanceof SlottedStore)
+            yearEndReport = YearEndFinalizer.finish((SlottedStore) passengerInfo, ForkJoinPool.commonPool());
+        else
+            passengerInfo.finishYear();
+        isEndOfYear = true;
+        Metrics.recordTime("yearEnd", startTime);
+        for (int tier = 0; yearEndReport != null && tier < TierTable.NUM_TIERS; tier++)
+            Metrics.add("yearEnd.promotions." + TierTable.getName(tier), yearEndReport.getPromotions(tier));
+    }
+
+    /**
+     * This method ends the year on another thread, so the program can go on (for example,
+     * by reading the next year) while the year-end pass runs.
+     * @param executor The executor that runs the year-end pass.
+     * @return A future that completes with this ledger once its year is over.
+     */
+    public CompletableFuture<Ledger> finishYearAsync(Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            finishYear();
+            return this;
+        }, executor);
+    }
+}
@@ -0,0 +1,53 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * This class keeps the ledgers of every program year held by the program, by name. Threads can
+ * open, look up, and drop ledgers at the same time, so one long-running program can keep serving
+ * earlier years while later ones are read.
+ */
+public class LedgerBook {
+    private final ConcurrentHashMap<String, Ledger> ledgers = new ConcurrentHashMap<>(); // The ledgers by name.
+
+    /**
+     * This method returns the ledger with the given name, creating it with an empty store if there is none.
+     * @param name The name of the year.
+     * @param storeFactory Creates the store of a new ledger.
+     * @return The ledger with the given name.
+     */
+    public Ledger open(String name, Supplier<PassengerStore> storeFactory) {
+        return ledgers.computeIfAbsent(name, key -> new Ledger(key, storeFactory.get()));
+    }
+
+    /**
+     * This method returns the ledger with the given name.
+     * @param name The name of the year.
+     * @return The ledger, or null if there is no ledger with the name.
+     */
+    public Ledger get(String name) {
+        return ledgers.get(name);
+    }
+
+    /**
+     * This method drops the ledger with the given name, so that its records can be freed.
+     * @param name The name of the year.
+     * @return The dropped ledger, or null if there was no ledger with the name.
+     */
+    public Ledger remove(String name) {
+        return ledgers.remove(name);
+    }
+
+    /**
+     * This method returns the names of all ledgers, in alphabetical order.
+     * @return The names of the ledgers.
+     */
+    public List<String> getNames() {
+        List<String> names = new ArrayList<>(ledgers.keySet()); // The names of the ledgers.
+
+        Collections.sort(names);
+        return names;
+    }
+}
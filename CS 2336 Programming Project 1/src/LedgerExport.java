@@ -0,0 +1,300 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class writes every member of a finished year to a file in order of their IDs, for jobs
+ * that need the whole member list instead of looking members up one at a time. Each line holds
+ * the ID, the name of the Tier as shown to the user, the flights, the cancelled flights, the miles,
+ * and whether the member has the mileage multiplier ("Y" or "N"). A file whose name ends in ".csv"
+ * gets comma-separated values after a header line; any other file gets fixed-width lines without
+ * a header, so the line of the n-th member starts at byte n times the line width.
+ *
+ * The IDs are sorted with Arrays.parallelSort(), and the sorted members are split into segments
+ * of 65,536 members. The segments are written in waves of one segment per thread: every thread
+ * formats its segment into its own buffer, the start of each segment in the file follows from the
+ * lengths of the segments before it, and every thread then writes its buffer at its own position
+ * in the file. The IDs of a store are unique, so the file is the same, byte for byte, whatever the
+ * number of threads and whichever thread writes which segment.
+ */
+public class LedgerExport {
+    public static final String CSV_HEADER = "id,tier,flights,cancelled,miles,multiplier\n"; // The first line of a CSV file.
+    private static final int SEGMENT_ROWS = 1 << 16; // The number of members in a segment.
+    private static final int ID_WIDTH = 19; // The width of the ID in a fixed-width line.
+    private static final int COUNT_WIDTH = 10; // The width of the flights, the cancelled flights, and the miles.
+    private final PassengerStore passengerInfo; // The members to write.
+    private final String fileName; // The name of the file to write.
+    private final boolean isCSV; // Flag indicating whether the lines are comma-separated rather than fixed-width.
+    private final int numThreads; // The number of threads that format and write the segments.
+    private final byte[][] tierNames; // The name of each Tier as written (padded in a fixed-width line).
+    private final int lineWidth; // The length of a fixed-width line, or the longest a CSV line can be, including its new line.
+
+    /**
+     * This constructor prepares the export of a store.
+     * @param passengerInfo The members to write, whose year is over.
+     * @param fileName The name of the file (ending in ".csv" for comma-separated values).
+     * @param numThreads The number of threads that format and write the segments.
+     */
+    public LedgerExport(PassengerStore passengerInfo, String fileName, int numThreads) {
+        int nameWidth = 0; // The bytes of the longest Tier name as written.
+
+        this.passengerInfo = passengerInfo;
+        this.fileName = fileName;
+        this.isCSV = fileName.endsWith(".csv");
+        this.numThreads = Math.max(1, numThreads);
+        this.tierNames = new byte[TierTable.NUM_TIERS][];
+        for (int tier = 0; tier < TierTable.NUM_TIERS; tier++) {
+            String name = TierTable.getDisplayName(tier); // The name of the Tier as shown to the user.
+
+            if (isCSV && (name.indexOf(',') >= 0 || name.indexOf('"') >= 0))
+                name = '"' + name.replace("\"", "\"\"") + '"';
+            tierNames[tier] = name.getBytes(StandardCharsets.UTF_8);
+            nameWidth = Math.max(nameWidth, tierNames[tier].length);
+        }
+        // A fixed-width line pads every name to the longest one, counted in bytes rather than characters.
+        for (int tier = 0; !isCSV && tier < TierTable.NUM_TIERS; tier++) {
+            byte[] padded = Arrays.copyOf(tierNames[tier], nameWidth); // The name, padded with spaces.
+
+            Arrays.fill(padded, tierNames[tier].length, nameWidth, (byte) ' ');
+            tierNames[tier] = padded;
+        }
+        // The longest name and the widest numbers give the longest line, which sizes the buffer of a segment.
+        this.lineWidth = ID_WIDTH + 1 + nameWidth + 3 * (1 + COUNT_WIDTH) + 2 + 1;
+    }
+
+    /**
+     * This method writes every member to the file, replacing the file if it exists.
+     * @return The number of members written.
+     * @throws IOException If the file can not be written.
+     */
+    public long write() throws IOException {
+        long[] ids = passengerInfo.getIDs(); // The IDs of the members, sorted.
+        int numSegments; // The number of segments.
+        long position = 0; // The position in the file of the next segment.
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads); // The threads that write the segments.
+
+        Arrays.parallelSort(ids);
+        numSegments = (ids.length + SEGMENT_ROWS - 1) / SEGMENT_ROWS;
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (isCSV)
+                position = writeFully(channel, ByteBuffer.wrap(CSV_HEADER.getBytes(StandardCharsets.UTF_8)), 0);
+            for (int first = 0; first < numSegments; first += numThreads) {
+                List<Future<ByteBuffer>> formatted = new ArrayList<>(); // The segments of the wave, formatted.
+                List<Future<Integer>> written = new ArrayList<>(); // The segments of the wave, being written.
+
+                for (int segment = first; segment < Math.min(first + numThreads, numSegments); segment++) {
+                    int from = segment * SEGMENT_ROWS; // The first member of the segment.
+                    int to = Math.min(from + SEGMENT_ROWS, ids.length); // The member just after the segment.
+
+                    formatted.add(pool.submit(() -> format(ids, from, to)));
+                }
+                for (Future<ByteBuffer> segment : formatted) {
+                    ByteBuffer buffer = get(segment); // The formatted segment.
+                    long start = position; // The position of the segment in the file.
+
+                    position += buffer.remaining();
+                    written.add(pool.submit(() -> writeFully(channel, buffer, start)));
+                }
+                for (Future<Integer> segment : written)
+                    get(segment);
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+        return ids.length;
+    }
+
+    /**
+     * This method returns the length of a fixed-width line, which is also the longest a CSV line can be.
+     * @return The number of bytes of each fixed-width line, including its new line.
+     */
+    public int getLineWidth() {
+        return this.lineWidth;
+    }
+
+    /**
+     * This method formats the lines of a segment. The members are looked up first, in a loop of
+     * their own, and only then formatted: the look-ups of members in order of ID land all over the
+     * store, and a loop that does nothing but look up lets the processor wait for many of them at once.
+     * @param ids The sorted IDs of the members.
+     * @param from The first member of the segment.
+     * @param to The member just after the segment.
+     * @return The lines, ready to be written.
+     */
+    private ByteBuffer format(long[] ids, int from, int to) {
+        byte[] bytes = new byte[(to - from) * lineWidth]; // The lines (no line is longer than lineWidth).
+        int length = 0; // The number of bytes formatted so far.
+        int[] tiers = new int[to - from]; // The ordinal of each member's Tier, with 1 << 8 added for the multiplier.
+        int[] flights = new int[to - from]; // The flights of each member.
+        int[] cancelled = new int[to - from]; // The cancelled flights of each member.
+        int[] miles = new int[to - from]; // The miles of each member.
+
+        for (int row = from; row < to; row++) {
+            long passengerID = ids[row]; // The member of the line.
+
+            tiers[row - from] = passengerInfo.getTierOrdinal(passengerID)
+                    | (passengerInfo.hasMultiplier(passengerID) ? 1 << 8 : 0);
+            flights[row - from] = passengerInfo.getFlights(passengerID);
+            cancelled[row - from] = passengerInfo.getCancelledFlights(passengerID);
+            miles[row - from] = passengerInfo.getMiles(passengerID);
+        }
+        for (int row = from; row < to; row++) {
+            long passengerID = ids[row]; // The member of the line.
+            int tier = tiers[row - from] & 0xFF; // The ordinal of the member's Tier.
+
+            if (isCSV) {
+                length = putNumber(bytes, length, passengerID);
+                bytes[length++] = ',';
+                System.arraycopy(tierNames[tier], 0, bytes, length, tierNames[tier].length);
+                length += tierNames[tier].length;
+                bytes[length++] = ',';
+                length = putNumber(bytes, length, flights[row - from]);
+                bytes[length++] = ',';
+                length = putNumber(bytes, length, cancelled[row - from]);
+                bytes[length++] = ',';
+                length = putNumber(bytes, length, miles[row - from]);
+                bytes[length++] = ',';
+            }
+            else {
+                length = putPadded(bytes, length, passengerID, ID_WIDTH);
+                bytes[length++] = ' ';
+                System.arraycopy(tierNames[tier], 0, bytes, length, tierNames[tier].length);
+                length += tierNames[tier].length;
+                bytes[length++] = ' ';
+                length = putPadded(bytes, length, flights[row - from], COUNT_WIDTH);
+                bytes[length++] = ' ';
+                length = putPadded(bytes, length, cancelled[row - from], COUNT_WIDTH);
+                bytes[length++] = ' ';
+                length = putPadded(bytes, length, miles[row - from], COUNT_WIDTH);
+                bytes[length++] = ' ';
+            }
+            bytes[length++] = (byte) (tiers[row - from] >> 8 != 0 ? 'Y' : 'N');
+            bytes[length++] = '\n';
+        }
+        return ByteBuffer.wrap(bytes, 0, length);
+    }
+
+    /**
+     * This method writes the digits of a number that is not negative.
+     * @param bytes The bytes to write to.
+     * @param i The index to write the first digit at.
+     * @param value The number.
+     * @return The index just after the last digit.
+     */
+    private static int putNumber(byte[] bytes, int i, long value) {
+        int end = i + numDigits(value); // The index just after the last digit.
+
+        putDigits(bytes, end, value);
+        return end;
+    }
+
+    /**
+     * This method writes the digits of a number that is not negative, with spaces before them to fill a width.
+     * @param bytes The bytes to write to.
+     * @param i The index to write the first byte at.
+     * @param value The number.
+     * @param width The number of bytes to fill (at least the number of digits).
+     * @return The index just after the last digit.
+     */
+    private static int putPadded(byte[] bytes, int i, long value, int width) {
+        int end = i + width; // The index just after the last digit.
+
+        Arrays.fill(bytes, i, putDigits(bytes, end, value), (byte) ' ');
+        return end;
+    }
+
+    /**
+     * This method writes the digits of a number that is not negative, from the last one back, so
+     * the number does not have to be measured first. Most numbers fit in an int, whose digits are
+     * quicker to work out than a long's.
+     * @param bytes The bytes to write to.
+     * @param end The index just after the last digit.
+     * @param value The number.
+     * @return The index of the first digit.
+     */
+    private static int putDigits(byte[] bytes, int end, long value) {
+        int i = end; // The index of the digit written last.
+        int rest; // The digits not written yet, once they fit in an int.
+
+        while (value > Integer.MAX_VALUE) {
+            long quotient = value / 10; // The number without its last digit.
+
+            bytes[--i] = (byte) ('0' + (value - quotient * 10));
+            value = quotient;
+        }
+        rest = (int) value;
+        do {
+            int quotient = rest / 10; // The number without its last digit.
+
+            bytes[--i] = (byte) ('0' + (rest - quotient * 10));
+            rest = quotient;
+        } while (rest != 0);
+        return i;
+    }
+
+    /**
+     * This method counts the digits of a number that is not negative.
+     * @param value The number.
+     * @return The number of digits (1 for 0).
+     */
+    private static int numDigits(long value) {
+        int numDigits = 1; // The number of digits counted so far.
+
+        while (value >= 10) {
+            value /= 10;
+            numDigits++;
+        }
+        return numDigits;
+    }
+
+    /**
+     * This method writes all of a buffer at a position of a file. Many threads can write to
+     * different positions of the same channel at once.
+     * @param channel The file.
+     * @param buffer The bytes to write.
+     * @param position The position in the file of the first byte.
+     * @return The number of bytes written.
+     * @throws IOException If the bytes can not be written.
+     */
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int numBytes = buffer.remaining(); // The number of bytes to write.
+
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+        return numBytes;
+    }
+
+    /**
+     * This method waits for the work on a segment to finish.
+     * @param segment The work on the segment.
+     * @param <T> The result of the work.
+     * @return The result.
+     * @throws IOException If the segment could not be written.
+     */
+    private static <T> T get(Future<T> segment) throws IOException {
+        try {
+            return segment.get();
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing the members", e);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32C;
+
+/**
+ * This class identifies how far a flight log was read, so that a checkpoint is only resumed on
+ * the log it was taken from. It holds the offset reached, the size and modification time of the
+ * log, and a CRC-32C checksum of the first 64 KB of the log and of the 64 KB just before the
+ * offset. Another log, or the same log after it was changed, is all but certain to differ in one
+ * of them, without reading the whole log again.
+ */
+public class LogFingerprint {
+    public static final int SAMPLE_BYTES = 64 << 10; // The number of bytes checked at each end.
+    public static final LogFingerprint NONE = new LogFingerprint(0, 0, 0, 0); // Marks a snapshot not taken from a log.
+    private final long position; // The offset in the log just after the last record counted.
+    private final long size; // The number of bytes in the log.
+    private final long lastModified; // The time the log was last modified, in milliseconds.
+    private final long checksum; // The checksum of the first bytes of the log and of the bytes before the offset.
+
+    /**
+     * This constructor creates a fingerprint from its parts (as read back from a snapshot).
+     * @param position The offset in the log just after the last record counted.
+     * @param size The number of bytes in the log.
+     * @param lastModified The time the log was last modified, in milliseconds.
+     * @param checksum The checksum of the first bytes of the log and of the bytes before the offset.
+     */
+    public LogFingerprint(long position, long size, long lastModified, long checksum) {
+        this.position = position;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.checksum = checksum;
+    }
+
+    /**
+     * This method takes the fingerprint of a log at an offset.
+     * @param channel The opened flight log.
+     * @param path The path of the flight log.
+     * @param position The offset in the log just after the last record counted.
+     * @return The fingerprint of the log at the offset.
+     * @throws IOException If the log can not be read.
+     */
+    public static LogFingerprint of(FileChannel channel, Path path, long position) throws IOException {
+        CRC32C checksum = new CRC32C(); // The checksum of the bytes sampled.
+        long size = channel.size(); // The number of bytes in the log.
+
+        update(checksum, channel, 0, Math.min(position, SAMPLE_BYTES));
+        update(checksum, channel, Math.max(0, position - SAMPLE_BYTES), Math.min(position, SAMPLE_BYTES));
+        return new LogFingerprint(position, size, Files.getLastModifiedTime(path).toMillis(), checksum.getValue());
+    }
+
+    /**
+     * This method returns the offset in the log just after the last record counted.
+     * @return The offset reached in the log.
+     */
+    public long getPosition() {
+        return this.position;
+    }
+
+    /**
+     * This method returns the size the log had.
+     * @return The number of bytes in the log.
+     */
+    public long getSize() {
+        return this.size;
+    }
+
+    /**
+     * This method returns the time the log was last modified.
+     * @return The time in milliseconds since the epoch.
+     */
+    public long getLastModified() {
+        return this.lastModified;
+    }
+
+    /**
+     * This method returns the checksum of the first bytes of the log and of the bytes before the offset.
+     * @return The CRC-32C checksum.
+     */
+    public long getChecksum() {
+        return this.checksum;
+    }
+
+    /**
+     * This method checks whether two fingerprints are of the same log at the same offset.
+     * @param other The other object.
+     * @return Flag indicating whether every part of the fingerprints is the same.
+     */
+    @Override
+    public boolean equals(Object other) {
+        LogFingerprint that; // The other fingerprint.
+
+        if (!(other instanceof LogFingerprint))
+            return false;
+        that = (LogFingerprint) other;
+        return position == that.position && size == that.size && lastModified == that.lastModified
+                && checksum == that.checksum;
+    }
+
+    /**
+     * This method returns a hash code consistent with equals().
+     * @return The hash code of the fingerprint.
+     */
+    @Override
+    public int hashCode() {
+        return Long.hashCode(position * 31 + checksum);
+    }
+
+    /**
+     * This method adds bytes of the log to a checksum.
+     * @param checksum The checksum.
+     * @param channel The opened flight log.
+     * @param from The offset of the first byte.
+     * @param numBytes The number of bytes.
+     * @throws IOException If the log can not be read, or ends before the bytes.
+     */
+    private static void update(CRC32C checksum, FileChannel channel, long from, long numBytes) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate((int) numBytes); // The bytes read.
+
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes, from + bytes.position()) < 0)
+                throw new IOException("The log ends before offset " + (from + numBytes) + ".");
+        }
+        bytes.flip();
+        checksum.update(bytes);
+    }
+}
@@ -0,0 +1,195 @@
+/**
+ * This class looks up many Passengers at once. The IDs of a batch are added first, then the
+ * whole batch is resolved against a store, and the results are kept in one array per field
+ * so they can be read or written out together. A batch can be cleared and reused, so looking
+ * up a steady stream of IDs creates no objects once the arrays are large enough.
+ */
+public class LookupBatch {
+    private long[] ids; // The look-up ID of each entry.
+    private boolean[] isFound; // Whether each entry's Passenger exists.
+    private byte[] tiers; // The Tier ordinal of each entry's Passenger.
+    private int[] flights; // The number of flights of each entry's Passenger.
+    private int[] cancelled; // The number of cancelled flights of each entry's Passenger.
+    private int[] miles; // The miles earned by each entry's Passenger.
+    private boolean[] multipliers; // Whether each entry's Passenger has the mileage multiplier.
+    private int size = 0; // The number of entries in the batch.
+
+    /**
+     * This constructor creates an empty batch.
+     * @param capacity The number of entries the batch holds before it has to grow.
+     */
+    public LookupBatch(int capacity) {
+        allocate(Math.max(capacity, 1));
+    }
+
+    /**
+     * This method removes every entry, so the batch can be reused.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * This method adds an ID to the batch.
+     * @param passengerID The look-up ID of the Passenger (-1 for an ID that is not valid).
+     */
+    public void add(long passengerID) {
+        if (size == ids.length)
+            grow();
+        ids[size++] = passengerID;
+    }
+
+    /**
+     * This method returns the number of entries in the batch.
+     * @return The number of entries.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * This method looks up every entry of the batch in a store.
+     * @param passengerInfo The store to look the Passengers up in.
+     */
+    public void resolve(PassengerStore passengerInfo) {
+        for (int i = 0; i < size; i++) {
+            long passengerID = ids[i]; // The look-up ID of the entry.
+
+            isFound[i] = passengerID >= 0 && passengerInfo.contains(passengerID);
+            if (!isFound[i])
+                continue;
+            tiers[i] = (byte) passengerInfo.getTierOrdinal(passengerID);
+            flights[i] = passengerInfo.getFlights(passengerID);
+            cancelled[i] = passengerInfo.getCancelledFlights(passengerID);
+            miles[i] = passengerInfo.getMiles(passengerID);
+            multipliers[i] = passengerInfo.hasMultiplier(passengerID);
+        }
+    }
+
+    /**
+     * This method returns the look-up ID of an entry.
+     * @param i The index of the entry.
+     * @return The look-up ID.
+     */
+    public long getID(int i) {
+        return ids[i];
+    }
+
+    /**
+     * This method returns whether an entry's Passenger exists.
+     * @param i The index of the entry.
+     * @return Flag indicating whether the Passenger was found.
+     */
+    public boolean isFound(int i) {
+        return isFound[i];
+    }
+
+    /**
+     * This method returns the Tier of an entry's Passenger.
+     * @param i The index of the entry.
+     * @return The TierTable ordinal of the Passenger's Tier.
+     */
+    public int getTierOrdinal(int i) {
+        return tiers[i];
+    }
+
+    /**
+     * This method returns the number of flights of an entry's Passenger.
+     * @param i The index of the entry.
+     * @return The total number of flights a Passenger has taken, or was supposed to take.
+     */
+    public int getFlights(int i) {
+        return flights[i];
+    }
+
+    /**
+     * This method returns the number of cancelled flights of an entry's Passenger.
+     * @param i The index of the entry.
+     * @return Number of flights the passenger was supposed to take but were cancelled.
+     */
+    public int getCancelledFlights(int i) {
+        return cancelled[i];
+    }
+
+    /**
+     * This method returns the miles earned by an entry's Passenger.
+     * @param i The index of the entry.
+     * @return The total number of miles the Passenger earned based on the cancelled flights.
+     */
+    public int getMiles(int i) {
+        return miles[i];
+    }
+
+    /**
+     * This method returns whether an entry's Passenger has the mileage multiplier.
+     * @param i The index of the entry.
+     * @return Flag for indicating whether a passenger has the mileage multiplier.
+     */
+    public boolean hasMultiplier(int i) {
+        return multipliers[i];
+    }
+
+    /**
+     * This method writes an entry the way the interactive look-up shows a Passenger.
+     * @param out The text to append to.
+     * @param i The index of the entry.
+     */
+    public void appendSummary(StringBuilder out, int i) {
+        if (!isFound[i]) {
+            out.append("Passenger not found.\n\n");
+            return;
+        }
+        out.append("Rewards tier: ").append(TierTable.getDisplayName(tiers[i])).append('\n');
+        out.append("Total flights: ").append(flights[i]).append('\n');
+        out.append("Total cancelled flights: ").append(cancelled[i]).append('\n');
+        out.append("Total miles accumulated: ").append(miles[i]).append('\n');
+        if (multipliers[i])
+            out.append("This passenger earned the mileage multiplier\n\n");
+        else
+            out.append("This passenger did not earn the mileage multiplier\n\n");
+    }
+
+    /**
+     * This method writes the result of an entry as the rest of a tab-separated line (after the
+     * ID): either "NOT_FOUND", or the Tier, flights, cancelled flights, miles, and "Y" or "N"
+     * for the mileage multiplier.
+     * @param out The text to append to.
+     * @param i The index of the entry.
+     */
+    public void appendRow(StringBuilder out, int i) {
+        out.append('\t');
+        if (!isFound[i]) {
+            out.append("NOT_FOUND\n");
+            return;
+        }
+        out.append(TierTable.getDisplayName(tiers[i])).append('\t')
+                .append(flights[i]).append('\t')
+                .append(cancelled[i]).append('\t')
+                .append(miles[i]).append('\t')
+                .append(multipliers[i] ? 'Y' : 'N').append('\n');
+    }
+
+    /**
+     * This method creates empty arrays for the given number of entries.
+     * @param capacity The number of entries.
+     */
+    private void allocate(int capacity) {
+        ids = new long[capacity];
+        isFound = new boolean[capacity];
+        tiers = new byte[capacity];
+        flights = new int[capacity];
+        cancelled = new int[capacity];
+        miles = new int[capacity];
+        multipliers = new boolean[capacity];
+    }
+
+    /**
+     * This method doubles the number of entries the batch holds, keeping the IDs added so far.
+     */
+    private void grow() {
+        long[] oldIDs = ids; // The IDs before growing.
+
+        allocate(oldIDs.length * 2);
+        System.arraycopy(oldIDs, 0, ids, 0, size);
+    }
+}
@@ -2,6 +2,9 @@ import java.util.Scanner;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import javax.management.JMException;
 
 /**
  * This program uses inheritance, polymorphism, and, hashmaps to simulate a tier based
@@ -16,65 +19,78 @@ import java.util.HashMap;
  * @version 1.0
  */
 public class Main {
+    private static final long SUMMARY_CACHE_BYTES = 16L << 20; // The default size of the cache of looked-up summaries.
     private boolean isCancelled; // Flag for indicating whether the current Passenger's flight was cancelled.
     private boolean hasComplain; // Flag for indicating whether the current Passenger complained about their flight.
 
     /**
      * This method parse each line in the input file, and get some information about each Passenger's flight.
+     * The fields may be separated by any number of spaces or tabs, and anything after the flags (like a
+     * carriage return or extra columns) is ignored. A short line (like "ID Y") counts as no complaint.
      * @param fileLine A line in the input file.
-     * @return The look-up ID for each Passenger.
+     * @return The look-up ID for each Passenger, or an empty String if the line does not start with one.
      */
     public String tokenize(String fileLine) {
-        int i = 0; // An index in the file line String.
-        String passengerID = ""; // The look-up key for each Passenger.
+        int i; // An index in the file line String.
+        int idStart; // The index where the passenger ID starts.
+        String passengerID; // The look-up key for each Passenger.
 
         // Tokenize the line read from the file.
         // Get the passenger ID first.
-        while (Character.isDigit(fileLine.charAt(i))) {
-            passengerID += fileLine.charAt(i);
+        i = skipBlanks(fileLine, 0);
+        idStart = i;
+        while (i < fileLine.length() && Character.isDigit(fileLine.charAt(i)))
             i++;
-        }
+        passengerID = fileLine.substring(idStart, i);
         // Skip extra whitespace.
-        i++;
+        i = skipBlanks(fileLine, i);
 
         // Check whether a flight was cancelled and/or the passenger complained.
-        if (fileLine.charAt(i) == 'Y') {
-            this.isCancelled = true;
-            i += 2;
-            if (fileLine.charAt(i) == 'Y')
-                this.hasComplain = true;
-            else if (fileLine.charAt(i) == 'N')
-                this.hasComplain = false;
+        this.isCancelled = i < fileLine.length() && fileLine.charAt(i) == 'Y';
+        this.hasComplain = false;
+        if (this.isCancelled) {
+            i = skipBlanks(fileLine, i + 1);
+            this.hasComplain = i < fileLine.length() && fileLine.charAt(i) == 'Y';
         }
-        else
-            this.isCancelled = false;
 
         return passengerID;
     }
 
     /**
-     * The main() method will read and update all the information about every
-     * Passenger's flight, while upgrading their Tier's depending on whether
-     * they qualify for an upgrade(while reading the file). It will then display.
-     * @param args command-line arguments.
+     * This method skips spaces and tabs between the fields of a line.
+     * @param fileLine A line in the input file.
+     * @param i The index to start skipping from.
+     * @return The index of the first character that is not a space or tab.
      */
-    public static void main(String[] args) throws IOException {
-        FileInputStream inStream = new FileInputStream("flight-data.txt"); // An input object for opening the file.
+    private static int skipBlanks(String fileLine, int i) {
+        while (i < fileLine.length() && (fileLine.charAt(i) == ' ' || fileLine.charAt(i) == '\t'))
+            i++;
+        return i;
+    }
+
+    /**
+     * This method reads a file line by line with a Scanner and tokenize(). It is the original
+     * way of reading the input file, and is kept as a reference for MappedFlightReader.
+     * @param fileName The name of the input file.
+     * @return A map of all Passengers, keyed by their look-up ID.
+     * @throws IOException If the file can not be opened.
+     */
+    public static HashMap<String, Passenger> scanFile(String fileName) throws IOException {
+        FileInputStream inStream = new FileInputStream(fileName); // An input object for opening the file.
         Scanner scan = new Scanner(inStream); // A Scanner object for reading input.
-        Passenger passObj = new Passenger(); // An object for keeping record of a Passenger.
+        Passenger passObj; // An object for keeping record of a Passenger.
         HashMap<String, Passenger> passengerInfo = new HashMap<>(); // A map for keeping records of all Passengers.
         Main mainObj = new Main(); // An instance of Main for accessing its fields and tokenize().
         String fileLine; // A line in the input file.
         String passengerID; // The look-up key for each Passenger.
-        String tierName; // The name of the Passenger's current Tier.
-        boolean hasMileageM; // Flag for indicating whether a passenger has the
-                            // mileage multiplier (did not complain throughout the year).
 
         // Read each passenger record and update their details in real time.
         while (scan.hasNextLine()) {
             fileLine = scan.nextLine();
 
             passengerID = mainObj.tokenize(fileLine);
+            if (passengerID.isEmpty())
+                continue;
 
             // Check whether the passenger is new or not.
             if (passengerInfo.get(passengerID) == null) {
@@ -90,61 +106,506 @@ public class Main {
                 passObj.addComplaint();
         }
         inStream.close();
-        passObj.setEndOfYear(true);
+        return passengerInfo;
+    }
 
-        // Iterate over all the passengers, determine if they have the mileage multiplier and/or update their tier.
-        for (Passenger passObj2 : passengerInfo.values()) {
-            hasMileageM = passObj2.hasMultiplier();
+    /**
+     * This method answers a question about the passengers close to a tier, typed as "near TIER N"
+     * (everyone within N cancelled flights of TIER) or "closest TIER K" (the K closest to TIER),
+     * where TIER is the name of the tier's class, like "Platinum". A mistyped command is answered
+     * with what is wrong with it, and the next ID can be entered as usual.
+     * @param command The command typed ("near" or "closest").
+     * @param tierName The name of the tier.
+     * @param numberText The distance or the number of passengers, as typed.
+     * @param index The index of the passengers close to a tier.
+     */
+    private static void showNear(String command, String tierName, String numberText, NearThresholdIndex index) {
+        int tier = TierTable.ordinalOf(tierName); // The ordinal of the tier.
+        int number; // The distance or the number of passengers.
+        long[] ids; // The passengers close to the tier.
 
-            // Passengers without a mileage multiplier do not qualify for an upgrade.
-            if(!hasMileageM)
-                continue;
-            tierName = passObj2.getTier();
-            passObj2.setSpecialTier(tierName);
+        if (tier < 0) {
+            System.out.println("There is no tier " + tierName + "\n");
+            return;
         }
+        try {
+            number = Integer.parseInt(numberText);
+        }
+        catch (NumberFormatException e) {
+            System.out.println("Can not answer \"" + command + " " + tierName + " " + numberText + "\": "
+                    + numberText + " is not a number\n");
+            return;
+        }
+        try {
+            ids = command.equals("near") ? index.getWithin(tier, number) : index.getClosest(tier, number);
+        }
+        catch (IllegalArgumentException e) {
+            System.out.println("Can not answer \"" + command + " " + tierName + " " + number + "\": "
+                    + e.getMessage() + "\n");
+            return;
+        }
+        for (long passengerID : ids)
+            System.out.println(passengerID + ": " + index.getDistance(passengerID) + " cancelled flights to "
+                    + TierTable.getDisplayName(tier));
+        System.out.println(ids.length + " passengers\n");
+    }
 
-        scan = new Scanner(System.in);
+    /**
+     * The main() method will read and update all the information about every
+     * Passenger's flight, while upgrading their Tier's depending on whether
+     * they qualify for an upgrade(while reading the file). It will then display.
+     * @param args command-line arguments: "--parallel" reads the file on all processors,
+     *             "--packed" keeps the records in a PackedPassengerStore, "--striped" keeps them
+     *             in a StripedPassengerStore (which all the reading threads update at once), and "--follow" (or
+     *             "--follow=FILE") keeps applying records from a growing log or a pipe while
+     *             passengers are looked up, in which case the year is not over yet.
+     *             "--save-snapshot=FILE" writes the finished year to a binary snapshot, and
+     *             "--snapshot=FILE" looks passengers up in a snapshot instead of reading flight-data.txt,
+     *             checking only its header unless "--verify-snapshot" also checks the checksum of the whole file.
+     *             "--batch" answers lines of IDs from standard input (see QueryServer) instead of
+     *             asking for one ID at a time, and "--serve=PORT" answers them on a local port.
+     *             "--checkpoint=FILE" saves the counts read so far to FILE every 64 MB of the file, and
+     *             continues from FILE instead of the first line if the program is run again on the same,
+     *             unchanged file (FILE is deleted once the whole file has been read). It is refused with
+     *             "--rejects", "--snapshot", "--shards", "--follow", and a compressed file or set of files.
+     *             "--report=NAME" prints a report over all passengers (see PassengerReport) instead
+     *             of looking passengers up, of the members selected by "--where=CONDITIONS" if given.
+     *             "--export=FILE" writes every member to FILE in order of their IDs (see LedgerExport) instead
+     *             of looking passengers up, as CSV if FILE ends in ".csv" and as fixed-width lines otherwise,
+     *             on as many threads as "--threads=N" (not with "--follow", whose year is not over).
+     *             "--input=FILE" reads FILE instead of flight-data.txt (a FILE ending in ".gz" is
+     *             decompressed as it is read, on one thread), and "--rejects=FILE" writes the lines that
+     *             are not flight records to FILE with their line numbers, instead of applying them
+     *             (the file is then read in order on one thread).
+     *             "--input=DIRECTORY" or "--input=PATTERN" (like "logs/*.txt") reads every file in the directory,
+     *             or every file matching the glob pattern, as one year (see MultiFileIngest), with a line of
+     *             progress for each file; "--threads=N" sets how many files are read at once (one per
+     *             processor by default). The reject file is only used with a single file, and a
+     *             checkpoint is refused with a set of files.
+     *             "--shards=N" splits the records into N shards by passenger (see ShardedLedger), finishes
+     *             each shard's year in its own process, and looks passengers up in the shard they belong to.
+     *             "--rules=FILE" reads the tier thresholds, miles, and Sub-Tier conditions from FILE
+     *             (see TierRules) instead of using the program's default rules.
+     *             "--rolling" qualifies passengers over the last 12 months of a file with a date column
+     *             (see RollingWindowStore) instead of over one year, reading the file (or set of files) in order
+     *             (refused with "--follow", "--rejects", "--checkpoint", "--snapshot" and "--shards").
+     *             "--near=N" keeps the passengers within N cancelled flights of the next tier (10 by
+     *             default with "--near") in a NearThresholdIndex, which the commands "near TIER N" and
+     *             "closest TIER K" answer from (see showNear()), even while a followed log is read.
+     *             "--corrections=FILE" applies the corrections in FILE (see FlightCorrections) once the year
+     *             of the input is over, changing only the passengers corrected (refused with "--snapshot",
+     *             "--shards", "--follow" or "--rolling").
+     *             "--tier-feed=FILE" appends every tier change (upgrades while reading, and the sub-tier
+     *             upgrades at the end of the year) to FILE, as lines of JSON if FILE ends in ".ndjson" or
+     *             ".jsonl" and as binary records otherwise (see TierChangeLog), in batches every 200 ms
+     *             or every "--tier-feed-interval=MILLIS". The input is then read in order on one thread, so
+     *             every upgrade has the offset of its record ("--parallel" and "--threads" do not apply),
+     *             and "--checkpoint", "--rolling", "--snapshot" and "--shards" are refused.
+     *             "--summary-cache=BYTES" sets how many bytes the summaries of looked-up passengers
+     *             are cached in (16 MB by default, see CachedPassengerStore).
+     *             "--metrics" records the Metrics and shows them through JMX, and "--metrics=SECONDS"
+     *             also writes them to standard error every few seconds.
+     */
+    public static void main(String[] args) throws IOException {
+        PassengerStore passengerInfo = new PassengerTable(); // A store for keeping records of all Passengers.
+        Ledger ledger; // The records of the year in the input file, and whether the year is over.
+        boolean isParallel = false; // Flag for indicating whether to read the file on all processors.
+        boolean isShared = false; // Flag for indicating whether every reading thread updates the store directly.
+        boolean isRolling = false; // Flag for indicating whether to qualify passengers over the last 12 months.
+        RollingWindowStore window; // The records of the last 12 months.
+        String followName = null; // The name of the log to follow, or null to read the whole file first.
+        String snapshotName = null; // The name of the snapshot to look passengers up in, if any.
+        String saveName = null; // The name of the snapshot to write once the year is over, if any.
+        boolean isSnapshotVerified = false; // Flag for indicating whether to check the checksum of the whole snapshot.
+        String checkpointName = null; // The name of the checkpoint to save the counts to while reading, if any.
+        String inputName = "flight-data.txt"; // The name of the flight data file.
+        String rejectsName = null; // The name of the file to quarantine malformed lines to, if any.
+        int numThreads = Runtime.getRuntime().availableProcessors(); // The number of files read at once.
+        MultiFileIngest files; // Reads a set of flight data files.
+        RejectFile rejects; // The file malformed lines are quarantined to.
+        int numShards = 0; // The number of shards to split the records into, or 0 to read them in one store.
+        ShardedLedger shards; // The shards of the records.
+        String rulesName = null; // The name of the rules file, or null for the default rules.
+        StreamingIngest ingest = null; // Applies records from the followed log in the background.
+        Thread ingestThread = null; // The thread that runs the ingest.
+        String passengerID; // The look-up key for each Passenger, as entered by the user.
+        long cacheBytes = SUMMARY_CACHE_BYTES; // The most bytes the cached summaries may take.
+        CachedPassengerStore summaries = null; // The summaries of the Passengers looked up.
+        int nearDistance = 0; // The distance of the furthest passengers in the index, or 0 for no index.
+        NearThresholdIndex nearIndex = null; // The passengers close to the next tier, if they are kept.
+        String feedName = null; // The name of the file the tier changes are appended to, if any.
+        long feedMillis = TierChangeFeed.DEFAULT_FLUSH_MILLIS; // The time between two batches of tier changes.
+        TierChangeFeed feed = null; // Publishes the tier changes, if they are wanted.
+        PassengerStore followed; // The store the records of the followed log are applied to.
+        String correctionsName = null; // The name of the file of corrections to apply, if any.
+        FlightCorrections corrections; // The corrections to apply.
+        int numCorrected; // The number of passengers changed by the corrections.
+        byte[] summary; // The details shown for the Passenger.
+        int servePort = -1; // The port to answer look-ups on, or -1 to not listen on a port.
+        boolean isBatch = false; // Flag for indicating whether to answer look-ups from standard input.
+        String reportName = null; // The name of the report to print, if any.
+        String where = ""; // The conditions selecting the members in the report.
+        String exportName = null; // The name of the file to export the members to, if any.
+        long numExported; // The number of members exported.
+        boolean hasMetrics = false; // Flag for indicating whether to record the Metrics.
+        long dumpSeconds = 0; // The number of seconds between two dumps of the Metrics, or 0 for none.
+        long startTime; // The time the current phase started.
+
+        // Check the command-line options.
+        for (String arg : args) {
+            if (arg.equals("--parallel"))
+                isParallel = true;
+            else if (arg.equals("--packed"))
+                passengerInfo = new PackedPassengerStore();
+            else if (arg.equals("--striped")) {
+                passengerInfo = new StripedPassengerStore();
+                isShared = true;
+            }
+            else if (arg.equals("--follow"))
+                followName = "flight-data.txt";
+            else if (arg.startsWith("--follow="))
+                followName = arg.substring("--follow=".length());
+            else if (arg.startsWith("--snapshot="))
+                snapshotName = arg.substring("--snapshot=".length());
+            else if (arg.equals("--verify-snapshot"))
+                isSnapshotVerified = true;
+            else if (arg.startsWith("--save-snapshot="))
+                saveName = arg.substring("--save-snapshot=".length());
+            else if (arg.startsWith("--checkpoint="))
+                checkpointName = arg.substring("--checkpoint=".length());
+            else if (arg.startsWith("--input="))
+                inputName = arg.substring("--input=".length());
+            else if (arg.startsWith("--threads="))
+                numThreads = Integer.parseInt(arg.substring("--threads=".length()));
+            else if (arg.startsWith("--rejects="))
+                rejectsName = arg.substring("--rejects=".length());
+            else if (arg.startsWith("--shards="))
+                numShards = Integer.parseInt(arg.substring("--shards=".length()));
+            else if (arg.equals("--near"))
+                nearDistance = NearThresholdIndex.DEFAULT_MAX_DISTANCE;
+            else if (arg.startsWith("--near="))
+                nearDistance = Integer.parseInt(arg.substring("--near=".length()));
+            else if (arg.startsWith("--corrections="))
+                correctionsName = arg.substring("--corrections=".length());
+            else if (arg.startsWith("--tier-feed="))
+                feedName = arg.substring("--tier-feed=".length());
+            else if (arg.startsWith("--tier-feed-interval="))
+                feedMillis = Long.parseLong(arg.substring("--tier-feed-interval=".length()));
+            else if (arg.equals("--rolling"))
+                isRolling = true;
+            else if (arg.startsWith("--summary-cache="))
+                cacheBytes = Long.parseLong(arg.substring("--summary-cache=".length()));
+            else if (arg.startsWith("--rules="))
+                rulesName = arg.substring("--rules=".length());
+            else if (arg.startsWith("--report="))
+                reportName = arg.substring("--report=".length());
+            else if (arg.startsWith("--export="))
+                exportName = arg.substring("--export=".length());
+            else if (arg.startsWith("--where="))
+                where = arg.substring("--where=".length());
+            else if (arg.equals("--batch"))
+                isBatch = true;
+            else if (arg.startsWith("--serve="))
+                servePort = Integer.parseInt(arg.substring("--serve=".length()));
+            else if (arg.equals("--metrics"))
+                hasMetrics = true;
+            else if (arg.startsWith("--metrics=")) {
+                hasMetrics = true;
+                dumpSeconds = Long.parseLong(arg.substring("--metrics=".length()));
+            }
+        }
+
+        // Refuse the options that can not work together, instead of ignoring one of them.
+        if (feedName != null && checkpointName != null) {
+            System.err.println("--tier-feed can not be used with --checkpoint, since the records counted before "
+                    + "the checkpoint have no upgrades to publish.");
+            System.exit(2);
+        }
+        if (isRolling && (feedName != null || correctionsName != null)) {
+            System.err.println("--rolling can not be used with " + (feedName != null ? "--tier-feed" : "--corrections")
+                    + ", since a rolling window has no end of the year and its downgrades are not tier changes "
+                    + "of the records read.");
+            System.exit(2);
+        }
+        if (isRolling && (followName != null || rejectsName != null || checkpointName != null || snapshotName != null
+                || numShards > 0)) {
+            System.err.println("--rolling reads the input in order into a window of its own, so it can not be used "
+                    + "with " + (followName != null ? "--follow" : rejectsName != null ? "--rejects"
+                            : checkpointName != null ? "--checkpoint" : snapshotName != null ? "--snapshot"
+                            : "--shards") + ".");
+            System.exit(2);
+        }
+        if (feedName != null && (snapshotName != null || numShards > 0)) {
+            System.err.println("--tier-feed can not be used with --snapshot or --shards, since no records reach the "
+                    + "feed.");
+            System.exit(2);
+        }
+        if (checkpointName != null && (rejectsName != null || snapshotName != null || numShards > 0 || followName != null
+                || GzipFlightReader.isCompressed(inputName) || MultiFileIngest.isFileSet(inputName))) {
+            System.err.println("--checkpoint only reads a single uncompressed file from the start or from its "
+                    + "checkpoint, so it can not be used with " + (rejectsName != null ? "--rejects"
+                            : snapshotName != null ? "--snapshot" : numShards > 0 ? "--shards"
+                            : followName != null ? "--follow" : "the input " + inputName) + ".");
+            System.exit(2);
+        }
+        if (correctionsName != null && (snapshotName != null || numShards > 0 || followName != null)) {
+            System.err.println("--corrections can only be used when the year is read from the input, not with "
+                    + "--snapshot, --shards or --follow.");
+            System.exit(2);
+        }
+
+        // Compile the rules of the program before any record is counted.
+        if (rulesName != null)
+            TierTable.install(TierRules.load(rulesName));
+
+        // Start recording the metrics before anything is read, so every phase is counted.
+        if (hasMetrics) {
+            Metrics.enable();
+            try {
+                Metrics.registerMBean();
+            }
+            catch (JMException e) {
+                System.err.println("The metrics are not shown through JMX: " + e.getMessage());
+            }
+            if (dumpSeconds > 0)
+                Metrics.startDump(System.err, dumpSeconds);
+        }
+
+        if (snapshotName != null) {
+            // The year in the snapshot is already over, so there is nothing to read.
+            startTime = System.nanoTime();
+            passengerInfo = PassengerSnapshot.load(snapshotName, isSnapshotVerified);
+            Metrics.recordTime("snapshot.load", startTime);
+            ledger = new Ledger(snapshotName, passengerInfo);
+        }
+        else if (numShards > 0) {
+            // Split the records by passenger, and finish the year of each shard in its own process,
+            // so no process holds every passenger.
+            startTime = System.nanoTime();
+            shards = new ShardedLedger(inputName + ".shards", numShards);
+            shards.setRulesName(rulesName);
+            shards.partition(inputName);
+            shards.finishShards(true);
+            passengerInfo = shards.open();
+            Metrics.recordTime("ingest", startTime);
+            ledger = new Ledger(inputName, passengerInfo);
+            if (saveName != null) {
+                startTime = System.nanoTime();
+                shards.merge(saveName);
+                Metrics.recordTime("snapshot.write", startTime);
+            }
+        }
+        else if (followName != null) {
+            // Keep applying records in the background, into a store that can be read while it is written.
+            // The records go through the cache, so the summary of a Passenger is dropped when they change.
+            // The tier changes and the index of the passengers close to a tier are kept up to date the same way.
+            followed = new StripedPassengerStore();
+            if (feedName != null)
+                followed = feed = new TierChangeFeed(followed, new TierChangeLog(feedName), feedMillis);
+            if (nearDistance > 0)
+                followed = nearIndex = new NearThresholdIndex(followed, nearDistance);
+            summaries = new CachedPassengerStore(followed, cacheBytes);
+            passengerInfo = summaries;
+            ledger = new Ledger(followName, passengerInfo);
+            ingest = StreamingIngest.open(followName, passengerInfo);
+            ingestThread = new Thread(ingest, "flight-ingest");
+            ingestThread.setDaemon(true);
+            ingestThread.start();
+            Metrics.addGauge("ingest.lagBytes", ingest::getLagBytes);
+        }
+        else {
+            // Read the passenger records on all processors, or read each record and update their details in real time.
+            // With a checkpoint, continue from where the last run got to instead of the first line.
+            startTime = System.nanoTime();
+            // The tier changes are found as the records reach the store, so the records are passed to it
+            // one at a time, in the order of the input, by a single thread.
+            if (feedName != null) {
+                passengerInfo = feed = new TierChangeFeed(passengerInfo, new TierChangeLog(feedName), feedMillis);
+                isParallel = false;
+                isShared = true;
+            }
+            // The months of a rolling window must be read in order, so the files are read one at a time.
+            if (isRolling) {
+                window = new RollingWindowStore();
+                passengerInfo = window;
+                if (MultiFileIngest.isFileSet(inputName))
+                    new MultiFileIngest(MultiFileIngest.listFiles(inputName), 1, System.err).readShared(window);
+                else if (GzipFlightReader.isCompressed(inputName))
+                    GzipFlightReader.read(inputName, window, null);
+                else
+                    MappedFlightReader.read(inputName, window);
+                if (window.getLatestMonth() >= 0)
+                    System.err.printf("Qualified over %s to %s (%,d late records, %,d downgrades).%n",
+                            DatedFlightRecordHandler.formatMonth(Math.max(0, window.getLatestMonth()
+                                    - RollingWindowStore.WINDOW_MONTHS + 1)),
+                            DatedFlightRecordHandler.formatMonth(window.getLatestMonth()),
+                            window.getNumLate(), window.getNumDowngrades());
+                else if (window.size() > 0)
+                    System.err.println("No record has a date, so every record was counted in the same month.");
+            }
+            // A set of files is read a few files at a time, into one store.
+            else if (MultiFileIngest.isFileSet(inputName)) {
+                files = new MultiFileIngest(MultiFileIngest.listFiles(inputName), feed != null ? 1 : numThreads,
+                        System.err);
+                if (isShared)
+                    files.readShared(passengerInfo);
+                else
+                    files.read(passengerInfo);
+                System.err.printf("Read %,d records in %.2f s (%.2f s reading the files one by one).%n",
+                        files.getNumRecords(), (System.nanoTime() - startTime) / 1e9, files.getReadNanos() / 1e9);
+            }
+            // A compressed file, or one whose bad lines are quarantined, is read in order on one thread.
+            else if (GzipFlightReader.isCompressed(inputName) || rejectsName != null) {
+                rejects = rejectsName != null ? new RejectFile(rejectsName) : null;
+                if (GzipFlightReader.isCompressed(inputName))
+                    GzipFlightReader.read(inputName, passengerInfo, rejects);
+                else
+                    MappedFlightReader.read(inputName, passengerInfo, rejects);
+                if (rejects != null) {
+                    rejects.close();
+                    if (rejects.getNumRejected() > 0)
+                        System.err.println(rejects.getNumRejected() + " malformed lines were written to " + rejectsName + ".");
+                }
+            }
+            else if (checkpointName != null) {
+                passengerInfo = new CheckpointedIngest(inputName, checkpointName,
+                        CheckpointedIngest.DEFAULT_INTERVAL).read();
+            }
+            else if (isParallel && isShared)
+                ParallelFlightReader.readShared(inputName, passengerInfo, ForkJoinPool.commonPool());
+            else if (isParallel)
+                ParallelFlightReader.read(inputName, passengerInfo);
+            else
+                MappedFlightReader.read(inputName, passengerInfo);
+            Metrics.recordTime("ingest", startTime);
+            ledger = new Ledger(inputName, passengerInfo);
+
+            // Determine which passengers have the mileage multiplier and upgrade them to the special sub-tiers.
+            ledger.finishYear();
+            // Apply the corrections to the passengers they change, instead of reading the year again.
+            if (correctionsName != null) {
+                startTime = System.nanoTime();
+                corrections = FlightCorrections.read(correctionsName);
+                numCorrected = corrections.apply(passengerInfo);
+                System.err.printf("Applied %,d corrections to %,d passengers in %.2f s (%,d tier changes, "
+                        + "%,d downgrades).%n", corrections.getNumCorrections(), numCorrected,
+                        (System.nanoTime() - startTime) / 1e9, corrections.getNumTierChanges(),
+                        corrections.getNumDowngrades());
+                if (corrections.getNumRejected() > 0 || corrections.getNumMalformed() > 0)
+                    System.err.println(corrections.getNumRejected() + " passengers were not corrected, since their "
+                            + "corrections take back more than was counted, and " + corrections.getNumMalformed()
+                            + " lines were not corrections.");
+                Metrics.recordTime("corrections", startTime);
+            }
+            if (feed != null) {
+                feed.close();
+                System.err.println(feed.getNumChanges() + " tier changes were appended to " + feedName + ".");
+            }
+            if (saveName != null) {
+                startTime = System.nanoTime();
+                PassengerSnapshot.write(passengerInfo, saveName);
+                Metrics.recordTime("snapshot.write", startTime);
+            }
+        }
+        // The year is over (or every change goes through the cache), so the summaries can be cached.
+        if (summaries == null)
+            summaries = new CachedPassengerStore(passengerInfo, cacheBytes);
+        // The passengers read so far are indexed once; a followed log updates the index as it is read.
+        if (nearIndex == null && nearDistance > 0)
+            nearIndex = new NearThresholdIndex(passengerInfo, nearDistance);
+        if (nearIndex != null)
+            Metrics.addGauge("near.indexed", nearIndex::getNumIndexed);
+        Metrics.addGauge("summaryCache.hits", summaries::getHits);
+        Metrics.addGauge("summaryCache.misses", summaries::getMisses);
+        Metrics.addGauge("summaryCache.evictions", summaries::getEvictions);
+        Metrics.addGauge("summaryCache.bytes", summaries::getCachedBytes);
+        Metrics.addGauge("passengers", ledger.getPassengers()::size);
+        Metrics.addGauge("memory.bytes", () -> ledger.getPassengers().size()
+                * ledger.getPassengers().getBytesPerPassenger());
+
+        // Write every member to a file in order of their IDs instead of looking them up, if asked to.
+        if (exportName != null) {
+            if (followName != null) {
+                System.err.println("The year of a followed log is not over, so it can not be exported.");
+                return;
+            }
+            startTime = System.nanoTime();
+            numExported = new LedgerExport(passengerInfo, exportName, numThreads).write();
+            System.err.printf("Exported %,d passengers to %s in %.2f s.%n", numExported, exportName,
+                    (System.nanoTime() - startTime) / 1e9);
+            Metrics.recordTime("export", startTime);
+            return;
+        }
+
+        // Print a report over all passengers instead of looking them up, if asked to.
+        if (reportName != null) {
+            System.out.print(PassengerReport.write(reportName, PassengerColumns.of(passengerInfo),
+                    ColumnFilter.parse(where)));
+            return;
+        }
+
+        // Answer batches of look-ups from programs instead of a person, if asked to.
+        if (isBatch) {
+            new QueryServer(passengerInfo).serve(System.in, System.out);
+            if (hasMetrics)
+                System.err.print("--- metrics ---\n" + Metrics.dump());
+            return;
+        }
+        if (servePort >= 0) {
+            System.err.println("Answering look-ups on port " + servePort + " of the local machine.");
+            new QueryServer(passengerInfo).listen(servePort, Executors.newCachedThreadPool());
+            return;
+        }
+
+        Scanner scan = new Scanner(System.in); // A Scanner object for reading input.
 
         // Display the data of passengers, when the user looks up their ID.
         do {
             System.out.print("Enter the ID of the passenger (or \"-1\" to quit): ");
             passengerID = scan.next();
 
+            if (ingest != null && passengerID.equals("status")) {
+                // Show how far the ingest has come, and how far it is behind the log.
+                System.out.println("Records applied to " + ledger.getName() + ": " + ingest.getRecordsApplied());
+                System.out.println("Lag: " + ingest.getLagBytes() + " bytes (about "
+                        + ingest.getLagRecords() + " records)");
+                System.out.println("Summary cache: " + summaries.getHits() + " hits, " + summaries.getMisses()
+                        + " misses, " + summaries.getEvictions() + " evictions\n");
+                continue;
+            }
+            if (nearIndex != null && (passengerID.equals("near") || passengerID.equals("closest"))) {
+                // Show the passengers close to a tier.
+                String tierName = scan.next(); // The name of the tier asked about.
+
+                showNear(passengerID, tierName, scan.next(), nearIndex);
+                continue;
+            }
             if (!(passengerID.equals("-1"))) {
-                // Check if the entered passenger ID exists.
-                passObj = passengerInfo.get(passengerID);
-                if(passObj == null) {
-                    System.out.println("Passenger not found.\n");
-                    continue;
-                }
-                tierName = passObj.getTier();
-                System.out.print("Rewards tier: ");
-
-                if (tierName.equals("NoTier"))
-                    System.out.println("None");
-                else if (tierName.equals("Gold"))
-                    System.out.println("Gold");
-                else if (tierName.equals("Platinum"))
-                    System.out.println("Platinum");
-                else if (tierName.equals("PlatinumPro"))
-                    System.out.println("Platinum Pro");
-                else if (tierName.equals("ExecutivePlatinum"))
-                    System.out.println("Executive Platinum");
-                else if (tierName.equals("SExecutivePlatinum"))
-                    System.out.println("Super Executive Platinum");
-                System.out.println("Total flights: " + passObj.getFlights());
-                System.out.println("Total cancelled flights: " + passObj.getCancelledFlights());
-                System.out.println("Total miles accumulated: " + passObj.getMiles());
-
-                hasMileageM = passObj.hasMultiplier();
-
-                if(hasMileageM)
-                    System.out.println("This passenger earned the mileage multiplier\n");
-                else
-                    System.out.println("This passenger did not earn the mileage multiplier\n");
+                // Look up the entered passenger ID, and show the passenger (or that they do not exist).
+                startTime = System.nanoTime();
+                summary = summaries.getSummary(MappedFlightReader.parseID(passengerID));
+                Metrics.add(Metrics.LOOKUPS, 1);
+                Metrics.recordTime("lookup.request", startTime);
+                System.out.write(summary, 0, summary.length);
             }
         } while(!(passengerID.equals("-1")));
 
+        if (ingest != null) {
+            ingest.stop();
+            try {
+                ingestThread.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (ingest.getError() != null)
+                throw ingest.getError();
+            if (feed != null)
+                feed.close();
+        }
+
+        if (hasMetrics)
+            System.err.print("--- metrics ---\n" + Metrics.dump());
         System.out.println("Program terminated...");
     }
 }
\ No newline at end of file
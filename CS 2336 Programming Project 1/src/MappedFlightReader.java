@@ -0,0 +1,125 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class reads a flight data file by memory-mapping it and parsing every line directly
+ * from the mapped bytes with FlightLineParser, so no String (or any other object) is created
+ * for a line in the file. The file is mapped one window at a time, which allows files larger than 2 GB.
+ */
+public class MappedFlightReader {
+    private static final long WINDOW_SIZE = 1L << 30; // The maximum number of bytes mapped at a time.
+
+    /**
+     * This method reads every flight record in a file and passes it on to the handler.
+     * @param fileName The name of the input file.
+     * @param handler The object that processes each flight record.
+     * @return The number of flight records read.
+     * @throws IOException If the file can not be opened or mapped.
+     */
+    public static long read(String fileName, FlightRecordHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            return read(channel, 0, channel.size(), handler);
+        }
+    }
+
+    /**
+     * This method reads every flight record in a file and passes it on to the handler, and
+     * quarantines the malformed lines to a reject file (with their line numbers) instead.
+     * @param fileName The name of the input file.
+     * @param handler The object that processes each flight record.
+     * @param rejects The file malformed lines are quarantined to.
+     * @return The number of flight records read.
+     * @throws IOException If the file can not be opened or mapped, or a line can not be rejected.
+     */
+    public static long read(String fileName, FlightRecordHandler handler, RejectFile rejects) throws IOException {
+        FlightLineParser parser = new FlightLineParser(); // Parses the lines of each window.
+
+        parser.setRejects(rejects);
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            return read(channel, 0, channel.size(), parser, handler);
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * This method reads the flight records between two byte offsets of an opened file.
+     * The start offset must be at the beginning of a line, and the end offset must be
+     * either the end of the file or just after a new line.
+     * @param channel The opened input file.
+     * @param start The offset of the first byte to read.
+     * @param end The offset just after the last byte to read.
+     * @param handler The object that processes each flight record.
+     * @return The number of flight records read.
+     * @throws IOException If the file can not be mapped.
+     */
+    public static long read(FileChannel channel, long start, long end, FlightRecordHandler handler)
+            throws IOException {
+        return read(channel, start, end, new FlightLineParser(), handler);
+    }
+
+    /**
+     * This method reads the flight records between two byte offsets of an opened file with a given parser.
+     * @param channel The opened input file.
+     * @param start The offset of the first byte to read.
+     * @param end The offset just after the last byte to read.
+     * @param parser Parses the lines of each window.
+     * @param handler The object that processes each flight record.
+     * @return The number of flight records read by the parser so far.
+     * @throws IOException If the file can not be mapped.
+     */
+    private static long read(FileChannel channel, long start, long end, FlightLineParser parser,
+            FlightRecordHandler handler) throws IOException {
+        long position = start; // The offset in the file where the current window starts.
+
+        while (position < end) {
+            int limit = (int) Math.min(end - position, WINDOW_SIZE); // The number of bytes in the window.
+            boolean isLastWindow = position + limit == end; // Flag indicating whether the window reaches the end.
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, limit);
+
+            // A line cut off by the end of the window is read again from the next window.
+            int numParsed = parser.parse(buffer, 0, limit, isLastWindow, handler); // The bytes parsed.
+
+            if (numParsed == 0)
+                throw new IOException("Line at offset " + position + " is longer than the mapping window.");
+            position += numParsed;
+        }
+        return parser.getNumRecords();
+    }
+
+    /**
+     * This method converts a passenger ID entered as text into the numeric look-up ID.
+     * @param passengerID The passenger ID as text.
+     * @return The numeric look-up ID, or -1 if the text is not a valid ID.
+     */
+    public static long parseID(String passengerID) {
+        return parseID(passengerID, 0, passengerID.length());
+    }
+
+    /**
+     * This method converts part of a text into the numeric look-up ID, without copying the part.
+     * @param text The text holding the passenger ID.
+     * @param start The index where the ID starts.
+     * @param end The index just after the ID.
+     * @return The numeric look-up ID, or -1 if the part is not a valid ID.
+     */
+    public static long parseID(CharSequence text, int start, int end) {
+        long id = 0; // The numeric look-up ID.
+
+        if (start >= end || end - start > 18)
+            return -1;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i); // The current digit.
+
+            if (c < '0' || c > '9')
+                return -1;
+            id = id * 10 + (c - '0');
+        }
+        return id;
+    }
+}
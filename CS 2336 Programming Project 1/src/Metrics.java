@@ -0,0 +1,245 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * This class holds the metrics of the program: counters (like the number of records parsed
+ * and malformed lines), the number of Tier upgrades out of each Tier, gauges that are read
+ * when shown (like the number of Passengers and their memory), and a LatencyHistogram for
+ * the time taken by each phase (reading the file, the year-end pass, look-ups, ...).
+ *
+ * The metrics are off until enable() is called. Nothing is recorded per flight record: the
+ * parser adds its counts once per block of lines, and an upgrade is counted only when it
+ * happens (at most a few times per Passenger), so the per-record path costs the same either way.
+ * The metrics can be read through JMX (see MetricsMXBean) and written out as text periodically.
+ */
+public final class Metrics {
+    public static final String RECORDS = "ingest.records"; // The counter of flight records parsed.
+    public static final String MALFORMED_LINES = "ingest.malformedLines"; // The counter of lines that are not a flight record.
+    public static final String LOOKUPS = "lookup.ids"; // The counter of IDs looked up.
+    private static final String OBJECT_NAME = "airline:type=Metrics"; // The name of the metrics in JMX.
+    private static final ConcurrentMap<String, LongAdder> COUNTERS = new ConcurrentHashMap<>(); // The counters, by name.
+    private static final ConcurrentMap<String, LongSupplier> GAUGES = new ConcurrentHashMap<>(); // The gauges, by name.
+    private static final ConcurrentMap<String, LatencyHistogram> LATENCIES = new ConcurrentHashMap<>(); // The phase times, by name.
+    private static final LongAdder[] UPGRADES = new LongAdder[TierTable.NUM_TIERS]; // The upgrades out of each Tier.
+    private static volatile boolean isEnabled = false; // Flag indicating whether the metrics are recorded.
+
+    static {
+        for (int tier = 0; tier < TierTable.NUM_TIERS; tier++)
+            UPGRADES[tier] = new LongAdder();
+    }
+
+    /**
+     * This constructor is private, because the class only holds static metrics.
+     */
+    private Metrics() {
+    }
+
+    /**
+     * This method starts recording the metrics.
+     */
+    public static void enable() {
+        isEnabled = true;
+    }
+
+    /**
+     * This method returns whether the metrics are being recorded.
+     * @return Flag indicating whether the metrics are on.
+     */
+    public static boolean isEnabled() {
+        return isEnabled;
+    }
+
+    /**
+     * This method adds to a counter, if the metrics are on.
+     * @param name The name of the counter.
+     * @param amount The amount to add.
+     */
+    public static void add(String name, long amount) {
+        if (isEnabled && amount != 0)
+            COUNTERS.computeIfAbsent(name, key -> new LongAdder()).add(amount);
+    }
+
+    /**
+     * This method counts an upgrade out of a Tier, if the metrics are on.
+     * @param tier The ordinal of the Tier the Passenger was upgraded from.
+     */
+    public static void countUpgrade(int tier) {
+        if (isEnabled)
+            UPGRADES[tier].increment();
+    }
+
+    /**
+     * This method counts the upgrades a Passenger went through between two Tiers, for a Passenger
+     * whose records were counted elsewhere and added all at once (like the counts of a part of the
+     * input, or a correction). Nothing is counted if the Passenger did not move up.
+     * @param fromTier The ordinal of the Passenger's Tier before the records (without a Sub-Tier).
+     * @param toTier The ordinal of the Passenger's Tier after the records (without a Sub-Tier).
+     */
+    public static void countUpgrades(int fromTier, int toTier) {
+        if (!isEnabled)
+            return;
+        for (int tier = fromTier; tier < toTier; tier++)
+            UPGRADES[tier].increment();
+    }
+
+    /**
+     * This method records the time a phase took, if the metrics are on.
+     * @param name The name of the phase.
+     * @param startTime The value of System.nanoTime() when the phase started.
+     */
+    public static void recordTime(String name, long startTime) {
+        if (isEnabled)
+            LATENCIES.computeIfAbsent(name, key -> new LatencyHistogram()).record(System.nanoTime() - startTime);
+    }
+
+    /**
+     * This method adds a gauge, which is read every time the metrics are shown.
+     * A gauge with the same name is replaced.
+     * @param name The name of the gauge.
+     * @param gauge Returns the current value.
+     */
+    public static void addGauge(String name, LongSupplier gauge) {
+        GAUGES.put(name, gauge);
+    }
+
+    /**
+     * This method returns the total of a counter.
+     * @param name The name of the counter.
+     * @return The total, or 0 if nothing was counted.
+     */
+    public static long getCount(String name) {
+        LongAdder counter = COUNTERS.get(name); // The counter, if it exists.
+
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * This method returns the times a phase took.
+     * @param name The name of the phase.
+     * @return The histogram of the phase's times, or null if it was never recorded.
+     */
+    public static LatencyHistogram getLatency(String name) {
+        return LATENCIES.get(name);
+    }
+
+    /**
+     * This method returns every metric as text, one metric per line, sorted by name. The rate of
+     * the records parsed is given over the time spent reading files, when that is known.
+     * @return The text of the metrics.
+     */
+    public static String dump() {
+        StringBuilder text = new StringBuilder(); // The text of the metrics.
+        LatencyHistogram ingest = LATENCIES.get("ingest"); // The times taken to read a whole file.
+
+        for (Map.Entry<String, Long> counter : new TreeMap<>(snapshot(COUNTERS)).entrySet())
+            text.append(counter.getKey()).append(' ').append(counter.getValue()).append('\n');
+        if (ingest != null && ingest.getTotal() > 0)
+            text.append(String.format("ingest.recordsPerSecond %.0f%n", getCount(RECORDS) / (ingest.getTotal() / 1e9)));
+        for (int tier = 0; tier < TierTable.NUM_TIERS; tier++) {
+            if (UPGRADES[tier].sum() > 0)
+                text.append("upgrades.").append(TierTable.getName(tier)).append(' ').append(UPGRADES[tier].sum()).append('\n');
+        }
+        for (Map.Entry<String, LongSupplier> gauge : new TreeMap<>(GAUGES).entrySet())
+            text.append(gauge.getKey()).append(' ').append(gauge.getValue().getAsLong()).append('\n');
+        for (Map.Entry<String, LatencyHistogram> latency : new TreeMap<>(LATENCIES).entrySet())
+            text.append("time.").append(latency.getKey()).append(' ').append(latency.getValue()).append('\n');
+        return text.toString();
+    }
+
+    /**
+     * This method writes the metrics out every few seconds on a background thread, until the program ends.
+     * @param out Where to write the metrics.
+     * @param periodSeconds The number of seconds between two dumps.
+     */
+    public static void startDump(PrintStream out, long periodSeconds) {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "metrics-dump"); // The thread writing the metrics.
+
+            thread.setDaemon(true);
+            return thread;
+        }); // Runs the dumps.
+
+        timer.scheduleAtFixedRate(() -> out.print("--- metrics ---\n" + dump()), periodSeconds,
+                periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * This method makes the metrics readable through JMX, as "airline:type=Metrics".
+     * Registering them more than once has no effect.
+     * @throws JMException If the metrics can not be registered.
+     */
+    public static void registerMBean() throws JMException {
+        ObjectName name = new ObjectName(OBJECT_NAME); // The name of the metrics in JMX.
+
+        if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name))
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new View(), name);
+    }
+
+    /**
+     * This method reads the totals of a map of counters.
+     * @param counters The counters, by name.
+     * @return The totals, by name.
+     */
+    private static Map<String, Long> snapshot(Map<String, LongAdder> counters) {
+        Map<String, Long> totals = new TreeMap<>(); // The totals, by name.
+
+        counters.forEach((name, counter) -> totals.put(name, counter.sum()));
+        return totals;
+    }
+
+    /**
+     * This class shows the static metrics as a JMX bean.
+     */
+    private static class View implements MetricsMXBean {
+        @Override
+        public boolean isEnabled() {
+            return Metrics.isEnabled();
+        }
+
+        @Override
+        public Map<String, Long> getCounters() {
+            return snapshot(COUNTERS);
+        }
+
+        @Override
+        public Map<String, Long> getUpgrades() {
+            Map<String, Long> upgrades = new TreeMap<>(); // The upgrades, by Tier name.
+
+            for (int tier = 0; tier < TierTable.NUM_TIERS; tier++)
+                upgrades.put(TierTable.getName(tier), UPGRADES[tier].sum());
+            return upgrades;
+        }
+
+        @Override
+        public Map<String, Long> getGauges() {
+            Map<String, Long> gauges = new TreeMap<>(); // The gauges, by name.
+
+            GAUGES.forEach((name, gauge) -> gauges.put(name, gauge.getAsLong()));
+            return gauges;
+        }
+
+        @Override
+        public Map<String, String> getLatencies() {
+            Map<String, String> latencies = new TreeMap<>(); // The phase times, by name.
+
+            LATENCIES.forEach((name, latency) -> latencies.put(name, latency.toString()));
+            return latencies;
+        }
+
+        @Override
+        public String dump() {
+            return Metrics.dump();
+        }
+    }
+}
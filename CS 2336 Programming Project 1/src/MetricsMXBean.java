@@ -0,0 +1,43 @@
+import java.util.Map;
+
+/**
+ * This interface is the view of the program's metrics shown through JMX (for example, in
+ * jconsole under the name "airline:type=Metrics"). Every attribute is read when it is shown.
+ */
+public interface MetricsMXBean {
+    /**
+     * This method returns whether the metrics are being recorded.
+     * @return Flag indicating whether the metrics are on.
+     */
+    public boolean isEnabled();
+
+    /**
+     * This method returns the total of every counter.
+     * @return The counters, by name.
+     */
+    public Map<String, Long> getCounters();
+
+    /**
+     * This method returns the number of upgrades out of each Tier during the year.
+     * @return The upgrades, by the name of the Tier they were made from.
+     */
+    public Map<String, Long> getUpgrades();
+
+    /**
+     * This method returns the current value of every gauge (like the number of Passengers).
+     * @return The gauges, by name.
+     */
+    public Map<String, Long> getGauges();
+
+    /**
+     * This method returns a summary of the times taken by every phase.
+     * @return The summaries, by the name of the phase.
+     */
+    public Map<String, String> getLatencies();
+
+    /**
+     * This method returns every metric as text, as written by the periodic dump.
+     * @return The text of the metrics.
+     */
+    public String dump();
+}
@@ -0,0 +1,205 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * This class reads many flight data files at once (for example, one file per airport per day),
+ * given as a directory or as a glob pattern like "logs/flight-data-*.txt". A fixed number of
+ * worker threads take the files one at a time, so no more files are parsed at once than there
+ * are processors, and each worker counts its files into its own FlightCounts. The counts of the
+ * workers are merged once every file is read, which gives the same Passengers as reading every
+ * file in turn, since a Passenger's Tier only depends on how many of their flights were cancelled.
+ * A store that can be updated by many threads at once (like StripedPassengerStore) can instead
+ * be given every record straight away. Files ending in ".gz" are decompressed as they are read.
+ */
+public class MultiFileIngest {
+    private final List<String> fileNames; // The names of the files to read.
+    private final int numThreads; // The number of files read at once.
+    private final PrintStream progress; // Where each finished file is reported, or null for nowhere.
+    private final AtomicInteger nextFile = new AtomicInteger(); // The index of the next file to read.
+    private final AtomicInteger numFinished = new AtomicInteger(); // The number of files read so far.
+    private long numRecords = 0; // The number of flight records in all files.
+    private long readNanos = 0; // The time spent reading the files, added up over the workers.
+
+    /**
+     * This constructor prepares the reading of a set of files.
+     * @param fileNames The names of the files to read.
+     * @param numThreads The number of files read at once.
+     * @param progress Where each finished file is reported, or null for nowhere.
+     */
+    public MultiFileIngest(List<String> fileNames, int numThreads, PrintStream progress) {
+        this.fileNames = fileNames;
+        this.numThreads = Math.max(1, Math.min(numThreads, fileNames.size()));
+        this.progress = progress;
+    }
+
+    /**
+     * This method checks whether an input name stands for a set of files, rather than a single file.
+     * @param inputName The name given for the input.
+     * @return Flag indicating whether the name is a directory or a glob pattern.
+     */
+    public static boolean isFileSet(String inputName) {
+        return new File(inputName).isDirectory() || inputName.indexOf('*') >= 0
+                || inputName.indexOf('?') >= 0 || inputName.indexOf('[') >= 0 || inputName.indexOf('{') >= 0;
+    }
+
+    /**
+     * This method lists the files of a set: every file in a directory (leaving out hidden files),
+     * or every file in the pattern's directory whose name matches a glob pattern. The names are
+     * sorted, so the files are always started in the same order.
+     * @param inputName The directory or glob pattern (the pattern can only match file names, not directories).
+     * @return The names of the files.
+     * @throws IOException If the directory can not be listed, or no files are found.
+     */
+    public static List<String> listFiles(String inputName) throws IOException {
+        File directory; // The directory the files are in.
+        PathMatcher matcher; // Matches the names of the files in the set.
+        File[] files; // The files in the set.
+        List<String> fileNames = new ArrayList<>(); // The names of the files in the set.
+
+        if (new File(inputName).isDirectory()) {
+            directory = new File(inputName);
+            matcher = path -> !path.toString().startsWith(".");
+        }
+        else {
+            Path pattern = Paths.get(inputName); // The glob pattern.
+
+            directory = pattern.getParent() != null ? pattern.getParent().toFile() : new File(".");
+            matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern.getFileName());
+        }
+        files = directory.listFiles(file -> file.isFile() && matcher.matches(Paths.get(file.getName())));
+        if (files == null)
+            throw new IOException("Could not list the files in " + directory);
+        if (files.length == 0)
+            throw new IOException("No flight data files match " + inputName);
+        Arrays.sort(files);
+        for (File file : files)
+            fileNames.add(file.getPath());
+        return fileNames;
+    }
+
+    /**
+     * This method reads every file, counting the records of each worker on its own and adding the
+     * merged counts to a store once every file is read.
+     * @param passengerInfo The store that receives every Passenger in the files.
+     * @throws IOException If a file can not be read.
+     */
+    public void read(PassengerStore passengerInfo) throws IOException {
+        FlightCounts counts = null; // The merged counts of the workers.
+
+        for (FlightRecordHandler workerCounts : run(FlightCounts::new)) {
+            if (counts == null)
+                counts = (FlightCounts) workerCounts;
+            else
+                counts.merge((FlightCounts) workerCounts);
+        }
+        if (counts != null)
+            counts.addTo(passengerInfo);
+    }
+
+    /**
+     * This method reads every file, adding each record straight to a store that allows concurrent updates.
+     * @param passengerInfo The thread-safe store that receives every Passenger in the files.
+     * @throws IOException If a file can not be read.
+     */
+    public void readShared(PassengerStore passengerInfo) throws IOException {
+        run(() -> passengerInfo);
+    }
+
+    /**
+     * This method returns the number of flight records read from all files.
+     * @return The number of flight records.
+     */
+    public long getNumRecords() {
+        return this.numRecords;
+    }
+
+    /**
+     * This method returns the time spent reading the files, added up over the workers. It is about
+     * how long reading the files one after another would take, so comparing it with the time the
+     * whole set took shows how much reading them at once saved.
+     * @return The time spent reading, in nanoseconds.
+     */
+    public long getReadNanos() {
+        return this.readNanos;
+    }
+
+    /**
+     * This method starts the workers and waits until every file is read.
+     * @param newHandler Returns the handler each worker passes its records to.
+     * @return The handler of each worker.
+     * @throws IOException If a file can not be read.
+     */
+    private List<FlightRecordHandler> run(Supplier<FlightRecordHandler> newHandler) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads); // The worker threads.
+        List<Future<FlightRecordHandler>> workers = new ArrayList<>(); // The running workers.
+        List<FlightRecordHandler> handlers = new ArrayList<>(); // The handler of each worker.
+
+        try {
+            for (int i = 0; i < numThreads; i++)
+                workers.add(pool.submit(() -> readFiles(newHandler.get())));
+            for (Future<FlightRecordHandler> worker : workers)
+                handlers.add(worker.get());
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading " + fileNames.size() + " files", e);
+        }
+        finally {
+            // Stop the other workers from starting files once one has failed.
+            nextFile.set(fileNames.size());
+            pool.shutdown();
+        }
+        return handlers;
+    }
+
+    /**
+     * This method is the work of one worker: it reads the next file not yet taken, until there
+     * are none left, and reports each file as it finishes.
+     * @param handler The object that processes each flight record of the worker's files.
+     * @return The handler.
+     * @throws IOException If a file can not be read.
+     */
+    private FlightRecordHandler readFiles(FlightRecordHandler handler) throws IOException {
+        int index; // The index of the file being read.
+
+        while ((index = nextFile.getAndIncrement()) < fileNames.size()) {
+            String fileName = fileNames.get(index); // The name of the file being read.
+            long startTime = System.nanoTime(); // The time the file was started.
+            long fileRecords; // The number of flight records in the file.
+            long fileNanos; // The time the file took.
+
+            if (GzipFlightReader.isCompressed(fileName))
+                fileRecords = GzipFlightReader.read(fileName, handler, null);
+            else
+                fileRecords = MappedFlightReader.read(fileName, handler);
+            fileNanos = System.nanoTime() - startTime;
+            synchronized (this) {
+                numRecords += fileRecords;
+                readNanos += fileNanos;
+            }
+            if (progress != null)
+                progress.printf("[%d/%d] %s: %,d records in %.2f s%n", numFinished.incrementAndGet(),
+                        fileNames.size(), fileName, fileRecords, fileNanos / 1e9);
+        }
+        return handler;
+    }
+}
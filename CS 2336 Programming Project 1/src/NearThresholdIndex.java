@@ -0,0 +1,380 @@
+import java.util.Arrays;
+
+/**
+ * This class keeps track of the Passengers who are close to the next Tier: within a number of
+ * cancelled flights of the threshold of Gold, Platinum, or ExecutivePlatinum (see
+ * TierTable.getUpgradeAt()). It wraps another store, and every record passed on to it moves the
+ * Passenger to the bucket of their new distance, so questions like "who is within 3 of
+ * ExecutivePlatinum" or "the 10 closest to Platinum" are answered from the buckets instead of
+ * going through every Passenger, even while records are still being read.
+ *
+ * There is one bucket per Tier and distance, holding the slots of its Passengers in any order.
+ * Each Passenger remembers their bucket and their position in it, so a Passenger is moved by
+ * swapping the last Passenger of their old bucket into their place, in constant time. A record
+ * that is not a cancelled flight does not change the distance, and skips the index. The buckets
+ * are guarded by the index's lock, so the wrapped store may be one that many threads update at once.
+ */
+public class NearThresholdIndex implements PassengerStore {
+    public static final int DEFAULT_MAX_DISTANCE = 10; // The default distance of the furthest Passengers kept.
+    private static final int INITIAL_CAPACITY = 1024; // The starting number of slots (always a power of two).
+    private static final int INITIAL_BUCKET = 16; // The starting length of a bucket.
+    private final PassengerStore passengerInfo; // The store every call is passed on to.
+    private final int maxDistance; // The most cancelled flights a Passenger can be from the next Tier to be kept.
+    private final int[][] buckets; // The slots of the Passengers at each distance from each Tier.
+    private final int[] bucketSizes; // The number of Passengers in each bucket.
+    private long[] keys; // The Passenger IDs that have been close to a Tier, one per slot.
+    private int[] bucketOf; // The bucket of each slot's Passenger, or -1 if they are not close to a Tier.
+    private int[] positions; // The position of each slot's Passenger in their bucket.
+    private int size = 0; // The number of slots in use.
+    private int numIndexed = 0; // The number of Passengers in a bucket.
+
+    /**
+     * This constructor wraps a store, and adds the Passengers it already holds to the buckets.
+     * @param passengerInfo The store every call is passed on to, which must not be changed directly afterwards.
+     * @param maxDistance The most cancelled flights a Passenger can be from the next Tier to be kept (at least 1).
+     */
+    public NearThresholdIndex(PassengerStore passengerInfo, int maxDistance) {
+        if (maxDistance < 1)
+            throw new IllegalArgumentException("The distance must be at least 1: " + maxDistance);
+        this.passengerInfo = passengerInfo;
+        this.maxDistance = maxDistance;
+        this.buckets = new int[TierTable.NUM_TIERS * maxDistance][];
+        this.bucketSizes = new int[buckets.length];
+        this.keys = PassengerIDs.newKeys(INITIAL_CAPACITY);
+        this.bucketOf = new int[INITIAL_CAPACITY];
+        this.positions = new int[INITIAL_CAPACITY];
+        for (long passengerID : passengerInfo.getIDs())
+            update(passengerID);
+    }
+
+    /**
+     * This method returns the Passengers within a number of cancelled flights of a Tier.
+     * @param tier The ordinal of the Tier (Gold, Platinum, or ExecutivePlatinum).
+     * @param distance The most cancelled flights the Passengers can still need.
+     * @return The look-up IDs of the Passengers, closest first (in no order within the same distance).
+     * @throws IllegalArgumentException If the distance is negative or more than the index keeps.
+     */
+    public long[] getWithin(int tier, int distance) {
+        if (distance < 0)
+            throw new IllegalArgumentException("The distance can not be negative: " + distance);
+        if (distance > maxDistance)
+            throw new IllegalArgumentException("Only passengers within " + maxDistance + " are kept: " + distance);
+        return collect(tier, distance, Integer.MAX_VALUE);
+    }
+
+    /**
+     * This method returns the Passengers closest to a Tier.
+     * @param tier The ordinal of the Tier (Gold, Platinum, or ExecutivePlatinum).
+     * @param count The most Passengers to return.
+     * @return The look-up IDs of the Passengers, closest first (in no order within the same distance).
+     * @throws IllegalArgumentException If the count is negative.
+     */
+    public long[] getClosest(int tier, int count) {
+        if (count < 0)
+            throw new IllegalArgumentException("The number of passengers can not be negative: " + count);
+        return collect(tier, maxDistance, count);
+    }
+
+    /**
+     * This method returns how many cancelled flights a Passenger still needs for the next Tier.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The number of cancelled flights, or -1 if there is no Tier above the Passenger's.
+     */
+    public int getDistance(long passengerID) {
+        int numCancFlights = passengerInfo.getCancelledFlights(passengerID); // The Passenger's cancelled flights.
+        int tier = TierTable.tierFor(numCancFlights); // The Tier the Passenger reached.
+
+        if (TierTable.getUpgradeAt(tier) == Integer.MAX_VALUE)
+            return -1;
+        return TierTable.getUpgradeAt(tier) - numCancFlights;
+    }
+
+    /**
+     * This method returns the distance of the furthest Passengers kept.
+     * @return The most cancelled flights a Passenger can be from the next Tier to be kept.
+     */
+    public int getMaxDistance() {
+        return this.maxDistance;
+    }
+
+    /**
+     * This method returns the number of Passengers close to a Tier.
+     * @return The number of Passengers in the buckets.
+     */
+    public synchronized int getNumIndexed() {
+        return this.numIndexed;
+    }
+
+    /**
+     * This method updates the counts of a Passenger with a single flight record, and moves them
+     * to their new bucket if the flight was cancelled.
+     * @param passengerID The look-up ID of the Passenger the flight belongs to.
+     * @param isCancelled Flag indicating whether the flight was cancelled.
+     * @param hasComplain Flag indicating whether the Passenger complained about the cancelled flight.
+     */
+    @Override
+    public void addRecord(long passengerID, boolean isCancelled, boolean hasComplain) {
+        passengerInfo.addRecord(passengerID, isCancelled, hasComplain);
+        if (isCancelled)
+            update(passengerID);
+    }
+
+    /**
+     * This method sets the totals of a Passenger that were counted elsewhere, and moves them to their new bucket.
+     * @param passengerID The look-up ID of the Passenger.
+     * @param numFlights The total number of flights a Passenger has taken, or was supposed to take.
+     * @param numCancFlights Number of flights the passenger was supposed to take but were cancelled.
+     * @param numComplaints The number of times a Passenger has complained.
+     */
+    @Override
+    public void setTotals(long passengerID, int numFlights, int numCancFlights, int numComplaints) {
+        passengerInfo.setTotals(passengerID, numFlights, numCancFlights, numComplaints);
+        update(passengerID);
+    }
+
+    /**
+     * This method checks whether there is a Passenger with the given ID.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Flag indicating whether the Passenger exists.
+     */
+    @Override
+    public boolean contains(long passengerID) {
+        return passengerInfo.contains(passengerID);
+    }
+
+    /**
+     * Returns (as a String) the name of the tier the passenger belongs to.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The name of the tier the passenger belongs to.
+     */
+    @Override
+    public String getTier(long passengerID) {
+        return passengerInfo.getTier(passengerID);
+    }
+
+    /**
+     * Returns the TierTable ordinal of the tier the passenger belongs to.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The ordinal of the tier the passenger belongs to.
+     */
+    @Override
+    public int getTierOrdinal(long passengerID) {
+        return passengerInfo.getTierOrdinal(passengerID);
+    }
+
+    /**
+     * Returns the miles earned over the year.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The total number of miles the Passenger earned based on the cancelled flights.
+     */
+    @Override
+    public int getMiles(long passengerID) {
+        return passengerInfo.getMiles(passengerID);
+    }
+
+    /**
+     * Returns the number of flights the passenger was supposed to take but were cancelled.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Number of flights the passenger was supposed to take but were cancelled.
+     */
+    @Override
+    public int getCancelledFlights(long passengerID) {
+        return passengerInfo.getCancelledFlights(passengerID);
+    }
+
+    /**
+     * This method returns the current total number of flights the passenger took, including cancelled flights.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The total number of flights a Passenger has taken, or was supposed to take.
+     */
+    @Override
+    public int getFlights(long passengerID) {
+        return passengerInfo.getFlights(passengerID);
+    }
+
+    /**
+     * Returns the number of times the passenger complained about a cancelled flight.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The number of times a Passenger has complained.
+     */
+    @Override
+    public int getComplaints(long passengerID) {
+        return passengerInfo.getComplaints(passengerID);
+    }
+
+    /**
+     * Returns true if the passenger has the mileage multiplier.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Flag for indicating whether a passenger has the mileage multiplier.
+     */
+    @Override
+    public boolean hasMultiplier(long passengerID) {
+        return passengerInfo.hasMultiplier(passengerID);
+    }
+
+    /**
+     * This method ends the year in the wrapped store. The buckets stay as they are, since the
+     * end of the year does not change how many flights were cancelled.
+     */
+    @Override
+    public void finishYear() {
+        passengerInfo.finishYear();
+    }
+
+    /**
+     * This method returns the number of Passengers stored.
+     * @return The number of Passengers stored.
+     */
+    @Override
+    public int size() {
+        return passengerInfo.size();
+    }
+
+    /**
+     * This method returns the IDs of all Passengers.
+     * @return The look-up IDs of the Passengers.
+     */
+    @Override
+    public long[] getIDs() {
+        return passengerInfo.getIDs();
+    }
+
+    /**
+     * This method returns the memory used for each Passenger by the wrapped store (the index only
+     * holds the Passengers that have been close to a Tier).
+     * @return The number of bytes used per Passenger.
+     */
+    @Override
+    public long getBytesPerPassenger() {
+        return passengerInfo.getBytesPerPassenger();
+    }
+
+    /**
+     * This method moves a Passenger to the bucket of their current distance from the next Tier.
+     * The distance is read from the wrapped store under the lock, so the last update of a
+     * Passenger always leaves them in the right bucket, whichever thread counted their records.
+     * @param passengerID The look-up ID of the Passenger.
+     */
+    private synchronized void update(long passengerID) {
+        int bucket = bucketFor(passengerInfo.getCancelledFlights(passengerID)); // The Passenger's new bucket.
+        int slot = PassengerIDs.findSlot(keys, passengerID); // The slot of the Passenger.
+
+        if (keys[slot] == PassengerIDs.EMPTY) {
+            // A Passenger only needs a slot once they come close to a Tier.
+            if (bucket < 0)
+                return;
+            if (PassengerIDs.isFull(keys, size)) {
+                grow();
+                slot = PassengerIDs.findSlot(keys, passengerID);
+            }
+            keys[slot] = passengerID;
+            bucketOf[slot] = -1;
+            size++;
+        }
+        if (bucketOf[slot] == bucket)
+            return;
+        if (bucketOf[slot] >= 0)
+            remove(slot);
+        if (bucket >= 0)
+            add(slot, bucket);
+    }
+
+    /**
+     * This method finds the bucket of a number of cancelled flights.
+     * @param numCancFlights Number of flights the passenger was supposed to take but were cancelled.
+     * @return The index of the bucket, or -1 if the Passenger is not close to the next Tier (or there is none).
+     */
+    private int bucketFor(int numCancFlights) {
+        int tier = TierTable.tierFor(numCancFlights); // The Tier the Passenger reached.
+        int upgradeAt = TierTable.getUpgradeAt(tier); // The cancelled flights needed for the next Tier.
+
+        if (upgradeAt == Integer.MAX_VALUE || upgradeAt - numCancFlights > maxDistance)
+            return -1;
+        return (tier + 1) * maxDistance + (upgradeAt - numCancFlights - 1);
+    }
+
+    /**
+     * This method adds a Passenger to the end of a bucket. The caller must hold the lock.
+     * @param slot The slot of the Passenger.
+     * @param bucket The index of the bucket.
+     */
+    private void add(int slot, int bucket) {
+        if (buckets[bucket] == null)
+            buckets[bucket] = new int[INITIAL_BUCKET];
+        else if (bucketSizes[bucket] == buckets[bucket].length)
+            buckets[bucket] = Arrays.copyOf(buckets[bucket], buckets[bucket].length * 2);
+        buckets[bucket][bucketSizes[bucket]] = slot;
+        bucketOf[slot] = bucket;
+        positions[slot] = bucketSizes[bucket]++;
+        numIndexed++;
+    }
+
+    /**
+     * This method takes a Passenger out of their bucket, moving the last Passenger of the bucket
+     * into their place. The caller must hold the lock.
+     * @param slot The slot of the Passenger.
+     */
+    private void remove(int slot) {
+        int bucket = bucketOf[slot]; // The index of the Passenger's bucket.
+        int last = buckets[bucket][--bucketSizes[bucket]]; // The slot of the last Passenger of the bucket.
+
+        buckets[bucket][positions[slot]] = last;
+        positions[last] = positions[slot];
+        bucketOf[slot] = -1;
+        numIndexed--;
+    }
+
+    /**
+     * This method collects the Passengers of the buckets of a Tier, closest first.
+     * @param tier The ordinal of the Tier.
+     * @param distance The most cancelled flights the Passengers can still need.
+     * @param count The most Passengers to collect.
+     * @return The look-up IDs of the Passengers.
+     * @throws IllegalArgumentException If the Tier is not one a Passenger can be upgraded to.
+     */
+    private synchronized long[] collect(int tier, int distance, int count) {
+        long[] ids; // The IDs collected.
+        int numIDs = 0; // The number of IDs collected so far.
+
+        if (tier <= TierTable.NO_TIER || tier >= TierTable.NUM_TIERS
+                || TierTable.getUpgradeAt(tier - 1) == Integer.MAX_VALUE)
+            throw new IllegalArgumentException("No passenger is upgraded to " + TierTable.getName(tier)
+                    + " by cancelled flights");
+        for (int d = 0; d < distance; d++)
+            numIDs += bucketSizes[tier * maxDistance + d];
+        ids = new long[Math.min(numIDs, count)];
+        numIDs = 0;
+        for (int d = 0; d < distance && numIDs < ids.length; d++) {
+            int bucket = tier * maxDistance + d; // The index of the bucket of the distance.
+
+            for (int i = 0; i < bucketSizes[bucket] && numIDs < ids.length; i++)
+                ids[numIDs++] = keys[buckets[bucket][i]];
+        }
+        return ids;
+    }
+
+    /**
+     * This method doubles the number of slots, and moves every Passenger to their new slot. The
+     * caller must hold the lock.
+     */
+    private void grow() {
+        long[] oldKeys = keys; // The IDs before growing.
+        int[] oldBucketOf = bucketOf; // The buckets before growing.
+        int[] oldPositions = positions; // The positions before growing.
+
+        keys = PassengerIDs.newKeys(oldKeys.length * 2);
+        bucketOf = new int[keys.length];
+        positions = new int[keys.length];
+        for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+            if (oldKeys[oldSlot] != PassengerIDs.EMPTY) {
+                int slot = PassengerIDs.findSlot(keys, oldKeys[oldSlot]); // The new slot of the Passenger.
+
+                keys[slot] = oldKeys[oldSlot];
+                bucketOf[slot] = oldBucketOf[oldSlot];
+                positions[slot] = oldPositions[oldSlot];
+                if (bucketOf[slot] >= 0)
+                    buckets[bucketOf[slot]][positions[slot]] = slot;
+            }
+        }
+    }
+}
@@ -1,13 +1,31 @@
 /**
- * This class represents every Passenger that has had under 25 of their
+ * This class represents every Passenger that has had under 25 (by default) of their
  * flights cancelled and is therefore not yet eligible for the rewards program.
  */
 public class NoTier implements Tier {
-    private final int MILES_PER_FLIGHT = 1000; // Number of miles per cancelled flight.
+    private final int MILES_PER_FLIGHT = TierTable.getMilesPerFlight(TierTable.NO_TIER); // Number of miles per cancelled flight.
     private int numCancFlights = 0; // Number of flights the passenger was supposed to take but were cancelled.
     private int miles = 0; // The total number of miles the Passenger earned based on the cancelled flights.
     private int numFlights = 0; // The total number of flights a Passenger has taken, or was supposed to take.
 
+    /**
+     * This constructor creates the Tier a Passenger starts with (or is upgraded to).
+     */
+    public NoTier() {
+    }
+
+    /**
+     * This constructor sets the number of flights, cancelled flights, and miles that a
+     * Passenger accumulated, when the Tier is rebuilt from totals counted elsewhere.
+     * @param numCancFlights Number of flights the passenger was supposed to take but were cancelled.
+     * @param numFlights The total number of flights a Passenger has taken.
+     */
+    public NoTier(int numCancFlights, int numFlights) {
+        this.numCancFlights = numCancFlights;
+        this.numFlights = numFlights;
+        this.miles = numCancFlights * MILES_PER_FLIGHT;
+    }
+
     /**
      * This method returns the miles earned so far.
      * @return The total number of miles the Passenger earned based on the cancelled flights.
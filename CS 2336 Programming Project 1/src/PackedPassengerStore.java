@@ -0,0 +1,316 @@
+/**
+ * This class keeps records of all Passengers in packed primitive arrays instead of Passenger
+ * and Tier objects. Each slot holds an ID, three counts (flights, cancelled flights, and
+ * complaints), and the TierTable ordinal of the Passenger's Tier, so a Passenger costs a
+ * few dozen bytes and nothing for the garbage collector to trace.
+ */
+public class PackedPassengerStore implements SlottedStore {
+    private static final int INITIAL_CAPACITY = 1024; // The starting number of slots (always a power of two).
+    private static final int FLIGHTS = 0; // The offset of the flight count within a slot's counts.
+    private static final int CANCELLED = 1; // The offset of the cancelled flight count within a slot's counts.
+    private static final int COMPLAINTS = 2; // The offset of the complaint count within a slot's counts.
+    private static final int STRIDE = 3; // The number of counts per slot.
+    private static final int SLOT_BYTES = 8 + 4 * STRIDE + 1; // The memory used by a slot.
+    private long[] keys; // The Passenger IDs, one per slot.
+    private int[] counts; // The counts of each Passenger, STRIDE per slot.
+    private byte[] tiers; // The Tier ordinal of each Passenger.
+    private int size = 0; // The number of Passengers stored.
+    private boolean isEndOfYear = false; // Flag for indicating whether the current year is over.
+
+    /**
+     * This constructor creates an empty store.
+     */
+    public PackedPassengerStore() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * This constructor creates an empty store with room for a number of Passengers, so that a
+     * store whose size is known ahead (like a ledger made up for a benchmark) never has to grow.
+     * @param expectedSize The number of Passengers the store will hold.
+     */
+    public PackedPassengerStore(int expectedSize) {
+        int capacity = INITIAL_CAPACITY; // The number of slots.
+
+        while (expectedSize * 2L > capacity)
+            capacity *= 2;
+        allocate(capacity);
+    }
+
+    /**
+     * This method updates the counts of a Passenger with a single flight record,
+     * and upgrades their Tier if they qualify.
+     * @param passengerID The look-up ID of the Passenger the flight belongs to.
+     * @param isCancelled Flag indicating whether the flight was cancelled.
+     * @param hasComplain Flag indicating whether the Passenger complained about the cancelled flight.
+     */
+    @Override
+    public void addRecord(long passengerID, boolean isCancelled, boolean hasComplain) {
+        int slot = slotOf(passengerID); // The slot of the Passenger.
+        int base = slot * STRIDE; // The index of the Passenger's first count.
+
+        counts[base + FLIGHTS]++;
+        if (isCancelled) {
+            counts[base + CANCELLED]++;
+            if (hasComplain)
+                counts[base + COMPLAINTS]++;
+
+            tiers[slot] = (byte) TierTable.upgrade(tiers[slot], counts[base + CANCELLED]);
+        }
+    }
+
+    /**
+     * This method sets the totals of a Passenger that were counted elsewhere. After the end of
+     * the year (like when a correction is applied), the Passenger also gets the Sub-Tier decision
+     * of the end of the year again.
+     * @param passengerID The look-up ID of the Passenger.
+     * @param numFlights The total number of flights a Passenger has taken, or was supposed to take.
+     * @param numCancFlights Number of flights the passenger was supposed to take but were cancelled.
+     * @param numComplaints The number of times a Passenger has complained.
+     */
+    @Override
+    public void setTotals(long passengerID, int numFlights, int numCancFlights, int numComplaints) {
+        int slot = slotOf(passengerID); // The slot of the Passenger.
+
+        counts[slot * STRIDE + FLIGHTS] = numFlights;
+        counts[slot * STRIDE + CANCELLED] = numCancFlights;
+        counts[slot * STRIDE + COMPLAINTS] = numComplaints;
+        tiers[slot] = (byte) TierTable.tierFor(numCancFlights);
+        if (isEndOfYear && TierTable.hasMultiplier(tiers[slot], numComplaints))
+            tiers[slot] = (byte) TierTable.getSpecialTier(tiers[slot]);
+    }
+
+    /**
+     * This method checks whether there is a Passenger with the given ID.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Flag indicating whether the Passenger exists.
+     */
+    @Override
+    public boolean contains(long passengerID) {
+        return keys[PassengerIDs.findSlot(keys, passengerID)] != PassengerIDs.EMPTY;
+    }
+
+    /**
+     * Returns (as a String) the name of the tier the passenger belongs to.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The name of the tier the passenger belongs to.
+     */
+    @Override
+    public String getTier(long passengerID) {
+        return TierTable.getName(tiers[PassengerIDs.findSlot(keys, passengerID)]);
+    }
+
+    /**
+     * Returns the TierTable ordinal of the tier the passenger belongs to.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The ordinal of the tier the passenger belongs to.
+     */
+    @Override
+    public int getTierOrdinal(long passengerID) {
+        return tiers[PassengerIDs.findSlot(keys, passengerID)];
+    }
+
+    /**
+     * Returns the miles earned over the year.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The total number of miles the Passenger earned based on the cancelled flights.
+     */
+    @Override
+    public int getMiles(long passengerID) {
+        int slot = PassengerIDs.findSlot(keys, passengerID); // The slot of the Passenger.
+
+        return TierTable.getMiles(tiers[slot], counts[slot * STRIDE + CANCELLED]);
+    }
+
+    /**
+     * Returns the number of flights the passenger was supposed to take but were cancelled.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Number of flights the passenger was supposed to take but were cancelled.
+     */
+    @Override
+    public int getCancelledFlights(long passengerID) {
+        return counts[PassengerIDs.findSlot(keys, passengerID) * STRIDE + CANCELLED];
+    }
+
+    /**
+     * This method returns the current total number of flights the passenger took, including cancelled flights.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The total number of flights a Passenger has taken, or was supposed to take.
+     */
+    @Override
+    public int getFlights(long passengerID) {
+        return counts[PassengerIDs.findSlot(keys, passengerID) * STRIDE + FLIGHTS];
+    }
+
+    /**
+     * Returns the number of times the passenger complained about a cancelled flight.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The number of times a Passenger has complained.
+     */
+    @Override
+    public int getComplaints(long passengerID) {
+        return counts[PassengerIDs.findSlot(keys, passengerID) * STRIDE + COMPLAINTS];
+    }
+
+    /**
+     * Returns true if the passenger has the mileage multiplier. By default, passengers without a tier
+     * or in gold tier never qualify, and the others qualify at the end of the year if they never complained.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Flag for indicating whether a passenger has the mileage multiplier.
+     */
+    @Override
+    public boolean hasMultiplier(long passengerID) {
+        int slot = PassengerIDs.findSlot(keys, passengerID); // The slot of the Passenger.
+
+        return isEndOfYear && TierTable.hasMultiplier(tiers[slot], counts[slot * STRIDE + COMPLAINTS]);
+    }
+
+    /**
+     * This method indicates that the year is over, and upgrades every Platinum or Executive Platinum
+     * Tier member that earned the mileage multiplier to the corresponding special Sub-Tier.
+     */
+    @Override
+    public void finishYear() {
+        setEndOfYear();
+        finishSlots(0, keys.length, new long[TierTable.NUM_TIERS]);
+    }
+
+    /**
+     * This method returns the number of slots, including the empty ones.
+     * @return The number of slots.
+     */
+    @Override
+    public int getNumSlots() {
+        return keys.length;
+    }
+
+    /**
+     * This method indicates that the year is over, without changing any Passenger yet.
+     */
+    @Override
+    public void setEndOfYear() {
+        isEndOfYear = true;
+    }
+
+    /**
+     * This method upgrades every Platinum or Executive Platinum Tier member in a range of
+     * slots that earned the mileage multiplier to the corresponding special Sub-Tier.
+     * @param fromSlot The first slot of the range.
+     * @param toSlot The slot just after the last slot of the range.
+     * @param promotions The number of Passengers upgraded out of each Tier, added to by this method.
+     */
+    @Override
+    public void finishSlots(int fromSlot, int toSlot, long[] promotions) {
+        for (int slot = fromSlot; slot < toSlot; slot++) {
+            int tier = tiers[slot]; // The ordinal of the Passenger's Tier.
+            int specialTier = TierTable.getSpecialTier(tier); // The Sub-Tier the Passenger may earn.
+
+            if (specialTier != tier && keys[slot] != PassengerIDs.EMPTY
+                    && TierTable.hasMultiplier(tier, counts[slot * STRIDE + COMPLAINTS])) {
+                tiers[slot] = (byte) specialTier;
+                promotions[tier]++;
+            }
+        }
+    }
+
+    /**
+     * This method returns the number of Passengers stored.
+     * @return The number of Passengers stored.
+     */
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * This method returns the IDs of all Passengers stored, in no particular order.
+     * @return The look-up IDs of the Passengers.
+     */
+    @Override
+    public long[] getIDs() {
+        return PassengerIDs.collect(keys, size);
+    }
+
+    /**
+     * This method returns the memory used for each Passenger, counting every slot of the arrays.
+     * @return The number of bytes used per Passenger.
+     */
+    @Override
+    public long getBytesPerPassenger() {
+        return (long) keys.length * SLOT_BYTES / Math.max(size, 1);
+    }
+
+    /**
+     * This method creates the columnar view of the store, going through the slots in order.
+     * @return The columns of every Passenger in the store.
+     */
+    public PassengerColumns toColumns() {
+        long[] ids = new long[size]; // The look-up ID of each row.
+        int[] flights = new int[size]; // The total number of flights of each row.
+        int[] cancelled = new int[size]; // The number of cancelled flights of each row.
+        int[] complaints = new int[size]; // The number of complaints of each row.
+        byte[] rowTiers = new byte[size]; // The Tier ordinal of each row.
+        int row = 0; // The index of the next row.
+
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] == PassengerIDs.EMPTY)
+                continue;
+            ids[row] = keys[slot];
+            flights[row] = counts[slot * STRIDE + FLIGHTS];
+            cancelled[row] = counts[slot * STRIDE + CANCELLED];
+            complaints[row] = counts[slot * STRIDE + COMPLAINTS];
+            rowTiers[row] = tiers[slot];
+            row++;
+        }
+        return new PassengerColumns(ids, flights, cancelled, complaints, rowTiers);
+    }
+
+    /**
+     * This method finds the slot of a Passenger, adding the Passenger if the ID is new.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The index of the slot.
+     */
+    private int slotOf(long passengerID) {
+        int slot = PassengerIDs.findSlot(keys, passengerID); // The slot of the Passenger.
+
+        if (keys[slot] == PassengerIDs.EMPTY) {
+            if (PassengerIDs.isFull(keys, size)) {
+                grow();
+                slot = PassengerIDs.findSlot(keys, passengerID);
+            }
+            keys[slot] = passengerID;
+            size++;
+        }
+        return slot;
+    }
+
+    /**
+     * This method creates empty arrays with the given number of slots.
+     * @param capacity The number of slots.
+     */
+    private void allocate(int capacity) {
+        keys = PassengerIDs.newKeys(capacity);
+        counts = new int[capacity * STRIDE];
+        tiers = new byte[capacity];
+    }
+
+    /**
+     * This method doubles the number of slots and moves every Passenger into the new slots.
+     */
+    private void grow() {
+        long[] oldKeys = keys; // The Passenger IDs before growing.
+        int[] oldCounts = counts; // The counts before growing.
+        byte[] oldTiers = tiers; // The Tier ordinals before growing.
+        int slot; // The new slot of a Passenger.
+
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == PassengerIDs.EMPTY)
+                continue;
+            slot = PassengerIDs.findSlot(keys, oldKeys[i]);
+            keys[slot] = oldKeys[i];
+            System.arraycopy(oldCounts, i * STRIDE, counts, slot * STRIDE, STRIDE);
+            tiers[slot] = oldTiers[i];
+        }
+    }
+}
@@ -0,0 +1,207 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This class reads a flight data file on several threads. The file is split into chunks that
+ * start and end on a new line, and every chunk is read by MappedFlightReader into its own
+ * FlightCounts. The counts are merged as the chunks finish, and every Passenger (and their
+ * Tier) is rebuilt from the merged counts, which gives the same result as reading in order.
+ * A store that can be updated by many threads at once (like StripedPassengerStore) can instead
+ * be given to readShared(), where every chunk adds its records straight to the store.
+ */
+public class ParallelFlightReader {
+    private static final long MIN_CHUNK_SIZE = 1L << 20; // Chunks smaller than this are not split any further.
+
+    /**
+     * This method reads every flight record in a file, using all available processors.
+     * @param fileName The name of the input file.
+     * @param passengerInfo The store that receives every Passenger in the file.
+     * @throws IOException If the file can not be opened or mapped.
+     */
+    public static void read(String fileName, PassengerStore passengerInfo) throws IOException {
+        read(fileName, passengerInfo, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * This method reads every flight record in a file, using the threads of the given pool.
+     * @param fileName The name of the input file.
+     * @param passengerInfo The store that receives every Passenger in the file.
+     * @param pool The pool that reads the chunks of the file.
+     * @throws IOException If the file can not be opened or mapped.
+     */
+    public static void read(String fileName, PassengerStore passengerInfo, ForkJoinPool pool)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            // Aim for a few chunks per thread, so that threads finishing early can take more work.
+            long chunkSize = Math.max(MIN_CHUNK_SIZE, channel.size() / (pool.getParallelism() * 4L));
+
+            pool.invoke(new ChunkTask(channel, 0, channel.size(), chunkSize)).addTo(passengerInfo);
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * This method reads every flight record in a file on the threads of the given pool, adding every
+     * record straight to a store that allows concurrent updates. Since a Passenger's Tier only depends
+     * on how many of their flights were cancelled, the order of the records does not change the result.
+     * @param fileName The name of the input file.
+     * @param passengerInfo The thread-safe store that receives every Passenger in the file.
+     * @param pool The pool that reads the chunks of the file.
+     * @throws IOException If the file can not be opened or mapped.
+     */
+    public static void readShared(String fileName, PassengerStore passengerInfo, ForkJoinPool pool)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            long chunkSize = Math.max(MIN_CHUNK_SIZE, channel.size() / (pool.getParallelism() * 4L));
+
+            pool.invoke(new SharedChunkTask(channel, 0, channel.size(), chunkSize, passengerInfo));
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * This class represents the task of counting the flight records in a part of the file.
+     * A part larger than the chunk size is split in two at a new line, and both halves are
+     * counted in parallel before their counts are merged.
+     */
+    private static class ChunkTask extends RecursiveTask<FlightCounts> {
+        private static final long serialVersionUID = 1L; // The version of the task's serialized form.
+        private final FileChannel channel; // The opened input file.
+        private final long start; // The offset of the first byte of the part.
+        private final long end; // The offset just after the last byte of the part.
+        private final long chunkSize; // The size of the parts that are read without splitting.
+
+        /**
+         * This constructor creates the task for one part of the file.
+         * @param channel The opened input file.
+         * @param start The offset of the first byte of the part (at the start of a line).
+         * @param end The offset just after the last byte of the part (just after a new line).
+         * @param chunkSize The size of the parts that are read without splitting.
+         */
+        ChunkTask(FileChannel channel, long start, long end, long chunkSize) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.chunkSize = chunkSize;
+        }
+
+        /**
+         * This method counts the flight records in the part, splitting it if it is too large.
+         * @return The counts of every Passenger in the part.
+         */
+        @Override
+        protected FlightCounts compute() {
+            try {
+                FlightCounts counts; // The counts of every Passenger in the part.
+
+                if (end - start > chunkSize) {
+                    long middle = nextLineStart(channel, start + (end - start) / 2, end); // Where to split.
+
+                    if (middle < end) {
+                        ChunkTask second = new ChunkTask(channel, middle, end, chunkSize); // The second half.
+
+                        second.fork();
+                        counts = new ChunkTask(channel, start, middle, chunkSize).compute();
+                        counts.merge(second.join());
+                        return counts;
+                    }
+                }
+                counts = new FlightCounts();
+                MappedFlightReader.read(channel, start, end, counts);
+                return counts;
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * This class represents the task of adding the flight records in a part of the file to a
+     * shared store. A part larger than the chunk size is split in two at a new line, and both
+     * halves are added in parallel.
+     */
+    private static class SharedChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L; // The version of the task's serialized form.
+        private final FileChannel channel; // The opened input file.
+        private final long start; // The offset of the first byte of the part.
+        private final long end; // The offset just after the last byte of the part.
+        private final long chunkSize; // The size of the parts that are read without splitting.
+        private final PassengerStore passengerInfo; // The store that receives the records.
+
+        /**
+         * This constructor creates the task for one part of the file.
+         * @param channel The opened input file.
+         * @param start The offset of the first byte of the part (at the start of a line).
+         * @param end The offset just after the last byte of the part (just after a new line).
+         * @param chunkSize The size of the parts that are read without splitting.
+         * @param passengerInfo The thread-safe store that receives the records.
+         */
+        SharedChunkTask(FileChannel channel, long start, long end, long chunkSize, PassengerStore passengerInfo) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.chunkSize = chunkSize;
+            this.passengerInfo = passengerInfo;
+        }
+
+        /**
+         * This method adds the flight records in the part to the store, splitting it if it is too large.
+         */
+        @Override
+        protected void compute() {
+            try {
+                if (end - start > chunkSize) {
+                    long middle = nextLineStart(channel, start + (end - start) / 2, end); // Where to split.
+
+                    if (middle < end) {
+                        invokeAll(new SharedChunkTask(channel, start, middle, chunkSize, passengerInfo),
+                                new SharedChunkTask(channel, middle, end, chunkSize, passengerInfo));
+                        return;
+                    }
+                }
+                MappedFlightReader.read(channel, start, end, passengerInfo);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * This method finds the start of the first line after the given offset.
+     * @param channel The opened input file.
+     * @param position The offset to search from.
+     * @param end The offset to stop searching at.
+     * @return The offset just after the next new line, or the end offset if there is none.
+     * @throws IOException If the file can not be read.
+     */
+    private static long nextLineStart(FileChannel channel, long position, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(256); // The bytes read from the file.
+
+        while (position < end) {
+            buffer.clear();
+            int numRead = channel.read(buffer, position); // The number of bytes read.
+
+            if (numRead <= 0)
+                break;
+            for (int i = 0; i < numRead; i++) {
+                if (buffer.get(i) == '\n')
+                    return Math.min(position + i + 1, end);
+            }
+            position += numRead;
+        }
+        return end;
+    }
+}
@@ -1,18 +1,38 @@
 /**
- * This class represents each Passenger of the airline.
+ * This class represents each Passenger of the airline. The Passenger's Tier is kept as
+ * an ordinal into TierTable, together with their totals, so that adding a flight only
+ * updates a few numbers. The Tier classes are still available through getTierView().
+ * Every Passenger belongs to the records of a single year, so whether the year is over
+ * is kept per Passenger instead of being shared by all Passengers in the program.
  */
 public class Passenger {
-    private Tier tierObj; // An object representing the Passenger's current Tier.
+    private int tier = TierTable.NO_TIER; // The ordinal of the Passenger's current Tier.
+    private int numFlights = 0; // The total number of flights a Passenger has taken, or was supposed to take.
+    private int numCancFlights = 0; // Number of flights the passenger was supposed to take but were cancelled.
     private int numComplaints = 0; // The number of times a Passenger has complained.
-    private static boolean isEndOfYear = false; // Flag for indicating whether the current
-                                                // year is over (have reached end of file).
+    private boolean isEndOfYear = false; // Flag for indicating whether the year of the Passenger's
+                                         // Ledger is over (have reached end of file).
 
     /**
      * This constructor sets every new Passenger to not have a
      * Tier, because they are not yet eligible for the rewards program.
      */
     public Passenger() {
-        this.tierObj = new NoTier();
+    }
+
+    /**
+     * This constructor rebuilds a Passenger from totals that were counted elsewhere (for example,
+     * by several threads reading parts of the input file). Since the Tier only depends on the
+     * number of cancelled flights, it ends up the same as if every flight was added in order.
+     * @param numFlights The total number of flights a Passenger has taken, or was supposed to take.
+     * @param numCancFlights Number of flights the passenger was supposed to take but were cancelled.
+     * @param numComplaints The number of times a Passenger has complained.
+     */
+    public Passenger(int numFlights, int numCancFlights, int numComplaints) {
+        this.tier = TierTable.tierFor(numCancFlights);
+        this.numFlights = numFlights;
+        this.numCancFlights = numCancFlights;
+        this.numComplaints = numComplaints;
     }
 
     /**
@@ -20,34 +40,57 @@ public class Passenger {
      * @return The name of the tier the passenger belongs to.
      */
     public String getTier() {
-        return tierObj.getClass().getName();
+        return TierTable.getName(tier);
+    }
+
+    /**
+     * Returns the ordinal (in TierTable) of the tier the passenger belongs to.
+     * @return The ordinal of the tier the passenger belongs to.
+     */
+    public int getTierOrdinal() {
+        return this.tier;
     }
 
     /**
-     * Returns the miles earned over the year. This method will simply
-     * return the miles from the Tier object, by calling its getMiles method.
+     * Returns a Tier object showing the Passenger's current Tier and totals.
+     * A new object is created on every call, so it should not be used per flight record.
+     * @return An object representing the Passenger's current Tier.
+     */
+    public Tier getTierView() {
+        return TierTable.newTier(tier, numCancFlights, numFlights);
+    }
+
+    /**
+     * Returns the miles earned over the year, based on the cancelled
+     * flights and the miles per flight of the Passenger's Tier.
      * @return The total number of miles the Passenger earned based on the cancelled flights.
      */
     public int getMiles() {
-        return tierObj.getMiles();
+        return TierTable.getMiles(tier, numCancFlights);
     }
 
     /**
      * Returns the number of flights the passenger was supposed to take but were cancelled.
-     * This method will simply return the number of cancelled flights from the Tier object.
      * @return Number of flights the passenger was supposed to take but were cancelled.
      */
     public int getCancelledFlights() {
-        return tierObj.getCancelledFlights();
+        return this.numCancFlights;
     }
 
     /**
-     * This method returns the current total number of flights the passenger took, including
-     * cancelled flights. This method will simply return the number of flights from the Tier object.
+     * This method returns the current total number of flights the passenger took, including cancelled flights.
      * @return The total number of flights a Passenger has taken, or was supposed to take.
      */
     public int getFlights() {
-        return tierObj.getFlights();
+        return this.numFlights;
+    }
+
+    /**
+     * Returns the number of times the passenger complained about a cancelled flight.
+     * @return The number of times a Passenger has complained.
+     */
+    public int getComplaints() {
+        return this.numComplaints;
     }
 
     /**
@@ -57,48 +100,22 @@ public class Passenger {
      * @return Flag for indicating whether a passenger has the mileage multiplier.
      */
     public boolean hasMultiplier() {
-        // Passengers without a tier or are in gold tier automatically do not qualify.
-        if(getTier().equals("NoTier") || getTier().equals("Gold"))
-            return false;
-        if(isEndOfYear && numComplaints > 0)
-            return false;
-        else if(isEndOfYear && numComplaints == 0)
-            return true;
-        return false;
+        // Passengers without a tier or are in gold tier automatically do not qualify (unless the rules say otherwise).
+        return isEndOfYear && TierTable.hasMultiplier(tier, numComplaints);
     }
 
     /**
-     * This method adds a new flight by calling the same method in the Tier object.
-     * This method will also to determine if a passenger needs a tier upgrade.
+     * This method adds a new flight, and determines if the passenger needs a tier upgrade.
      * @param isCancelled Flag for indicating whether the current Passenger's flight was cancelled.
      */
     public void addFlight(boolean isCancelled) {
-        String tierName; // The name of the tier of the Passenger.
-        int numFlights; // The total number of flights Passenger has taken, or was supposed to take.
-
-        tierObj.addFlight(isCancelled);
-        numFlights = tierObj.getFlights();
-
-        // Get the name of the tier of the passenger.
-        tierName = tierObj.getClass().getName();
+        numFlights++;
 
-        // Upgrade the tier of the passenger, depending on their current tier.
-        if (tierName.equals("NoTier")) {
-            // Upgrade the passenger to gold tier, if they qualify.
-            if(tierObj.getCancelledFlights() >= 25)
-                tierObj = new Gold();
+        // Only a cancelled flight can earn the passenger a tier upgrade.
+        if (isCancelled) {
+            numCancFlights++;
+            tier = TierTable.upgrade(tier, numCancFlights);
         }
-        else if (tierName.equals("Gold")) {
-            // Upgrade the passenger to platinum tier, if they qualify.
-            if((tierObj).getCancelledFlights() >= 50)
-                tierObj = new Platinum();
-        }
-        else if (tierName.equals("Platinum")) {
-            // Upgrade the passenger to executive platinum tier, if they qualify.
-            if((tierObj).getCancelledFlights() >= 100)
-                tierObj = new ExecutivePlatinum();
-        }
-        tierObj.setNumFlights(numFlights);
     }
 
     /**
@@ -109,11 +126,19 @@ public class Passenger {
     }
 
     /**
-     * This method will indicate that a year has passed.
+     * This method will indicate that the Passenger's year has passed.
      * @param isEndOfYear Flag for indicating whether the current year is over (have reached end of file).
      */
     public void setEndOfYear(boolean isEndOfYear) {
-         Passenger.isEndOfYear = isEndOfYear;
+         this.isEndOfYear = isEndOfYear;
+    }
+
+    /**
+     * This method will upgrade a Platinum or Executive Platinum Tier member
+     * to the corresponding special Sub-Tier if they earned the mileage multiplier.
+     */
+    public void setSpecialTier() {
+        tier = TierTable.getSpecialTier(tier);
     }
 
     /**
@@ -122,16 +147,10 @@ public class Passenger {
      * @param tierName The name of the Passenger's current Tier.
      */
     public void setSpecialTier(String tierName) {
-        int numCancFlights = tierObj.getCancelledFlights(); // The total number of flights a Passenger has taken.
-        int numFlights = tierObj.getFlights(); // The total number of flights Passenger
-                                                // has taken, or was supposed to take.
+        int tierOrdinal = TierTable.ordinalOf(tierName); // The ordinal of the named Tier.
 
         // Upgrade the passenger to the special sub-tier, depending on their current tier.
-        if (tierName.equals("Platinum")) {
-            tierObj = new PlatinumPro(numCancFlights, numFlights);
-        }
-        else if (tierName.equals("ExecutivePlatinum")) {
-            tierObj = new SExecutivePlatinum(numCancFlights, numFlights);
-        }
+        if (tierOrdinal == TierTable.PLATINUM || tierOrdinal == TierTable.EXECUTIVE_PLATINUM)
+            tier = TierTable.getSpecialTier(tierOrdinal);
     }
 }
@@ -0,0 +1,123 @@
+/**
+ * This class is a read-only columnar view of the Passengers of a store, for reports that look
+ * at every Passenger. Each field is kept in its own primitive array (one row per Passenger, in
+ * no particular order): the flights, cancelled flights, complaints, and miles as int columns,
+ * and the Tier ordinal as a byte column. A scan over a column reads memory in order and
+ * needs no hashing or Tier objects, so ColumnScan can go through millions of rows per millisecond.
+ */
+public class PassengerColumns {
+    public static final int FLIGHTS = 0; // The index of the flight count column.
+    public static final int CANCELLED = 1; // The index of the cancelled flight count column.
+    public static final int COMPLAINTS = 2; // The index of the complaint count column.
+    public static final int MILES = 3; // The index of the miles column.
+    public static final int NUM_COLUMNS = 4; // The number of int columns.
+    // The name of each int column, as used in reports and filters.
+    private static final String[] NAMES = {"flights", "cancelled", "complaints", "miles"};
+    private final long[] ids; // The look-up ID of each row.
+    private final int[][] values; // The int columns, indexed by column and then by row.
+    private final byte[] tiers; // The Tier ordinal of each row.
+
+    /**
+     * This constructor creates the view from the columns of the counts. The miles are computed
+     * from the Tiers and cancelled flights. The arrays are kept, not copied.
+     * @param ids The look-up ID of each row.
+     * @param flights The total number of flights of each row.
+     * @param cancelled The number of cancelled flights of each row.
+     * @param complaints The number of complaints of each row.
+     * @param tiers The Tier ordinal of each row.
+     */
+    public PassengerColumns(long[] ids, int[] flights, int[] cancelled, int[] complaints, byte[] tiers) {
+        int[] miles = new int[ids.length]; // The miles earned by each row.
+
+        for (int row = 0; row < ids.length; row++)
+            miles[row] = TierTable.getMiles(tiers[row], cancelled[row]);
+        this.ids = ids;
+        this.values = new int[][] {flights, cancelled, complaints, miles};
+        this.tiers = tiers;
+    }
+
+    /**
+     * This method creates the columnar view of a store. A PackedPassengerStore copies its arrays
+     * directly, and any other store is read one Passenger at a time.
+     * @param passengerInfo The store.
+     * @return The columns of every Passenger in the store.
+     */
+    public static PassengerColumns of(PassengerStore passengerInfo) {
+        long[] ids; // The look-up ID of each row.
+        int[] flights; // The total number of flights of each row.
+        int[] cancelled; // The number of cancelled flights of each row.
+        int[] complaints; // The number of complaints of each row.
+        byte[] tiers; // The Tier ordinal of each row.
+
+        if (passengerInfo instanceof PackedPassengerStore)
+            return ((PackedPassengerStore) passengerInfo).toColumns();
+        ids = passengerInfo.getIDs();
+        flights = new int[ids.length];
+        cancelled = new int[ids.length];
+        complaints = new int[ids.length];
+        tiers = new byte[ids.length];
+        for (int row = 0; row < ids.length; row++) {
+            flights[row] = passengerInfo.getFlights(ids[row]);
+            cancelled[row] = passengerInfo.getCancelledFlights(ids[row]);
+            complaints[row] = passengerInfo.getComplaints(ids[row]);
+            tiers[row] = (byte) passengerInfo.getTierOrdinal(ids[row]);
+        }
+        return new PassengerColumns(ids, flights, cancelled, complaints, tiers);
+    }
+
+    /**
+     * This method returns the number of rows (Passengers).
+     * @return The number of rows.
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * This method returns the look-up ID of a row.
+     * @param row The index of the row.
+     * @return The look-up ID of the row's Passenger.
+     */
+    public long getID(int row) {
+        return ids[row];
+    }
+
+    /**
+     * This method returns an int column. The array is shared, so it must not be changed.
+     * @param column The index of the column (FLIGHTS, CANCELLED, COMPLAINTS, or MILES).
+     * @return The values of the column, one per row.
+     */
+    public int[] getColumn(int column) {
+        return values[column];
+    }
+
+    /**
+     * This method returns the Tier column. The array is shared, so it must not be changed.
+     * @return The Tier ordinal of each row.
+     */
+    public byte[] getTiers() {
+        return this.tiers;
+    }
+
+    /**
+     * This method returns the name of an int column.
+     * @param column The index of the column.
+     * @return The name of the column.
+     */
+    public static String getColumnName(int column) {
+        return NAMES[column];
+    }
+
+    /**
+     * This method returns the index of the int column with the given name.
+     * @param name The name of the column.
+     * @return The index of the column, or -1 if there is no such column.
+     */
+    public static int columnOf(String name) {
+        for (int column = 0; column < NUM_COLUMNS; column++) {
+            if (NAMES[column].equals(name))
+                return column;
+        }
+        return -1;
+    }
+}
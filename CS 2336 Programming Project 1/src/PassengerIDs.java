@@ -0,0 +1,82 @@
+import java.util.Arrays;
+
+/**
+ * This class holds the open addressing shared by every table that uses the numeric
+ * passenger ID as its look-up key. The IDs are kept in a long array whose length is
+ * a power of two, and a slot that does not hold an ID is marked with EMPTY.
+ */
+public class PassengerIDs {
+    public static final long EMPTY = -1; // Marks a slot that does not hold a Passenger.
+
+    /**
+     * This method creates an array of empty slots.
+     * @param capacity The number of slots (must be a power of two).
+     * @return The array of empty slots.
+     */
+    public static long[] newKeys(int capacity) {
+        long[] keys = new long[capacity]; // The Passenger IDs, one per slot.
+
+        Arrays.fill(keys, EMPTY);
+        return keys;
+    }
+
+    /**
+     * This method finds the slot that holds the given ID, or the empty slot where it would be added.
+     * The probing stops after going once around the table. A table is never more than half full,
+     * so this only happens to a reader that does not hold the table's lock and sees a table that is
+     * still being set up (new slots are zeros until they are filled with EMPTY); such a reader gets
+     * a slot that holds another ID, and must find out from its lock that its read is not valid.
+     * @param keys The Passenger IDs to search.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The index of the slot.
+     */
+    public static int findSlot(long[] keys, long passengerID) {
+        int mask = keys.length - 1; // Used to wrap an index around the end of the table.
+        int slot = hash(passengerID) & mask; // The slot currently being checked.
+        int numProbes = mask; // The number of slots left to probe before going around the table.
+
+        // Probe the following slots until the ID or an empty slot is found.
+        while (keys[slot] != EMPTY && keys[slot] != passengerID && numProbes-- > 0)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    /**
+     * This method checks whether one more ID can be added without the table getting over half
+     * full. Keeping tables at most half full keeps the probing in findSlot() short.
+     * @param keys The Passenger IDs of the table.
+     * @param size The number of IDs in the table.
+     * @return Flag indicating whether the table must grow before adding another ID.
+     */
+    public static boolean isFull(long[] keys, int size) {
+        return (size + 1) * 2L > keys.length;
+    }
+
+    /**
+     * This method collects the IDs held by the slots of a table.
+     * @param keys The Passenger IDs of the table.
+     * @param size The number of IDs in the table.
+     * @return The IDs, in slot order.
+     */
+    public static long[] collect(long[] keys, int size) {
+        long[] ids = new long[size]; // The IDs held by the table.
+        int numIDs = 0; // The number of IDs collected so far.
+
+        for (long passengerID : keys) {
+            if (passengerID != EMPTY)
+                ids[numIDs++] = passengerID;
+        }
+        return ids;
+    }
+
+    /**
+     * This method spreads the bits of an ID, so that consecutive IDs do not end up in consecutive slots.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The hash code of the ID.
+     */
+    public static int hash(long passengerID) {
+        long h = passengerID * 0x9E3779B97F4A7C15L; // The mixed bits of the ID.
+
+        return (int) (h ^ (h >>> 32));
+    }
+}
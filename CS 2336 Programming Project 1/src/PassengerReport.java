@@ -0,0 +1,119 @@
+/**
+ * This class writes the reports asked for by the "--report" option, from a columnar view of the
+ * Passengers and a filter:
+ *   "count"  - the number of members selected (for example, "tier=ExecutivePlatinum,complaints=0"),
+ *   "tiers"  - the members of each Tier, with their average flights, cancelled flights and miles,
+ *              and how many of them never complained,
+ *   "miles"  - the distribution of miles in each Tier, in ten buckets of equal width.
+ * Every report ends with the number of members scanned and how long the scans took.
+ */
+public class PassengerReport {
+    private static final int NUM_MILES_BUCKETS = 10; // The number of buckets in the miles report.
+    private static final int MILES_ROUNDING = 1000; // The bucket width of the miles report is a multiple of this.
+
+    /**
+     * This method returns the names of the reports.
+     * @return The names of the reports, separated by commas.
+     */
+    public static String getNames() {
+        return "count, tiers, miles";
+    }
+
+    /**
+     * This method writes a report.
+     * @param name The name of the report.
+     * @param columns The columns of the Passengers.
+     * @param filter The filter selecting the members to report on.
+     * @return The text of the report.
+     * @throws IllegalArgumentException If there is no report with the name.
+     */
+    public static String write(String name, PassengerColumns columns, ColumnFilter filter) {
+        StringBuilder text = new StringBuilder(); // The text of the report.
+        long startTime = System.nanoTime(); // The time the scans started.
+
+        switch (name) {
+            case "count":
+                text.append("Members selected: ").append(ColumnScan.count(columns, filter)).append('\n');
+                break;
+            case "tiers":
+                writeTiers(text, columns, filter);
+                break;
+            case "miles":
+                writeMiles(text, columns, filter);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown report \"" + name + "\" (the reports are "
+                        + getNames() + ").");
+        }
+        text.append(String.format("(%,d members scanned in %.1f ms)%n", columns.size(),
+                (System.nanoTime() - startTime) / 1e6));
+        return text.toString();
+    }
+
+    /**
+     * This method writes the members of each Tier with their averages.
+     * @param text The text of the report.
+     * @param columns The columns of the Passengers.
+     * @param filter The filter selecting the members to report on.
+     */
+    private static void writeTiers(StringBuilder text, PassengerColumns columns, ColumnFilter filter) {
+        ColumnScan.TierTotals totals = ColumnScan.totalsByTier(columns, filter); // The counts and sums.
+        ColumnScan.TierTotals noComplaints = ColumnScan.countByTier(columns,
+                filter.copy().whereBetween(PassengerColumns.COMPLAINTS, 0, 0)); // The counts without complaints.
+
+        text.append(String.format("%-26s %12s %8s %10s %10s %12s %14s%n", "Tier", "Members", "Share",
+                "Flights", "Cancelled", "Miles", "No complaints"));
+        for (int tier = 0; tier < TierTable.NUM_TIERS; tier++) {
+            long count = totals.getCount(tier); // The members of the Tier.
+
+            if (!filter.isTierSelected(tier))
+                continue;
+            text.append(String.format("%-26s %,12d %7.2f%% %10.1f %10.1f %,12.0f %,14d%n",
+                    TierTable.getDisplayName(tier), count, 100.0 * count / Math.max(totals.getTotalCount(), 1),
+                    average(totals, tier, PassengerColumns.FLIGHTS), average(totals, tier, PassengerColumns.CANCELLED),
+                    average(totals, tier, PassengerColumns.MILES), noComplaints.getCount(tier)));
+        }
+        text.append(String.format("%-26s %,12d%n", "Total", totals.getTotalCount()));
+    }
+
+    /**
+     * This method writes the distribution of miles in each Tier.
+     * @param text The text of the report.
+     * @param columns The columns of the Passengers.
+     * @param filter The filter selecting the members to report on.
+     */
+    private static void writeMiles(StringBuilder text, PassengerColumns columns, ColumnFilter filter) {
+        int maxMiles = ColumnScan.max(columns, filter, PassengerColumns.MILES); // The most miles of a member.
+        // Round the width up, so the buckets cover every member and start at round numbers.
+        int width = Math.max(MILES_ROUNDING, (maxMiles / NUM_MILES_BUCKETS + MILES_ROUNDING) / MILES_ROUNDING
+                * MILES_ROUNDING); // The width of a bucket.
+        long[][] counts = ColumnScan.histogramByTier(columns, filter, PassengerColumns.MILES, width,
+                NUM_MILES_BUCKETS); // The members per Tier and bucket.
+
+        text.append(String.format("%-22s", "Miles"));
+        for (int tier = 0; tier < TierTable.NUM_TIERS; tier++) {
+            if (filter.isTierSelected(tier))
+                text.append(String.format(" %14s", TierTable.getName(tier)));
+        }
+        text.append('\n');
+        for (int bucket = 0; bucket < NUM_MILES_BUCKETS; bucket++) {
+            text.append(String.format("%,10d - %,9d", (long) bucket * width, (long) (bucket + 1) * width - 1));
+            for (int tier = 0; tier < TierTable.NUM_TIERS; tier++) {
+                if (filter.isTierSelected(tier))
+                    text.append(String.format(" %,14d", counts[tier][bucket]));
+            }
+            text.append('\n');
+        }
+    }
+
+    /**
+     * This method returns the average of a column over the members of a Tier.
+     * @param totals The counts and sums per Tier.
+     * @param tier The ordinal of the Tier.
+     * @param column The index of the column.
+     * @return The average, or 0 if the Tier has no members.
+     */
+    private static double average(ColumnScan.TierTotals totals, int tier, int column) {
+        return (double) totals.getSum(tier, column) / Math.max(totals.getCount(tier), 1);
+    }
+}
@@ -0,0 +1,459 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * This class keeps the records of all Passengers of a finished year in a compact binary file,
+ * so that the look-ups can be served after a restart without reading the flight data again.
+ * The file is loaded by memory-mapping it, and the Passengers are found by a binary search on
+ * the sorted IDs, so loading only reads the header (and, if asked to, the data once, to check the
+ * checksum). Each column is mapped as one buffer, which can hold at most 2 GB, so a snapshot holds
+ * at most MAX_SIZE Passengers (the 8-byte IDs fill 2 GB first); larger stores are refused when
+ * written, and larger files when loaded, rather than being mapped wrongly.
+ *
+ * A snapshot can also be taken while a flight log is still being read (see CheckpointedIngest),
+ * in which case it records how far into the log its Passengers were counted.
+ *
+ * The file starts with a header of HEADER_SIZE bytes (magic number, format version, number of
+ * Passengers, the CRC-32C checksum of everything after the header, and the LogFingerprint of the
+ * flight log: the offset reached, its size, its modification time, and the checksum of its first
+ * and last bytes read, or zeros if it was not recorded), followed by one column
+ * per field, each padded to a multiple of 8 bytes: the IDs (8 bytes each, sorted), the flights,
+ * cancelled flights, and complaints (4 bytes each), the Tier ordinal, and the mileage multiplier
+ * flag (1 byte each). All numbers are little-endian.
+ */
+public class PassengerSnapshot implements PassengerStore {
+    public static final long MAGIC = 0x50414E5354484C46L; // "FLHTSNAP" read as a little-endian long.
+    public static final int VERSION = 2; // The version of the file format written by this class.
+    public static final int HEADER_SIZE = 56; // The number of bytes before the first column.
+    public static final int MAX_SIZE = Integer.MAX_VALUE / 8; // The most Passengers whose IDs fit in one mapped buffer.
+    private static final int MAGIC_AT = 0; // The offset of the magic number in the header.
+    private static final int VERSION_AT = 8; // The offset of the format version in the header.
+    private static final int SIZE_AT = 12; // The offset of the number of Passengers in the header.
+    private static final int CHECKSUM_AT = 16; // The offset of the checksum in the header.
+    private static final int LOG_POSITION_AT = 24; // The offset of the position in the flight log in the header.
+    private static final int LOG_SIZE_AT = 32; // The offset of the size of the flight log in the header.
+    private static final int LOG_MODIFIED_AT = 40; // The offset of the modification time of the flight log in the header.
+    private static final int LOG_CHECKSUM_AT = 48; // The offset of the checksum of the flight log in the header.
+    private static final int NUM_COLUMNS = 6; // The number of columns in the file.
+    private static final int WRITE_BATCH = 1 << 16; // The number of values written per buffer.
+    private final MappedByteBuffer ids; // The sorted IDs.
+    private final MappedByteBuffer flights; // The number of flights of each Passenger.
+    private final MappedByteBuffer cancelled; // The number of cancelled flights of each Passenger.
+    private final MappedByteBuffer complaints; // The number of complaints of each Passenger.
+    private final MappedByteBuffer tiers; // The Tier ordinal of each Passenger.
+    private final MappedByteBuffer multipliers; // Whether each Passenger has the mileage multiplier.
+    private final int size; // The number of Passengers in the file.
+    private final LogFingerprint log; // The flight log the Passengers were counted from, and how far.
+
+    /**
+     * This constructor maps the columns of an opened snapshot file.
+     * @param channel The opened snapshot file.
+     * @param size The number of Passengers in the file.
+     * @param log The flight log the Passengers were counted from, and how far.
+     * @throws IOException If the file can not be mapped.
+     */
+    private PassengerSnapshot(FileChannel channel, int size, LogFingerprint log) throws IOException {
+        long position = HEADER_SIZE; // The offset of the current column.
+
+        this.size = size;
+        this.log = log;
+        this.ids = map(channel, position, 8L * size);
+        position += padded(8L * size);
+        this.flights = map(channel, position, 4L * size);
+        position += padded(4L * size);
+        this.cancelled = map(channel, position, 4L * size);
+        position += padded(4L * size);
+        this.complaints = map(channel, position, 4L * size);
+        position += padded(4L * size);
+        this.tiers = map(channel, position, size);
+        position += padded(size);
+        this.multipliers = map(channel, position, size);
+    }
+
+    /**
+     * This method writes every Passenger of a store to a snapshot file. The file is first written
+     * under a temporary name and then renamed, so a crash never leaves a half-written snapshot.
+     * @param passengerInfo The store, whose year should be over.
+     * @param fileName The name of the snapshot file.
+     * @throws IOException If the file can not be written.
+     */
+    public static void write(PassengerStore passengerInfo, String fileName) throws IOException {
+        write(passengerInfo, fileName, LogFingerprint.NONE);
+    }
+
+    /**
+     * This method writes every Passenger of a store to a snapshot file, together with the
+     * fingerprint of the flight log their records were read from, up to the offset reached. The
+     * file is first written under a temporary name and then renamed, so a crash never leaves a
+     * half-written snapshot.
+     * @param passengerInfo The store, which must not change while it is written.
+     * @param fileName The name of the snapshot file.
+     * @param log The flight log, at the offset just after the last record counted in the store.
+     * @throws IOException If the file can not be written.
+     */
+    public static void write(PassengerStore passengerInfo, String fileName, LogFingerprint log) throws IOException {
+        Path path = Paths.get(fileName); // The path of the snapshot file.
+        Path partPath = Paths.get(fileName + ".part"); // The path while the file is being written.
+        long[] sortedIDs = passengerInfo.getIDs(); // The IDs of the Passengers, sorted.
+        ByteBuffer buffer = ByteBuffer.allocate(8 * WRITE_BATCH).order(ByteOrder.LITTLE_ENDIAN); // Bytes to write.
+        CRC32C checksum = new CRC32C(); // The checksum of the columns.
+
+        if (sortedIDs.length > MAX_SIZE)
+            throw new IOException("A snapshot can hold at most " + MAX_SIZE + " passengers, not " + sortedIDs.length + ".");
+        Arrays.sort(sortedIDs);
+        try (FileChannel channel = FileChannel.open(partPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            channel.position(HEADER_SIZE);
+            // Write the columns in order: IDs, flights, cancelled flights, complaints, Tiers, and multipliers.
+            for (int column = 0; column < NUM_COLUMNS; column++) {
+                long numBytes = 0; // The number of bytes written in the column.
+
+                for (int i = 0; i < sortedIDs.length; i++) {
+                    long passengerID = sortedIDs[i]; // The Passenger whose value is written.
+
+                    if (column == 0)
+                        buffer.putLong(passengerID);
+                    else if (column == 1)
+                        buffer.putInt(passengerInfo.getFlights(passengerID));
+                    else if (column == 2)
+                        buffer.putInt(passengerInfo.getCancelledFlights(passengerID));
+                    else if (column == 3)
+                        buffer.putInt(passengerInfo.getComplaints(passengerID));
+                    else if (column == 4)
+                        buffer.put((byte) passengerInfo.getTierOrdinal(passengerID));
+                    else
+                        buffer.put((byte) (passengerInfo.hasMultiplier(passengerID) ? 1 : 0));
+                    if (buffer.remaining() < 8)
+                        numBytes += flush(channel, buffer, checksum);
+                }
+                // Pad the column so the next one starts on a multiple of 8 bytes.
+                while ((numBytes + buffer.position()) % 8 != 0)
+                    buffer.put((byte) 0);
+                numBytes += flush(channel, buffer, checksum);
+            }
+
+            // The header is written last, once the checksum is known.
+            buffer = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putLong(MAGIC_AT, MAGIC);
+            buffer.putInt(VERSION_AT, VERSION);
+            buffer.putInt(SIZE_AT, sortedIDs.length);
+            buffer.putLong(CHECKSUM_AT, checksum.getValue());
+            buffer.putLong(LOG_POSITION_AT, log.getPosition());
+            buffer.putLong(LOG_SIZE_AT, log.getSize());
+            buffer.putLong(LOG_MODIFIED_AT, log.getLastModified());
+            buffer.putLong(LOG_CHECKSUM_AT, log.getChecksum());
+            while (buffer.hasRemaining())
+                channel.write(buffer, buffer.position());
+            channel.force(true);
+        }
+        Files.move(partPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * This method loads a snapshot file by memory-mapping it, after checking its header and checksum.
+     * Reading the whole file for the checksum takes about as long as the file takes to read, so
+     * load(fileName, false) only checks the header when the file is trusted.
+     * @param fileName The name of the snapshot file.
+     * @return The Passengers in the snapshot.
+     * @throws IOException If the file can not be read, or is not a valid snapshot.
+     */
+    public static PassengerSnapshot load(String fileName) throws IOException {
+        return load(fileName, true);
+    }
+
+    /**
+     * This method loads a snapshot file by memory-mapping it, after checking its header.
+     * @param fileName The name of the snapshot file.
+     * @param isVerified Flag indicating whether to read the whole file to check the checksum.
+     * @return The Passengers in the snapshot.
+     * @throws IOException If the file can not be read, or is not a valid snapshot.
+     */
+    public static PassengerSnapshot load(String fileName, boolean isVerified) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN); // The header.
+            int size; // The number of Passengers in the file.
+            PassengerSnapshot snapshot; // The mapped snapshot.
+
+            if (channel.read(header, 0) != HEADER_SIZE || header.getLong(MAGIC_AT) != MAGIC)
+                throw new IOException(fileName + " is not a passenger snapshot.");
+            if (header.getInt(VERSION_AT) != VERSION)
+                throw new IOException(fileName + " has snapshot version " + header.getInt(VERSION_AT)
+                        + ", but only version " + VERSION + " can be read.");
+            size = header.getInt(SIZE_AT);
+            if (size < 0 || size > MAX_SIZE)
+                throw new IOException(fileName + " holds " + size + " passengers, but a snapshot can hold at most "
+                        + MAX_SIZE + ".");
+            if (channel.size() != fileSize(size))
+                throw new IOException(fileName + " is truncated or has extra bytes.");
+
+            snapshot = new PassengerSnapshot(channel, size, new LogFingerprint(header.getLong(LOG_POSITION_AT),
+                    header.getLong(LOG_SIZE_AT), header.getLong(LOG_MODIFIED_AT), header.getLong(LOG_CHECKSUM_AT)));
+            if (isVerified && snapshot.getChecksum() != header.getLong(CHECKSUM_AT))
+                throw new IOException(fileName + " is corrupt: the checksum does not match.");
+            return snapshot;
+        }
+    }
+
+    /**
+     * This method returns the size of a snapshot file.
+     * @param size The number of Passengers in the file.
+     * @return The number of bytes in the file.
+     */
+    public static long fileSize(int size) {
+        return HEADER_SIZE + padded(8L * size) + 3 * padded(4L * size) + 2 * padded(size);
+    }
+
+    /**
+     * This method updates nothing, because a snapshot can only be read.
+     * @param passengerID The look-up ID of the Passenger the flight belongs to.
+     * @param isCancelled Flag indicating whether the flight was cancelled.
+     * @param hasComplain Flag indicating whether the Passenger complained about the cancelled flight.
+     * @throws UnsupportedOperationException Always.
+     */
+    @Override
+    public void addRecord(long passengerID, boolean isCancelled, boolean hasComplain) {
+        throw new UnsupportedOperationException("A passenger snapshot can only be read.");
+    }
+
+    /**
+     * This method updates nothing, because a snapshot can only be read.
+     * @param passengerID The look-up ID of the Passenger.
+     * @param numFlights The total number of flights a Passenger has taken, or was supposed to take.
+     * @param numCancFlights Number of flights the passenger was supposed to take but were cancelled.
+     * @param numComplaints The number of times a Passenger has complained.
+     * @throws UnsupportedOperationException Always.
+     */
+    @Override
+    public void setTotals(long passengerID, int numFlights, int numCancFlights, int numComplaints) {
+        throw new UnsupportedOperationException("A passenger snapshot can only be read.");
+    }
+
+    /**
+     * This method checks whether there is a Passenger with the given ID.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Flag indicating whether the Passenger exists.
+     */
+    @Override
+    public boolean contains(long passengerID) {
+        return indexOf(passengerID) >= 0;
+    }
+
+    /**
+     * Returns (as a String) the name of the tier the passenger belongs to.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The name of the tier the passenger belongs to.
+     */
+    @Override
+    public String getTier(long passengerID) {
+        return TierTable.getName(getTierOrdinal(passengerID));
+    }
+
+    /**
+     * Returns the TierTable ordinal of the tier the passenger belongs to.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The ordinal of the tier the passenger belongs to.
+     */
+    @Override
+    public int getTierOrdinal(long passengerID) {
+        return tiers.get(indexOf(passengerID));
+    }
+
+    /**
+     * Returns the miles earned over the year.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The total number of miles the Passenger earned based on the cancelled flights.
+     */
+    @Override
+    public int getMiles(long passengerID) {
+        int index = indexOf(passengerID); // The index of the Passenger in the columns.
+
+        return TierTable.getMiles(tiers.get(index), cancelled.getInt(index * 4));
+    }
+
+    /**
+     * Returns the number of flights the passenger was supposed to take but were cancelled.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Number of flights the passenger was supposed to take but were cancelled.
+     */
+    @Override
+    public int getCancelledFlights(long passengerID) {
+        return cancelled.getInt(indexOf(passengerID) * 4);
+    }
+
+    /**
+     * This method returns the total number of flights the passenger took, including cancelled flights.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The total number of flights a Passenger has taken, or was supposed to take.
+     */
+    @Override
+    public int getFlights(long passengerID) {
+        return flights.getInt(indexOf(passengerID) * 4);
+    }
+
+    /**
+     * Returns the number of times the passenger complained about a cancelled flight.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The number of times a Passenger has complained.
+     */
+    @Override
+    public int getComplaints(long passengerID) {
+        return complaints.getInt(indexOf(passengerID) * 4);
+    }
+
+    /**
+     * Returns true if the passenger has the mileage multiplier.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Flag for indicating whether a passenger has the mileage multiplier.
+     */
+    @Override
+    public boolean hasMultiplier(long passengerID) {
+        return multipliers.get(indexOf(passengerID)) != 0;
+    }
+
+    /**
+     * This method does nothing, because the year of a snapshot is already over.
+     */
+    @Override
+    public void finishYear() {
+    }
+
+    /**
+     * This method returns how far into the flight log the Passengers of the snapshot were counted.
+     * @return The offset in the flight log just after the last record counted, or 0 if it was not recorded.
+     */
+    public long getLogPosition() {
+        return this.log.getPosition();
+    }
+
+    /**
+     * This method returns the fingerprint of the flight log the Passengers of the snapshot were counted from.
+     * @return The fingerprint, which is LogFingerprint.NONE (all zeros) if it was not recorded.
+     */
+    public LogFingerprint getLogFingerprint() {
+        return this.log;
+    }
+
+    /**
+     * This method returns the number of Passengers in the snapshot.
+     * @return The number of Passengers stored.
+     */
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * This method returns the IDs of all Passengers in the snapshot, in ascending order.
+     * @return The look-up IDs of the Passengers.
+     */
+    @Override
+    public long[] getIDs() {
+        long[] sortedIDs = new long[size]; // The IDs of the Passengers.
+
+        for (int i = 0; i < size; i++)
+            sortedIDs[i] = ids.getLong(i * 8);
+        return sortedIDs;
+    }
+
+    /**
+     * This method returns the bytes of the file used for each Passenger.
+     * @return The number of bytes used per Passenger.
+     */
+    @Override
+    public long getBytesPerPassenger() {
+        return (fileSize(size) - HEADER_SIZE) / Math.max(size, 1);
+    }
+
+    /**
+     * This method finds a Passenger by a binary search on the sorted IDs.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The index of the Passenger in the columns, or a negative number if there is no such Passenger.
+     */
+    private int indexOf(long passengerID) {
+        int low = 0; // The first index that may hold the ID.
+        int high = size - 1; // The last index that may hold the ID.
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1; // The index checked next.
+            long middleID = ids.getLong(middle * 8); // The ID at that index.
+
+            if (middleID < passengerID)
+                low = middle + 1;
+            else if (middleID > passengerID)
+                high = middle - 1;
+            else
+                return middle;
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * This method computes the checksum of the columns, as written in the header.
+     * @return The CRC-32C checksum of the columns.
+     */
+    private long getChecksum() {
+        CRC32C checksum = new CRC32C(); // The checksum of the columns.
+
+        for (MappedByteBuffer column : new MappedByteBuffer[] {ids, flights, cancelled, complaints, tiers, multipliers}) {
+            ByteBuffer bytes = column.duplicate(); // A view of the column, so its position is not moved.
+            int padding = (int) (padded(bytes.limit()) - bytes.limit()); // The zeros after the column.
+
+            checksum.update(bytes);
+            checksum.update(new byte[padding]);
+        }
+        return checksum.getValue();
+    }
+
+    /**
+     * This method writes the bytes in a buffer to the file and adds them to the checksum.
+     * @param channel The file being written.
+     * @param buffer The bytes to write.
+     * @param checksum The checksum of the bytes written so far.
+     * @return The number of bytes written.
+     * @throws IOException If the bytes can not be written.
+     */
+    private static int flush(FileChannel channel, ByteBuffer buffer, CRC32C checksum) throws IOException {
+        int numBytes = buffer.position(); // The number of bytes to write.
+
+        buffer.flip();
+        checksum.update(buffer.array(), 0, numBytes);
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+        return numBytes;
+    }
+
+    /**
+     * This method maps a column of the file.
+     * @param channel The opened snapshot file.
+     * @param position The offset of the column.
+     * @param numBytes The number of bytes in the column (without padding).
+     * @return The mapped column, in little-endian order.
+     * @throws IOException If the column can not be mapped.
+     */
+    private static MappedByteBuffer map(FileChannel channel, long position, long numBytes) throws IOException {
+        MappedByteBuffer column = channel.map(FileChannel.MapMode.READ_ONLY, position, numBytes); // The column.
+
+        column.order(ByteOrder.LITTLE_ENDIAN);
+        return column;
+    }
+
+    /**
+     * This method rounds a number of bytes up to a multiple of 8.
+     * @param numBytes The number of bytes.
+     * @return The number of bytes with padding.
+     */
+    private static long padded(long numBytes) {
+        return (numBytes + 7) & ~7L;
+    }
+}
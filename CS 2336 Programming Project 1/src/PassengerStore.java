@@ -0,0 +1,99 @@
+/**
+ * This interface represents the records of all Passengers, looked up by their numeric ID.
+ * It serves the same information as the methods of Passenger, so that the records can be
+ * kept either as Passenger objects or in a more compact form.
+ */
+public interface PassengerStore extends FlightRecordHandler {
+    /**
+     * This method sets the totals of a Passenger that were counted elsewhere, adding the
+     * Passenger if the ID is new. The Tier is set from the number of cancelled flights. No
+     * upgrades are counted in the Metrics, since only the caller knows whether the totals are new
+     * records (see Metrics.countUpgrades()) or were counted before, like a checkpoint being resumed.
+     * @param passengerID The look-up ID of the Passenger.
+     * @param numFlights The total number of flights a Passenger has taken, or was supposed to take.
+     * @param numCancFlights Number of flights the passenger was supposed to take but were cancelled.
+     * @param numComplaints The number of times a Passenger has complained.
+     */
+    public void setTotals(long passengerID, int numFlights, int numCancFlights, int numComplaints);
+
+    /**
+     * This method checks whether there is a Passenger with the given ID.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Flag indicating whether the Passenger exists.
+     */
+    public boolean contains(long passengerID);
+
+    /**
+     * Returns (as a String) the name of the tier the passenger belongs to.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The name of the tier the passenger belongs to.
+     */
+    public String getTier(long passengerID);
+
+    /**
+     * Returns the TierTable ordinal of the tier the passenger belongs to.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The ordinal of the tier the passenger belongs to.
+     */
+    public int getTierOrdinal(long passengerID);
+
+    /**
+     * Returns the miles earned over the year.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The total number of miles the Passenger earned based on the cancelled flights.
+     */
+    public int getMiles(long passengerID);
+
+    /**
+     * Returns the number of flights the passenger was supposed to take but were cancelled.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Number of flights the passenger was supposed to take but were cancelled.
+     */
+    public int getCancelledFlights(long passengerID);
+
+    /**
+     * This method returns the current total number of flights the passenger took, including cancelled flights.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The total number of flights a Passenger has taken, or was supposed to take.
+     */
+    public int getFlights(long passengerID);
+
+    /**
+     * Returns the number of times the passenger complained about a cancelled flight.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The number of times a Passenger has complained.
+     */
+    public int getComplaints(long passengerID);
+
+    /**
+     * Returns true if the passenger has the mileage multiplier. This will
+     * return false until the end of the year has been reached.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Flag for indicating whether a passenger has the mileage multiplier.
+     */
+    public boolean hasMultiplier(long passengerID);
+
+    /**
+     * This method indicates that the year is over, and upgrades every Passenger
+     * that earned the mileage multiplier to the corresponding special Sub-Tier.
+     */
+    public void finishYear();
+
+    /**
+     * This method returns the number of Passengers stored.
+     * @return The number of Passengers stored.
+     */
+    public int size();
+
+    /**
+     * This method returns the IDs of all Passengers stored, in no particular order.
+     * @return The look-up IDs of the Passengers.
+     */
+    public long[] getIDs();
+
+    /**
+     * This method returns (an estimate of) the memory used for each Passenger stored.
+     * @return The number of bytes used per Passenger.
+     */
+    public long getBytesPerPassenger();
+}
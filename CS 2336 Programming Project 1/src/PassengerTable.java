@@ -0,0 +1,302 @@
+import java.util.ArrayList;
+
+/**
+ * This class keeps records of all Passengers, using their numeric ID as the look-up key.
+ * It uses open addressing on primitive arrays, so that looking up a Passenger for
+ * a flight record does not create a key object (unlike a HashMap with String keys).
+ */
+public class PassengerTable implements SlottedStore {
+    private static final int INITIAL_CAPACITY = 1024; // The starting number of slots (always a power of two).
+    private static final int SLOT_BYTES = 8 + 4; // The memory used by a slot (an ID and a reference).
+    private static final int OBJECT_BYTES = 32; // The memory used by a Passenger object.
+    private long[] keys; // The Passenger IDs, one per slot.
+    private Passenger[] passengers; // The Passenger records, in the same slot as their ID.
+    private int size = 0; // The number of Passengers stored.
+    private boolean isEndOfYear = false; // Flag for indicating whether the year of the table is over.
+
+    /**
+     * This constructor creates an empty table.
+     */
+    public PassengerTable() {
+        this.keys = PassengerIDs.newKeys(INITIAL_CAPACITY);
+        this.passengers = new Passenger[INITIAL_CAPACITY];
+    }
+
+    /**
+     * This method returns the Passenger with the given ID.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The Passenger with the given ID, or null if there is no such Passenger.
+     */
+    public Passenger get(long passengerID) {
+        return passengers[PassengerIDs.findSlot(keys, passengerID)];
+    }
+
+    /**
+     * This method returns the Passenger with the given ID, adding a new Passenger if the ID is new.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The Passenger with the given ID.
+     */
+    public Passenger getOrAdd(long passengerID) {
+        Passenger passObj = get(passengerID); // The Passenger with the given ID.
+
+        // Check whether the passenger is new or not.
+        if (passObj == null) {
+            passObj = new Passenger();
+            put(passengerID, passObj);
+        }
+        return passObj;
+    }
+
+    /**
+     * This method updates the details of a Passenger with a single flight record.
+     * @param passengerID The look-up ID of the Passenger the flight belongs to.
+     * @param isCancelled Flag indicating whether the flight was cancelled.
+     * @param hasComplain Flag indicating whether the Passenger complained about the cancelled flight.
+     */
+    @Override
+    public void addRecord(long passengerID, boolean isCancelled, boolean hasComplain) {
+        Passenger passObj = getOrAdd(passengerID); // The Passenger the record belongs to.
+
+        passObj.addFlight(isCancelled);
+
+        // Check if the passenger complained and update the number of complaints.
+        if (isCancelled && hasComplain)
+            passObj.addComplaint();
+    }
+
+    /**
+     * This method stores a Passenger under the given ID, replacing any Passenger already stored.
+     * @param passengerID The look-up ID of the Passenger.
+     * @param passObj The Passenger to store.
+     */
+    public void put(long passengerID, Passenger passObj) {
+        int slot = PassengerIDs.findSlot(keys, passengerID); // The slot of the Passenger.
+
+        // A Passenger added after the end of the year belongs to a year that is already over.
+        if (isEndOfYear)
+            passObj.setEndOfYear(true);
+
+        if (passengers[slot] == null) {
+            if (PassengerIDs.isFull(keys, size)) {
+                grow();
+                slot = PassengerIDs.findSlot(keys, passengerID);
+            }
+            keys[slot] = passengerID;
+            size++;
+        }
+        passengers[slot] = passObj;
+    }
+
+    /**
+     * This method sets the totals of a Passenger that were counted elsewhere. After the end of
+     * the year (like when a correction is applied), the Passenger also gets the Sub-Tier decision
+     * of the end of the year again.
+     * @param passengerID The look-up ID of the Passenger.
+     * @param numFlights The total number of flights a Passenger has taken, or was supposed to take.
+     * @param numCancFlights Number of flights the passenger was supposed to take but were cancelled.
+     * @param numComplaints The number of times a Passenger has complained.
+     */
+    @Override
+    public void setTotals(long passengerID, int numFlights, int numCancFlights, int numComplaints) {
+        Passenger passObj = new Passenger(numFlights, numCancFlights, numComplaints); // The Passenger with the totals.
+
+        put(passengerID, passObj);
+        if (passObj.hasMultiplier() && TierTable.getSpecialTier(passObj.getTierOrdinal()) != passObj.getTierOrdinal())
+            passObj.setSpecialTier();
+    }
+
+    /**
+     * This method checks whether there is a Passenger with the given ID.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Flag indicating whether the Passenger exists.
+     */
+    @Override
+    public boolean contains(long passengerID) {
+        return get(passengerID) != null;
+    }
+
+    /**
+     * Returns (as a String) the name of the tier the passenger belongs to.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The name of the tier the passenger belongs to.
+     */
+    @Override
+    public String getTier(long passengerID) {
+        return get(passengerID).getTier();
+    }
+
+    /**
+     * Returns the TierTable ordinal of the tier the passenger belongs to.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The ordinal of the tier the passenger belongs to.
+     */
+    @Override
+    public int getTierOrdinal(long passengerID) {
+        return get(passengerID).getTierOrdinal();
+    }
+
+    /**
+     * Returns the miles earned over the year.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The total number of miles the Passenger earned based on the cancelled flights.
+     */
+    @Override
+    public int getMiles(long passengerID) {
+        return get(passengerID).getMiles();
+    }
+
+    /**
+     * Returns the number of flights the passenger was supposed to take but were cancelled.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Number of flights the passenger was supposed to take but were cancelled.
+     */
+    @Override
+    public int getCancelledFlights(long passengerID) {
+        return get(passengerID).getCancelledFlights();
+    }
+
+    /**
+     * This method returns the current total number of flights the passenger took, including cancelled flights.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The total number of flights a Passenger has taken, or was supposed to take.
+     */
+    @Override
+    public int getFlights(long passengerID) {
+        return get(passengerID).getFlights();
+    }
+
+    /**
+     * Returns the number of times the passenger complained about a cancelled flight.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The number of times a Passenger has complained.
+     */
+    @Override
+    public int getComplaints(long passengerID) {
+        return get(passengerID).getComplaints();
+    }
+
+    /**
+     * Returns true if the passenger has the mileage multiplier.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Flag for indicating whether a passenger has the mileage multiplier.
+     */
+    @Override
+    public boolean hasMultiplier(long passengerID) {
+        return get(passengerID).hasMultiplier();
+    }
+
+    /**
+     * This method indicates that the year is over, and upgrades every Passenger
+     * that earned the mileage multiplier to the corresponding special Sub-Tier.
+     */
+    @Override
+    public void finishYear() {
+        setEndOfYear();
+        finishSlots(0, passengers.length, new long[TierTable.NUM_TIERS]);
+    }
+
+    /**
+     * This method returns the number of slots, including the empty ones.
+     * @return The number of slots.
+     */
+    @Override
+    public int getNumSlots() {
+        return passengers.length;
+    }
+
+    /**
+     * This method indicates that the year is over, without changing any Passenger yet.
+     */
+    @Override
+    public void setEndOfYear() {
+        isEndOfYear = true;
+    }
+
+    /**
+     * This method determines which Passengers in a range of slots have the mileage
+     * multiplier, and upgrades them to the corresponding special Sub-Tier.
+     * @param fromSlot The first slot of the range.
+     * @param toSlot The slot just after the last slot of the range.
+     * @param promotions The number of Passengers upgraded out of each Tier, added to by this method.
+     */
+    @Override
+    public void finishSlots(int fromSlot, int toSlot, long[] promotions) {
+        // Iterate over the passengers, determine if they have the mileage multiplier and/or update their tier.
+        for (int slot = fromSlot; slot < toSlot; slot++) {
+            Passenger passObj = passengers[slot]; // The Passenger in the slot.
+            int tier; // The ordinal of the Passenger's Tier before the upgrade.
+
+            if (passObj == null)
+                continue;
+            passObj.setEndOfYear(true);
+            tier = passObj.getTierOrdinal();
+
+            // Passengers without a mileage multiplier do not qualify for an upgrade.
+            if (passObj.hasMultiplier() && TierTable.getSpecialTier(tier) != tier) {
+                passObj.setSpecialTier();
+                promotions[tier]++;
+            }
+        }
+    }
+
+    /**
+     * This method returns the number of Passengers in the table.
+     * @return The number of Passengers stored.
+     */
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * This method returns the IDs of all Passengers stored, in no particular order.
+     * @return The look-up IDs of the Passengers.
+     */
+    @Override
+    public long[] getIDs() {
+        return PassengerIDs.collect(keys, size);
+    }
+
+    /**
+     * This method returns an estimate of the memory used for each Passenger, counting
+     * the slots of the table and the Passenger objects themselves.
+     * @return The number of bytes used per Passenger.
+     */
+    @Override
+    public long getBytesPerPassenger() {
+        return ((long) keys.length * SLOT_BYTES + (long) size * OBJECT_BYTES) / Math.max(size, 1);
+    }
+
+    /**
+     * This method returns every Passenger in the table (in no particular order).
+     * @return A list of all the Passengers stored.
+     */
+    public ArrayList<Passenger> values() {
+        ArrayList<Passenger> values = new ArrayList<>(size); // All the Passengers stored.
+
+        for (Passenger passObj : passengers) {
+            if (passObj != null)
+                values.add(passObj);
+        }
+        return values;
+    }
+
+    /**
+     * This method doubles the number of slots and moves every Passenger into the new slots.
+     */
+    private void grow() {
+        long[] newKeys = PassengerIDs.newKeys(keys.length * 2); // The Passenger IDs after growing.
+        Passenger[] newPassengers = new Passenger[keys.length * 2]; // The Passenger records after growing.
+        int slot; // The new slot of a Passenger.
+
+        for (int i = 0; i < keys.length; i++) {
+            if (passengers[i] == null)
+                continue;
+            slot = PassengerIDs.findSlot(newKeys, keys[i]);
+            newKeys[slot] = keys[i];
+            newPassengers[slot] = passengers[i];
+        }
+        keys = newKeys;
+        passengers = newPassengers;
+    }
+}
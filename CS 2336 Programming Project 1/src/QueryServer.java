@@ -0,0 +1,131 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * This class answers batches of passenger look-ups without a person at the keyboard, either on
+ * standard input and output or on a local socket. Each request is one line of passenger IDs
+ * separated by spaces, tabs, or commas, and the reply has one tab-separated line per ID (in the
+ * same order, see LookupBatch.appendRow()) followed by an empty line. The IDs of a request are
+ * looked up together, and the whole reply is written at once through a buffer. The time taken
+ * to answer each request is recorded in the Metrics.
+ */
+public class QueryServer {
+    private static final int BUFFER_SIZE = 1 << 16; // The size of the input and output buffers.
+    private final PassengerStore passengerInfo; // The store the IDs are looked up in.
+
+    /**
+     * This constructor creates a server for a store.
+     * @param passengerInfo The store the IDs are looked up in.
+     */
+    public QueryServer(PassengerStore passengerInfo) {
+        this.passengerInfo = passengerInfo;
+    }
+
+    /**
+     * This method answers every request from an input until it ends. A reply is sent as soon
+     * as there are no more requests waiting, so a client can wait for each reply.
+     * @param in The requests.
+     * @param out The replies.
+     * @return The number of IDs looked up.
+     * @throws IOException If the requests can not be read or the replies can not be written.
+     */
+    public long serve(InputStream in, OutputStream out) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII),
+                BUFFER_SIZE); // Reads the requests.
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.US_ASCII); // Writes the replies.
+        LookupBatch batch = new LookupBatch(1024); // The IDs of the current request.
+        int[] tokenStarts = new int[1024]; // Where each ID of the request starts in the line.
+        int[] tokenEnds = new int[1024]; // Where each ID of the request ends in the line.
+        StringBuilder reply = new StringBuilder(BUFFER_SIZE); // The reply to the current request.
+        long numAnswered = 0; // The number of IDs looked up.
+        String line; // The current request.
+
+        while ((line = reader.readLine()) != null) {
+            int i = 0; // An index in the line.
+            long startTime = System.nanoTime(); // The time the request was read.
+
+            batch.clear();
+            reply.setLength(0);
+            while (i < line.length()) {
+                int start; // The index where the current ID starts.
+
+                while (i < line.length() && isSeparator(line.charAt(i)))
+                    i++;
+                start = i;
+                while (i < line.length() && !isSeparator(line.charAt(i)))
+                    i++;
+                if (i == start)
+                    break;
+                if (batch.size() == tokenStarts.length) {
+                    tokenStarts = Arrays.copyOf(tokenStarts, tokenStarts.length * 2);
+                    tokenEnds = Arrays.copyOf(tokenEnds, tokenEnds.length * 2);
+                }
+                tokenStarts[batch.size()] = start;
+                tokenEnds[batch.size()] = i;
+                batch.add(MappedFlightReader.parseID(line, start, i));
+            }
+
+            batch.resolve(passengerInfo);
+            for (int entry = 0; entry < batch.size(); entry++) {
+                reply.append(line, tokenStarts[entry], tokenEnds[entry]);
+                batch.appendRow(reply, entry);
+            }
+            reply.append('\n');
+            writer.append(reply);
+            numAnswered += batch.size();
+            Metrics.add(Metrics.LOOKUPS, batch.size());
+            Metrics.recordTime("lookup.request", startTime);
+
+            // Only flush once the requests already received have been answered.
+            if (!reader.ready())
+                writer.flush();
+        }
+        writer.flush();
+        return numAnswered;
+    }
+
+    /**
+     * This method accepts connections on a port of the local machine and answers each one on
+     * a thread of the executor, until the program is stopped.
+     * @param port The port to listen on.
+     * @param executor The threads that answer the connections.
+     * @throws IOException If the port can not be opened.
+     */
+    public void listen(int port, ExecutorService executor) throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            while (true) {
+                Socket socket = serverSocket.accept(); // The connection of a client.
+
+                executor.execute(() -> {
+                    try (Socket client = socket) {
+                        client.setTcpNoDelay(true);
+                        serve(client.getInputStream(), client.getOutputStream());
+                    }
+                    catch (IOException e) {
+                        System.err.println("Query connection failed: " + e.getMessage());
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * This method checks whether a character separates the IDs of a request.
+     * @param c The character.
+     * @return Flag indicating whether the character is a space, tab, or comma.
+     */
+    private static boolean isSeparator(char c) {
+        return c == ' ' || c == '\t' || c == ',' || c == '\r';
+    }
+}
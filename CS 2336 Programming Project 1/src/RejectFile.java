@@ -0,0 +1,62 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * This class quarantines the lines of a flight data file that are not flight records. Each
+ * rejected line is written to the reject file as its line number, a tab, and the line itself
+ * (without its carriage return), so it can be fixed and read again. Rejected lines are not applied
+ * to the Passengers. A reject file is written by one reader at a time.
+ */
+public class RejectFile implements Closeable {
+    private final OutputStream outStream; // The reject file.
+    private long numRejected = 0; // The number of lines rejected so far.
+
+    /**
+     * This constructor creates (or empties) the reject file.
+     * @param fileName The name of the reject file.
+     * @throws IOException If the file can not be created.
+     */
+    public RejectFile(String fileName) throws IOException {
+        this.outStream = new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16);
+    }
+
+    /**
+     * This method writes a rejected line to the reject file.
+     * @param lineNumber The number of the line in the input (the first line is 1).
+     * @param buffer The bytes holding the line.
+     * @param from The index where the line starts.
+     * @param to The index of the line's new line, or of the end of the input.
+     * @throws IOException If the line can not be written.
+     */
+    public void reject(long lineNumber, ByteBuffer buffer, int from, int to) throws IOException {
+        if (to > from && buffer.get(to - 1) == '\r')
+            to--;
+        outStream.write(Long.toString(lineNumber).getBytes());
+        outStream.write('\t');
+        for (int i = from; i < to; i++)
+            outStream.write(buffer.get(i));
+        outStream.write('\n');
+        numRejected++;
+    }
+
+    /**
+     * This method returns the number of lines rejected so far.
+     * @return The number of rejected lines.
+     */
+    public long getNumRejected() {
+        return this.numRejected;
+    }
+
+    /**
+     * This method writes out the rejected lines and closes the reject file.
+     * @throws IOException If the file can not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        outStream.close();
+    }
+}
@@ -0,0 +1,426 @@
+import java.util.Arrays;
+
+/**
+ * This class keeps records of all Passengers for rolling 12-month qualification, instead of one
+ * calendar year that ends with the input. Each slot holds an ID, the Passenger's totals over the
+ * window (flights, cancelled flights, and complaints), and a ring of the same counts for each of
+ * the 12 months of the window, all in one primitive array. A Passenger's Tier always follows
+ * their totals over the window: it is the Tier their cancelled flights reach, and its Sub-Tier
+ * (with the mileage multiplier) while their complaints allow it. So there is no end of the year,
+ * and a Passenger is downgraded again when the months that qualified them leave the window.
+ *
+ * The window ends with the latest month of any record. When it moves on, only the Passengers who
+ * flew in the month that leaves the window are visited: every month keeps a list of the
+ * Passengers who flew in it, so moving the window never goes through the whole store, and every
+ * record is counted in constant time. A record from a month that has already left the window is
+ * not counted (see getNumLate()), and a record without a date counts in the latest month. Before
+ * the first dated record there is no latest month yet: the records without a date are then held
+ * apart, and count in the month of the first dated record once it arrives.
+ */
+public class RollingWindowStore implements PassengerStore, DatedFlightRecordHandler {
+    public static final int WINDOW_MONTHS = 12; // The number of months in the window.
+    private static final int INITIAL_CAPACITY = 1024; // The starting number of slots (always a power of two).
+    private static final int FLIGHTS = 0; // The offset of the flight count within a count group.
+    private static final int CANCELLED = 1; // The offset of the cancelled flight count within a count group.
+    private static final int COMPLAINTS = 2; // The offset of the complaint count within a count group.
+    private static final int GROUP = 3; // The number of counts in a group (the window's totals, or a month's).
+    private static final int STRIDE = GROUP * (WINDOW_MONTHS + 1); // The counts per slot: the totals, then each month.
+    private static final int SLOT_BYTES = 8 + 4 * STRIDE + 1; // The memory used by a slot.
+    private static final int UNDATED_RING = 0; // The place in the rings of the records counted before the first date.
+    private long[] keys; // The Passenger IDs, one per slot.
+    private int[] counts; // The totals and the monthly counts of each Passenger, STRIDE per slot.
+    private byte[] tiers; // The Tier ordinal of each Passenger.
+    private int size = 0; // The number of Passengers stored.
+    private final long[][] monthIDs = new long[WINDOW_MONTHS][16]; // The Passengers who flew in each month of the window.
+    private final int[] numMonthIDs = new int[WINDOW_MONTHS]; // The number of Passengers in each month's list.
+    private int latestMonth = -1; // The last month of the window, or -1 before the first dated record.
+    private long numLate = 0; // The number of records from months that had already left the window.
+    private long numDowngrades = 0; // The number of times a Passenger fell to a lower Tier.
+
+    /**
+     * This constructor creates an empty store.
+     */
+    public RollingWindowStore() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * This method counts a flight record without a date, in the latest month of the window.
+     * @param passengerID The look-up ID of the Passenger the flight belongs to.
+     * @param isCancelled Flag indicating whether the flight was cancelled.
+     * @param hasComplain Flag indicating whether the Passenger complained about the cancelled flight.
+     */
+    @Override
+    public void addRecord(long passengerID, boolean isCancelled, boolean hasComplain) {
+        addRecord(passengerID, -1, isCancelled, hasComplain);
+    }
+
+    /**
+     * This method counts a flight record in its month, moving the window on first if the month is
+     * later than the window, and updates the Passenger's Tier.
+     * @param passengerID The look-up ID of the Passenger the flight belongs to.
+     * @param month The month of the flight (see DatedFlightRecordHandler.toMonth()), or -1 for the latest month.
+     * @param isCancelled Flag indicating whether the flight was cancelled.
+     * @param hasComplain Flag indicating whether the Passenger complained about the cancelled flight.
+     */
+    @Override
+    public void addRecord(long passengerID, int month, boolean isCancelled, boolean hasComplain) {
+        int slot; // The slot of the Passenger.
+        int base; // The index of the Passenger's totals.
+        int monthBase; // The index of the Passenger's counts for the month.
+
+        if (month < 0)
+            month = latestMonth;
+        if (month > latestMonth)
+            advanceTo(month);
+        else if (month <= latestMonth - WINDOW_MONTHS) {
+            numLate++;
+            return;
+        }
+        slot = slotOf(passengerID);
+        base = slot * STRIDE;
+        monthBase = base + GROUP * (1 + ringOf(month));
+        if (counts[monthBase + FLIGHTS] == 0)
+            addToMonth(month, passengerID);
+        counts[monthBase + FLIGHTS]++;
+        counts[base + FLIGHTS]++;
+        if (isCancelled) {
+            counts[monthBase + CANCELLED]++;
+            counts[base + CANCELLED]++;
+            if (hasComplain) {
+                counts[monthBase + COMPLAINTS]++;
+                counts[base + COMPLAINTS]++;
+            }
+        }
+        tiers[slot] = (byte) tierOf(counts[base + CANCELLED], counts[base + COMPLAINTS]);
+    }
+
+    /**
+     * This method sets the totals of a Passenger that were counted elsewhere, as if they were all
+     * flown in the latest month of the window (or held apart like records without a date, before
+     * the first dated record).
+     * @param passengerID The look-up ID of the Passenger.
+     * @param numFlights The total number of flights a Passenger has taken, or was supposed to take.
+     * @param numCancFlights Number of flights the passenger was supposed to take but were cancelled.
+     * @param numComplaints The number of times a Passenger has complained.
+     */
+    @Override
+    public void setTotals(long passengerID, int numFlights, int numCancFlights, int numComplaints) {
+        int month = latestMonth; // The month the totals are counted in, or -1 before the first date.
+        int slot = slotOf(passengerID); // The slot of the Passenger.
+        int base = slot * STRIDE; // The index of the Passenger's totals.
+        int monthBase = base + GROUP * (1 + ringOf(month)); // The index of the Passenger's counts for the month.
+
+        if (counts[monthBase + FLIGHTS] == 0)
+            addToMonth(month, passengerID);
+        // The other months still drop out of the window on their own, but hold nothing any more.
+        for (int i = base; i < base + STRIDE; i++)
+            counts[i] = 0;
+        counts[monthBase + FLIGHTS] = counts[base + FLIGHTS] = numFlights;
+        counts[monthBase + CANCELLED] = counts[base + CANCELLED] = numCancFlights;
+        counts[monthBase + COMPLAINTS] = counts[base + COMPLAINTS] = numComplaints;
+        tiers[slot] = (byte) tierOf(numCancFlights, numComplaints);
+    }
+
+    /**
+     * This method checks whether there is a Passenger with the given ID. A Passenger stays in the
+     * store (with no flights) after all their months have left the window.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Flag indicating whether the Passenger exists.
+     */
+    @Override
+    public boolean contains(long passengerID) {
+        return keys[PassengerIDs.findSlot(keys, passengerID)] != PassengerIDs.EMPTY;
+    }
+
+    /**
+     * Returns (as a String) the name of the tier the passenger belongs to over the window.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The name of the tier the passenger belongs to.
+     */
+    @Override
+    public String getTier(long passengerID) {
+        return TierTable.getName(getTierOrdinal(passengerID));
+    }
+
+    /**
+     * Returns the TierTable ordinal of the tier the passenger belongs to over the window.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The ordinal of the tier the passenger belongs to.
+     */
+    @Override
+    public int getTierOrdinal(long passengerID) {
+        return tiers[PassengerIDs.findSlot(keys, passengerID)];
+    }
+
+    /**
+     * Returns the miles earned over the window.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The total number of miles the Passenger earned based on the cancelled flights in the window.
+     */
+    @Override
+    public int getMiles(long passengerID) {
+        int slot = PassengerIDs.findSlot(keys, passengerID); // The slot of the Passenger.
+
+        return TierTable.getMiles(tiers[slot], counts[slot * STRIDE + CANCELLED]);
+    }
+
+    /**
+     * Returns the number of flights in the window that the passenger was supposed to take but were cancelled.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Number of flights the passenger was supposed to take but were cancelled.
+     */
+    @Override
+    public int getCancelledFlights(long passengerID) {
+        return counts[PassengerIDs.findSlot(keys, passengerID) * STRIDE + CANCELLED];
+    }
+
+    /**
+     * This method returns the number of flights the passenger took in the window, including cancelled flights.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The total number of flights a Passenger has taken, or was supposed to take.
+     */
+    @Override
+    public int getFlights(long passengerID) {
+        return counts[PassengerIDs.findSlot(keys, passengerID) * STRIDE + FLIGHTS];
+    }
+
+    /**
+     * Returns the number of times in the window the passenger complained about a cancelled flight.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The number of times a Passenger has complained.
+     */
+    @Override
+    public int getComplaints(long passengerID) {
+        return counts[PassengerIDs.findSlot(keys, passengerID) * STRIDE + COMPLAINTS];
+    }
+
+    /**
+     * Returns true if the passenger has the mileage multiplier over the window.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Flag for indicating whether a passenger has the mileage multiplier.
+     */
+    @Override
+    public boolean hasMultiplier(long passengerID) {
+        int base = PassengerIDs.findSlot(keys, passengerID) * STRIDE; // The index of the Passenger's totals.
+
+        return TierTable.hasMultiplier(TierTable.tierFor(counts[base + CANCELLED]), counts[base + COMPLAINTS]);
+    }
+
+    /**
+     * This method does nothing, since the Tiers of a rolling window are always up to date, and
+     * there is no end of the year to decide the mileage multipliers at.
+     */
+    @Override
+    public void finishYear() {
+    }
+
+    /**
+     * This method returns the number of Passengers stored.
+     * @return The number of Passengers stored.
+     */
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * This method returns the IDs of all Passengers.
+     * @return The look-up IDs of the Passengers.
+     */
+    @Override
+    public long[] getIDs() {
+        return PassengerIDs.collect(keys, size);
+    }
+
+    /**
+     * This method returns the memory used for each Passenger, including the empty slots.
+     * @return The number of bytes used per Passenger.
+     */
+    @Override
+    public long getBytesPerPassenger() {
+        return (long) keys.length * SLOT_BYTES / Math.max(size, 1);
+    }
+
+    /**
+     * This method returns the last month of the window.
+     * @return The month (see DatedFlightRecordHandler.toMonth()), or -1 if no dated record has been counted.
+     */
+    public int getLatestMonth() {
+        return this.latestMonth;
+    }
+
+    /**
+     * This method returns the number of records that were not counted, since their month had
+     * already left the window when they arrived.
+     * @return The number of late records.
+     */
+    public long getNumLate() {
+        return this.numLate;
+    }
+
+    /**
+     * This method returns the number of times a Passenger fell to a lower Tier when a month left the window.
+     * @return The number of downgrades.
+     */
+    public long getNumDowngrades() {
+        return this.numDowngrades;
+    }
+
+    /**
+     * This method moves the window on, so that it ends with the given month. Each month that leaves
+     * the window is taken off the totals of the Passengers who flew in it, and their Tiers are
+     * updated. At most a window's worth of months is visited, however far the window moves. The
+     * first dated record starts the window instead, and takes in the records held apart before it.
+     * @param month The new last month of the window.
+     */
+    private void advanceTo(int month) {
+        int first = Math.max(latestMonth + 1, month - WINDOW_MONTHS + 1); // The first new month.
+        long oldDowngrades = numDowngrades; // The number of downgrades before the window moved.
+
+        if (latestMonth < 0) {
+            moveRing(UNDATED_RING, ringOf(month));
+            latestMonth = month;
+            return;
+        }
+
+        for (int newMonth = first; newMonth <= month; newMonth++) {
+            int ring = newMonth % WINDOW_MONTHS; // The place of the new month (and the one it replaces) in the rings.
+
+            for (int i = 0; i < numMonthIDs[ring]; i++)
+                expire(monthIDs[ring][i], ring);
+            numMonthIDs[ring] = 0;
+        }
+        latestMonth = month;
+        Metrics.add("rolling.downgrades", numDowngrades - oldDowngrades);
+    }
+
+    /**
+     * This method takes the counts of a month that left the window off a Passenger's totals.
+     * @param passengerID The look-up ID of the Passenger.
+     * @param ring The place of the month in the Passenger's ring.
+     */
+    private void expire(long passengerID, int ring) {
+        int slot = PassengerIDs.findSlot(keys, passengerID); // The slot of the Passenger.
+        int base = slot * STRIDE; // The index of the Passenger's totals.
+        int monthBase = base + GROUP * (1 + ring); // The index of the Passenger's counts for the month.
+        int oldTier = TierTable.tierFor(counts[base + CANCELLED]); // The Tier the cancelled flights reached.
+
+        for (int i = 0; i < GROUP; i++) {
+            counts[base + i] -= counts[monthBase + i];
+            counts[monthBase + i] = 0;
+        }
+        tiers[slot] = (byte) tierOf(counts[base + CANCELLED], counts[base + COMPLAINTS]);
+        if (TierTable.tierFor(counts[base + CANCELLED]) < oldTier)
+            numDowngrades++;
+    }
+
+    /**
+     * This method moves the counts held in one place of the rings to another place that holds
+     * nothing, together with the list of the Passengers who have counts there.
+     * @param from The place of the counts in the rings.
+     * @param to The place to move them to.
+     */
+    private void moveRing(int from, int to) {
+        long[] ids = monthIDs[from]; // The Passengers with counts in the place moved from.
+
+        if (from == to)
+            return;
+        for (int i = 0; i < numMonthIDs[from]; i++) {
+            int base = PassengerIDs.findSlot(keys, ids[i]) * STRIDE; // The index of the Passenger's totals.
+
+            for (int j = 0; j < GROUP; j++) {
+                counts[base + GROUP * (1 + to) + j] = counts[base + GROUP * (1 + from) + j];
+                counts[base + GROUP * (1 + from) + j] = 0;
+            }
+        }
+        monthIDs[from] = monthIDs[to];
+        monthIDs[to] = ids;
+        numMonthIDs[to] = numMonthIDs[from];
+        numMonthIDs[from] = 0;
+    }
+
+    /**
+     * This method returns the place of a month in the rings.
+     * @param month The month, or -1 for the records held apart before the first date.
+     * @return The index of the month's counts in a ring (from 0 to WINDOW_MONTHS - 1).
+     */
+    private static int ringOf(int month) {
+        return month < 0 ? UNDATED_RING : month % WINDOW_MONTHS;
+    }
+
+    /**
+     * This method adds a Passenger to the list of a month, when they first fly in it.
+     * @param month The month, or -1 before the first date.
+     * @param passengerID The look-up ID of the Passenger.
+     */
+    private void addToMonth(int month, long passengerID) {
+        int ring = ringOf(month); // The place of the month in the rings.
+
+        if (numMonthIDs[ring] == monthIDs[ring].length)
+            monthIDs[ring] = Arrays.copyOf(monthIDs[ring], monthIDs[ring].length * 2);
+        monthIDs[ring][numMonthIDs[ring]++] = passengerID;
+    }
+
+    /**
+     * This method returns the Tier of a Passenger with the given totals over the window: the
+     * Tier their cancelled flights reach, or its Sub-Tier while their complaints allow it.
+     * @param numCancFlights The number of cancelled flights in the window.
+     * @param numComplaints The number of complaints in the window.
+     * @return The TierTable ordinal of the Tier.
+     */
+    private static int tierOf(int numCancFlights, int numComplaints) {
+        int tier = TierTable.tierFor(numCancFlights); // The Tier the cancelled flights reach.
+
+        return TierTable.hasMultiplier(tier, numComplaints) ? TierTable.getSpecialTier(tier) : tier;
+    }
+
+    /**
+     * This method finds the slot of a Passenger, adding the Passenger if the ID is new.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The index of the slot.
+     */
+    private int slotOf(long passengerID) {
+        int slot = PassengerIDs.findSlot(keys, passengerID); // The slot of the Passenger.
+
+        if (keys[slot] == PassengerIDs.EMPTY) {
+            if (PassengerIDs.isFull(keys, size)) {
+                grow();
+                slot = PassengerIDs.findSlot(keys, passengerID);
+            }
+            keys[slot] = passengerID;
+            size++;
+        }
+        return slot;
+    }
+
+    /**
+     * This method creates empty arrays with the given number of slots.
+     * @param capacity The number of slots.
+     */
+    private void allocate(int capacity) {
+        keys = PassengerIDs.newKeys(capacity);
+        counts = new int[capacity * STRIDE];
+        tiers = new byte[capacity];
+    }
+
+    /**
+     * This method doubles the number of slots and moves every Passenger into the new slots.
+     */
+    private void grow() {
+        long[] oldKeys = keys; // The Passenger IDs before growing.
+        int[] oldCounts = counts; // The counts before growing.
+        byte[] oldTiers = tiers; // The Tiers before growing.
+        int slot; // The new slot of a Passenger.
+
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == PassengerIDs.EMPTY)
+                continue;
+            slot = PassengerIDs.findSlot(keys, oldKeys[i]);
+            keys[slot] = oldKeys[i];
+            System.arraycopy(oldCounts, i * STRIDE, counts, slot * STRIDE, STRIDE);
+            tiers[slot] = oldTiers[i];
+        }
+    }
+}
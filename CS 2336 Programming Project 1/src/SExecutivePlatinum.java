@@ -4,7 +4,7 @@
  * complain about any of their cancelled flights throughout the year.
  */
 public class SExecutivePlatinum extends ExecutivePlatinum {
-    private final int MILES_PER_FLIGHT = 2000; // Number of miles per cancelled flight.
+    private final int MILES_PER_FLIGHT = TierTable.getMilesPerFlight(TierTable.S_EXECUTIVE_PLATINUM); // Number of miles per cancelled flight.
     private int numCancFlights; // Number of flights the passenger was supposed to take but were cancelled.
     private int miles; // The total number of miles the Passenger earned based on the cancelled flights.
     private int numFlights; // The total number of flights a Passenger has taken, or was supposed to take.
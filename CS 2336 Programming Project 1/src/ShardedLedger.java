@@ -0,0 +1,341 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class reads a year of flight data in shards, so that no single heap has to hold every
+ * Passenger. It works in three steps:
+ *   1. partition() reads the flight data once, and appends each record to the shard file of its
+ *      Passenger (picked from a hash of the ID, see ShardedPassengerStore.shardOf()),
+ *   2. finishShards() reads each shard file into its own store, ends its year, and writes it to a
+ *      snapshot, either in a separate process per shard or on a pool of threads,
+ *   3. open() maps the snapshots of the shards into one ShardedPassengerStore, which passes every
+ *      look-up to the owning shard, and merge() can also write them out as a single snapshot.
+ * All of a Passenger's records end up in the same shard, and the end of the year only looks at
+ * one Passenger at a time, so the result is the same as reading the whole file in one process.
+ * The files are kept in a directory, as "shard-N.txt" and "shard-N.snapshot".
+ */
+public class ShardedLedger {
+    private static final int BUFFER_SIZE = 1 << 16; // The bytes buffered per shard file while partitioning.
+    private final File directory; // The directory the files of the shards are kept in.
+    private final int numShards; // The number of shards.
+    private String rulesName = null; // The rules file the shards are finished with, or null for the defaults.
+
+    /**
+     * This constructor prepares the shards in a directory, which is created if it does not exist.
+     * @param directoryName The name of the directory the files of the shards are kept in.
+     * @param numShards The number of shards.
+     * @throws IllegalArgumentException If there is not at least one shard.
+     * @throws IOException If the directory can not be created.
+     */
+    public ShardedLedger(String directoryName, int numShards) throws IOException {
+        this.directory = new File(directoryName);
+        this.numShards = numShards;
+        if (numShards < 1)
+            throw new IllegalArgumentException("There must be at least one shard.");
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Could not create the directory " + directoryName);
+    }
+
+    /**
+     * This method sets the rules file the shards are finished with. The shards finished on threads
+     * use the rules installed in this process, but a separate process has to read them itself.
+     * @param rulesName The name of the rules file, or null for the default rules.
+     */
+    public void setRulesName(String rulesName) {
+        this.rulesName = rulesName;
+    }
+
+    /**
+     * This method returns the name of the flight data file of a shard.
+     * @param shard The number of the shard.
+     * @return The name of the shard's flight data file.
+     */
+    public String getDataName(int shard) {
+        return new File(directory, "shard-" + shard + ".txt").getPath();
+    }
+
+    /**
+     * This method returns the name of the snapshot a shard is finished into.
+     * @param shard The number of the shard.
+     * @return The name of the shard's snapshot.
+     */
+    public String getSnapshotName(int shard) {
+        return new File(directory, "shard-" + shard + ".snapshot").getPath();
+    }
+
+    /**
+     * This method reads a flight data file (compressed or not) once, and writes each record
+     * to the flight data file of its Passenger's shard.
+     * @param inputName The name of the flight data file.
+     * @return The number of flight records partitioned.
+     * @throws IOException If a file can not be read or written.
+     */
+    public long partition(String inputName) throws IOException {
+        ShardWriter writer = new ShardWriter(); // Writes each record to its shard file.
+        long numRecords; // The number of flight records partitioned.
+
+        try {
+            if (GzipFlightReader.isCompressed(inputName))
+                numRecords = GzipFlightReader.read(inputName, writer, null);
+            else
+                numRecords = MappedFlightReader.read(inputName, writer);
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        finally {
+            writer.close();
+        }
+        return numRecords;
+    }
+
+    /**
+     * This method ends the year of every shard, and writes each shard to its snapshot. A separate
+     * process (a new JVM with this program's class path) only ever holds one shard; otherwise
+     * the shards are finished on a pool of threads in this process. At most one shard per
+     * processor is finished at a time. The flight data file of a shard is deleted once its
+     * snapshot is written.
+     * @param isSeparateProcesses Flag indicating whether to finish each shard in its own process.
+     * @throws IOException If a shard can not be read or written, or its process fails.
+     */
+    public void finishShards(boolean isSeparateProcesses) throws IOException {
+        int maxRunning = Math.min(numShards, Runtime.getRuntime().availableProcessors()); // Shards at a time.
+
+        if (isSeparateProcesses)
+            finishInProcesses(maxRunning);
+        else
+            finishInThreads(maxRunning);
+        for (int shard = 0; shard < numShards; shard++)
+            new File(getDataName(shard)).delete();
+    }
+
+    /**
+     * This method opens the snapshots of the finished shards as one store.
+     * @return The store that passes every look-up to the owning shard.
+     * @throws IOException If a snapshot can not be loaded.
+     */
+    public ShardedPassengerStore open() throws IOException {
+        PassengerStore[] shards = new PassengerStore[numShards]; // The snapshots of the shards.
+
+        for (int shard = 0; shard < numShards; shard++)
+            shards[shard] = PassengerSnapshot.load(getSnapshotName(shard));
+        return new ShardedPassengerStore(shards);
+    }
+
+    /**
+     * This method merges the snapshots of the finished shards into a single snapshot, which can be
+     * loaded without the shards (for example, with the "--snapshot" option).
+     * @param fileName The name of the merged snapshot.
+     * @throws IOException If a snapshot can not be loaded or written.
+     */
+    public void merge(String fileName) throws IOException {
+        PassengerSnapshot.write(open(), fileName);
+    }
+
+    /**
+     * This method finishes one shard in this process: it reads the shard's flight data into a
+     * new store, ends its year, and writes it to the shard's snapshot.
+     * @param dataName The name of the shard's flight data file.
+     * @param snapshotName The name of the shard's snapshot.
+     * @throws IOException If the flight data can not be read, or the snapshot can not be written.
+     */
+    public static void finishShard(String dataName, String snapshotName) throws IOException {
+        PackedPassengerStore passengerInfo = new PackedPassengerStore(); // The Passengers of the shard.
+        Ledger ledger = new Ledger(dataName, passengerInfo); // The year of the shard.
+
+        MappedFlightReader.read(dataName, passengerInfo);
+        ledger.finishYear();
+        PassengerSnapshot.write(passengerInfo, snapshotName);
+    }
+
+    /**
+     * The main() method finishes one shard, when finishShards() starts it in a separate process.
+     * @param args command-line arguments: the name of the shard's flight data file and of its
+     *             snapshot, and optionally of the rules file.
+     * @throws IOException If the flight data or rules can not be read, or the snapshot can not be written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 && args.length != 3) {
+            System.err.println("Usage: java ShardedLedger <shard flight data> <shard snapshot> [rules file]");
+            System.exit(2);
+        }
+        if (args.length == 3)
+            TierTable.install(TierRules.load(args[2]));
+        finishShard(args[0], args[1]);
+    }
+
+    /**
+     * This method finishes every shard in its own process, starting the next one when one ends.
+     * @param maxRunning The most processes running at a time.
+     * @throws IOException If a process can not be started, or fails.
+     */
+    private void finishInProcesses(int maxRunning) throws IOException {
+        String javaName = Paths.get(System.getProperty("java.home"), "bin", "java").toString(); // The JVM to run.
+        ArrayDeque<Process> running = new ArrayDeque<>(); // The processes started and not yet waited for.
+        ArrayDeque<Integer> runningShards = new ArrayDeque<>(); // The shard each running process finishes.
+        List<String> command; // The command that starts the process of a shard.
+
+        try {
+            for (int shard = 0; shard <= numShards; shard++) {
+                // Wait for the oldest process once enough are running (and for all of them at the end).
+                while (!running.isEmpty() && (running.size() >= maxRunning || shard == numShards)) {
+                    int exitStatus = running.removeFirst().waitFor(); // The exit status of the process.
+                    int doneShard = runningShards.removeFirst(); // The shard the process finished.
+
+                    if (exitStatus != 0)
+                        throw new IOException("Shard " + doneShard + " failed with exit status " + exitStatus);
+                }
+                if (shard == numShards)
+                    break;
+                command = new ArrayList<>(List.of(javaName, "-cp", System.getProperty("java.class.path"),
+                        "ShardedLedger", getDataName(shard), getSnapshotName(shard)));
+                if (rulesName != null)
+                    command.add(rulesName);
+                running.addLast(new ProcessBuilder(command).inheritIO().start());
+                runningShards.addLast(shard);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while the shards were finished.", e);
+        }
+        finally {
+            for (Process process : running)
+                process.destroyForcibly();
+        }
+    }
+
+    /**
+     * This method finishes the shards on a pool of threads in this process.
+     * @param numThreads The number of threads.
+     * @throws IOException If a shard can not be read or written.
+     */
+    private void finishInThreads(int numThreads) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads); // The threads finishing the shards.
+        List<Future<?>> results = new ArrayList<>(); // The result of each shard.
+
+        try {
+            for (int shard = 0; shard < numShards; shard++) {
+                String dataName = getDataName(shard); // The shard's flight data file.
+                String snapshotName = getSnapshotName(shard); // The shard's snapshot.
+
+                results.add(pool.submit(() -> {
+                    finishShard(dataName, snapshotName);
+                    return null;
+                }));
+            }
+            for (Future<?> result : results)
+                result.get();
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while the shards were finished.", e);
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * This class writes each flight record to the flight data file of its shard, in the
+     * "ID Y N" format, keeping a buffer per shard so that each file is written in large blocks.
+     */
+    private class ShardWriter implements FlightRecordHandler {
+        private final OutputStream[] outStreams = new OutputStream[numShards]; // The file of each shard.
+        private final byte[][] buffers = new byte[numShards][BUFFER_SIZE]; // The bytes to write to each file.
+        private final int[] lengths = new int[numShards]; // The number of bytes in each buffer.
+        private final byte[] digits = new byte[20]; // The digits of the current ID, from the end.
+
+        /**
+         * This constructor creates (or empties) the flight data file of every shard.
+         * @throws IOException If a file can not be created.
+         */
+        ShardWriter() throws IOException {
+            for (int shard = 0; shard < numShards; shard++)
+                outStreams[shard] = new FileOutputStream(getDataName(shard));
+        }
+
+        /**
+         * This method appends a flight record to the buffer of its shard, and writes the buffer out when it is full.
+         * @param passengerID The look-up ID of the Passenger the flight belongs to.
+         * @param isCancelled Flag indicating whether the flight was cancelled.
+         * @param hasComplain Flag indicating whether the Passenger complained about the cancelled flight.
+         * @throws UncheckedIOException If the buffer can not be written.
+         */
+        @Override
+        public void addRecord(long passengerID, boolean isCancelled, boolean hasComplain) {
+            int shard = ShardedPassengerStore.shardOf(passengerID, numShards); // The shard of the Passenger.
+            byte[] buffer = buffers[shard]; // The bytes to write to the shard's file.
+            int length = lengths[shard]; // The number of bytes in the buffer.
+            int numDigits = 0; // The number of digits in the ID.
+
+            if (length > BUFFER_SIZE - 32) {
+                flush(shard);
+                length = 0;
+            }
+            do {
+                digits[numDigits++] = (byte) ('0' + passengerID % 10);
+                passengerID /= 10;
+            } while (passengerID > 0);
+            while (numDigits > 0)
+                buffer[length++] = digits[--numDigits];
+            buffer[length++] = ' ';
+            buffer[length++] = (byte) (isCancelled ? 'Y' : 'N');
+            if (isCancelled) {
+                buffer[length++] = ' ';
+                buffer[length++] = (byte) (hasComplain ? 'Y' : 'N');
+            }
+            buffer[length++] = '\n';
+            lengths[shard] = length;
+        }
+
+        /**
+         * This method writes out the buffer of a shard.
+         * @param shard The number of the shard.
+         * @throws UncheckedIOException If the buffer can not be written.
+         */
+        private void flush(int shard) {
+            try {
+                outStreams[shard].write(buffers[shard], 0, lengths[shard]);
+                lengths[shard] = 0;
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * This method writes out every buffer and closes the files of the shards.
+         * @throws IOException If a file can not be written.
+         */
+        void close() throws IOException {
+            try {
+                for (int shard = 0; shard < numShards; shard++)
+                    flush(shard);
+            }
+            catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            finally {
+                for (OutputStream outStream : outStreams)
+                    outStream.close();
+            }
+        }
+    }
+}
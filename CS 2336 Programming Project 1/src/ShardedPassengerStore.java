@@ -0,0 +1,203 @@
+/**
+ * This class joins the shards of a ShardedLedger into one store. Every Passenger belongs to exactly
+ * one shard, picked from a hash of their ID, so each call is passed on to the owning shard only,
+ * and no Passenger is ever looked for in the other shards. The shards can be any stores, but
+ * are usually the memory-mapped snapshots the shards were finished into.
+ */
+public class ShardedPassengerStore implements PassengerStore {
+    private final PassengerStore[] shards; // The stores of the shards, indexed by shard number.
+
+    /**
+     * This constructor joins the stores of the shards.
+     * @param shards The stores of the shards, indexed by shard number (see shardOf()).
+     */
+    public ShardedPassengerStore(PassengerStore[] shards) {
+        this.shards = shards;
+    }
+
+    /**
+     * This method returns the shard a Passenger belongs to. The shard is picked from the high bits
+     * of the ID's hash, since a store in slots picks the slot from the low bits: the Passengers of
+     * one shard are then still spread over all the slots of the shard's own store.
+     * @param passengerID The look-up ID of the Passenger.
+     * @param numShards The number of shards.
+     * @return The number of the shard, from 0 to numShards - 1.
+     */
+    public static int shardOf(long passengerID, int numShards) {
+        return (int) (((PassengerIDs.hash(passengerID) & 0xFFFFFFFFL) * numShards) >>> 32);
+    }
+
+    /**
+     * This method returns the store of the shard a Passenger belongs to.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The store of the owning shard.
+     */
+    public PassengerStore getShard(long passengerID) {
+        return shards[shardOf(passengerID, shards.length)];
+    }
+
+    /**
+     * This method returns the number of shards.
+     * @return The number of shards.
+     */
+    public int getNumShards() {
+        return shards.length;
+    }
+
+    /**
+     * This method updates the counts of a Passenger with a single flight record, in the owning shard.
+     * @param passengerID The look-up ID of the Passenger the flight belongs to.
+     * @param isCancelled Flag indicating whether the flight was cancelled.
+     * @param hasComplain Flag indicating whether the Passenger complained about the cancelled flight.
+     */
+    @Override
+    public void addRecord(long passengerID, boolean isCancelled, boolean hasComplain) {
+        getShard(passengerID).addRecord(passengerID, isCancelled, hasComplain);
+    }
+
+    /**
+     * This method sets the totals of a Passenger that were counted elsewhere, in the owning shard.
+     * @param passengerID The look-up ID of the Passenger.
+     * @param numFlights The total number of flights a Passenger has taken, or was supposed to take.
+     * @param numCancFlights Number of flights the passenger was supposed to take but were cancelled.
+     * @param numComplaints The number of times a Passenger has complained.
+     */
+    @Override
+    public void setTotals(long passengerID, int numFlights, int numCancFlights, int numComplaints) {
+        getShard(passengerID).setTotals(passengerID, numFlights, numCancFlights, numComplaints);
+    }
+
+    /**
+     * This method checks whether there is a Passenger with the given ID.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Flag indicating whether the Passenger exists.
+     */
+    @Override
+    public boolean contains(long passengerID) {
+        return getShard(passengerID).contains(passengerID);
+    }
+
+    /**
+     * Returns (as a String) the name of the tier the passenger belongs to.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The name of the tier the passenger belongs to.
+     */
+    @Override
+    public String getTier(long passengerID) {
+        return getShard(passengerID).getTier(passengerID);
+    }
+
+    /**
+     * Returns the TierTable ordinal of the tier the passenger belongs to.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The ordinal of the tier the passenger belongs to.
+     */
+    @Override
+    public int getTierOrdinal(long passengerID) {
+        return getShard(passengerID).getTierOrdinal(passengerID);
+    }
+
+    /**
+     * Returns the miles earned over the year.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The total number of miles the Passenger earned based on the cancelled flights.
+     */
+    @Override
+    public int getMiles(long passengerID) {
+        return getShard(passengerID).getMiles(passengerID);
+    }
+
+    /**
+     * Returns the number of flights the passenger was supposed to take but were cancelled.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Number of flights the passenger was supposed to take but were cancelled.
+     */
+    @Override
+    public int getCancelledFlights(long passengerID) {
+        return getShard(passengerID).getCancelledFlights(passengerID);
+    }
+
+    /**
+     * This method returns the current total number of flights the passenger took, including cancelled flights.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The total number of flights a Passenger has taken, or was supposed to take.
+     */
+    @Override
+    public int getFlights(long passengerID) {
+        return getShard(passengerID).getFlights(passengerID);
+    }
+
+    /**
+     * Returns the number of times the passenger complained about a cancelled flight.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The number of times a Passenger has complained.
+     */
+    @Override
+    public int getComplaints(long passengerID) {
+        return getShard(passengerID).getComplaints(passengerID);
+    }
+
+    /**
+     * Returns true if the passenger has the mileage multiplier.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Flag for indicating whether a passenger has the mileage multiplier.
+     */
+    @Override
+    public boolean hasMultiplier(long passengerID) {
+        return getShard(passengerID).hasMultiplier(passengerID);
+    }
+
+    /**
+     * This method ends the year in every shard. The Passengers of a shard never depend on
+     * another shard, so each shard can be finished on its own.
+     */
+    @Override
+    public void finishYear() {
+        for (PassengerStore shard : shards)
+            shard.finishYear();
+    }
+
+    /**
+     * This method returns the number of Passengers in all shards.
+     * @return The number of Passengers stored.
+     */
+    @Override
+    public int size() {
+        int size = 0; // The number of Passengers.
+
+        for (PassengerStore shard : shards)
+            size += shard.size();
+        return size;
+    }
+
+    /**
+     * This method returns the IDs of all Passengers, shard by shard.
+     * @return The look-up IDs of the Passengers.
+     */
+    @Override
+    public long[] getIDs() {
+        long[] ids = new long[size()]; // The IDs of the Passengers.
+        int numIDs = 0; // The number of IDs collected so far.
+
+        for (PassengerStore shard : shards) {
+            long[] shardIDs = shard.getIDs(); // The IDs of the shard's Passengers.
+
+            System.arraycopy(shardIDs, 0, ids, numIDs, shardIDs.length);
+            numIDs += shardIDs.length;
+        }
+        return ids;
+    }
+
+    /**
+     * This method returns the average memory (or file) used for each Passenger over all shards.
+     * @return The number of bytes used per Passenger.
+     */
+    @Override
+    public long getBytesPerPassenger() {
+        long numBytes = 0; // The bytes used by all shards.
+
+        for (PassengerStore shard : shards)
+            numBytes += shard.size() * shard.getBytesPerPassenger();
+        return numBytes / Math.max(size(), 1);
+    }
+}
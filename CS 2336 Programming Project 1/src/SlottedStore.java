@@ -0,0 +1,28 @@
+/**
+ * This interface represents a store that keeps its Passengers in numbered slots, so that the
+ * end-of-year pass can be split into ranges of slots and run on several threads at once
+ * (see YearEndFinalizer). Every slot holds at most one Passenger, and finishing two different
+ * ranges at the same time is safe.
+ */
+public interface SlottedStore extends PassengerStore {
+    /**
+     * This method returns the number of slots, including the empty ones.
+     * @return The number of slots.
+     */
+    public int getNumSlots();
+
+    /**
+     * This method indicates that the year is over, without changing any Passenger yet.
+     * It must be called before finishSlots().
+     */
+    public void setEndOfYear();
+
+    /**
+     * This method decides the mileage multiplier of every Passenger in a range of slots, and
+     * upgrades the ones that earned it to the corresponding special Sub-Tier.
+     * @param fromSlot The first slot of the range.
+     * @param toSlot The slot just after the last slot of the range.
+     * @param promotions The number of Passengers upgraded out of each Tier, added to by this method.
+     */
+    public void finishSlots(int fromSlot, int toSlot, long[] promotions);
+}
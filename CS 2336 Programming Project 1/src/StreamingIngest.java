@@ -0,0 +1,185 @@
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class applies flight records to a store as they arrive, instead of reading a whole file
+ * before the year can be looked at. It either follows a log file that is still being appended
+ * to (waiting for more lines at the end of the file, like "tail -f"), or reads a pipe until the
+ * writer closes it. It runs on its own thread, and keeps count of how much it has applied so
+ * the lag behind the log can be reported while it runs.
+ */
+public class StreamingIngest implements Runnable {
+    private static final int BUFFER_SIZE = 1 << 16; // The number of bytes read at a time.
+    private static final long POLL_MILLIS = 100; // The time to wait for more data at the end of a followed file.
+    private final ReadableByteChannel channel; // The log or pipe the records are read from.
+    private final boolean isFollowing; // Flag indicating whether to wait for more data at the end of the input.
+    private final FlightRecordHandler handler; // The object that processes each flight record.
+    private final FlightLineParser parser = new FlightLineParser(); // Parses the lines read.
+    private volatile long recordsApplied = 0; // The number of flight records applied so far.
+    private volatile long bytesApplied = 0; // The number of bytes of the input applied so far.
+    private volatile boolean isStopped = false; // Flag indicating whether stop() was called.
+    private volatile boolean isDone = false; // Flag indicating whether run() has finished.
+    private volatile IOException error = null; // The error that ended run(), if any.
+
+    /**
+     * This constructor prepares to read records from an opened channel.
+     * @param channel The log or pipe the records are read from.
+     * @param isFollowing Flag indicating whether to wait for more data at the end of the input,
+     *                    instead of finishing.
+     * @param handler The object that processes each flight record.
+     */
+    public StreamingIngest(ReadableByteChannel channel, boolean isFollowing, FlightRecordHandler handler) {
+        this.channel = channel;
+        this.isFollowing = isFollowing;
+        this.handler = handler;
+    }
+
+    /**
+     * This method prepares to read records from a file. A regular file is followed as it grows,
+     * and anything else (like a named pipe) is read until the writer closes it.
+     * @param fileName The name of the log file or pipe.
+     * @param handler The object that processes each flight record.
+     * @return The ingest, ready to be run.
+     * @throws IOException If the file can not be opened.
+     */
+    public static StreamingIngest open(String fileName, FlightRecordHandler handler) throws IOException {
+        Path path = Paths.get(fileName); // The path of the log file or pipe.
+
+        if (Files.isRegularFile(path))
+            return new StreamingIngest(FileChannel.open(path, StandardOpenOption.READ), true, handler);
+        return new StreamingIngest(Channels.newChannel(new FileInputStream(fileName)), false, handler);
+    }
+
+    /**
+     * This method reads and applies records until the input ends (when not following)
+     * or stop() is called. The input is closed when it returns.
+     */
+    @Override
+    public void run() {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE); // The bytes read but not yet applied.
+
+        try (ReadableByteChannel inChannel = channel) {
+            while (!isStopped) {
+                int numRead = inChannel.read(buffer); // The number of bytes read, or -1 at the end.
+
+                if (numRead < 0 && !isFollowing) {
+                    // The last line does not need a new line once the input is over.
+                    apply(buffer, true);
+                    break;
+                }
+                if (numRead <= 0) {
+                    Thread.sleep(POLL_MILLIS);
+                    continue;
+                }
+                if (apply(buffer, false) == 0 && !buffer.hasRemaining())
+                    throw new IOException("Line at offset " + bytesApplied + " is longer than "
+                            + BUFFER_SIZE + " bytes.");
+            }
+        }
+        catch (IOException e) {
+            error = e;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            isDone = true;
+        }
+    }
+
+    /**
+     * This method applies every complete line in the buffer, and moves the rest
+     * (a line that is still being written) to the start of the buffer.
+     * @param buffer The bytes read but not yet applied.
+     * @param isEnd Flag indicating whether the input is over.
+     * @return The number of bytes applied.
+     */
+    private int apply(ByteBuffer buffer, boolean isEnd) {
+        int numParsed = parser.parse(buffer, 0, buffer.position(), isEnd, handler); // The bytes applied.
+
+        buffer.flip().position(numParsed);
+        buffer.compact();
+        bytesApplied += numParsed;
+        recordsApplied = parser.getNumRecords();
+        return numParsed;
+    }
+
+    /**
+     * This method asks the ingest to stop. Records already read are still applied,
+     * and run() returns within about POLL_MILLIS.
+     */
+    public void stop() {
+        this.isStopped = true;
+    }
+
+    /**
+     * This method returns whether the ingest has finished, because the input
+     * ended, stop() was called, or there was an error.
+     * @return Flag indicating whether run() has finished.
+     */
+    public boolean isDone() {
+        return this.isDone;
+    }
+
+    /**
+     * This method returns the error that ended the ingest.
+     * @return The error, or null if there was none.
+     */
+    public IOException getError() {
+        return this.error;
+    }
+
+    /**
+     * This method returns the number of flight records applied so far.
+     * @return The number of flight records applied.
+     */
+    public long getRecordsApplied() {
+        return this.recordsApplied;
+    }
+
+    /**
+     * This method returns the number of bytes of the input applied so far.
+     * @return The number of bytes applied.
+     */
+    public long getBytesApplied() {
+        return this.bytesApplied;
+    }
+
+    /**
+     * This method returns how far the ingest is behind the end of a followed file. For a
+     * pipe, the writer's side can not be seen, so the lag is always 0.
+     * @return The number of bytes in the file that have not been applied yet.
+     */
+    public long getLagBytes() {
+        if (!(channel instanceof FileChannel) || !channel.isOpen())
+            return 0;
+        try {
+            return Math.max(((FileChannel) channel).size() - bytesApplied, 0);
+        }
+        catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * This method estimates how many flight records the ingest is behind, from the lag
+     * in bytes and the average length of the lines applied so far.
+     * @return The estimated number of flight records not applied yet.
+     */
+    public long getLagRecords() {
+        long numBytes = bytesApplied; // The bytes applied, read once since it may change.
+        long numRecords = recordsApplied; // The records applied, read once since it may change.
+
+        if (numRecords == 0)
+            return 0;
+        return Math.round(getLagBytes() * ((double) numRecords / numBytes));
+    }
+}
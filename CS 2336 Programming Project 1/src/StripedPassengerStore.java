@@ -0,0 +1,328 @@
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * This class keeps records of all Passengers so that they can be looked up while flight records
+ * are still being added. The Passengers are split by ID into stripes, each one a
+ * PackedPassengerStore with its own lock, so there is no lock over the whole store. A record
+ * only locks the stripe of its Passenger, and a look-up usually takes no lock at all: it reads
+ * optimistically and only retries under the stripe's read lock if a write got in the way.
+ */
+public class StripedPassengerStore implements SlottedStore {
+    private static final int NUM_STRIPES = 64; // The number of stripes (always a power of two).
+    private final PackedPassengerStore[] stripes; // The Passengers of each stripe.
+    private final StampedLock[] locks; // The lock of each stripe.
+
+    /**
+     * This interface reads a number about a Passenger from the stripe that holds them.
+     */
+    private interface StripeReader {
+        /**
+         * This method reads the number.
+         * @param stripe The stripe that holds the Passenger.
+         * @param passengerID The look-up ID of the Passenger.
+         * @return The number read.
+         */
+        int read(PackedPassengerStore stripe, long passengerID);
+    }
+
+    /**
+     * This constructor creates an empty store.
+     */
+    public StripedPassengerStore() {
+        this.stripes = new PackedPassengerStore[NUM_STRIPES];
+        this.locks = new StampedLock[NUM_STRIPES];
+        for (int i = 0; i < NUM_STRIPES; i++) {
+            stripes[i] = new PackedPassengerStore();
+            locks[i] = new StampedLock();
+        }
+    }
+
+    /**
+     * This method updates the counts of a Passenger with a single flight record.
+     * @param passengerID The look-up ID of the Passenger the flight belongs to.
+     * @param isCancelled Flag indicating whether the flight was cancelled.
+     * @param hasComplain Flag indicating whether the Passenger complained about the cancelled flight.
+     */
+    @Override
+    public void addRecord(long passengerID, boolean isCancelled, boolean hasComplain) {
+        int stripe = stripeOf(passengerID); // The stripe of the Passenger.
+        long stamp = locks[stripe].writeLock(); // The stamp of the stripe's write lock.
+
+        try {
+            stripes[stripe].addRecord(passengerID, isCancelled, hasComplain);
+        }
+        finally {
+            locks[stripe].unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * This method sets the totals of a Passenger that were counted elsewhere.
+     * @param passengerID The look-up ID of the Passenger.
+     * @param numFlights The total number of flights a Passenger has taken, or was supposed to take.
+     * @param numCancFlights Number of flights the passenger was supposed to take but were cancelled.
+     * @param numComplaints The number of times a Passenger has complained.
+     */
+    @Override
+    public void setTotals(long passengerID, int numFlights, int numCancFlights, int numComplaints) {
+        int stripe = stripeOf(passengerID); // The stripe of the Passenger.
+        long stamp = locks[stripe].writeLock(); // The stamp of the stripe's write lock.
+
+        try {
+            stripes[stripe].setTotals(passengerID, numFlights, numCancFlights, numComplaints);
+        }
+        finally {
+            locks[stripe].unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * This method checks whether there is a Passenger with the given ID.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Flag indicating whether the Passenger exists.
+     */
+    @Override
+    public boolean contains(long passengerID) {
+        return read(passengerID, (stripe, id) -> stripe.contains(id) ? 1 : 0) == 1;
+    }
+
+    /**
+     * Returns (as a String) the name of the tier the passenger belongs to.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The name of the tier the passenger belongs to.
+     */
+    @Override
+    public String getTier(long passengerID) {
+        return TierTable.getName(getTierOrdinal(passengerID));
+    }
+
+    /**
+     * Returns the TierTable ordinal of the tier the passenger belongs to.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The ordinal of the tier the passenger belongs to.
+     */
+    @Override
+    public int getTierOrdinal(long passengerID) {
+        return read(passengerID, PackedPassengerStore::getTierOrdinal);
+    }
+
+    /**
+     * Returns the miles earned over the year.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The total number of miles the Passenger earned based on the cancelled flights.
+     */
+    @Override
+    public int getMiles(long passengerID) {
+        return read(passengerID, PackedPassengerStore::getMiles);
+    }
+
+    /**
+     * Returns the number of flights the passenger was supposed to take but were cancelled.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Number of flights the passenger was supposed to take but were cancelled.
+     */
+    @Override
+    public int getCancelledFlights(long passengerID) {
+        return read(passengerID, PackedPassengerStore::getCancelledFlights);
+    }
+
+    /**
+     * This method returns the current total number of flights the passenger took, including cancelled flights.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The total number of flights a Passenger has taken, or was supposed to take.
+     */
+    @Override
+    public int getFlights(long passengerID) {
+        return read(passengerID, PackedPassengerStore::getFlights);
+    }
+
+    /**
+     * Returns the number of times the passenger complained about a cancelled flight.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The number of times a Passenger has complained.
+     */
+    @Override
+    public int getComplaints(long passengerID) {
+        return read(passengerID, PackedPassengerStore::getComplaints);
+    }
+
+    /**
+     * Returns true if the passenger has the mileage multiplier.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Flag for indicating whether a passenger has the mileage multiplier.
+     */
+    @Override
+    public boolean hasMultiplier(long passengerID) {
+        return read(passengerID, (stripe, id) -> stripe.hasMultiplier(id) ? 1 : 0) == 1;
+    }
+
+    /**
+     * This method indicates that the year is over, and upgrades every Passenger that earned
+     * the mileage multiplier to the corresponding special Sub-Tier, one stripe at a time.
+     */
+    @Override
+    public void finishYear() {
+        setEndOfYear();
+        finishSlots(0, NUM_STRIPES, new long[TierTable.NUM_TIERS]);
+    }
+
+    /**
+     * This method returns the number of slots of the year-end pass, which are the stripes.
+     * @return The number of stripes.
+     */
+    @Override
+    public int getNumSlots() {
+        return NUM_STRIPES;
+    }
+
+    /**
+     * This method indicates that the year is over, without changing any Passenger yet.
+     */
+    @Override
+    public void setEndOfYear() {
+        for (int stripe = 0; stripe < NUM_STRIPES; stripe++) {
+            long stamp = locks[stripe].writeLock(); // The stamp of the stripe's write lock.
+
+            try {
+                stripes[stripe].setEndOfYear();
+            }
+            finally {
+                locks[stripe].unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * This method upgrades every Passenger in a range of stripes that earned the mileage
+     * multiplier to the corresponding special Sub-Tier, locking one stripe at a time.
+     * @param fromSlot The first stripe of the range.
+     * @param toSlot The stripe just after the last stripe of the range.
+     * @param promotions The number of Passengers upgraded out of each Tier, added to by this method.
+     */
+    @Override
+    public void finishSlots(int fromSlot, int toSlot, long[] promotions) {
+        for (int stripe = fromSlot; stripe < toSlot; stripe++) {
+            long stamp = locks[stripe].writeLock(); // The stamp of the stripe's write lock.
+
+            try {
+                stripes[stripe].finishSlots(0, stripes[stripe].getNumSlots(), promotions);
+            }
+            finally {
+                locks[stripe].unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * This method returns the number of Passengers stored. While records are being
+     * added, the number may already be out of date when it is returned.
+     * @return The number of Passengers stored.
+     */
+    @Override
+    public int size() {
+        int size = 0; // The number of Passengers stored.
+
+        for (int stripe = 0; stripe < NUM_STRIPES; stripe++)
+            size += read(stripe, 0, (store, id) -> store.size());
+        return size;
+    }
+
+    /**
+     * This method returns the IDs of all Passengers stored, in no particular order. Each stripe
+     * is read under its read lock, so the IDs of a stripe are consistent with each other.
+     * @return The look-up IDs of the Passengers.
+     */
+    @Override
+    public long[] getIDs() {
+        long[][] stripeIDs = new long[NUM_STRIPES][]; // The IDs of each stripe.
+        long[] ids; // The IDs of all stripes.
+        int numIDs = 0; // The number of IDs of all stripes.
+
+        for (int stripe = 0; stripe < NUM_STRIPES; stripe++) {
+            long stamp = locks[stripe].readLock(); // The stamp of the stripe's read lock.
+
+            try {
+                stripeIDs[stripe] = stripes[stripe].getIDs();
+            }
+            finally {
+                locks[stripe].unlockRead(stamp);
+            }
+            numIDs += stripeIDs[stripe].length;
+        }
+        ids = new long[numIDs];
+        numIDs = 0;
+        for (long[] part : stripeIDs) {
+            System.arraycopy(part, 0, ids, numIDs, part.length);
+            numIDs += part.length;
+        }
+        return ids;
+    }
+
+    /**
+     * This method returns the memory used for each Passenger, counting every slot of every stripe.
+     * @return The number of bytes used per Passenger.
+     */
+    @Override
+    public long getBytesPerPassenger() {
+        long numBytes = 0; // The memory used by all the stripes.
+
+        for (int stripe = 0; stripe < NUM_STRIPES; stripe++)
+            numBytes += read(stripe, 0, (store, id) -> (int) (store.getBytesPerPassenger() * store.size()));
+        return numBytes / Math.max(size(), 1);
+    }
+
+    /**
+     * This method returns the stripe that holds a Passenger.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The index of the stripe.
+     */
+    private static int stripeOf(long passengerID) {
+        // Use the top bits of the hash, since the stripes use the bottom bits to pick a slot.
+        return PassengerIDs.hash(passengerID) >>> (32 - Integer.numberOfTrailingZeros(NUM_STRIPES));
+    }
+
+    /**
+     * This method reads a number about a Passenger from the stripe that holds them.
+     * @param passengerID The look-up ID of the Passenger.
+     * @param reader The code that reads the number from the stripe.
+     * @return The number read.
+     */
+    private int read(long passengerID, StripeReader reader) {
+        return read(stripeOf(passengerID), passengerID, reader);
+    }
+
+    /**
+     * This method reads a number from a stripe. It first reads without locking, and
+     * only reads again under the read lock if the stripe was written in the meantime
+     * (in which case the first read may have seen the stripe half updated). A half-updated
+     * stripe can not keep the first read going: it may be growing, with a new table of IDs
+     * that has no empty slot yet, but PassengerIDs.findSlot() goes around a table at most once.
+     * @param stripe The index of the stripe.
+     * @param passengerID The look-up ID of the Passenger.
+     * @param reader The code that reads the number from the stripe.
+     * @return The number read.
+     */
+    private int read(int stripe, long passengerID, StripeReader reader) {
+        StampedLock lock = locks[stripe]; // The lock of the stripe.
+        long stamp = lock.tryOptimisticRead(); // The stamp of the optimistic read.
+        int value = 0; // The number read.
+
+        if (stamp != 0) {
+            try {
+                value = reader.read(stripes[stripe], passengerID);
+            }
+            catch (RuntimeException e) {
+                // A half-updated stripe can send the read out of bounds; validate() fails below.
+            }
+            if (lock.validate(stamp))
+                return value;
+        }
+        stamp = lock.readLock();
+        try {
+            return reader.read(stripes[stripe], passengerID);
+        }
+        finally {
+            lock.unlockRead(stamp);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * This class makes any PassengerStore safe to use from several threads by locking the whole
+ * store for every call. It is the simplest way to share a store, and is kept as the baseline
+ * that StripedPassengerStore (which only locks the part of the store a Passenger is in) is
+ * measured against.
+ */
+public class SynchronizedPassengerStore implements PassengerStore {
+    private final PassengerStore passengerInfo; // The store every call is passed on to.
+
+    /**
+     * This constructor wraps a store.
+     * @param passengerInfo The store every call is passed on to, which must not be used directly afterwards.
+     */
+    public SynchronizedPassengerStore(PassengerStore passengerInfo) {
+        this.passengerInfo = passengerInfo;
+    }
+
+    /**
+     * This method updates the counts of a Passenger with a single flight record.
+     * @param passengerID The look-up ID of the Passenger the flight belongs to.
+     * @param isCancelled Flag indicating whether the flight was cancelled.
+     * @param hasComplain Flag indicating whether the Passenger complained about the cancelled flight.
+     */
+    @Override
+    public synchronized void addRecord(long passengerID, boolean isCancelled, boolean hasComplain) {
+        passengerInfo.addRecord(passengerID, isCancelled, hasComplain);
+    }
+
+    /**
+     * This method sets the totals of a Passenger that were counted elsewhere.
+     * @param passengerID The look-up ID of the Passenger.
+     * @param numFlights The total number of flights a Passenger has taken, or was supposed to take.
+     * @param numCancFlights Number of flights the passenger was supposed to take but were cancelled.
+     * @param numComplaints The number of times a Passenger has complained.
+     */
+    @Override
+    public synchronized void setTotals(long passengerID, int numFlights, int numCancFlights, int numComplaints) {
+        passengerInfo.setTotals(passengerID, numFlights, numCancFlights, numComplaints);
+    }
+
+    /**
+     * This method checks whether there is a Passenger with the given ID.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Flag indicating whether the Passenger exists.
+     */
+    @Override
+    public synchronized boolean contains(long passengerID) {
+        return passengerInfo.contains(passengerID);
+    }
+
+    /**
+     * Returns (as a String) the name of the tier the passenger belongs to.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The name of the tier the passenger belongs to.
+     */
+    @Override
+    public synchronized String getTier(long passengerID) {
+        return passengerInfo.getTier(passengerID);
+    }
+
+    /**
+     * Returns the TierTable ordinal of the tier the passenger belongs to.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The ordinal of the tier the passenger belongs to.
+     */
+    @Override
+    public synchronized int getTierOrdinal(long passengerID) {
+        return passengerInfo.getTierOrdinal(passengerID);
+    }
+
+    /**
+     * Returns the miles earned over the year.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The total number of miles the Passenger earned based on the cancelled flights.
+     */
+    @Override
+    public synchronized int getMiles(long passengerID) {
+        return passengerInfo.getMiles(passengerID);
+    }
+
+    /**
+     * Returns the number of flights the passenger was supposed to take but were cancelled.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Number of flights the passenger was supposed to take but were cancelled.
+     */
+    @Override
+    public synchronized int getCancelledFlights(long passengerID) {
+        return passengerInfo.getCancelledFlights(passengerID);
+    }
+
+    /**
+     * This method returns the current total number of flights the passenger took, including cancelled flights.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The total number of flights a Passenger has taken, or was supposed to take.
+     */
+    @Override
+    public synchronized int getFlights(long passengerID) {
+        return passengerInfo.getFlights(passengerID);
+    }
+
+    /**
+     * Returns the number of times the passenger complained about a cancelled flight.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The number of times a Passenger has complained.
+     */
+    @Override
+    public synchronized int getComplaints(long passengerID) {
+        return passengerInfo.getComplaints(passengerID);
+    }
+
+    /**
+     * Returns true if the passenger has the mileage multiplier.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Flag for indicating whether a passenger has the mileage multiplier.
+     */
+    @Override
+    public synchronized boolean hasMultiplier(long passengerID) {
+        return passengerInfo.hasMultiplier(passengerID);
+    }
+
+    /**
+     * This method indicates that the year is over, and upgrades every Passenger that earned
+     * the mileage multiplier to the corresponding special Sub-Tier.
+     */
+    @Override
+    public synchronized void finishYear() {
+        passengerInfo.finishYear();
+    }
+
+    /**
+     * This method returns the number of Passengers stored.
+     * @return The number of Passengers stored.
+     */
+    @Override
+    public synchronized int size() {
+        return passengerInfo.size();
+    }
+
+    /**
+     * This method returns the IDs of all Passengers stored, in no particular order.
+     * @return The look-up IDs of the Passengers.
+     */
+    @Override
+    public synchronized long[] getIDs() {
+        return passengerInfo.getIDs();
+    }
+
+    /**
+     * This method returns the memory used for each Passenger.
+     * @return The number of bytes used per Passenger.
+     */
+    @Override
+    public synchronized long getBytesPerPassenger() {
+        return passengerInfo.getBytesPerPassenger();
+    }
+}
@@ -0,0 +1,342 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class publishes every change of a Passenger's Tier: each upgrade while the records are
+ * read, and each Sub-Tier upgrade at the end of the year. It wraps another store, and passes the
+ * changes on to a TierChangeListener (like a TierChangeLog) in batches, from a thread of its own
+ * that wakes up every few milliseconds.
+ *
+ * A Tier only changes when a cancelled flight reaches one of the thresholds, so a record that is
+ * not a cancelled flight costs nothing but a count, and a cancelled one costs one more look-up of
+ * its Passenger. The changes go into a ring of primitive arrays without locks: a change takes the
+ * next sequence number, waits only if the ring is full of changes not yet passed on, fills its
+ * slot, and then marks the slot as published. The feed's thread passes on the published changes
+ * in order of their sequence numbers, and frees their slots. The records must be passed to the
+ * feed by one thread, in the order of the log, since the record offsets count the records in the
+ * order they arrive; counts merged from elsewhere through setTotals() have no record offsets.
+ */
+public class TierChangeFeed implements PassengerStore, Closeable {
+    public static final long DEFAULT_FLUSH_MILLIS = 200; // The default time between two batches.
+    private static final int CAPACITY = 1 << 16; // The number of changes the ring holds (always a power of two).
+    private final PassengerStore passengerInfo; // The store every call is passed on to.
+    private final TierChangeListener listener; // Receives the changes.
+    private final long flushNanos; // The time between two batches.
+    private final long[] ids = new long[CAPACITY]; // The Passenger of each change in the ring.
+    private final long[] offsets = new long[CAPACITY]; // The record offset of each change in the ring.
+    private final byte[] oldTiers = new byte[CAPACITY]; // The Tier before each change in the ring.
+    private final byte[] newTiers = new byte[CAPACITY]; // The Tier after each change in the ring.
+    private final AtomicLongArray published = new AtomicLongArray(CAPACITY); // The sequence number + 1 of the change in each slot.
+    private final AtomicLong nextSequence = new AtomicLong(); // The sequence number of the next change.
+    private final Thread flusher; // The thread that passes the changes on.
+    private volatile long numFlushed = 0; // The number of changes passed on.
+    private volatile boolean isClosed = false; // Flag indicating whether the feed is being closed.
+    private volatile IOException error = null; // The error that stopped the listener, if any.
+    private long numRecords = 0; // The number of records passed to the feed.
+
+    /**
+     * This constructor wraps a store, and starts the thread that passes the changes on.
+     * @param passengerInfo The store every call is passed on to, which must not be changed directly afterwards.
+     * @param listener Receives the changes.
+     * @param flushMillis The time between two batches, in milliseconds.
+     */
+    public TierChangeFeed(PassengerStore passengerInfo, TierChangeListener listener, long flushMillis) {
+        this.passengerInfo = passengerInfo;
+        this.listener = listener;
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushMillis));
+        this.flusher = new Thread(this::flushLoop, "tier-feed");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * This method returns the number of changes published so far.
+     * @return The number of changes.
+     */
+    public long getNumChanges() {
+        return nextSequence.get();
+    }
+
+    /**
+     * This method returns the number of changes passed on to the listener so far.
+     * @return The number of changes.
+     */
+    public long getNumFlushed() {
+        return this.numFlushed;
+    }
+
+    /**
+     * This method updates the counts of a Passenger with a single flight record, and publishes
+     * the change if the cancelled flight moved them up to the next Tier.
+     * @param passengerID The look-up ID of the Passenger the flight belongs to.
+     * @param isCancelled Flag indicating whether the flight was cancelled.
+     * @param hasComplain Flag indicating whether the Passenger complained about the cancelled flight.
+     */
+    @Override
+    public void addRecord(long passengerID, boolean isCancelled, boolean hasComplain) {
+        long recordOffset = numRecords++; // The index of the record.
+
+        passengerInfo.addRecord(passengerID, isCancelled, hasComplain);
+        if (isCancelled) {
+            int numCancFlights = passengerInfo.getCancelledFlights(passengerID); // The new count.
+            int newTier = TierTable.tierFor(numCancFlights); // The Tier the count reaches.
+
+            // The count goes up by one, so the Tier only changed if it is exactly the threshold.
+            if (newTier > TierTable.NO_TIER && numCancFlights == TierTable.getUpgradeAt(newTier - 1))
+                publish(passengerID, newTier - 1, newTier, recordOffset);
+        }
+    }
+
+    /**
+     * This method sets the totals of a Passenger that were counted elsewhere (like a correction),
+     * and publishes one change for every threshold the new totals cross, so a Passenger who goes
+     * from NoTier to Platinum is published as moving to Gold and then to Platinum. A Sub-Tier the
+     * Passenger gains or loses is part of the first or last change, or a change of its own if the
+     * Tier stays the same. These changes have no record, so their offset is -1.
+     * @param passengerID The look-up ID of the Passenger.
+     * @param numFlights The total number of flights a Passenger has taken, or was supposed to take.
+     * @param numCancFlights Number of flights the passenger was supposed to take but were cancelled.
+     * @param numComplaints The number of times a Passenger has complained.
+     */
+    @Override
+    public void setTotals(long passengerID, int numFlights, int numCancFlights, int numComplaints) {
+        boolean isKnown = passengerInfo.contains(passengerID); // Flag indicating whether the Passenger had totals.
+        int oldTier = isKnown ? passengerInfo.getTierOrdinal(passengerID) : TierTable.NO_TIER; // The Tier before.
+        int oldBase = TierTable.tierFor(isKnown ? passengerInfo.getCancelledFlights(passengerID) : 0); // The Tier before, without its Sub-Tier.
+        int newBase = TierTable.tierFor(numCancFlights); // The Tier after, without its Sub-Tier.
+        int step = newBase > oldBase ? 1 : -1; // The direction of the changes.
+        int newTier; // The Tier after.
+        int fromTier; // The Tier the next change starts from.
+
+        passengerInfo.setTotals(passengerID, numFlights, numCancFlights, numComplaints);
+        newTier = passengerInfo.getTierOrdinal(passengerID);
+        fromTier = oldTier;
+        for (int base = oldBase; base != newBase; base += step) {
+            int toTier = base + step == newBase ? newTier : base + step; // The Tier past the next threshold.
+
+            publish(passengerID, fromTier, toTier, -1);
+            fromTier = toTier;
+        }
+        if (fromTier != newTier)
+            publish(passengerID, fromTier, newTier, -1);
+    }
+
+    /**
+     * This method checks whether there is a Passenger with the given ID.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Flag indicating whether the Passenger exists.
+     */
+    @Override
+    public boolean contains(long passengerID) {
+        return passengerInfo.contains(passengerID);
+    }
+
+    /**
+     * Returns (as a String) the name of the tier the passenger belongs to.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The name of the tier the passenger belongs to.
+     */
+    @Override
+    public String getTier(long passengerID) {
+        return passengerInfo.getTier(passengerID);
+    }
+
+    /**
+     * Returns the TierTable ordinal of the tier the passenger belongs to.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The ordinal of the tier the passenger belongs to.
+     */
+    @Override
+    public int getTierOrdinal(long passengerID) {
+        return passengerInfo.getTierOrdinal(passengerID);
+    }
+
+    /**
+     * Returns the miles earned over the year.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The total number of miles the Passenger earned based on the cancelled flights.
+     */
+    @Override
+    public int getMiles(long passengerID) {
+        return passengerInfo.getMiles(passengerID);
+    }
+
+    /**
+     * Returns the number of flights the passenger was supposed to take but were cancelled.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Number of flights the passenger was supposed to take but were cancelled.
+     */
+    @Override
+    public int getCancelledFlights(long passengerID) {
+        return passengerInfo.getCancelledFlights(passengerID);
+    }
+
+    /**
+     * This method returns the current total number of flights the passenger took, including cancelled flights.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The total number of flights a Passenger has taken, or was supposed to take.
+     */
+    @Override
+    public int getFlights(long passengerID) {
+        return passengerInfo.getFlights(passengerID);
+    }
+
+    /**
+     * Returns the number of times the passenger complained about a cancelled flight.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return The number of times a Passenger has complained.
+     */
+    @Override
+    public int getComplaints(long passengerID) {
+        return passengerInfo.getComplaints(passengerID);
+    }
+
+    /**
+     * Returns true if the passenger has the mileage multiplier.
+     * @param passengerID The look-up ID of the Passenger.
+     * @return Flag for indicating whether a passenger has the mileage multiplier.
+     */
+    @Override
+    public boolean hasMultiplier(long passengerID) {
+        return passengerInfo.hasMultiplier(passengerID);
+    }
+
+    /**
+     * This method ends the year in the wrapped store, and publishes the upgrade of every
+     * Passenger moved to a Sub-Tier. The end of the year already visits every Passenger, so the
+     * Tiers are compared before and after it.
+     */
+    @Override
+    public void finishYear() {
+        long[] passengerIDs = passengerInfo.getIDs(); // The IDs of all Passengers.
+        byte[] oldTiers = new byte[passengerIDs.length]; // The Tier of each Passenger before the end of the year.
+
+        for (int i = 0; i < passengerIDs.length; i++)
+            oldTiers[i] = (byte) passengerInfo.getTierOrdinal(passengerIDs[i]);
+        passengerInfo.finishYear();
+        for (int i = 0; i < passengerIDs.length; i++) {
+            int newTier = passengerInfo.getTierOrdinal(passengerIDs[i]); // The Tier after the end of the year.
+
+            if (newTier != oldTiers[i])
+                publish(passengerIDs[i], oldTiers[i], newTier, -1);
+        }
+    }
+
+    /**
+     * This method returns the number of Passengers stored.
+     * @return The number of Passengers stored.
+     */
+    @Override
+    public int size() {
+        return passengerInfo.size();
+    }
+
+    /**
+     * This method returns the IDs of all Passengers.
+     * @return The look-up IDs of the Passengers.
+     */
+    @Override
+    public long[] getIDs() {
+        return passengerInfo.getIDs();
+    }
+
+    /**
+     * This method returns the memory used for each Passenger by the wrapped store (the ring of
+     * changes has a fixed size).
+     * @return The number of bytes used per Passenger.
+     */
+    @Override
+    public long getBytesPerPassenger() {
+        return passengerInfo.getBytesPerPassenger();
+    }
+
+    /**
+     * This method passes on the changes not yet passed on, stops the feed's thread, and closes
+     * the listener if it can be closed.
+     * @throws IOException If the listener failed to take a change.
+     */
+    @Override
+    public void close() throws IOException {
+        isClosed = true;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing the Tier change feed", e);
+        }
+        if (listener instanceof Closeable)
+            ((Closeable) listener).close();
+        if (error != null)
+            throw error;
+    }
+
+    /**
+     * This method puts a change into the ring. It only waits if the ring is full of changes the
+     * feed's thread has not passed on yet (and drops the change if the listener has failed).
+     * @param passengerID The look-up ID of the Passenger whose Tier changed.
+     * @param oldTier The ordinal of the Tier before the change.
+     * @param newTier The ordinal of the Tier after the change.
+     * @param recordOffset The index of the record that caused the change, or -1 if there was no single record.
+     */
+    private void publish(long passengerID, int oldTier, int newTier, long recordOffset) {
+        long sequence = nextSequence.getAndIncrement(); // The sequence number of the change.
+        int slot = (int) sequence & (CAPACITY - 1); // The slot of the change in the ring.
+
+        while (sequence - numFlushed >= CAPACITY && error == null) {
+            LockSupport.unpark(flusher);
+            Thread.yield();
+        }
+        ids[slot] = passengerID;
+        offsets[slot] = recordOffset;
+        oldTiers[slot] = (byte) oldTier;
+        newTiers[slot] = (byte) newTier;
+        // Everything written to the slot is seen by the feed's thread once it sees this.
+        published.setRelease(slot, sequence + 1);
+    }
+
+    /**
+     * This method is the work of the feed's thread: it passes on a batch of the published changes
+     * every few milliseconds, until the feed is closed and every change is passed on.
+     */
+    private void flushLoop() {
+        boolean isLast; // Flag indicating whether this is the last batch.
+
+        do {
+            LockSupport.parkNanos(flushNanos);
+            isLast = isClosed;
+            try {
+                flush();
+            }
+            catch (IOException e) {
+                error = e;
+                return;
+            }
+        } while (!isLast);
+    }
+
+    /**
+     * This method passes on the published changes, in order, and frees their slots.
+     * @throws IOException If the listener failed to take a change.
+     */
+    private void flush() throws IOException {
+        long first = numFlushed; // The sequence number of the first change of the batch.
+        long sequence = first; // The sequence number of the next change to pass on.
+        int slot = (int) sequence & (CAPACITY - 1); // The slot of the next change.
+
+        if (published.getAcquire(slot) != sequence + 1)
+            return;
+        do {
+            listener.tierChanged(sequence, ids[slot], oldTiers[slot], newTiers[slot], offsets[slot]);
+            numFlushed = ++sequence;
+            slot = (int) sequence & (CAPACITY - 1);
+        } while (published.getAcquire(slot) == sequence + 1);
+        listener.endBatch();
+        Metrics.add("tierFeed.changes", sequence - first);
+    }
+}
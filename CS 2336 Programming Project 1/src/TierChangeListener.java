@@ -0,0 +1,29 @@
+import java.io.IOException;
+
+/**
+ * This interface represents anything that receives the Tier changes published by a
+ * TierChangeFeed, like a TierChangeLog or a subscriber in the same program. The changes are
+ * passed on in batches by the feed's own thread, in order of their sequence numbers, so a
+ * listener does not slow down the reading of the records.
+ */
+public interface TierChangeListener {
+    /**
+     * This method receives one Tier change.
+     * @param sequence The number of the change (the first change of a feed is 0).
+     * @param passengerID The look-up ID of the Passenger whose Tier changed.
+     * @param oldTier The ordinal of the Passenger's Tier before the change.
+     * @param newTier The ordinal of the Passenger's Tier after the change.
+     * @param recordOffset The index of the record that caused the change (the first record is 0),
+     *                     or -1 if it was not caused by a single record (like the end of the year).
+     * @throws IOException If the change can not be passed on.
+     */
+    public void tierChanged(long sequence, long passengerID, int oldTier, int newTier, long recordOffset)
+            throws IOException;
+
+    /**
+     * This method is called after the last change of each batch, so a listener can pass the whole
+     * batch on at once.
+     * @throws IOException If the batch can not be passed on.
+     */
+    public void endBatch() throws IOException;
+}
@@ -0,0 +1,130 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * This class appends the Tier changes of a TierChangeFeed to a file, one batch at a time, so
+ * other programs can follow the changes instead of comparing whole reports. A file whose name ends
+ * in ".ndjson" or ".jsonl" gets one JSON object per line, like
+ * {"seq":0,"id":101,"from":"Gold","to":"Platinum","offset":1234}; any other file gets binary
+ * records, after a header of the magic number and the format version (8 and 4 bytes). Each binary
+ * record is the sequence number, the Passenger ID, and the record offset (8 bytes each), then the
+ * old and the new Tier ordinals (1 byte each), all little-endian. The file is only ever appended
+ * to, so changes of earlier runs are kept (the sequence numbers start at 0 again in each run).
+ */
+public class TierChangeLog implements TierChangeListener, Closeable {
+    public static final long MAGIC = 0x4445454652454954L; // "TIERFEED" read as a little-endian long.
+    public static final int VERSION = 1; // The version of the binary format written by this class.
+    public static final int HEADER_SIZE = 12; // The number of bytes before the first binary record.
+    public static final int RECORD_SIZE = 26; // The number of bytes of each binary record.
+    private final OutputStream outStream; // The file the changes are appended to.
+    private final boolean isJSON; // Flag indicating whether the changes are written as lines of JSON.
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN); // One binary record.
+    private final StringBuilder line = new StringBuilder(); // One line of JSON.
+    private long numChanges = 0; // The number of changes written by this run.
+
+    /**
+     * This constructor opens the file for appending, and starts a new binary file with its header.
+     * @param fileName The name of the file.
+     * @throws IOException If the file can not be opened, or is a binary file of another kind or version.
+     */
+    public TierChangeLog(String fileName) throws IOException {
+        File file = new File(fileName); // The file the changes are appended to.
+        ByteBuffer header; // The header of a new binary file.
+
+        this.isJSON = fileName.endsWith(".ndjson") || fileName.endsWith(".jsonl");
+        if (!isJSON && file.length() > 0)
+            checkHeader(file);
+        this.outStream = new BufferedOutputStream(new FileOutputStream(file, true), 1 << 16);
+        if (!isJSON && file.length() == 0) {
+            header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putLong(MAGIC).putInt(VERSION);
+            outStream.write(header.array());
+        }
+    }
+
+    /**
+     * This method writes one Tier change to the file's buffer.
+     * @param sequence The number of the change (the first change of a feed is 0).
+     * @param passengerID The look-up ID of the Passenger whose Tier changed.
+     * @param oldTier The ordinal of the Passenger's Tier before the change.
+     * @param newTier The ordinal of the Passenger's Tier after the change.
+     * @param recordOffset The index of the record that caused the change, or -1 if there was no single record.
+     * @throws IOException If the change can not be written.
+     */
+    @Override
+    public void tierChanged(long sequence, long passengerID, int oldTier, int newTier, long recordOffset)
+            throws IOException {
+        if (isJSON) {
+            line.setLength(0);
+            line.append("{\"seq\":").append(sequence).append(",\"id\":").append(passengerID)
+                    .append(",\"from\":\"").append(TierTable.getName(oldTier))
+                    .append("\",\"to\":\"").append(TierTable.getName(newTier))
+                    .append("\",\"offset\":").append(recordOffset).append("}\n");
+            for (int i = 0; i < line.length(); i++)
+                outStream.write(line.charAt(i));
+        }
+        else {
+            record.clear();
+            record.putLong(sequence).putLong(passengerID).putLong(recordOffset)
+                    .put((byte) oldTier).put((byte) newTier);
+            outStream.write(record.array());
+        }
+        numChanges++;
+    }
+
+    /**
+     * This method writes the changes of the batch to the file.
+     * @throws IOException If the changes can not be written.
+     */
+    @Override
+    public void endBatch() throws IOException {
+        outStream.flush();
+    }
+
+    /**
+     * This method returns the number of changes written by this run.
+     * @return The number of changes.
+     */
+    public long getNumChanges() {
+        return this.numChanges;
+    }
+
+    /**
+     * This method writes the last changes and closes the file.
+     * @throws IOException If the changes can not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        outStream.close();
+    }
+
+    /**
+     * This method checks that an existing file is a binary Tier change file this class can append to.
+     * @param file The file.
+     * @throws IOException If the file can not be read, or is of another kind or version.
+     */
+    private static void checkHeader(File file) throws IOException {
+        byte[] bytes = new byte[HEADER_SIZE]; // The header of the file.
+        ByteBuffer header; // The header, read as little-endian numbers.
+
+        try (DataInputStream inStream = new DataInputStream(new FileInputStream(file))) {
+            inStream.readFully(bytes);
+        }
+        header = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getLong() != MAGIC)
+            throw new IOException(file + " is not a Tier change file.");
+        if (header.getInt() != VERSION)
+            throw new IOException(file + " has Tier change version " + header.getInt(8)
+                    + ", but only version " + VERSION + " can be appended to.");
+        if ((file.length() - HEADER_SIZE) % RECORD_SIZE != 0)
+            throw new IOException(file + " ends with a partial Tier change.");
+    }
+}
@@ -0,0 +1,185 @@
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * This class holds the rules of the rewards program, as read from a rules file: when a
+ * Passenger moves up out of each Tier, the miles earned per cancelled flight in each Tier, the
+ * name of each Tier as shown to the user, and which Sub-Tier a Tier is upgraded to at the end
+ * of the year and on which condition. TierTable.install() compiles the rules into the flat tables
+ * every record is counted with, so the rules are only read once, at startup.
+ *
+ * A rules file is a properties file with keys of the form "Tier.rule", where Tier is the
+ * class name of a Tier (NoTier, Gold, Platinum, ExecutivePlatinum, PlatinumPro or
+ * SExecutivePlatinum). Any rule left out keeps its default value:
+ *   upgradeAt=N               - cancelled flights to move up to the next Tier (NoTier, Gold and Platinum only),
+ *   milesPerFlight=N          - miles earned per cancelled flight,
+ *   name=TEXT                 - the name of the Tier as shown to the user,
+ *   subTier=Tier              - the Sub-Tier the Tier is upgraded to with the mileage multiplier,
+ *   multiplierMaxComplaints=N - the most complaints that still earn the mileage multiplier (-1 for never).
+ * The Tiers themselves (and so the number of Tiers) are fixed, since their ordinals are stored in
+ * snapshots and reports.
+ */
+public class TierRules {
+    // The Tiers that move up to the next Tier (the main ladder), in order.
+    private static final int NUM_LADDER_TIERS = TierTable.EXECUTIVE_PLATINUM;
+    private final int[] upgradeAt = {25, 50, 100, Integer.MAX_VALUE, Integer.MAX_VALUE,
+            Integer.MAX_VALUE}; // The cancelled flights to move up out of each Tier.
+    private final int[] milesPerFlight = {1000, 1000, 1000, 1000, 2000, 2000}; // The miles per cancelled flight.
+    private final String[] displayNames = {"None", "Gold", "Platinum", "Executive Platinum",
+            "Platinum Pro", "Super Executive Platinum"}; // The name of each Tier as shown to the user.
+    private final int[] subTiers = {TierTable.NO_TIER, TierTable.GOLD, TierTable.PLATINUM_PRO,
+            TierTable.S_EXECUTIVE_PLATINUM, TierTable.PLATINUM_PRO,
+            TierTable.S_EXECUTIVE_PLATINUM}; // The Sub-Tier each Tier is upgraded to.
+    private final int[] multiplierMaxComplaints = {-1, -1, 0, 0, 0, 0}; // The most complaints with the multiplier.
+
+    /**
+     * This constructor creates the rules the program has always had: moving up at 25, 50 and 100
+     * cancelled flights, 1000 miles per cancelled flight (2000 in the Sub-Tiers), and the
+     * multiplier (and Sub-Tier) for Platinum members and above who never complained.
+     */
+    public TierRules() {
+    }
+
+    /**
+     * This method reads the rules from a rules file.
+     * @param fileName The name of the rules file.
+     * @return The rules, with every rule left out of the file at its default value.
+     * @throws IOException If the file can not be read.
+     * @throws IllegalArgumentException If a rule can not be understood, or the rules do not make a ladder.
+     */
+    public static TierRules load(String fileName) throws IOException {
+        Properties properties = new Properties(); // The rules in the file.
+
+        try (InputStream inStream = new FileInputStream(fileName)) {
+            properties.load(inStream);
+        }
+        return parse(properties);
+    }
+
+    /**
+     * This method reads the rules from properties (see the class comment for the keys).
+     * @param properties The rules.
+     * @return The rules, with every rule left out at its default value.
+     * @throws IllegalArgumentException If a rule can not be understood, or the rules do not make a ladder.
+     */
+    public static TierRules parse(Properties properties) {
+        TierRules rules = new TierRules(); // The rules.
+
+        for (String key : properties.stringPropertyNames()) {
+            int dot = key.indexOf('.'); // The index of the dot between the Tier and the rule.
+            int tier = dot < 0 ? -1 : TierTable.ordinalOf(key.substring(0, dot)); // The ordinal of the Tier.
+            String rule = key.substring(dot + 1); // The name of the rule.
+            String value = properties.getProperty(key).trim(); // The value of the rule.
+
+            if (tier < 0)
+                throw new IllegalArgumentException("Unknown tier in rule \"" + key + "\"");
+            switch (rule) {
+                case "upgradeAt":
+                    if (tier >= NUM_LADDER_TIERS)
+                        throw new IllegalArgumentException("Only NoTier, Gold and Platinum move up to another tier: " + key);
+                    rules.upgradeAt[tier] = parseNumber(key, value, 1);
+                    break;
+                case "milesPerFlight":
+                    rules.milesPerFlight[tier] = parseNumber(key, value, 0);
+                    break;
+                case "name":
+                    rules.displayNames[tier] = value;
+                    break;
+                case "subTier":
+                    rules.subTiers[tier] = TierTable.ordinalOf(value);
+                    if (rules.subTiers[tier] < 0)
+                        throw new IllegalArgumentException("Unknown tier \"" + value + "\" in rule " + key);
+                    break;
+                case "multiplierMaxComplaints":
+                    rules.multiplierMaxComplaints[tier] = parseNumber(key, value, -1);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown rule \"" + key + "\"");
+            }
+        }
+        // A Sub-Tier is where a Passenger ends up, so finishing a year twice must not move them again.
+        for (int tier = 0; tier < TierTable.NUM_TIERS; tier++) {
+            if (rules.subTiers[rules.subTiers[tier]] != rules.subTiers[tier])
+                throw new IllegalArgumentException(TierTable.getName(rules.subTiers[tier])
+                        + " is a sub-tier, so it can not have a subTier of its own");
+        }
+        // Tiers are reached one cancelled flight at a time, so each step must need more flights.
+        for (int tier = 1; tier < NUM_LADDER_TIERS; tier++) {
+            if (rules.upgradeAt[tier] <= rules.upgradeAt[tier - 1])
+                throw new IllegalArgumentException(TierTable.getName(tier) + ".upgradeAt must be more than "
+                        + TierTable.getName(tier - 1) + ".upgradeAt");
+        }
+        return rules;
+    }
+
+    /**
+     * This method returns the cancelled flights needed to move up out of a Tier.
+     * @param tier The ordinal of the Tier.
+     * @return The number of cancelled flights, or Integer.MAX_VALUE if the Tier is never left.
+     */
+    public int getUpgradeAt(int tier) {
+        return upgradeAt[tier];
+    }
+
+    /**
+     * This method returns the miles earned per cancelled flight in a Tier.
+     * @param tier The ordinal of the Tier.
+     * @return The number of miles per cancelled flight.
+     */
+    public int getMilesPerFlight(int tier) {
+        return milesPerFlight[tier];
+    }
+
+    /**
+     * This method returns the name of a Tier as shown to the user.
+     * @param tier The ordinal of the Tier.
+     * @return The display name of the Tier.
+     */
+    public String getDisplayName(int tier) {
+        return displayNames[tier];
+    }
+
+    /**
+     * This method returns the Sub-Tier a Tier is upgraded to at the end of the year, if the
+     * Passenger earned the mileage multiplier.
+     * @param tier The ordinal of the Tier.
+     * @return The ordinal of the Sub-Tier (or the same Tier if it has no Sub-Tier).
+     */
+    public int getSubTier(int tier) {
+        return subTiers[tier];
+    }
+
+    /**
+     * This method returns the most complaints a Passenger in a Tier can have made and still earn
+     * the mileage multiplier.
+     * @param tier The ordinal of the Tier.
+     * @return The number of complaints, or -1 if the Tier never earns the multiplier.
+     */
+    public int getMultiplierMaxComplaints(int tier) {
+        return multiplierMaxComplaints[tier];
+    }
+
+    /**
+     * This method converts the value of a rule to a number.
+     * @param key The name of the rule.
+     * @param value The value of the rule.
+     * @param min The smallest value allowed.
+     * @return The number.
+     * @throws IllegalArgumentException If the value is not a number of at least min.
+     */
+    private static int parseNumber(String key, String value, int min) {
+        int number; // The value as a number.
+
+        try {
+            number = Integer.parseInt(value);
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number \"" + value + "\" in rule " + key);
+        }
+        if (number < min)
+            throw new IllegalArgumentException("The rule " + key + " must be at least " + min);
+        return number;
+    }
+}
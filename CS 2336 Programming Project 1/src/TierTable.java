@@ -0,0 +1,200 @@
+/**
+ * This class holds the rules of the rewards program as flat lookup tables indexed by a Tier
+ * ordinal. Upgrades are computed from the tables with plain arithmetic, so that keeping a
+ * Passenger's Tier up to date needs no reflection, String comparisons, or new objects.
+ * The Tier classes (NoTier, Gold, ...) are still available as views through newTier().
+ *
+ * The tables hold the default TierRules, and install() replaces them with rules read from a
+ * rules file. Either way every record goes through the same tables, so rules from a file cost
+ * nothing more per record than the defaults.
+ */
+public final class TierTable {
+    public static final int NO_TIER = 0; // The ordinal of NoTier.
+    public static final int GOLD = 1; // The ordinal of Gold.
+    public static final int PLATINUM = 2; // The ordinal of Platinum.
+    public static final int EXECUTIVE_PLATINUM = 3; // The ordinal of ExecutivePlatinum.
+    public static final int PLATINUM_PRO = 4; // The ordinal of PlatinumPro.
+    public static final int S_EXECUTIVE_PLATINUM = 5; // The ordinal of SExecutivePlatinum.
+    public static final int NUM_TIERS = 6; // The number of Tiers (and Sub-Tiers).
+
+    // The number of cancelled flights needed to be upgraded out of each Tier (Sub-Tiers are never upgraded).
+    private static final int[] UPGRADE_AT = new int[NUM_TIERS];
+    // The number of miles earned per cancelled flight in each Tier.
+    private static final int[] MILES_PER_FLIGHT = new int[NUM_TIERS];
+    // The special Sub-Tier each Tier is upgraded to if the Passenger earned the mileage multiplier.
+    private static final int[] SPECIAL_TIER = new int[NUM_TIERS];
+    // The most complaints a Passenger in each Tier can have and still earn the multiplier (-1 for never).
+    private static final int[] MULTIPLIER_MAX_COMPLAINTS = new int[NUM_TIERS];
+    // The name of the class of each Tier, as returned by Passenger.getTier().
+    private static final String[] NAMES = {"NoTier", "Gold", "Platinum", "ExecutivePlatinum",
+            "PlatinumPro", "SExecutivePlatinum"};
+    // The name of each Tier as shown to the user.
+    private static final String[] DISPLAY_NAMES = new String[NUM_TIERS];
+
+    static {
+        install(new TierRules());
+    }
+
+    /**
+     * This constructor is private, because the class only holds static tables.
+     */
+    private TierTable() {
+    }
+
+    /**
+     * This method compiles rules into the tables. It must be called before any record is
+     * counted, since Passengers already counted keep the Tiers they reached under the old rules.
+     * @param rules The rules of the rewards program.
+     */
+    public static void install(TierRules rules) {
+        for (int tier = 0; tier < NUM_TIERS; tier++) {
+            UPGRADE_AT[tier] = rules.getUpgradeAt(tier);
+            MILES_PER_FLIGHT[tier] = rules.getMilesPerFlight(tier);
+            SPECIAL_TIER[tier] = rules.getSubTier(tier);
+            MULTIPLIER_MAX_COMPLAINTS[tier] = rules.getMultiplierMaxComplaints(tier);
+            DISPLAY_NAMES[tier] = rules.getDisplayName(tier);
+        }
+    }
+
+    /**
+     * This method returns the Tier after a cancelled flight. A Passenger moves up at most one
+     * Tier per cancelled flight, since the count only goes up by one at a time. An upgrade
+     * is counted in the Metrics when it happens.
+     * @param tier The ordinal of the current Tier.
+     * @param numCancFlights Number of flights the passenger was supposed to take but were cancelled.
+     * @return The ordinal of the (possibly upgraded) Tier.
+     */
+    public static int upgrade(int tier, int numCancFlights) {
+        if (numCancFlights < UPGRADE_AT[tier])
+            return tier;
+        Metrics.countUpgrade(tier);
+        return tier + 1;
+    }
+
+    /**
+     * This method returns the Tier a Passenger belongs to during the year,
+     * given only their total number of cancelled flights.
+     * @param numCancFlights Number of flights the passenger was supposed to take but were cancelled.
+     * @return The ordinal of the Tier.
+     */
+    public static int tierFor(int numCancFlights) {
+        int tier = NO_TIER; // The ordinal of the Tier.
+
+        while (numCancFlights >= UPGRADE_AT[tier])
+            tier++;
+        return tier;
+    }
+
+    /**
+     * This method returns the miles earned for a number of cancelled flights in a Tier.
+     * @param tier The ordinal of the Tier.
+     * @param numCancFlights Number of flights the passenger was supposed to take but were cancelled.
+     * @return The total number of miles earned.
+     */
+    public static int getMiles(int tier, int numCancFlights) {
+        return numCancFlights * MILES_PER_FLIGHT[tier];
+    }
+
+    /**
+     * This method checks whether members of a Tier can earn the mileage multiplier.
+     * By default, passengers without a tier or in gold tier automatically do not qualify.
+     * @param tier The ordinal of the Tier.
+     * @return Flag indicating whether the Tier can earn the mileage multiplier.
+     */
+    public static boolean canHaveMultiplier(int tier) {
+        return MULTIPLIER_MAX_COMPLAINTS[tier] >= 0;
+    }
+
+    /**
+     * This method checks whether a member of a Tier earns the mileage multiplier at the end of the
+     * year. By default, members of Platinum and above earn it if they never complained.
+     * @param tier The ordinal of the Tier.
+     * @param numComplaints The number of times the Passenger has complained.
+     * @return Flag indicating whether the Passenger earns the mileage multiplier.
+     */
+    public static boolean hasMultiplier(int tier, int numComplaints) {
+        return numComplaints <= MULTIPLIER_MAX_COMPLAINTS[tier];
+    }
+
+    /**
+     * This method returns the number of cancelled flights needed to be upgraded out of a Tier.
+     * @param tier The ordinal of the Tier.
+     * @return The number of cancelled flights, or Integer.MAX_VALUE if the Tier is never left.
+     */
+    public static int getUpgradeAt(int tier) {
+        return UPGRADE_AT[tier];
+    }
+
+    /**
+     * This method returns the miles earned per cancelled flight in a Tier.
+     * @param tier The ordinal of the Tier.
+     * @return The number of miles per cancelled flight.
+     */
+    public static int getMilesPerFlight(int tier) {
+        return MILES_PER_FLIGHT[tier];
+    }
+
+    /**
+     * This method returns the special Sub-Tier a Tier is upgraded to at the end of the year.
+     * @param tier The ordinal of the Tier.
+     * @return The ordinal of the Sub-Tier (or the same Tier if it has no Sub-Tier).
+     */
+    public static int getSpecialTier(int tier) {
+        return SPECIAL_TIER[tier];
+    }
+
+    /**
+     * This method returns the name of the class of a Tier.
+     * @param tier The ordinal of the Tier.
+     * @return The name of the Tier's class.
+     */
+    public static String getName(int tier) {
+        return NAMES[tier];
+    }
+
+    /**
+     * This method returns the name of a Tier as shown to the user.
+     * @param tier The ordinal of the Tier.
+     * @return The display name of the Tier.
+     */
+    public static String getDisplayName(int tier) {
+        return DISPLAY_NAMES[tier];
+    }
+
+    /**
+     * This method returns the ordinal of the Tier with the given class name.
+     * @param tierName The name of the Tier's class.
+     * @return The ordinal of the Tier, or -1 if there is no such Tier.
+     */
+    public static int ordinalOf(String tierName) {
+        for (int tier = 0; tier < NUM_TIERS; tier++) {
+            if (NAMES[tier].equals(tierName))
+                return tier;
+        }
+        return -1;
+    }
+
+    /**
+     * This method creates a Tier object showing the given totals, for code that uses the Tier classes.
+     * @param tier The ordinal of the Tier.
+     * @param numCancFlights Number of flights the passenger was supposed to take but were cancelled.
+     * @param numFlights The total number of flights a Passenger has taken.
+     * @return A Tier object of the right class holding the totals.
+     */
+    public static Tier newTier(int tier, int numCancFlights, int numFlights) {
+        switch (tier) {
+            case GOLD:
+                return new Gold(numCancFlights, numFlights);
+            case PLATINUM:
+                return new Platinum(numCancFlights, numFlights);
+            case EXECUTIVE_PLATINUM:
+                return new ExecutivePlatinum(numCancFlights, numFlights);
+            case PLATINUM_PRO:
+                return new PlatinumPro(numCancFlights, numFlights);
+            case S_EXECUTIVE_PLATINUM:
+                return new SExecutivePlatinum(numCancFlights, numFlights);
+            default:
+                return new NoTier(numCancFlights, numFlights);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This class runs the end-of-year pass over a store on several threads. The slots of the store
+ * are split into ranges, every range is finished by its own task in a single pass over its
+ * Passengers, and the numbers of promotions counted by the tasks are added up. Every Passenger
+ * is decided exactly as PassengerStore.finishYear() would, so the result is the same.
+ */
+public class YearEndFinalizer {
+    /**
+     * This method finishes the year of a store, using the threads of the given pool.
+     * @param passengerInfo The store whose year is over.
+     * @param pool The pool that finishes the ranges of slots.
+     * @return The number of Passengers upgraded out of each Tier.
+     */
+    public static YearEndReport finish(SlottedStore passengerInfo, ForkJoinPool pool) {
+        int numSlots = passengerInfo.getNumSlots(); // The number of slots in the store.
+        // Aim for a few ranges per thread, so that threads finishing early can take more work.
+        int rangeSize = Math.max(1, numSlots / (pool.getParallelism() * 4)); // Slots per range.
+
+        passengerInfo.setEndOfYear();
+        return new YearEndReport(pool.invoke(new RangeTask(passengerInfo, 0, numSlots, rangeSize)));
+    }
+
+    /**
+     * This class represents the task of finishing a range of slots. A range larger than the
+     * range size is split in two, and both halves are finished in parallel.
+     */
+    private static class RangeTask extends RecursiveTask<long[]> {
+        private static final long serialVersionUID = 1L; // The version of the task's serialized form.
+        private final SlottedStore passengerInfo; // The store whose year is over.
+        private final int fromSlot; // The first slot of the range.
+        private final int toSlot; // The slot just after the last slot of the range.
+        private final int rangeSize; // The size of the ranges that are finished without splitting.
+
+        /**
+         * This constructor creates the task for one range of slots.
+         * @param passengerInfo The store whose year is over.
+         * @param fromSlot The first slot of the range.
+         * @param toSlot The slot just after the last slot of the range.
+         * @param rangeSize The size of the ranges that are finished without splitting.
+         */
+        RangeTask(SlottedStore passengerInfo, int fromSlot, int toSlot, int rangeSize) {
+            this.passengerInfo = passengerInfo;
+            this.fromSlot = fromSlot;
+            this.toSlot = toSlot;
+            this.rangeSize = rangeSize;
+        }
+
+        /**
+         * This method finishes the range, splitting it if it is too large.
+         * @return The number of Passengers upgraded out of each Tier in the range.
+         */
+        @Override
+        protected long[] compute() {
+            long[] promotions; // The number of Passengers upgraded out of each Tier.
+
+            if (toSlot - fromSlot > rangeSize) {
+                int middle = fromSlot + (toSlot - fromSlot) / 2; // Where to split.
+                RangeTask second = new RangeTask(passengerInfo, middle, toSlot, rangeSize); // The second half.
+                long[] secondPromotions; // The promotions of the second half.
+
+                second.fork();
+                promotions = new RangeTask(passengerInfo, fromSlot, middle, rangeSize).compute();
+                secondPromotions = second.join();
+                for (int tier = 0; tier < TierTable.NUM_TIERS; tier++)
+                    promotions[tier] += secondPromotions[tier];
+                return promotions;
+            }
+            promotions = new long[TierTable.NUM_TIERS];
+            passengerInfo.finishSlots(fromSlot, toSlot, promotions);
+            return promotions;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * This class holds the outcome of the end-of-year pass: how many Passengers of each Tier
+ * earned the mileage multiplier and were upgraded to the corresponding special Sub-Tier.
+ */
+public class YearEndReport {
+    private final long[] promotions; // The number of Passengers upgraded out of each Tier.
+
+    /**
+     * This constructor creates the report from the counted promotions.
+     * @param promotions The number of Passengers upgraded out of each Tier, indexed by TierTable ordinal.
+     */
+    public YearEndReport(long[] promotions) {
+        this.promotions = promotions.clone();
+    }
+
+    /**
+     * This method returns the number of Passengers upgraded out of a Tier.
+     * @param tier The ordinal of the Tier before the upgrade.
+     * @return The number of Passengers upgraded out of the Tier.
+     */
+    public long getPromotions(int tier) {
+        return promotions[tier];
+    }
+
+    /**
+     * This method returns the number of Passengers upgraded to a special Sub-Tier.
+     * @return The number of Passengers upgraded.
+     */
+    public long getTotalPromotions() {
+        long total = 0; // The number of Passengers upgraded.
+
+        for (long count : promotions)
+            total += count;
+        return total;
+    }
+
+    /**
+     * This method describes the upgrades, one line per Tier that had any.
+     * @return The description of the upgrades.
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(); // The description of the upgrades.
+
+        for (int tier = 0; tier < TierTable.NUM_TIERS; tier++) {
+            if (promotions[tier] == 0)
+                continue;
+            text.append(TierTable.getDisplayName(tier)).append(" -> ")
+                    .append(TierTable.getDisplayName(TierTable.getSpecialTier(tier)))
+                    .append(": ").append(promotions[tier]).append('\n');
+        }
+        return text.toString();
+    }
+}
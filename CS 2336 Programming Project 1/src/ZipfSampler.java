@@ -0,0 +1,98 @@
+import java.util.random.RandomGenerator;
+
+/**
+ * This class picks passenger ranks from a Zipf distribution, using the rejection-inversion
+ * method of Hormann and Derflinger, which needs no table of the size of the distribution.
+ * The synthetic flight logs (see FlightLogGenerator) pick the passenger of each record with it.
+ */
+public class ZipfSampler {
+    private final int numElements; // The number of ranks.
+    private final double exponent; // The Zipf exponent (0 for uniform).
+    private final double hIntegralX1; // H(1.5) - 1, the upper end of the sampled range.
+    private final double hIntegralN; // H(n + 0.5), the lower end of the sampled range.
+    private final double s; // The width of the range that is always accepted.
+
+    /**
+     * This constructor prepares the sampler.
+     * @param numElements The number of ranks.
+     * @param exponent The Zipf exponent (0 for uniform).
+     */
+    public ZipfSampler(int numElements, double exponent) {
+        this.numElements = numElements;
+        this.exponent = exponent;
+        this.hIntegralX1 = hIntegral(1.5) - 1;
+        this.hIntegralN = hIntegral(numElements + 0.5);
+        this.s = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+    }
+
+    /**
+     * This method picks a rank.
+     * @param random The source of random numbers.
+     * @return A rank from 0 (the most frequent) to the number of ranks minus one.
+     */
+    public int sample(RandomGenerator random) {
+        if (exponent == 0)
+            return random.nextInt(numElements);
+        while (true) {
+            double u = hIntegralN + random.nextDouble() * (hIntegralX1 - hIntegralN); // A point under H.
+            double x = hIntegralInverse(u); // The point mapped back to a rank.
+            int k = (int) Math.max(1, Math.min(numElements, x + 0.5)); // The nearest rank (from 1).
+
+            if (k - x <= s || u >= hIntegral(k + 0.5) - h(k))
+                return k - 1;
+        }
+    }
+
+    /**
+     * This method returns H(x), the integral of h from 1 to x.
+     * @param x The point.
+     * @return The value of H(x).
+     */
+    private double hIntegral(double x) {
+        double logX = Math.log(x); // The logarithm of the point.
+
+        return helper2((1 - exponent) * logX) * logX;
+    }
+
+    /**
+     * This method returns h(x) = 1 / x^exponent.
+     * @param x The point.
+     * @return The value of h(x).
+     */
+    private double h(double x) {
+        return Math.exp(-exponent * Math.log(x));
+    }
+
+    /**
+     * This method returns the inverse of H.
+     * @param x The value of H.
+     * @return The point whose H is the value.
+     */
+    private double hIntegralInverse(double x) {
+        double t = Math.max(-1, x * (1 - exponent)); // The scaled value.
+
+        return Math.exp(helper1(t) * x);
+    }
+
+    /**
+     * This method returns log(1 + x) / x, accurately even for x close to 0.
+     * @param x The value.
+     * @return The value of log(1 + x) / x.
+     */
+    private static double helper1(double x) {
+        if (Math.abs(x) > 1e-8)
+            return Math.log1p(x) / x;
+        return 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+    }
+
+    /**
+     * This method returns (exp(x) - 1) / x, accurately even for x close to 0.
+     * @param x The value.
+     * @return The value of (exp(x) - 1) / x.
+     */
+    private static double helper2(double x) {
+        if (Math.abs(x) > 1e-8)
+            return Math.expm1(x) / x;
+        return 1 + x * 0.5 * (1 + x * (1.0 / 3) * (1 + 0.25 * x));
+    }
+}